@@ -316,8 +316,11 @@ public class Processor extends AbstractService {
         }
         long duration = 1000L * cacheConfig.getInt("duration", 300);
         int maxNumEntries = cacheConfig.getInt("maxNumEntries", 512);
+        boolean offHeap = cacheConfig.getBoolean("offHeap", false);
+        long maxOffHeapSize = 1024L * 1024 * cacheConfig.getInt("maxOffHeapSize", 256);
 
-        parameterCacheConfig = new ParameterCacheConfig(enabled, cacheAll, duration, maxNumEntries);
+        parameterCacheConfig = new ParameterCacheConfig(enabled, cacheAll, duration, maxNumEntries, offHeap,
+                maxOffHeapSize);
     }
 
     private static String key(String instance, String name) {
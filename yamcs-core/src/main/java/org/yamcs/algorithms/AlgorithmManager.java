@@ -6,8 +6,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +34,7 @@ import org.yamcs.parameter.ParameterProvider;
 import org.yamcs.parameter.ParameterRequestManager;
 import org.yamcs.parameter.ParameterValue;
 import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.utils.IntArray;
 import org.yamcs.xtce.Algorithm;
 import org.yamcs.xtce.CustomAlgorithm;
 import org.yamcs.xtce.DataSource;
@@ -59,6 +65,13 @@ import com.google.common.util.concurrent.AbstractService;
  * {@link #registerAlgorithmEngine(String, AlgorithmEngine)} method.
  * 
  * javascript will be automatically registered as well as python if available.
+ * <p>
+ * If the <code>parallelism</code> configuration option is greater than 1, the algorithms woken up by a delivery are
+ * run in parallel level by level of their dependency graph (see {@link ExecutionSchedule}) on a fork-join pool. The
+ * script engines which are not thread safe are replicated for each thread of the pool (see
+ * {@link ScriptAlgorithmExecutorFactory}). The results are the same as in the sequential execution provided that the
+ * algorithms do not share state other than through their input and output parameters; in particular the global
+ * variables of the scripts are not shared between the threads.
  */
 public class AlgorithmManager extends AbstractService
         implements ParameterProvider, DVParameterConsumer, ProcessorService {
@@ -76,6 +89,10 @@ public class AlgorithmManager extends AbstractService
     NamedDescriptionIndex<Parameter> outParamIndex = new NamedDescriptionIndex<>();
 
     CopyOnWriteArrayList<AlgorithmExecutor> executionOrder = new CopyOnWriteArrayList<>();
+    // index of the executionOrder by input parameter, rebuilt when the executionOrder changes
+    private ExecutionSchedule schedule;
+    // used to run the independent algorithms in parallel, null if running sequentially
+    ForkJoinPool parallelPool;
     HashSet<Parameter> requiredInParams = new HashSet<>(); // required by this class
     ArrayList<Parameter> requestedOutParams = new ArrayList<>(); // requested by clients
     ParameterRequestManager parameterRequestManager;
@@ -121,6 +138,10 @@ public class AlgorithmManager extends AbstractService
     public AlgorithmManager(String yamcsInstance, YConfiguration config) throws ConfigurationException {
         this.yamcsInstance = yamcsInstance;
         this.config = config;
+        int parallelism = config.getInt("parallelism", 1);
+        if (parallelism > 1) {
+            parallelPool = new ForkJoinPool(parallelism);
+        }
     }
 
     public static void registerAlgorithmEngine(String name, AlgorithmEngine eng) {
@@ -302,6 +323,7 @@ public class AlgorithmManager extends AbstractService
                 parameterRequestManager.addItemsToRequest(subscriptionId, newItems);
             }
             executionOrder.add(executor); // Add at the back (dependent algorithms will come in front)
+            invalidateSchedule();
         } catch (InvalidRequestIdentification e) {
             log.error("InvalidRequestIdentification caught when subscribing to the items required for the algorithm {}",
                     executor.getAlgorithm().getName(), e);
@@ -312,6 +334,7 @@ public class AlgorithmManager extends AbstractService
         AlgorithmExecutor engine = execCtx.remove(algorithm);
         if (engine != null) {
             executionOrder.remove(engine);
+            invalidateSchedule();
         }
     }
 
@@ -373,6 +396,7 @@ public class AlgorithmManager extends AbstractService
                 }
             }
             requiredInParams.retainAll(stillRequired);
+            invalidateSchedule();
         }
     }
 
@@ -413,6 +437,10 @@ public class AlgorithmManager extends AbstractService
 
     /**
      * Update parameters in context and run the affected algorithms
+     * <p>
+     * Only the algorithms having one of the items as input or trigger and, recursively, the algorithms depending on
+     * the outputs of those that run, are considered. They are run in the execution order and each of them receives
+     * only the values of its own inputs.
      * 
      * @param items
      * @param ctx
@@ -425,16 +453,22 @@ public class AlgorithmManager extends AbstractService
         long acqTime = processor.getCurrentTime();
         long genTime = items.get(0).getGenerationTime();
 
-        ArrayList<ParameterValue> allItems = new ArrayList<>(items);
-        for (AlgorithmExecutor executor : executionOrder) {
+        ExecutionSchedule sched = getSchedule();
+        ExecutionSchedule.Wakeup wakeup = sched.new Wakeup();
+        wakeup.add(items, 0);
+        if (parallelPool != null && sched.numLevels < sched.size()) {
+            return runLevels(sched, wakeup, ctx, acqTime, genTime);
+        }
+        for (int idx = wakeup.next(0); idx >= 0; idx = wakeup.next(idx + 1)) {
+            AlgorithmExecutor executor = sched.get(idx);
             if (ctx == globalCtx || executor.getExecutionContext() == ctx) {
-                boolean shouldRun = executor.updateParameters(allItems);
+                boolean shouldRun = executor.updateParameters(wakeup.getInputs(idx));
                 if (shouldRun) {
                     List<ParameterValue> r = executor.runAlgorithm(acqTime, genTime);
                     if (r != null) {
-                        allItems.addAll(r);
                         newItems.addAll(r);
                         ctx.updateHistoryWindows(r);
+                        wakeup.add(r, idx + 1);
                     }
                 }
             }
@@ -442,6 +476,86 @@ public class AlgorithmManager extends AbstractService
         return newItems;
     }
 
+    /**
+     * Runs the woken up algorithms level by level, the algorithms of one level in parallel.
+     * <p>
+     * The outputs of one level are added to the history windows and used to wake up the algorithms of the next levels
+     * in the execution order. They are returned in the execution order, as if the algorithms were run sequentially.
+     */
+    private List<ParameterValue> runLevels(ExecutionSchedule sched, ExecutionSchedule.Wakeup wakeup,
+            AlgorithmExecutionContext ctx, long acqTime, long genTime) {
+        TreeMap<Integer, List<ParameterValue>> results = new TreeMap<>();
+        List<Callable<List<ParameterValue>>> tasks = new ArrayList<>();
+        for (IntArray level = wakeup.nextLevel(); level.size() > 0; level = wakeup.nextLevel()) {
+            IntArray positions = new IntArray(level.size());
+            tasks.clear();
+            for (int i = 0; i < level.size(); i++) {
+                int idx = level.get(i);
+                AlgorithmExecutor executor = sched.get(idx);
+                if (ctx == globalCtx || executor.getExecutionContext() == ctx) {
+                    List<ParameterValue> inputs = wakeup.getInputs(idx);
+                    positions.add(idx);
+                    tasks.add(() -> executor.updateParameters(inputs) ? executor.runAlgorithm(acqTime, genTime) : null);
+                }
+            }
+            List<List<ParameterValue>> levelResults = invokeAll(tasks);
+            for (int i = 0; i < positions.size(); i++) {
+                List<ParameterValue> r = levelResults.get(i);
+                if (r != null) {
+                    int idx = positions.get(i);
+                    results.put(idx, r);
+                    ctx.updateHistoryWindows(r);
+                    wakeup.add(r, idx + 1);
+                }
+            }
+        }
+        ArrayList<ParameterValue> newItems = new ArrayList<>();
+        for (List<ParameterValue> r : results.values()) {
+            newItems.addAll(r);
+        }
+        return newItems;
+    }
+
+    private List<List<ParameterValue>> invokeAll(List<Callable<List<ParameterValue>>> tasks) {
+        List<List<ParameterValue>> r = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            try {
+                r.add(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new AlgorithmException(e);
+            }
+            return r;
+        }
+        for (Future<List<ParameterValue>> f : parallelPool.invokeAll(tasks)) {
+            try {
+                r.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AlgorithmException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new AlgorithmException(cause);
+            }
+        }
+        return r;
+    }
+
+    private synchronized ExecutionSchedule getSchedule() {
+        if (schedule == null) {
+            schedule = new ExecutionSchedule(executionOrder);
+        }
+        return schedule;
+    }
+
+    private synchronized void invalidateSchedule() {
+        schedule = null;
+    }
+
     @Override
     public void setParameterListener(ParameterListener parameterRequestManager) {
         // do nothing, we're more interested in a ParameterRequestManager, which we're
@@ -458,6 +572,9 @@ public class AlgorithmManager extends AbstractService
         if (timer != null) {
             timer.shutdownNow();
         }
+        if (parallelPool != null) {
+            parallelPool.shutdown();
+        }
         notifyStopped();
     }
 
@@ -499,5 +616,6 @@ public class AlgorithmManager extends AbstractService
         globalCtx.addAlgorithm(algOverr, executor);
         algoOverrides.put(calg, algOverr);
         executionOrder.add(executor);
+        invalidateSchedule();
     }
 }
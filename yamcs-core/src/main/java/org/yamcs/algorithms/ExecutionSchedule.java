@@ -0,0 +1,172 @@
+package org.yamcs.algorithms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.utils.IntArray;
+import org.yamcs.xtce.OnParameterUpdateTrigger;
+import org.yamcs.xtce.OutputParameter;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.TriggerSetType;
+
+/**
+ * Snapshot of the algorithm execution order together with an index from each parameter to the positions of the
+ * executors having it as input or as trigger.
+ * <p>
+ * It allows the {@link AlgorithmManager} to wake up for each delivery only the algorithms affected by the delivered
+ * parameters and, through their outputs, the algorithms downstream, instead of offering all the parameters to all the
+ * executors.
+ * <p>
+ * Each executor is also assigned a level in the dependency graph such that the executors of one level can run in
+ * parallel and, running the levels one after the other, give the same result as running the executors in order: an
+ * executor has a higher level than all the executors before it which produce one of its inputs and at least the level
+ * of the executors before it which consume or produce one of its outputs.
+ * <p>
+ * The schedule is immutable; the AlgorithmManager builds a new one each time the active algorithms change.
+ */
+class ExecutionSchedule {
+    final AlgorithmExecutor[] executors;
+    // parameter -> positions (ascending) in the executors array of the executors depending on it
+    final Map<Parameter, int[]> dependents = new HashMap<>();
+    // level of each executor in the dependency graph
+    final int[] levels;
+    final int numLevels;
+
+    ExecutionSchedule(List<AlgorithmExecutor> executionOrder) {
+        executors = executionOrder.toArray(new AlgorithmExecutor[0]);
+        Map<Parameter, IntArray> m = new HashMap<>();
+        for (int i = 0; i < executors.length; i++) {
+            for (Parameter p : getInputParameters(executors[i])) {
+                m.computeIfAbsent(p, k -> new IntArray()).add(i);
+            }
+        }
+        for (Map.Entry<Parameter, IntArray> me : m.entrySet()) {
+            dependents.put(me.getKey(), me.getValue().toArray());
+        }
+
+        levels = new int[executors.length];
+        int maxLevel = -1;
+        // parameter -> positions of the executors producing it, filled as we go
+        Map<Parameter, IntArray> producers = new HashMap<>();
+        for (int i = 0; i < executors.length; i++) {
+            int level = 0;
+            for (Parameter p : getInputParameters(executors[i])) {
+                IntArray pa = producers.get(p);
+                for (int k = 0; pa != null && k < pa.size(); k++) {
+                    level = Math.max(level, levels[pa.get(k)] + 1);
+                }
+            }
+            for (OutputParameter op : executors[i].getAlgorithm().getOutputSet()) {
+                Parameter p = op.getParameter();
+                int[] da = dependents.get(p);
+                for (int k = 0; da != null && k < da.length && da[k] < i; k++) {
+                    level = Math.max(level, levels[da[k]]);
+                }
+                IntArray pa = producers.get(p);
+                for (int k = 0; pa != null && k < pa.size(); k++) {
+                    level = Math.max(level, levels[pa.get(k)]);
+                }
+            }
+            levels[i] = level;
+            maxLevel = Math.max(maxLevel, level);
+            for (OutputParameter op : executors[i].getAlgorithm().getOutputSet()) {
+                producers.computeIfAbsent(op.getParameter(), k -> new IntArray()).add(i);
+            }
+        }
+        numLevels = maxLevel + 1;
+    }
+
+    /**
+     *
+     * @return the parameters which can change the state of the executor: its inputs and its update triggers.
+     */
+    static Set<Parameter> getInputParameters(AlgorithmExecutor executor) {
+        Set<Parameter> params = new HashSet<>(executor.getRequiredParameters());
+        TriggerSetType tst = executor.getAlgorithm().getTriggerSet();
+        if (tst != null) {
+            for (OnParameterUpdateTrigger trigger : tst.getOnParameterUpdateTriggers()) {
+                params.add(trigger.getParameter());
+            }
+        }
+        return params;
+    }
+
+    int size() {
+        return executors.length;
+    }
+
+    AlgorithmExecutor get(int idx) {
+        return executors[idx];
+    }
+
+    /**
+     * Collects the executors woken up during the processing of one delivery and the parameter values to be passed to
+     * each of them. Not thread safe, one object is used for each delivery.
+     */
+    class Wakeup {
+        final BitSet woken = new BitSet(executors.length);
+        final Map<Integer, List<ParameterValue>> inputs = new HashMap<>();
+
+        /**
+         * Wakes up the executors depending on the given parameter values, skipping those at positions lower than
+         * <code>fromIdx</code> which have been already considered in this delivery.
+         */
+        void add(List<ParameterValue> pvals, int fromIdx) {
+            for (ParameterValue pv : pvals) {
+                int[] positions = dependents.get(pv.getParameter());
+                if (positions == null) {
+                    continue;
+                }
+                for (int idx : positions) {
+                    if (idx >= fromIdx) {
+                        woken.set(idx);
+                        inputs.computeIfAbsent(idx, k -> new ArrayList<>()).add(pv);
+                    }
+                }
+            }
+        }
+
+        /**
+         *
+         * @return the position of the next woken up executor starting from fromIdx (inclusive) or -1 if there is none
+         */
+        int next(int fromIdx) {
+            return woken.nextSetBit(fromIdx);
+        }
+
+        /**
+         * Removes from the woken up executors those of the lowest level and returns them in order.
+         *
+         * @return the positions of the executors of the lowest level or an empty array if there is no woken up
+         *         executor
+         */
+        IntArray nextLevel() {
+            IntArray r = new IntArray();
+            int minLevel = Integer.MAX_VALUE;
+            for (int idx = woken.nextSetBit(0); idx >= 0; idx = woken.nextSetBit(idx + 1)) {
+                int level = levels[idx];
+                if (level < minLevel) {
+                    minLevel = level;
+                    r = new IntArray();
+                }
+                if (level == minLevel) {
+                    r.add(idx);
+                }
+            }
+            for (int i = 0; i < r.size(); i++) {
+                woken.clear(r.get(i));
+            }
+            return r;
+        }
+
+        List<ParameterValue> getInputs(int idx) {
+            return inputs.get(idx);
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class ScriptAlgorithmEngine implements AlgorithmEngine {
         ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
         scriptEngineManager.put("Yamcs", new AlgorithmUtils(algorithmManager.getProcessor()));
 
-        return new ScriptAlgorithmExecutorFactory(scriptEngineManager, language, libs);
+        return new ScriptAlgorithmExecutorFactory(scriptEngineManager, language, libs, algorithmManager.parallelPool);
 
     }
 
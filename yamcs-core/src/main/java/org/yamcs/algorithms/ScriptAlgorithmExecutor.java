@@ -7,7 +7,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.script.Invocable;
 import javax.script.ScriptException;
 
 import org.codehaus.janino.SimpleCompiler;
@@ -39,7 +38,7 @@ import org.yamcs.xtceproc.ParameterTypeUtils;
 public class ScriptAlgorithmExecutor extends AbstractAlgorithmExecutor {
     static final Logger log = LoggerFactory.getLogger(ScriptAlgorithmExecutor.class);
 
-    final Invocable invocable;
+    final ScriptAlgorithmExecutorFactory factory;
     // stores both the function inputs and outputs
     // the position of the inputs corresponds to the position of AlgorithmDef input respectively output List
     final Object[] functionArgs;
@@ -54,12 +53,12 @@ public class ScriptAlgorithmExecutor extends AbstractAlgorithmExecutor {
     final String functionName;
     final EventProducer eventProducer;
 
-    public ScriptAlgorithmExecutor(CustomAlgorithm algorithmDef, Invocable invocable, String functionName,
-            AlgorithmExecutionContext execCtx) {
+    public ScriptAlgorithmExecutor(CustomAlgorithm algorithmDef, ScriptAlgorithmExecutorFactory factory,
+            String functionName, AlgorithmExecutionContext execCtx) {
         super(algorithmDef, execCtx);
         this.parameterTypeProcessor = new ParameterTypeProcessor(execCtx.getProcessorData());
         this.functionName = functionName;
-        this.invocable = invocable;
+        this.factory = factory;
         this.eventProducer = execCtx.getProcessorData().getEventProducer();
 
         numInputs = algorithmDef.getInputList().size();
@@ -101,7 +100,7 @@ public class ScriptAlgorithmExecutor extends AbstractAlgorithmExecutor {
             log.trace(getRunningTraceString());
         }
         try {
-            Object returnValue = invocable.invokeFunction(functionName, functionArgs);
+            Object returnValue = factory.invokeFunction(functionName, functionArgs);
             List<ParameterValue> outputValues = new ArrayList<>();
             List<OutputParameter> outputList = algorithmDef.getOutputList();
             for (int k = 0; k < numOutputs; k++) {
@@ -320,7 +319,7 @@ public class ScriptAlgorithmExecutor extends AbstractAlgorithmExecutor {
 
     @Override
     public String toString() {
-        return algorithmDef.getName() + " executor " + invocable;
+        return algorithmDef.getName() + " executor " + factory.scriptEngine;
     }
 
 }
@@ -1,11 +1,18 @@
 package org.yamcs.algorithms;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import javax.script.Bindings;
 import javax.script.Invocable;
@@ -13,6 +20,7 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleBindings;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +37,11 @@ import org.yamcs.xtce.OutputParameter;
  * There might be multiple executors for the same algorithm: for example in the command verifier there will be one
  * algorithm executor for each command.
  * However there will be only one function created in the script engine.
+ * <p>
+ * Most script engines (e.g. Nashorn, Jython) cannot run functions from multiple threads at the same time. For such an
+ * engine, the calls are serialized, except when made from the threads of the worker pool of the
+ * {@link AlgorithmManager}: each of these threads has its own engine in which the libraries and the functions are
+ * evaluated again, such that the algorithms run in parallel do not wait for each other.
  *
  * 
  */
@@ -36,12 +49,41 @@ public class ScriptAlgorithmExecutorFactory implements AlgorithmExecutorFactory
     final ScriptEngine scriptEngine;
     static final Logger log = LoggerFactory.getLogger(ScriptAlgorithmExecutorFactory.class);
 
+    final ScriptEngineManager scriptEngineManager;
+    final String language;
+    final boolean threadSafe;
+    // the pool whose threads have their own engine, null if there is none
+    final ForkJoinPool workerPool;
+    // global bindings of the worker engines; they are not shared with the main engine
+    final Bindings workerGlobalBindings;
+    // the libraries and the functions evaluated in the main engine, to be evaluated in the worker engines
+    final List<Script> scripts = new CopyOnWriteArrayList<>();
+    // indexed by the pool index of the worker thread
+    final Map<Integer, WorkerEngine> workerEngines = new ConcurrentHashMap<>();
+
     public ScriptAlgorithmExecutorFactory(ScriptEngineManager scriptEngineManager, String language,
             List<String> libraryNames) {
+        this(scriptEngineManager, language, libraryNames, null);
+    }
+
+    /**
+     * 
+     * @param workerPool
+     *            the pool used by the {@link AlgorithmManager} to run the algorithms in parallel, null if they are run
+     *            sequentially
+     */
+    public ScriptAlgorithmExecutorFactory(ScriptEngineManager scriptEngineManager, String language,
+            List<String> libraryNames, ForkJoinPool workerPool) {
+        this.scriptEngineManager = scriptEngineManager;
+        this.language = language;
+        this.workerPool = workerPool;
         scriptEngine = scriptEngineManager.getEngineByName(language);
         if (scriptEngine == null) {
             throw new ConfigurationException("Cannot get a script engine for language " + language);
         }
+        // the factories which do not declare the THREADING parameter are not thread safe
+        threadSafe = scriptEngine.getFactory().getParameter("THREADING") != null;
+        workerGlobalBindings = new SimpleBindings(new HashMap<>(scriptEngineManager.getBindings()));
         if (libraryNames != null) {
             loadLibraries(libraryNames);
         }
@@ -68,11 +110,9 @@ public class ScriptAlgorithmExecutorFactory implements AlgorithmExecutorFactory
                 if (!f.exists()) {
                     throw new ConfigurationException("Algorithm library file '" + f + "' does not exist");
                 }
-                scriptEngine.put(ScriptEngine.FILENAME, f.getPath()); // Improves error msgs
                 if (f.isFile()) {
-                    try (FileReader fr = new FileReader(f)) {
-                        scriptEngine.eval(fr);
-                    }
+                    String code = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+                    eval(new Script(f.getPath(), code)); // the file name improves error msgs
                 } else {
                     throw new ConfigurationException("Specified library is not a file: " + f);
                 }
@@ -90,15 +130,44 @@ public class ScriptAlgorithmExecutorFactory implements AlgorithmExecutorFactory
         log.debug("Evaluating script:\n{}", functionScript);
         try {
             // improve error messages as well as required for event generation to know from where it is called
-            scriptEngine.put(ScriptEngine.FILENAME, calg.getQualifiedName());
-            scriptEngine.eval(functionScript);
+            eval(new Script(calg.getQualifiedName(), functionScript));
         } catch (ScriptException e) {
             String msg = "Error evaluating script " + functionScript + ": " + e.getMessage();
             execCtx.getEventProducer().sendWarning(msg);
             log.warn("Error while evaluating script {}: {}", functionScript, e.getMessage(), e);
             throw new AlgorithmException(msg);
         }
-        return new ScriptAlgorithmExecutor(calg, (Invocable) scriptEngine, functionName, execCtx);
+        return new ScriptAlgorithmExecutor(calg, this, functionName, execCtx);
+    }
+
+    /**
+     * Evaluates the script in the main engine and adds it to the scripts to be evaluated in the worker engines
+     */
+    private void eval(Script script) throws ScriptException {
+        synchronized (scriptEngine) {
+            scriptEngine.put(ScriptEngine.FILENAME, script.fileName);
+            scriptEngine.eval(script.code);
+            scripts.add(script);
+        }
+    }
+
+    /**
+     * Calls the function in the engine of the current thread
+     */
+    Object invokeFunction(String functionName, Object[] args) throws ScriptException, NoSuchMethodException {
+        if (threadSafe) {
+            return ((Invocable) scriptEngine).invokeFunction(functionName, args);
+        }
+        Thread t = Thread.currentThread();
+        if (workerPool != null && t instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) t).getPool() == workerPool) {
+            WorkerEngine we = workerEngines.computeIfAbsent(((ForkJoinWorkerThread) t).getPoolIndex(),
+                    k -> new WorkerEngine());
+            return we.invokeFunction(functionName, args);
+        }
+        synchronized (scriptEngine) {
+            return ((Invocable) scriptEngine).invokeFunction(functionName, args);
+        }
     }
 
     public static String generateFunctionCode(String functionName, CustomAlgorithm algorithmDef) {
@@ -170,4 +239,41 @@ public class ScriptAlgorithmExecutorFactory implements AlgorithmExecutorFactory
     public List<String> getLanguages() {
         return scriptEngine.getFactory().getNames();
     }
+
+    static class Script {
+        final String fileName;
+        final String code;
+
+        Script(String fileName, String code) {
+            this.fileName = fileName;
+            this.code = code;
+        }
+    }
+
+    /**
+     * Engine used by one thread of the worker pool.
+     * <p>
+     * The pool index identifies one live thread at a time; a thread replacing a terminated one reuses its engine.
+     */
+    class WorkerEngine {
+        final ScriptEngine engine;
+        // number of scripts evaluated in this engine
+        int numEvaluated = 0;
+
+        WorkerEngine() {
+            engine = scriptEngineManager.getEngineByName(language);
+            engine.setBindings(workerGlobalBindings, ScriptContext.GLOBAL_SCOPE);
+        }
+
+        synchronized Object invokeFunction(String functionName, Object[] args)
+                throws ScriptException, NoSuchMethodException {
+            // evaluate the functions of the algorithms created since the last call
+            for (int n = scripts.size(); numEvaluated < n; numEvaluated++) {
+                Script script = scripts.get(numEvaluated);
+                engine.put(ScriptEngine.FILENAME, script.fileName);
+                engine.eval(script.code);
+            }
+            return ((Invocable) engine).invokeFunction(functionName, args);
+        }
+    }
 }
@@ -3,9 +3,14 @@ package org.yamcs.archive;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.rocksdb.RocksDBException;
@@ -43,6 +48,8 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 import org.yamcs.yarch.streamsql.StreamSqlException;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Completeness index of CCSDS telemetry. The structure of the rocksdb records:
  * 
@@ -55,6 +62,11 @@ import org.yamcs.yarch.streamsql.StreamSqlException;
  * around sequence counts are received - see testApidIndexSameTimeAndWraparound for failing test. the old TokyoCabinet
  * based indexer didn't use the sequence count as part of the key but allowed multiple records with the same key. To
  * replicate this in RocksDB, one would need to have the RocksDB entries composed of all records with the same startime
+ * <p>
+ * The last record of each apid (the open run) is kept in memory and extended without accessing RocksDB as long as the
+ * packets come in sequence. It is written to the database when a packet does not extend it, after a number of
+ * packets, periodically and before reading the index. After a restart the open runs are found again in the database
+ * when the first packet of each apid is received.
  * 
  * @author nm
  *
@@ -67,10 +79,20 @@ public class CcsdsTmIndex implements TmIndex {
     // if time between two packets with the same apid is more than one hour,
     // make two records even if they packets are in sequence (because maybe there is a wrap around involved)
     static long maxApidInterval = 3600 * 1000;
+    // the open runs are written to the database after this number of packets
+    static int maxUnsavedPackets = 1000;
+    // wall clock milliseconds after which all open runs are written to the database
+    static long flushInterval = 10_000;
+    // writes the open runs of all the indexes each flushInterval, also when no packet is received
+    static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("CcsdsTmIndex-flush").setDaemon(true).build());
     String yamcsInstance;
     private static AtomicInteger streamCounter = new AtomicInteger();
     final Tablespace tablespace;
     int tbsIndex;
+    // the last record of each apid if it has been extended recently
+    final Map<Short, OpenRun> openRuns = new HashMap<>();
+    ScheduledFuture<?> flushFuture;
 
     /**
      * if readonly is specified, it is open only for reading
@@ -90,6 +112,10 @@ public class CcsdsTmIndex implements TmIndex {
         for (HttpServer httpServer : YamcsServer.getServer().getGlobalServices(HttpServer.class)) {
             httpServer.addApiHandler(instance, new CcsdsTmIndexRestHandler());
         }
+        if (!readonly) {
+            flushFuture = timer.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
     private void openDb() throws RocksDBException {
@@ -127,6 +153,38 @@ public class CcsdsTmIndex implements TmIndex {
     }
 
     public synchronized void addPacket(short apid, long instant, short seq) throws RocksDBException {
+        OpenRun run = openRuns.get(apid);
+        if (run != null) {
+            int c = compare(apid, instant, seq, run.record);
+            if (c == 0) {
+                if (log.isTraceEnabled()) {
+                    log.trace("ignored duplicate packet: apid={} time={} seq={}", apid,
+                            TimeEncoding.toOrdinalDateTime(instant), seq);
+                }
+                return;
+            } else if (c == 1) {
+                Record r = run.record;
+                r.seqLast = seq;
+                r.lastTime = instant;
+                r.numPackets++;
+                run.unsavedPackets++;
+                if (run.unsavedPackets >= maxUnsavedPackets) {
+                    save(run);
+                }
+                return;
+            }
+            // gap or packet out of order; the database has to be up to date for the search below
+            save(run);
+            openRuns.remove(apid);
+        }
+        addPacketToDb(apid, instant, seq);
+    }
+
+    /**
+     * Searches the neighbouring records in the database and updates them. If the packet is added to the last record of
+     * the apid, that record becomes the open run.
+     */
+    private void addPacketToDb(short apid, long instant, short seq) throws RocksDBException {
         YRDB db = tablespace.getRdb();
         RocksIterator it = tablespace.getRdb().newIterator();
         try {
@@ -175,6 +233,9 @@ public class CcsdsTmIndex implements TmIndex {
                 rleft.lastTime = instant;
                 rleft.numPackets++;
                 db.put(rleft.key(tbsIndex), rleft.val());
+                if (rright.apid() != apid) {
+                    openRuns.put(apid, new OpenRun(rleft));
+                }
             } else if (cright == -1) {// attach to right
                 db.delete(rright.key(tbsIndex));
                 rright.seqFirst = seq;
@@ -184,12 +245,40 @@ public class CcsdsTmIndex implements TmIndex {
             } else { // create a new record
                 Record r = new Record(apid, instant, seq, 1);
                 db.put(r.key(tbsIndex), r.val());
+                if (rright.apid() != apid) {
+                    openRuns.put(apid, new OpenRun(r));
+                }
             }
         } finally {
             it.close();
         }
     }
 
+    private void save(OpenRun run) throws RocksDBException {
+        if (run.unsavedPackets > 0) {
+            Record r = run.record;
+            tablespace.getRdb().put(r.key(tbsIndex), r.val());
+            run.unsavedPackets = 0;
+        }
+    }
+
+    /**
+     * writes all the open runs to the database
+     */
+    synchronized void flush() throws RocksDBException {
+        for (OpenRun run : openRuns.values()) {
+            save(run);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RocksDBException e) {
+            log.error("Failed to write the ccsds tm index", e);
+        }
+    }
+
     /**
      * compare the packet with the record. returns:
      * <ul>
@@ -249,6 +338,10 @@ public class CcsdsTmIndex implements TmIndex {
 
     @Override
     public synchronized void close() throws IOException {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        flushQuietly();
     }
 
     /*
@@ -298,6 +391,7 @@ public class CcsdsTmIndex implements TmIndex {
     }
 
     public void printApidDb(short apid, long start, long stop) throws RocksDBException {
+        flush();
         String formatt = "%-10s  %-30s - %-30s  %12s - %12s";
         System.out.println(String.format(formatt, "apid", "start", "stop", "startseq", "stopseq"));
         try (RocksIterator cur = tablespace.getRdb().newIterator()) {
@@ -375,6 +469,7 @@ public class CcsdsTmIndex implements TmIndex {
             this.apid = apid;
             this.start = start;
             this.stop = stop;
+            flushQuietly();
         }
 
         // jumps to the beginning of the curApid returning true if there is any record matching the start criteria
@@ -457,6 +552,7 @@ public class CcsdsTmIndex implements TmIndex {
 
     @Override
     public void streamClosed(Stream stream) {
+        flushQuietly();
     }
 
     public synchronized CompletableFuture<Void> rebuild(TimeInterval interval) throws YarchException {
@@ -504,6 +600,9 @@ public class CcsdsTmIndex implements TmIndex {
     }
 
     private synchronized void deleteRecords(TimeInterval interval) throws RocksDBException {
+        flush();
+        // the deleted records may be open
+        openRuns.clear();
         YRDB db = tablespace.getRdb();
         try (RocksIterator it = db.newIterator()) {
             it.seekToFirst(); // header
@@ -551,6 +650,16 @@ public class CcsdsTmIndex implements TmIndex {
     }
 }
 
+class OpenRun {
+    final Record record;
+    // number of packets added since the record has been written to the database
+    int unsavedPackets;
+
+    OpenRun(Record record) {
+        this.record = record;
+    }
+}
+
 class Record {
     long firstTime, lastTime;
     short apid;
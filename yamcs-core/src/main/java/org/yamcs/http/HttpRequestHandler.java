@@ -7,7 +7,6 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,6 +83,11 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
 
     private static final Logger log = LoggerFactory.getLogger(HttpRequestHandler.class);
 
+    /**
+     * a chunked transfer fails if the client does not read any data for this number of milliseconds
+     */
+    public static final int WRITE_STALL_TIMEOUT = 10000;
+
     public static final Object CONTENT_FINISHED_EVENT = new Object();
     private static StaticFileHandler fileRequestHandler = new StaticFileHandler();
 
@@ -421,28 +425,84 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
         return ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
     }
 
+    /**
+     * Writes one chunk of a chunked transfer.
+     * <p>
+     * If after the write the channel is not writable (the data queued for the client is above the write buffer high
+     * water mark), this method blocks until the channel becomes writable again (the queued data went below the low
+     * water mark). The chunks are produced by the stream or replay threads which are thus paused while the client is
+     * slow, such that the memory used by one transfer stays bounded whatever the speed of the client.
+     * 
+     * @throws IOException
+     *             if the channel is closed or if the client did not read anything during {@link #WRITE_STALL_TIMEOUT}
+     *             milliseconds.
+     */
     public static ChannelFuture writeChunk(ChannelHandlerContext ctx, ByteBuf buf) throws IOException {
         Channel ch = ctx.channel();
         if (!ch.isOpen()) {
             throw new ClosedChannelException();
         }
         ChannelFuture writeFuture = ctx.writeAndFlush(new DefaultHttpContent(buf));
+        if (!ch.isWritable()) {
+            ChunkedTransferStats stats = ch.attr(CTX_CHUNK_STATS).get();
+            waitUntilWritable(ch, stats != null ? stats : new ChunkedTransferStats(null, null));
+        }
+        return writeFuture;
+    }
+
+    private static void waitUntilWritable(Channel ch, ChunkedTransferStats stats) throws IOException {
+        long t0 = System.nanoTime();
+        long lastProgress = t0;
+        long pending = ch.bytesBeforeWritable();
         try {
-            if (!ch.isWritable()) {
-                boolean writeCompleted = writeFuture.await(10, TimeUnit.SECONDS);
-                if (!writeCompleted) {
-                    throw new IOException("Channel did not become writable in 10 seconds");
+            synchronized (stats) {
+                while (!ch.isWritable()) {
+                    if (!ch.isOpen()) {
+                        throw new ClosedChannelException();
+                    }
+                    long now = System.nanoTime();
+                    long p = ch.bytesBeforeWritable();
+                    if (p < pending) {
+                        pending = p;
+                        lastProgress = now;
+                    } else if (now - lastProgress > WRITE_STALL_TIMEOUT * 1000_000L) {
+                        throw new IOException(
+                                "Client did not read any data in " + WRITE_STALL_TIMEOUT / 1000 + " seconds");
+                    }
+                    // notified from channelWritabilityChanged; the timeout is for checking the progress
+                    stats.wait(100);
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } finally {
+            stats.stallCount++;
+            stats.stallTime += (System.nanoTime() - t0) / 1000_000;
         }
-        return writeFuture;
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        ChunkedTransferStats stats = ctx.channel().attr(CTX_CHUNK_STATS).get();
+        if (stats != null && ctx.channel().isWritable()) {
+            synchronized (stats) {
+                stats.notifyAll();
+            }
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * Statistics of one chunked transfer. The stalls are the periods when the producer of the data has been paused
+     * waiting for the client to read the data already sent.
+     */
     public static class ChunkedTransferStats {
-        public int totalBytes = 0;
+        public long totalBytes = 0;
         public int chunkCount = 0;
+        public int stallCount = 0;
+        // total stall time in milliseconds
+        public long stallTime = 0;
+        final long startTime = System.currentTimeMillis();
         HttpMethod originalMethod;
         String originalUri;
 
@@ -450,5 +510,21 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
             originalMethod = method;
             originalUri = uri;
         }
+
+        /**
+         * 
+         * @return the average number of bytes per second transferred since the start of the transfer
+         */
+        public long getThroughput() {
+            long duration = Math.max(1, System.currentTimeMillis() - startTime);
+            return totalBytes * 1000 / duration;
+        }
+
+        @Override
+        public String toString() {
+            return originalMethod + " " + originalUri + ": " + totalBytes + " bytes in " + chunkCount + " chunks, "
+                    + (System.currentTimeMillis() - startTime) + " ms (" + getThroughput() / 1024 + " KB/s), "
+                    + stallCount + " stalls totaling " + stallTime + " ms";
+        }
     }
 }
@@ -21,6 +21,9 @@ import io.netty.channel.Channel;
  * Reads a yamcs replay and maps it directly to an output buffer. If that buffer grows larger than the treshold size for
  * one chunk, this will cause a chunk to be written out. Could maybe be replaced by using built-in netty functionality,
  * but would need to investigate.
+ * <p>
+ * The replay is paused while the client is slower than the replay: writing a chunk blocks the replay thread until the
+ * channel becomes writable again.
  */
 public abstract class ParameterReplayToChunkedTransferEncoder extends RestParameterReplayListener {
 
@@ -20,6 +20,7 @@ import org.yamcs.http.BadRequestException;
 import org.yamcs.http.ForbiddenException;
 import org.yamcs.http.HttpException;
 import org.yamcs.http.HttpRequestHandler;
+import org.yamcs.http.HttpRequestHandler.ChunkedTransferStats;
 import org.yamcs.http.HttpUtils;
 import org.yamcs.http.NotFoundException;
 import org.yamcs.http.RouteHandler;
@@ -515,9 +516,16 @@ public abstract class RestHandler extends RouteHandler {
     }
 
     public static void completeChunkedTransfer(RestRequest req) {
+        ChunkedTransferStats stats = req.getChannelHandlerContext().channel()
+                .attr(HttpRequestHandler.CTX_CHUNK_STATS).get();
         req.getChannelHandlerContext().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT)
                 .addListener(ChannelFutureListener.CLOSE)
-                .addListener(l -> req.getCompletableFuture().complete(null));
+                .addListener(l -> {
+                    if (stats != null) {
+                        log.info("R{}: chunked transfer finished {}", req.getRequestId(), stats);
+                    }
+                    req.getCompletableFuture().complete(null);
+                });
     }
 
     protected static void checkSystemPrivilege(RestRequest req, SystemPrivilege privilege) throws ForbiddenException {
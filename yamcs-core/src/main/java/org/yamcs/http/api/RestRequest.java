@@ -62,14 +62,7 @@ public class RestRequest {
     }
 
     public boolean hasRouteParam(String name) {
-        try {
-            return routeMatch.regexMatch.group(name) != null;
-        } catch (IllegalArgumentException e) {
-            // Could likely be improved, we need this catch in case of multiple @Route annotations
-            // for the same method. Because then above call could throw an error if the requested
-            // group is not present in one of the patterns
-            return false;
-        }
+        return routeMatch.getRouteParam(name) != null;
     }
 
     public String getRouteParam(String name) {
@@ -87,7 +80,7 @@ public class RestRequest {
     }
 
     public long getLongRouteParam(String name) throws BadRequestException {
-        String routeParam = routeMatch.regexMatch.group(name);
+        String routeParam = routeMatch.getRouteParam(name);
         try {
             return Long.parseLong(routeParam);
         } catch (NumberFormatException e) {
@@ -96,7 +89,7 @@ public class RestRequest {
     }
 
     public int getIntegerRouteParam(String name) throws BadRequestException {
-        String routeParam = routeMatch.regexMatch.group(name);
+        String routeParam = routeMatch.getRouteParam(name);
         try {
             return Integer.parseInt(routeParam);
         } catch (NumberFormatException e) {
@@ -105,7 +98,7 @@ public class RestRequest {
     }
 
     public long getDateRouteParam(String name) throws BadRequestException {
-        String routeParam = routeMatch.regexMatch.group(name);
+        String routeParam = routeMatch.getRouteParam(name);
         try {
             return Long.parseLong(routeParam);
         } catch (NumberFormatException e) {
@@ -229,6 +222,23 @@ public class RestRequest {
         }
     }
 
+    public double getQueryParameterAsDouble(String name) throws BadRequestException {
+        String param = getQueryParameter(name);
+        try {
+            return Double.parseDouble(param);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Query parameter '" + name + "' does not have a valid numeric value");
+        }
+    }
+
+    public double getQueryParameterAsDouble(String name, double defaultValue) throws BadRequestException {
+        if (hasQueryParameter(name)) {
+            return getQueryParameterAsDouble(name);
+        } else {
+            return defaultValue;
+        }
+    }
+
     public long getQueryParameterAsDate(String name) throws BadRequestException {
         String param = getQueryParameter(name);
         try {
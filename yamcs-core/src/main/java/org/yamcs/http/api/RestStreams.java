@@ -13,6 +13,7 @@ import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.http.HttpException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.utils.parser.ParseException;
+import org.yamcs.yarch.streamsql.ExecutionContext;
 import org.yamcs.yarch.streamsql.StreamSqlException;
 
 public class RestStreams {
@@ -25,6 +26,15 @@ public class RestStreams {
 
     public static void stream(String instance, String selectSql, List<Object> args, StreamSubscriber s)
             throws HttpException {
+        stream(instance, selectSql, args, 1, s);
+    }
+
+    /**
+     * Same as {@link #stream(String, String, List, StreamSubscriber)} but up to <code>parallelism</code> time intervals
+     * of the tables are read in advance by the scan pool of the tablespace. Used for the bulk downloads.
+     */
+    public static void stream(String instance, String selectSql, List<Object> args, int parallelism,
+            StreamSubscriber s) throws HttpException {
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(instance);
 
         String streamName = "rest_archive" + streamCounter.incrementAndGet();
@@ -37,7 +47,9 @@ public class RestStreams {
 
         log.debug("Executing: {}", sql);
         try {
-            ydb.execute(sql, args.toArray());
+            ExecutionContext context = new ExecutionContext(instance);
+            context.setParallelism(parallelism);
+            ydb.execute(context, sql, args.toArray());
         } catch (StreamSqlException | ParseException e) {
             throw new InternalServerErrorException(e);
         }
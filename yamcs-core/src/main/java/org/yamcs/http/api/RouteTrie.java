@@ -0,0 +1,228 @@
+package org.yamcs.http.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.yamcs.http.api.Router.RouteElement;
+
+/**
+ * Path segment trie used by the {@link Router} to find the routes matching an uri.
+ * <p>
+ * The route paths are split in segments separated by '/'. Each segment is either a literal, a parameter
+ * <tt>:name</tt> matching one non empty segment, an optional parameter <tt>:name?</tt> or a star parameter
+ * <tt>:name*</tt> matching one or more segments. The routes containing optional parameters are inserted once for each
+ * combination of present/absent parameters; like in the regular expressions used before, a present optional parameter
+ * also matches an empty segment, case in which its value is null. A trailing '/' in the uri is ignored.
+ * <p>
+ * The matching walks the trie following the uri segments, the cost is proportional with the uri length rather than
+ * with the number of routes. Only the star parameters require trying multiple ends; they are tried from the shortest
+ * to the longest, like the lazy regular expressions used before.
+ * <p>
+ * The insertion may run concurrently with the matching (the dynamic routes are added when the instances start).
+ */
+class RouteTrie {
+    static final Pattern PARAM_PATTERN = Pattern.compile(":(\\w+)([\\?\\*])?");
+
+    final Node root = new Node();
+
+    /**
+     * Adds a route to the trie.
+     *
+     * @param path
+     *            - the route path
+     * @param element
+     *            - the element to be returned when the route matches
+     * @param order
+     *            - the element with the smallest order is the preferred match
+     */
+    void add(String path, RouteElement element, int order) {
+        String[] segments = split(path);
+        int numOptional = 0;
+        for (String s : segments) {
+            if (s.endsWith("?")) {
+                numOptional++;
+            }
+        }
+        // rank 0 is with all the optional parameters present; this is the first tried by the regular expressions
+        for (int rank = 0; rank < (1 << numOptional); rank++) {
+            add(segments, numOptional, element, order, rank);
+        }
+    }
+
+    private void add(String[] segments, int numOptional, RouteElement element, int order, int rank) {
+        Node node = root;
+        List<String> paramNames = new ArrayList<>();
+        int k = numOptional;
+        for (String s : segments) {
+            Matcher m = PARAM_PATTERN.matcher(s);
+            if (!m.matches()) {
+                node = node.literals.computeIfAbsent(s, x -> new Node());
+                continue;
+            }
+            String name = m.group(1);
+            String type = m.group(2);
+            if ("?".equals(type)) {
+                k--;
+                if ((rank & (1 << k)) != 0) { // absent
+                    continue;
+                }
+            }
+            paramNames.add(name);
+            if ("*".equals(type)) {
+                node = node.starParams.computeIfAbsent(name, x -> new Node());
+            } else if ("?".equals(type)) {
+                node = node.optionalParams.computeIfAbsent(name, x -> new Node());
+            } else {
+                node = node.params.computeIfAbsent(name, x -> new Node());
+            }
+        }
+        node.terminals.add(new Terminal(element, order, rank, paramNames.toArray(new String[0])));
+    }
+
+    /**
+     * Finds all the routes matching the uri
+     *
+     * @return the matches sorted by order, one for each matching element
+     */
+    List<Match> match(String uri) {
+        if (uri.isEmpty() || uri.charAt(0) != '/') {
+            return Collections.emptyList();
+        }
+        int n = 1;
+        for (int i = 1; i < uri.length(); i++) {
+            if (uri.charAt(i) == '/') {
+                n++;
+            }
+        }
+        // the segment i is between segStart[i] and segStart[i+1]-1
+        int[] segStart = new int[n + 1];
+        int k = 0;
+        for (int i = 0; i < uri.length(); i++) {
+            if (uri.charAt(i) == '/') {
+                segStart[k++] = i + 1;
+            }
+        }
+        segStart[n] = uri.length() + 1;
+
+        List<Match> result = new ArrayList<>(2);
+        match(root, uri, segStart, 0, new String[n], 0, result);
+        if (result.size() > 1) {
+            result.sort((m1, m2) -> Integer.compare(m1.order, m2.order));
+        }
+        return result;
+    }
+
+    private void match(Node node, String uri, int[] segStart, int idx, String[] values, int numValues,
+            List<Match> result) {
+        int n = segStart.length - 1;
+        if (idx == n || (idx == n - 1 && segStart[idx] == uri.length())) {
+            for (Terminal t : node.terminals) {
+                addMatch(t, values, numValues, result);
+            }
+            if (idx == n) {
+                return;
+            }
+        }
+        int start = segStart[idx];
+        int end = segStart[idx + 1] - 1;
+        if (!node.literals.isEmpty()) {
+            Node next = node.literals.get(uri.substring(start, end));
+            if (next != null) {
+                match(next, uri, segStart, idx + 1, values, numValues, result);
+            }
+        }
+        if (end > start && !node.params.isEmpty()) {
+            values[numValues] = uri.substring(start, end);
+            for (Node next : node.params.values()) {
+                match(next, uri, segStart, idx + 1, values, numValues + 1, result);
+            }
+        }
+        if (!node.optionalParams.isEmpty()) {
+            values[numValues] = end > start ? uri.substring(start, end) : null;
+            for (Node next : node.optionalParams.values()) {
+                match(next, uri, segStart, idx + 1, values, numValues + 1, result);
+            }
+        }
+        if (!node.starParams.isEmpty()) {
+            for (int i = idx + 1; i <= n; i++) {
+                end = segStart[i] - 1;
+                if (end == start) {
+                    continue;
+                }
+                values[numValues] = uri.substring(start, end);
+                for (Node next : node.starParams.values()) {
+                    match(next, uri, segStart, i, values, numValues + 1, result);
+                }
+            }
+        }
+    }
+
+    private static void addMatch(Terminal t, String[] values, int numValues, List<Match> result) {
+        for (int i = 0; i < result.size(); i++) {
+            Match m = result.get(i);
+            if (m.element == t.element) {
+                if (t.rank < m.rank) {
+                    result.set(i, new Match(t, values, numValues));
+                }
+                return;
+            }
+        }
+        result.add(new Match(t, values, numValues));
+    }
+
+    private static String[] split(String path) {
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.isEmpty() ? new String[0] : path.split("/", -1);
+    }
+
+    static final class Node {
+        final Map<String, Node> literals = new ConcurrentHashMap<>();
+        final Map<String, Node> params = new ConcurrentHashMap<>();
+        final Map<String, Node> optionalParams = new ConcurrentHashMap<>();
+        final Map<String, Node> starParams = new ConcurrentHashMap<>();
+        final List<Terminal> terminals = new CopyOnWriteArrayList<>();
+    }
+
+    static final class Terminal {
+        final RouteElement element;
+        final int order;
+        final int rank;
+        final String[] paramNames;
+
+        Terminal(RouteElement element, int order, int rank, String[] paramNames) {
+            this.element = element;
+            this.order = order;
+            this.rank = rank;
+            this.paramNames = paramNames;
+        }
+    }
+
+    static final class Match {
+        final RouteElement element;
+        final int order;
+        final int rank;
+        final String[] paramNames;
+        final String[] paramValues;
+
+        Match(Terminal t, String[] values, int numValues) {
+            this.element = t.element;
+            this.order = t.order;
+            this.rank = t.rank;
+            this.paramNames = t.paramNames;
+            String[] v = new String[numValues];
+            System.arraycopy(values, 0, v, 0, numValues);
+            this.paramValues = v;
+        }
+    }
+}
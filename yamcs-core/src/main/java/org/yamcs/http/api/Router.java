@@ -11,12 +11,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,11 +84,13 @@ import io.netty.util.AttributeKey;
  * When matching a route, priority is first given to built-in routes, only if none match the first matching
  * instance-specific dynamic route is matched. Dynamic routes often mention ':instance' in their url, which will be
  * expanded upon registration into the actual yamcs instance.
+ * <p>
+ * The routes are matched using a path segment trie (see {@link RouteTrie}) such that the cost of matching does not
+ * depend on the number of registered routes.
  */
 @Sharable
 public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
 
-    private static final Pattern ROUTE_PATTERN = Pattern.compile("(\\/)?:(\\w+)([\\?\\*])?");
     private static final Logger log = LoggerFactory.getLogger(Router.class);
 
     public final static int MAX_BODY_SIZE = 65536;
@@ -99,9 +100,11 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
 
     private String contextPath;
 
-    // Order, because patterns are matched top-down in insertion order
-    private List<RouteElement> defaultRoutes = new ArrayList<>();
-    private List<RouteElement> dynamicRoutes = new ArrayList<>();
+    // Insertion order, because when multiple routes match, the first registered is chosen
+    final List<RouteElement> defaultRoutes = new CopyOnWriteArrayList<>();
+    final List<RouteElement> dynamicRoutes = new CopyOnWriteArrayList<>();
+    private final RouteTrie defaultTrie = new RouteTrie();
+    private final RouteTrie dynamicTrie = new RouteTrie();
 
     private boolean logSlowRequests = true;
     int SLOW_REQUEST_TIME = 20;// seconds; requests that execute more than this are logged
@@ -156,7 +159,7 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
     }
 
     // Using method handles for better invoke performance
-    public void registerRouteHandler(String yamcsInstance, RouteHandler routeHandler) {
+    public synchronized void registerRouteHandler(String yamcsInstance, RouteHandler routeHandler) {
         MethodHandles.Lookup lookup = MethodHandles.lookup();
         Method[] declaredMethods = routeHandler.getClass().getDeclaredMethods();
 
@@ -191,6 +194,7 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
         Collections.sort(routeConfigs);
 
         List<RouteElement> targetRoutes = (yamcsInstance == null) ? defaultRoutes : dynamicRoutes;
+        RouteTrie targetTrie = (yamcsInstance == null) ? defaultTrie : dynamicTrie;
 
         for (RouteConfig routeConfig : routeConfigs) {
             String routeString = routeConfig.originalPath;
@@ -202,19 +206,20 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
                 }
                 routeString = routeString.replace(":instance", yamcsInstance);
             }
-            Pattern pattern = toPattern(routeString);
-            Map<HttpMethod, RouteConfig> configByMethod = createAndGet(targetRoutes, pattern).configByMethod;
+            Map<HttpMethod, RouteConfig> configByMethod = createAndGet(targetRoutes, targetTrie,
+                    routeString).configByMethod;
             configByMethod.put(routeConfig.httpMethod, routeConfig);
         }
     }
 
-    private RouteElement createAndGet(List<RouteElement> routes, Pattern pattern) {
+    private RouteElement createAndGet(List<RouteElement> routes, RouteTrie trie, String path) {
         for (RouteElement re : routes) {
-            if (re.pattern.pattern().equals(pattern.pattern())) {
+            if (re.path.equals(path)) {
                 return re;
             }
         }
-        RouteElement re = new RouteElement(pattern);
+        RouteElement re = new RouteElement(path);
+        trie.add(path, re, routes.size());
         routes.add(re);
         return re;
     }
@@ -292,27 +297,12 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
 
     public RouteMatch matchURI(HttpMethod method, String uri) throws MethodNotAllowedException {
         Set<HttpMethod> allowedMethods = null;
-        for (RouteElement re : defaultRoutes) {
-            Matcher matcher = re.pattern.matcher(uri);
-            if (matcher.matches()) {
-                Map<HttpMethod, RouteConfig> byMethod = re.configByMethod;
-                if (byMethod.containsKey(method)) {
-                    return new RouteMatch(matcher, byMethod.get(method));
-                } else {
-                    if (allowedMethods == null) {
-                        allowedMethods = new HashSet<>(4);
-                    }
-                    allowedMethods.addAll(byMethod.keySet());
-                }
-            }
-        }
-
-        for (RouteElement re : dynamicRoutes) {
-            Matcher matcher = re.pattern.matcher(uri);
-            if (matcher.matches()) {
-                Map<HttpMethod, RouteConfig> byMethod = re.configByMethod;
-                if (byMethod.containsKey(method)) {
-                    return new RouteMatch(matcher, byMethod.get(method));
+        for (RouteTrie trie : new RouteTrie[] { defaultTrie, dynamicTrie }) {
+            for (RouteTrie.Match m : trie.match(uri)) {
+                Map<HttpMethod, RouteConfig> byMethod = m.element.configByMethod;
+                RouteConfig routeConfig = byMethod.get(method);
+                if (routeConfig != null) {
+                    return new RouteMatch(m.paramNames, m.paramValues, routeConfig);
                 } else {
                     if (allowedMethods == null) {
                         allowedMethods = new HashSet<>(4);
@@ -389,36 +379,6 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
         }
     }
 
-    /*
-     * Pattern matching loosely inspired from angular and express.js
-     */
-    private Pattern toPattern(String route) {
-        Matcher matcher = ROUTE_PATTERN.matcher(route);
-        StringBuffer buf = new StringBuffer("^");
-        while (matcher.find()) {
-            boolean star = ("*".equals(matcher.group(3)));
-            boolean optional = ("?".equals(matcher.group(3)));
-            String slash = (matcher.group(1) != null) ? matcher.group(1) : "";
-            StringBuffer replacement = new StringBuffer();
-            if (optional) {
-                replacement.append("(?:");
-                replacement.append(slash);
-                replacement.append("(?<").append(matcher.group(2)).append(">");
-                replacement.append(star ? ".+?" : "[^/]+");
-                replacement.append(")?)?");
-            } else {
-                replacement.append(slash);
-                replacement.append("(?<").append(matcher.group(2)).append(">");
-                replacement.append(star ? ".+?" : "[^/]+");
-                replacement.append(")");
-            }
-
-            matcher.appendReplacement(buf, replacement.toString());
-        }
-        matcher.appendTail(buf);
-        return Pattern.compile(buf.append("/?$").toString());
-    }
-
     /**
      * Struct containing all non-path route configuration
      */
@@ -472,11 +432,13 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
      * Represents a matched route pattern
      */
     public static final class RouteMatch {
-        final Matcher regexMatch;
+        final String[] paramNames;
+        final String[] paramValues;
         final RouteConfig routeConfig;
 
-        RouteMatch(Matcher regexMatch, RouteConfig routeConfig) {
-            this.regexMatch = regexMatch;
+        RouteMatch(String[] paramNames, String[] paramValues, RouteConfig routeConfig) {
+            this.paramNames = paramNames;
+            this.paramValues = paramValues;
             this.routeConfig = routeConfig;
         }
 
@@ -484,20 +446,30 @@ public class Router extends SimpleChannelInboundHandler<FullHttpRequest> {
             return routeConfig;
         }
 
+        /**
+         * 
+         * @return the value of the route parameter or null if the parameter is not part of the matched route (or it is
+         *         an optional parameter not present in the uri)
+         */
         public String getRouteParam(String name) {
-            return regexMatch.group(name);
+            for (int i = 0; i < paramNames.length; i++) {
+                if (paramNames[i].equals(name)) {
+                    return paramValues[i];
+                }
+            }
+            return null;
         }
     }
 
     /**
-     * stores the matching patterns together with the config per HttpMethod
+     * stores the route paths together with the config per HttpMethod
      */
     public static final class RouteElement {
-        final Pattern pattern;
+        final String path;
         final Map<HttpMethod, RouteConfig> configByMethod = new LinkedHashMap<>();
 
-        RouteElement(Pattern p) {
-            this.pattern = p;
+        RouteElement(String path) {
+            this.path = path;
         }
     }
 
@@ -22,6 +22,9 @@ import io.netty.channel.Channel;
  * Reads a yamcs stream and maps it directly to an output buffer. If that buffer grows larger than the treshold size for
  * one chunk, this will cause a chunk to be written out. Could maybe be replaced by using built-in netty functionality,
  * but would need to investigate.
+ * <p>
+ * The tuples are received on the stream thread; writing a chunk blocks that thread (and thus pauses the stream) while
+ * the client is not keeping up, see {@link HttpRequestHandler#writeChunk}.
  */
 public abstract class StreamToChunkedTransferEncoder implements StreamSubscriber {
 
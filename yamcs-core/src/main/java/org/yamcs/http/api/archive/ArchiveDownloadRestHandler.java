@@ -64,6 +64,9 @@ import io.netty.buffer.ByteBufOutputStream;
  */
 public class ArchiveDownloadRestHandler extends RestHandler {
 
+    // number of threads used for reading the tables in the downloads
+    static final int DOWNLOAD_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     private GpbExtensionRegistry gpbExtensionRegistry;
 
     @Route(path = "/api/archive/:instance/downloads/parameters", method = { "GET", "POST" })
@@ -241,7 +244,7 @@ public class ArchiveDownloadRestHandler extends RestHandler {
 
         String filename = "packets";
         if (req.asksFor(MediaType.OCTET_STREAM)) {
-            RestStreams.stream(instance, sql, sqlb.getQueryArguments(),
+            RestStreams.stream(instance, sql, sqlb.getQueryArguments(), DOWNLOAD_PARALLELISM,
                     new StreamToChunkedTransferEncoder(req, MediaType.OCTET_STREAM, filename + ".raw") {
                         @Override
                         public void processTuple(Tuple tuple, ByteBufOutputStream bufOut) throws IOException {
@@ -250,7 +253,7 @@ public class ArchiveDownloadRestHandler extends RestHandler {
                         }
                     });
         } else {
-            RestStreams.stream(instance, sql, sqlb.getQueryArguments(),
+            RestStreams.stream(instance, sql, sqlb.getQueryArguments(), DOWNLOAD_PARALLELISM,
                     new StreamToChunkedProtobufEncoder<TmPacketData>(req, filename) {
                         @Override
                         public TmPacketData mapTuple(Tuple tuple) {
@@ -284,7 +287,7 @@ public class ArchiveDownloadRestHandler extends RestHandler {
         sqlb.descend(req.asksDescending(false));
         String sql = sqlb.toString();
 
-        RestStreams.stream(instance, sql, sqlb.getQueryArguments(),
+        RestStreams.stream(instance, sql, sqlb.getQueryArguments(), DOWNLOAD_PARALLELISM,
                 new StreamToChunkedProtobufEncoder<CommandHistoryEntry>(req, "commands") {
                     @Override
                     public CommandHistoryEntry mapTuple(Tuple tuple) {
@@ -326,16 +329,17 @@ public class ArchiveDownloadRestHandler extends RestHandler {
         String sql = sqlb.toString();
 
         if (dumpFormat) {
-            RestStreams.stream(instance, sql, new TableDumpEncoder(req));
+            RestStreams.stream(instance, sql, Collections.emptyList(), DOWNLOAD_PARALLELISM, new TableDumpEncoder(req));
         } else {
-            RestStreams.stream(instance, sql, new StreamToChunkedProtobufEncoder<TableRecord>(req) {
-                @Override
-                public TableRecord mapTuple(Tuple tuple) {
-                    TableRecord.Builder rec = TableRecord.newBuilder();
-                    rec.addAllColumn(ArchiveHelper.toColumnDataList(tuple));
-                    return rec.build();
-                }
-            });
+            RestStreams.stream(instance, sql, Collections.emptyList(), DOWNLOAD_PARALLELISM,
+                    new StreamToChunkedProtobufEncoder<TableRecord>(req) {
+                        @Override
+                        public TableRecord mapTuple(Tuple tuple) {
+                            TableRecord.Builder rec = TableRecord.newBuilder();
+                            rec.addAllColumn(ArchiveHelper.toColumnDataList(tuple));
+                            return rec.build();
+                        }
+                    });
         }
     }
 
@@ -399,30 +403,32 @@ public class ArchiveDownloadRestHandler extends RestHandler {
 
     private void transferChunkedCSVEvents(RestRequest req, String instance, String sql, List<Object> sqlArgs)
             throws HttpException {
-        RestStreams.stream(instance, sql, sqlArgs, new StreamToChunkedCSVEncoder(req, "events.csv") {
+        RestStreams.stream(instance, sql, sqlArgs, DOWNLOAD_PARALLELISM,
+                new StreamToChunkedCSVEncoder(req, "events.csv") {
 
-            @Override
-            public String[] getCSVHeader() {
-                return ArchiveHelper.getEventCSVHeader(getExtensionRegistry());
-            }
+                    @Override
+                    public String[] getCSVHeader() {
+                        return ArchiveHelper.getEventCSVHeader(getExtensionRegistry());
+                    }
 
-            @Override
-            public void processTuple(Tuple tuple, CsvWriter csvWriter) throws IOException {
-                String[] record = ArchiveHelper.tupleToCSVEvent(tuple, getExtensionRegistry());
-                csvWriter.writeRecord(record);
-            }
-        });
+                    @Override
+                    public void processTuple(Tuple tuple, CsvWriter csvWriter) throws IOException {
+                        String[] record = ArchiveHelper.tupleToCSVEvent(tuple, getExtensionRegistry());
+                        csvWriter.writeRecord(record);
+                    }
+                });
     }
 
     private void transferChunkedProtobufEvents(RestRequest req, String instance, String sql, List<Object> sqlArgs)
             throws HttpException {
-        RestStreams.stream(instance, sql, sqlArgs, new StreamToChunkedProtobufEncoder<Event>(req, "events") {
+        RestStreams.stream(instance, sql, sqlArgs, DOWNLOAD_PARALLELISM,
+                new StreamToChunkedProtobufEncoder<Event>(req, "events") {
 
-            @Override
-            public Event mapTuple(Tuple tuple) {
-                return ArchiveHelper.tupleToEvent(tuple, getExtensionRegistry());
-            }
-        });
+                    @Override
+                    public Event mapTuple(Tuple tuple) {
+                        return ArchiveHelper.tupleToEvent(tuple, getExtensionRegistry());
+                    }
+                });
     }
 
     private GpbExtensionRegistry getExtensionRegistry() {
@@ -38,8 +38,11 @@ import org.yamcs.parameterarchive.ParameterArchive;
 import org.yamcs.parameterarchive.ParameterGroupIdDb;
 import org.yamcs.parameterarchive.ParameterId;
 import org.yamcs.parameterarchive.ParameterIdDb;
-import org.yamcs.parameterarchive.ParameterIdValueList;
 import org.yamcs.parameterarchive.ParameterRequest;
+import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.RollupRetrieval;
+import org.yamcs.parameterarchive.RollupRetrieval.Bucket;
+import org.yamcs.parameterarchive.ValueFilter;
 import org.yamcs.protobuf.Archive.ParameterGroupInfo;
 import org.yamcs.protobuf.Pvalue;
 import org.yamcs.protobuf.Pvalue.Ranges;
@@ -126,13 +129,22 @@ public class ArchiveParameterRestHandler extends RestHandler {
         ParameterArchive parchive = getParameterArchive(instance);
         ParameterCache pcache = getParameterCache(instance, req);
 
-        ParameterRequest pr = new ParameterRequest(start, stop, true, true, false, false);
-        SingleParameterRetriever spdr = new SingleParameterRetriever(parchive, pcache, pid, pr);
-        try {
-            spdr.retrieve(sampler);
-        } catch (IOException e) {
-            log.warn("Received exception during parameter retrieval ", e);
-            throw new InternalServerErrorException(e.getMessage());
+        // use the rollups if a coarse enough resolution is available; if part of the interval has been archived before
+        // the rollups were enabled, fall back to the raw values for the whole interval
+        long resolution = pid.getPath() == null ? parchive.getRollupResolution(stop - start, sampleCount) : -1;
+        boolean sampled = false;
+        if (resolution > 0) {
+            sampled = sampleFromRollups(parchive, pcache, pid, resolution, start, stop, sampler);
+        }
+        if (!sampled) {
+            ParameterRequest pr = new ParameterRequest(start, stop, true, true, false, false);
+            SingleParameterRetriever spdr = new SingleParameterRetriever(parchive, pcache, pid, pr);
+            try {
+                spdr.retrieve(sampler);
+            } catch (IOException e) {
+                log.warn("Received exception during parameter retrieval ", e);
+                throw new InternalServerErrorException(e.getMessage());
+            }
         }
 
         TimeSeries.Builder series = TimeSeries.newBuilder();
@@ -179,6 +191,41 @@ public class ArchiveParameterRestHandler extends RestHandler {
         completeOK(req, ranges.build());
     }
 
+    /**
+     * Feeds the sampler with the rollup buckets from the parameter archive followed by the values from the cache
+     * 
+     * @return false if no rollup has been found or if the rollups do not cover all the values archived in the interval
+     *         (case in which the sampler has not been fed)
+     */
+    private boolean sampleFromRollups(ParameterArchive parchive, ParameterCache pcache, ParameterWithId pid,
+            long resolution, long start, long stop, RestDownsampler sampler) throws HttpException {
+        RollupRetrieval retrieval = new RollupRetrieval(parchive, pid.getQualifiedName(), resolution, start, stop);
+        List<Bucket> buckets;
+        try {
+            buckets = retrieval.retrieve();
+        } catch (RocksDBException | IOException e) {
+            log.warn("Received exception during rollup retrieval ", e);
+            throw new InternalServerErrorException(e.getMessage());
+        }
+        if (buckets.isEmpty() || !retrieval.isComplete()) {
+            return false;
+        }
+        for (Bucket b : buckets) {
+            sampler.process(Math.max(start, b.getStart()), b.getMin(), b.getMax(), b.getSum(), b.getCount());
+        }
+        if (pcache != null) {
+            // the cache interval is (start, stop]
+            long cacheStart = buckets.get(buckets.size() - 1).getStart() + resolution - 1;
+            List<ParameterValue> pvlist = pcache.getAllValues(pid.getParameter(), cacheStart, stop);
+            if (pvlist != null) {
+                for (int i = pvlist.size() - 1; i >= 0; i--) {
+                    sampler.process(pvlist.get(i));
+                }
+            }
+        }
+        return true;
+    }
+
     private ParameterArchive getParameterArchive(String instance) throws BadRequestException {
         List<ParameterArchive> l = yamcsServer.getServices(instance, ParameterArchive.class);
         if (l.isEmpty()) {
@@ -211,8 +258,26 @@ public class ArchiveParameterRestHandler extends RestHandler {
         long stop = req.getQueryParameterAsDate("stop", TimeEncoding.getWallclockTime());
 
         boolean ascending = !req.asksDescending(true);
+        ValueFilter filter = null;
+        if (req.hasQueryParameter("minValue") || req.hasQueryParameter("maxValue")) {
+            boolean strict = req.getQueryParameterAsBoolean("strict", false);
+            double minValue = req.getQueryParameterAsDouble("minValue", Double.NEGATIVE_INFINITY);
+            double maxValue = req.getQueryParameterAsDouble("maxValue", Double.POSITIVE_INFINITY);
+            if (Double.isNaN(minValue) || Double.isNaN(maxValue)) {
+                throw new BadRequestException("minValue and maxValue cannot be NaN");
+            }
+            if (requestedParamWithId.getPath() != null) {
+                throw new BadRequestException("minValue and maxValue are not supported for aggregate or array members");
+            }
+            filter = new ValueFilter(minValue, !strict, maxValue, !strict);
+        }
 
         ParameterArchive parchive = getParameterArchive(instance);
+        int parallelism = req.getQueryParameterAsInt("parallelism", parchive.getRetrievalParallelism());
+        if (parallelism < 1 || parallelism > parchive.getRetrievalThreads()) {
+            throw new BadRequestException(
+                    "parallelism has to be between 1 and " + parchive.getRetrievalThreads());
+        }
         ParameterIdDb piddb = parchive.getParameterIdDb();
         IntArray pidArray = new IntArray();
         IntArray pgidArray = new IntArray();
@@ -248,6 +313,7 @@ public class ArchiveParameterRestHandler extends RestHandler {
         // filtered data not to the input
         // one day the parameter archive will be smarter and do the filtering inside
         // mpvr.setLimit(limit);
+        mpvr.setParallelism(parallelism);
 
         Processor realtimeProcessor = getRealtimeProc(instance, req);
         ParameterCache pcache = null;
@@ -275,7 +341,7 @@ public class ArchiveParameterRestHandler extends RestHandler {
 
                 replayListener.setNoRepeat(noRepeat);
                 // FIXME - make async
-                retrieveParameterData(parchive, pcache, requestedParamWithId, mpvr, replayListener);
+                retrieveParameterData(parchive, pcache, requestedParamWithId, mpvr, filter, replayListener);
 
             } catch (IOException | DecodingException | RocksDBException e) {
                 throw new InternalServerErrorException(e);
@@ -305,7 +371,7 @@ public class ArchiveParameterRestHandler extends RestHandler {
 
                 replayListener.setNoRepeat(noRepeat);
                 // FIXME - make async
-                retrieveParameterData(parchive, pcache, requestedParamWithId, mpvr, replayListener);
+                retrieveParameterData(parchive, pcache, requestedParamWithId, mpvr, filter, replayListener);
             } catch (DecodingException | RocksDBException | IOException e) {
                 throw new InternalServerErrorException(e);
             }
@@ -313,47 +379,65 @@ public class ArchiveParameterRestHandler extends RestHandler {
         }
     }
 
+    /**
+     * if the filter is not null, only the values matching it are sent, both from the archive and from the cache
+     */
     private void retrieveParameterData(ParameterArchive parchive, ParameterCache pcache, ParameterWithId pid,
-            MultipleParameterValueRequest mpvr, RestParameterReplayListener replayListener)
+            MultipleParameterValueRequest mpvr, ValueFilter filter, RestParameterReplayListener replayListener)
             throws RocksDBException, DecodingException, IOException {
 
         MutableLong lastParameterTime = new MutableLong(TimeEncoding.INVALID_INSTANT);
-        Consumer<ParameterIdValueList> consumer = new Consumer<ParameterIdValueList>() {
+        Consumer<ParameterValue> consumer = new Consumer<ParameterValue>() {
             boolean first = true;
 
             @Override
-            public void accept(ParameterIdValueList pidvList) {
-                lastParameterTime.setLong(pidvList.getValues().get(0).getGenerationTime());
+            public void accept(ParameterValue pv) {
+                lastParameterTime.setLong(pv.getGenerationTime());
                 if (first && !mpvr.isAscending() && (pcache != null)) { // retrieve data from cache first
                     first = false;
-                    sendFromCache(pid, pcache, false, lastParameterTime.getLong(), mpvr.getStop(), replayListener);
+                    sendFromCache(pid, pcache, false, lastParameterTime.getLong(), mpvr.getStop(), filter,
+                            replayListener);
                 }
-                ParameterValue pv = pidvList.getValues().get(0);
                 replayListener.update(new ParameterValueWithId(pv, pid.getId()));
                 if (replayListener.isReplayAbortRequested()) {
                     throw new ConsumerAbortException();
                 }
             }
         };
-        MultiParameterDataRetrieval mpdr = new MultiParameterDataRetrieval(parchive, mpvr);
-        mpdr.retrieve(consumer);
+        if (filter == null) {
+            MultiParameterDataRetrieval mpdr = new MultiParameterDataRetrieval(parchive, mpvr);
+            mpdr.retrieve(pidvList -> consumer.accept(pidvList.getValues().get(0)));
+        } else {
+            // the raw values are returned only for the parameters having them
+            ParameterRequest pr = new ParameterRequest(mpvr.getStart(), mpvr.getStop(), mpvr.isAscending(), true,
+                    true, true);
+            try {
+                parchive.retrieveValues(pid.getQualifiedName(), pr, filter, pva -> {
+                    for (int i = 0; i < pva.size(); i++) {
+                        consumer.accept(toParameterValue(pid.getQualifiedName(), pva, i));
+                    }
+                });
+            } catch (ConsumerAbortException e) {
+                log.debug("Stopped early due to receiving ConsumerAbortException");
+            }
+        }
 
         // now add some data from cache
         if (pcache != null) {
             if (mpvr.isAscending()) {
                 long start = (lastParameterTime.getLong() == TimeEncoding.INVALID_INSTANT) ? mpvr.getStart() - 1
                         : lastParameterTime.getLong();
-                sendFromCache(pid, pcache, true, start, mpvr.getStop(), replayListener);
+                sendFromCache(pid, pcache, true, start, mpvr.getStop(), filter, replayListener);
             } else if (lastParameterTime.getLong() == TimeEncoding.INVALID_INSTANT) {
                 // no data retrieved from archive, but maybe there is still something in the cache to send
-                sendFromCache(pid, pcache, false, mpvr.getStart(), mpvr.getStop(), replayListener);
+                sendFromCache(pid, pcache, false, mpvr.getStart(), mpvr.getStop(), filter, replayListener);
             }
         }
     }
 
     // send data from cache with timestamps in (start, stop) if ascending or (start, stop] if descending interval
     private void sendFromCache(ParameterWithId pid, ParameterCache pcache, boolean ascending, long start,
-            long stop, RestParameterReplayListener replayListener) {
+            long stop, ValueFilter filter, RestParameterReplayListener replayListener) {
         List<ParameterValue> pvlist = pcache.getAllValues(pid.getParameter());
         
         if (pvlist == null) {
@@ -367,7 +451,7 @@ public class ArchiveParameterRestHandler extends RestHandler {
                     break;
                 }
                 if (pv.getGenerationTime() > start) {
-                    sendToListener(pv, pid, replayListener);
+                    sendToListener(pv, pid, filter, replayListener);
                     if (replayListener.isReplayAbortRequested()) {
                         break;
                     }
@@ -381,7 +465,7 @@ public class ArchiveParameterRestHandler extends RestHandler {
                 if (pv.getGenerationTime() <= start) {
                     break;
                 }
-                sendToListener(pv, pid, replayListener);
+                sendToListener(pv, pid, filter, replayListener);
                 if (replayListener.isReplayAbortRequested()) {
                     break;
                 }
@@ -390,7 +474,8 @@ public class ArchiveParameterRestHandler extends RestHandler {
     }
 
     
-    private void sendToListener(ParameterValue pv, ParameterWithId pid, RestParameterReplayListener replayListener) {
+    private void sendToListener(ParameterValue pv, ParameterWithId pid, ValueFilter filter,
+            RestParameterReplayListener replayListener) {
         ParameterValue pv1;
         if(pid.getPath()!=null) {
             try {
@@ -405,8 +490,37 @@ public class ArchiveParameterRestHandler extends RestHandler {
         } else {
             pv1 = pv;
         }
+        if (filter != null && (pv1.getEngValue() == null || !filter.matches(pv1.getEngValue()))) {
+            return;
+        }
         replayListener.update(new ParameterValueWithId(pv1, pid.getId()));
     }
+
+    private static ParameterValue toParameterValue(String fqn, ParameterValueArray pva, int idx) {
+        ParameterValue pv = new ParameterValue(fqn);
+        pv.setGenerationTime(pva.getTimestamps()[idx]);
+        pv.setEngValue(pva.getEngValues().getValue(idx));
+        if (pva.getRawValues() != null) {
+            pv.setRawValue(pva.getRawValues().getValue(idx));
+        }
+        Pvalue.ParameterStatus ps = pva.getStatuses()[idx];
+        if (ps.hasAcquisitionStatus()) {
+            pv.setAcquisitionStatus(ps.getAcquisitionStatus());
+        }
+        if (ps.hasMonitoringResult()) {
+            pv.setMonitoringResult(ps.getMonitoringResult());
+        }
+        if (ps.getAlarmRangeCount() > 0) {
+            pv.addAlarmRanges(ps.getAlarmRangeList());
+        }
+        if (ps.hasExpireMillis()) {
+            pv.setExpireMillis(ps.getExpireMillis());
+        }
+        if (ps.hasRangeCondition()) {
+            pv.setRangeCondition(ps.getRangeCondition());
+        }
+        return pv;
+    }
     
     
     private static ParameterCache getParameterCache(String instance, RestRequest req) throws NotFoundException {
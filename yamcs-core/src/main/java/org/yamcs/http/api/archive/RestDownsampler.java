@@ -67,6 +67,37 @@ public class RestDownsampler implements Consumer<ParameterValueArray> {
         }
     }
 
+    /**
+     * Processes a pre-aggregated set of values (e.g. a rollup bucket from the parameter archive)
+     * 
+     * @param time
+     *            - the time of the first value in the set
+     * @param min
+     * @param max
+     * @param sum
+     * @param count
+     *            - the number of values in the set
+     */
+    public void process(long time, double min, double max, double sum, int count) {
+        if (time > stop || time < start || count == 0) {
+            return;
+        }
+
+        Entry<Long, Sample> entry = samplesByTime.floorEntry(time);
+        if (entry == null) {
+            log.warn("No interval for time {}", time);
+            return;
+        }
+
+        lastSampleTime = entry.getKey();
+        Sample sample = entry.getValue();
+        if (sample == null) {
+            samplesByTime.put(entry.getKey(), new Sample(entry.getKey(), min, max, sum / count, count));
+        } else {
+            sample.process(min, max, sum, count);
+        }
+    }
+
     public List<Sample> collect() {
         if (samplesByTime == null) {
             return Collections.emptyList();
@@ -197,6 +228,14 @@ public class RestDownsampler implements Consumer<ParameterValueArray> {
             n = 1;
         }
 
+        Sample(long t, double min, double max, double avg, int n) {
+            this.t = t;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+            this.n = n;
+        }
+
         public void process(double value) {
             if (value < min) {
                 min = value;
@@ -209,6 +248,18 @@ public class RestDownsampler implements Consumer<ParameterValueArray> {
             avg += (value / n);
         }
 
+        // merges a set of count values
+        void process(double min, double max, double sum, int count) {
+            if (min < this.min) {
+                this.min = min;
+            }
+            if (max > this.max) {
+                this.max = max;
+            }
+            avg += (sum - avg * count) / (n + count);
+            n += count;
+        }
+
         @Override
         public String toString() {
             return String.format("%s (min=%s, max=%s, n=%s)", avg, min, max, n);
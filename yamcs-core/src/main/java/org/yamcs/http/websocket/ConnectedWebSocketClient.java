@@ -24,6 +24,8 @@ import org.yamcs.security.User;
 
 import com.google.protobuf.Message;
 
+import io.netty.channel.Channel;
+
 /**
  * Runs on the server side and oversees the life cycle of a client web socket connection. Combines multiple types of
  * subscriptions to keep them bundled as one client session.
@@ -92,6 +94,10 @@ public class ConnectedWebSocketClient extends ConnectedClient implements Managem
         wsHandler.sendData(dataType, data);
     }
 
+    public Channel getChannel() {
+        return wsHandler.getChannel();
+    }
+
     @Override
     public void processorQuit() {
     }
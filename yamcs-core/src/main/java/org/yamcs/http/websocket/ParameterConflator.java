@@ -0,0 +1,77 @@
+package org.yamcs.http.websocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+import io.netty.channel.Channel;
+
+/**
+ * Keeps the latest value of each parameter of a subscription and passes them at a fixed rate to a sender running on
+ * the event loop of the channel.
+ * <p>
+ * The memory used is bounded by the number of subscribed parameters. If the channel is not writable when the timer
+ * fires, the values are kept (and possibly overwritten by newer ones) until the next tick, such that the latest value
+ * of each parameter is eventually delivered.
+ */
+class ParameterConflator {
+    private final Channel channel;
+    private final Consumer<List<ParameterValueWithId>> sender;
+    private Map<NamedObjectId, ParameterValueWithId> latest = new LinkedHashMap<>();
+    private final ScheduledFuture<?> flushTask;
+
+    /**
+     *
+     * @param channel
+     *            - the channel on whose event loop the values are sent
+     * @param updateInterval
+     *            - interval in milliseconds between two consecutive sends
+     * @param sender
+     *            - called on the event loop with the values received since the previous send
+     */
+    ParameterConflator(Channel channel, long updateInterval, Consumer<List<ParameterValueWithId>> sender) {
+        this.channel = channel;
+        this.sender = sender;
+        flushTask = channel.eventLoop().scheduleAtFixedRate(this::flush, updateInterval, updateInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called from the processor thread; overwrites the pending values of the same parameters
+     */
+    synchronized void update(List<ParameterValueWithId> paramList) {
+        for (ParameterValueWithId pvwi : paramList) {
+            latest.put(pvwi.getId(), pvwi);
+        }
+    }
+
+    void flush() {
+        if (!channel.isOpen()) {
+            close();
+            return;
+        }
+        if (!channel.isWritable()) {
+            return;
+        }
+        Map<NamedObjectId, ParameterValueWithId> m;
+        synchronized (this) {
+            if (latest.isEmpty()) {
+                return;
+            }
+            m = latest;
+            latest = new LinkedHashMap<>();
+        }
+        sender.accept(new ArrayList<>(m.values()));
+    }
+
+    void close() {
+        flushTask.cancel(false);
+    }
+}
@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -51,6 +52,9 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
     Map<NamedObjectId, Integer> numericIdMap = new HashMap<>();
     AtomicInteger numericIdGenerator = new AtomicInteger();
 
+    // subscriptions for which the updates are conflated and sent at a fixed rate
+    Map<Integer, ParameterConflator> conflators = new ConcurrentHashMap<>();
+
     public ParameterResource(ConnectedWebSocketClient client) {
         this.client = client;
         Processor processor = client.getProcessor();
@@ -92,6 +96,7 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
                     if (firstSubscriptionId == -1) {
                         firstSubscriptionId = subscriptionId;
                     }
+                    startConflation(subscriptionId, req);
                 }
                 ParameterSubscriptionResponse psr = getResponse(subscriptionId, idList, null,
                         req.hasUseNumericIds() && req.getUseNumericIds());
@@ -124,6 +129,7 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
                             pidrm.addItemsToRequest(subscriptionId, idList, client.getUser());
                         } else {
                             subscriptionId = pidrm.addRequest(idList, req.getUpdateOnExpiration(), client.getUser());
+                            startConflation(subscriptionId, req);
                         }
                         if (firstSubscriptionId == -1) {
                             firstSubscriptionId = subscriptionId;
@@ -156,6 +162,13 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
         }
     }
 
+    private void startConflation(int subscriptionId, ParameterSubscriptionRequest req) {
+        if (req.getUpdateInterval() > 0) {
+            conflators.put(subscriptionId, new ParameterConflator(client.getChannel(), req.getUpdateInterval(),
+                    pvlist -> sendUpdate(subscriptionId, pvlist)));
+        }
+    }
+
     private ParameterSubscriptionResponse getResponse(int subscriptionId, List<NamedObjectId> validList,
             List<NamedObjectId> invalidList, boolean useNumericId) {
         ParameterSubscriptionResponse.Builder psr = ParameterSubscriptionResponse.newBuilder()
@@ -227,6 +240,10 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
 
         if (subscriptionId != -1) {
             pidrm.removeRequest(subscriptionId);
+            ParameterConflator conflator = conflators.remove(subscriptionId);
+            if (conflator != null) {
+                conflator.close();
+            }
             if (subscriptionId == firstSubscriptionId) {
                 firstSubscriptionId = -1;
             }
@@ -240,6 +257,15 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
         if (paramList == null || paramList.isEmpty()) {
             return;
         }
+        ParameterConflator conflator = conflators.get(subscriptionId);
+        if (conflator != null) {
+            conflator.update(paramList);
+        } else {
+            sendUpdate(subscriptionId, paramList);
+        }
+    }
+
+    private void sendUpdate(int subscriptionId, List<ParameterValueWithId> paramList) {
         ParameterData.Builder pd = ParameterData.newBuilder()
                 .setSubscriptionId(subscriptionId);
         for (ParameterValueWithId pvwi : paramList) {
@@ -289,5 +315,9 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
         if (pidrm != null) {
             pidrm.quit();
         }
+        for (ParameterConflator conflator : conflators.values()) {
+            conflator.close();
+        }
+        conflators.clear();
     }
 }
@@ -138,7 +138,9 @@ public class BasicParameterValue {
     }
 
     public void setExpireMillis(long em) {
-        changeNominalStatus();
+        if (status.getExpireMills() != em) {
+            changeNominalStatus();
+        }
         status.setExpireMillis(em);
     }
 
@@ -152,8 +154,8 @@ public class BasicParameterValue {
 
     // *********** parameter status
     private void changeNominalStatus() {
-        if (status == ParameterStatus.NOMINAL) {
-            status = new ParameterStatus();
+        if (status.isShared()) {
+            status = new ParameterStatus(status);
         }
     }
 
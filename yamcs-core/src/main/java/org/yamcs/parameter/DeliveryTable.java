@@ -0,0 +1,187 @@
+package org.yamcs.parameter;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeSet;
+
+import org.yamcs.DVParameterConsumer;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * Routing table used by the {@link ParameterRequestManager} to deliver the parameters to the subscribers.
+ * <p>
+ * Each subscription having a consumer is allocated a slot (in the order of the subscription ids) and each parameter is
+ * mapped to the slots of the subscriptions containing it.
+ * <p>
+ * The table is immutable; a new one is built each time the subscriptions change.
+ *
+ * @author nm
+ *
+ */
+class DeliveryTable {
+    static final int[] EMPTY = new int[0];
+
+    // the version of the subscriptions from which this table has been built
+    final int version;
+    final Map<Parameter, int[]> param2Slots;
+    // slots of the subscribe all subscriptions
+    final int[] allSlots;
+    // slots of the derived value consumers, in the order of the subscription ids
+    final int[] dvSlots;
+
+    // slot -> subscription id and consumers
+    final int[] subscriptionIds;
+    final ParameterConsumer[] consumers;
+    final DVParameterConsumer[] dvConsumers;
+
+    DeliveryTable(int version, Map<Parameter, SubscriptionArray> param2RequestMap, SubscriptionArray subscribeAll,
+            Map<Integer, ParameterConsumer> request2ParameterConsumerMap,
+            Map<Integer, DVParameterConsumer> request2DVParameterConsumerMap) {
+        this.version = version;
+
+        TreeSet<Integer> ids = new TreeSet<>(request2ParameterConsumerMap.keySet());
+        ids.addAll(request2DVParameterConsumerMap.keySet());
+        int n = ids.size();
+        subscriptionIds = new int[n];
+        consumers = new ParameterConsumer[n];
+        dvConsumers = new DVParameterConsumer[n];
+        Map<Integer, Integer> id2Slot = new HashMap<>();
+        List<Integer> dvSlotList = new ArrayList<>();
+        int slot = 0;
+        for (Integer id : ids) {
+            subscriptionIds[slot] = id;
+            DVParameterConsumer dvc = request2DVParameterConsumerMap.get(id);
+            if (dvc != null) {
+                dvConsumers[slot] = dvc;
+                dvSlotList.add(slot);
+            } else {
+                consumers[slot] = request2ParameterConsumerMap.get(id);
+            }
+            id2Slot.put(id, slot);
+            slot++;
+        }
+        dvSlots = dvSlotList.stream().mapToInt(Integer::intValue).toArray();
+
+        param2Slots = new HashMap<>();
+        for (Map.Entry<Parameter, SubscriptionArray> me : param2RequestMap.entrySet()) {
+            int[] slots = toSlots(id2Slot, me.getValue());
+            if (slots.length > 0) {
+                param2Slots.put(me.getKey(), slots);
+            }
+        }
+        allSlots = toSlots(id2Slot, subscribeAll);
+    }
+
+    private static int[] toSlots(Map<Integer, Integer> id2Slot, SubscriptionArray subscriptions) {
+        int[] a = subscriptions.getArray();
+        int[] slots = new int[a.length];
+        int k = 0;
+        for (int id : a) {
+            Integer slot = id2Slot.get(id);
+            if (slot != null) {
+                slots[k++] = slot;
+            }
+        }
+        return k == 0 ? EMPTY : Arrays.copyOf(slots, k);
+    }
+
+    int[] getSlots(Parameter p) {
+        int[] slots = param2Slots.get(p);
+        return slots == null ? EMPTY : slots;
+    }
+
+    int size() {
+        return subscriptionIds.length;
+    }
+
+    /**
+     * Buffers used to collect the parameters for each slot during one delivery.
+     * <p>
+     * The buffers are reused from one delivery to the next one such that the steady state delivery does not allocate
+     * any object.
+     */
+    static class DeliveryBuffers {
+        List<ParameterValue>[] lists;
+        // slots having at least one parameter value
+        int[] touched;
+        int numTouched;
+        boolean inUse;
+
+        DeliveryBuffers() {
+            init(0);
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private void init(int n) {
+            lists = new List[n];
+            for (int i = 0; i < n; i++) {
+                lists[i] = new ArrayList<>();
+            }
+            touched = new int[n];
+            numTouched = 0;
+        }
+
+        void ensureCapacity(int n) {
+            if (lists.length < n) {
+                init(n);
+            }
+        }
+
+        void add(int slot, ParameterValue pv) {
+            List<ParameterValue> l = lists[slot];
+            if (l.isEmpty()) {
+                touched[numTouched++] = slot;
+            }
+            l.add(pv);
+        }
+
+        void addAll(int slot, Iterable<ParameterValue> params) {
+            for (ParameterValue pv : params) {
+                add(slot, pv);
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < numTouched; i++) {
+                lists[touched[i]].clear();
+            }
+            numTouched = 0;
+        }
+    }
+
+    /**
+     * Unmodifiable view of a range of an array.
+     * <p>
+     * Used to give to each consumer its part of the array holding all the parameters of one delivery; the array is not
+     * modified after the delivery so the consumers can keep the view.
+     */
+    static final class ValueListView extends AbstractList<ParameterValue> implements RandomAccess {
+        final ParameterValue[] values;
+        final int offset;
+        final int size;
+
+        ValueListView(ParameterValue[] values, int offset, int size) {
+            this.values = values;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public ParameterValue get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return values[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,823 @@
+package org.yamcs.parameter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.yamcs.api.Log;
+import org.yamcs.parameter.ArrayParameterCache.ParameterId;
+import org.yamcs.parameter.ArrayParameterCache.SimpleParameterIdMap;
+import org.yamcs.parameter.ArrayParameterCache.SortedParameterList;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.SortedIntArray;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Implementation of the parameter cache storing the values outside of the Java heap.
+ * <p>
+ * Like in the {@link ArrayParameterCache}, the values having the same generation time and the same parameters (and
+ * types) are stored as one row of a table. The rows of each table are encoded in a ring buffer allocated in direct
+ * memory and a second ring buffer keeps for each row the generation time and the position of the row, such that the
+ * rows of a time interval are found with a binary search.
+ * <p>
+ * All the tables share one budget of direct memory. When a table has to grow and the budget is exhausted, the tables
+ * which have not been accessed for the longest time are evicted; if there is no other table to evict, the oldest rows
+ * of the table are overwritten.
+ * <p>
+ * Apart from the tables themselves, the only objects kept on the heap are the distinct parameter statuses, such that
+ * the heap footprint does not depend on the depth of the cache.
+ *
+ */
+public class OffHeapParameterCache implements ParameterCache {
+    // size of the fixed part of each column in a row: acquisition time, status id, raw value, engineering value
+    static final int COLUMN_SIZE = 8 + 4 + 8 + 8;
+    // size of an index entry: generation time, row offset, row length
+    static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+    static final int INITIAL_NUM_ROWS = 16;
+
+    final SimpleParameterIdMap pidMap = new SimpleParameterIdMap();
+    final Log log;
+    final ConcurrentHashMap<SortedIntArray, OffHeapTable> tables = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Parameter, Boolean> parametersToCache;
+    final ParameterCacheConfig cacheConfig;
+    // replaced when the cache is cleared; each table keeps the dictionary used to encode its rows
+    volatile StatusDictionary statusDictionary = new StatusDictionary();
+    final AtomicLong usedBytes = new AtomicLong();
+    // incremented at each table access, used to find the least recently used tables
+    final AtomicLong accessCounter = new AtomicLong();
+
+    OffHeapParameterCache(String instance, ParameterCacheConfig cacheConfig) {
+        log = new Log(this.getClass(), instance);
+        this.cacheConfig = cacheConfig;
+        parametersToCache = cacheConfig.cacheAll ? null : new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void update(Collection<ParameterValue> pvs) {
+        // most of the time all the values of one delivery have the same generation time
+        SortedParameterList first = null;
+        long firstTime = 0;
+        Map<Long, SortedParameterList> others = null;
+        for (ParameterValue pv : pvs) {
+            if (!(cacheConfig.cacheAll || parametersToCache.containsKey(pv.getParameter()))) {
+                continue;
+            }
+            long t = pv.getGenerationTime();
+            if (first == null) {
+                first = new SortedParameterList(pidMap);
+                firstTime = t;
+            }
+            if (t == firstTime) {
+                first.add(pv);
+            } else {
+                if (others == null) {
+                    others = new HashMap<>();
+                }
+                others.computeIfAbsent(t, k -> new SortedParameterList(pidMap)).add(pv);
+            }
+        }
+        if (first != null) {
+            addToCache(firstTime, first);
+        }
+        if (others != null) {
+            for (Map.Entry<Long, SortedParameterList> entry : others.entrySet()) {
+                addToCache(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void addToCache(long t, SortedParameterList pvList) {
+        SortedIntArray sia = pvList.getParameterIdArray();
+        while (true) {
+            OffHeapTable table = tables.get(sia);
+            if (table == null) {
+                table = new OffHeapTable(sia, pvList.getParameterValueList());
+                OffHeapTable table1 = tables.putIfAbsent(sia, table);
+                if (table1 != null) {
+                    table = table1;
+                }
+            }
+            // the table may have been evicted since we got it from the map; the next iteration creates a new one
+            if (table.add(t, pvList.getParameterValueList())) {
+                return;
+            }
+            tables.remove(sia, table);
+        }
+    }
+
+    @Override
+    public ParameterValue getLastValue(Parameter pdef) {
+        ParameterValue result = null;
+        long tmax = Long.MIN_VALUE;
+        for (ParameterId p : getParameterIds(pdef)) {
+            OffHeapTable table = findLatestTableContaining(p.id);
+            if (table == null) {
+                continue;
+            }
+            long t = table.getLastTime();
+            if (t < tmax) {
+                continue;
+            }
+            ParameterValue pv = table.getLastValue(p);
+            if (pv == null) {
+                continue;
+            }
+            if (t > tmax || result == null || result.getAcquisitionTime() < pv.getAcquisitionTime()) {
+                result = pv;
+            }
+            tmax = t;
+        }
+        return result;
+    }
+
+    @Override
+    public List<ParameterValue> getValues(List<Parameter> plist) {
+        List<ParameterId> pidlist = new ArrayList<>();
+        for (Parameter pdef : plist) {
+            pidlist.addAll(getParameterIds(pdef));
+        }
+        List<ParameterValue> result = new ArrayList<>(plist.size());
+
+        for (int i = 0; i < pidlist.size(); i++) {
+            ParameterId p = pidlist.get(i);
+            if (p == null) {
+                continue;
+            }
+            pidlist.set(i, null);
+
+            OffHeapTable table = findLatestTableContaining(p.id);
+            if (table == null) {
+                continue;
+            }
+            List<ParameterId> sublist = new ArrayList<>();
+            sublist.add(p);
+            for (int j = i + 1; j < pidlist.size(); j++) {
+                ParameterId p1 = pidlist.get(j);
+                if (p1 != null && table.pids.contains(p1.id)) {
+                    sublist.add(p1);
+                    pidlist.set(j, null);
+                }
+            }
+            table.retrieveLastValues(sublist, result);
+        }
+
+        long now = TimeEncoding.getWallclockTime();
+        // check expiration
+        for (ParameterValue pv : result) {
+            if ((pv.getAcquisitionStatus() == AcquisitionStatus.ACQUIRED) && pv.isExpired(now)) {
+                pv.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+            }
+        }
+
+        return result;
+    }
+
+    private OffHeapTable findLatestTableContaining(int pid) {
+        long tmax = Long.MIN_VALUE;
+        OffHeapTable result = null;
+        for (OffHeapTable table : tables.values()) {
+            if (table.pids.contains(pid)) {
+                long t = table.getLastTime();
+                if (t > tmax) {
+                    result = table;
+                    tmax = t;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter pdef) {
+        return getAllValues(pdef, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter pdef, long start, long stop) {
+        List<ParameterValue> result = new ArrayList<>();
+        int n = 0;
+        for (ParameterId p : getParameterIds(pdef)) {
+            for (OffHeapTable table : tables.values()) {
+                if (table.pids.contains(p.id)) {
+                    n++;
+                    table.retrieveAll(p, start, stop, result);
+                }
+            }
+        }
+        // if values are retrieved from multiple tables, we need to sort them by generation time
+        // (in reverse order such that the newest is first)
+        if (n > 1) {
+            Collections.sort(result, (pv1, pv2) -> Long.compare(pv2.getGenerationTime(), pv1.getGenerationTime()));
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result;
+    }
+
+    private List<ParameterId> getParameterIds(Parameter pdef) {
+        List<ParameterId> result = new ArrayList<>();
+        Map<Integer, Integer> m = pidMap.get(pdef);
+        if (m == null) {
+            if (!cacheConfig.cacheAll) {
+                parametersToCache.put(pdef, Boolean.TRUE);
+            }
+        } else {
+            for (Map.Entry<Integer, Integer> me : m.entrySet()) {
+                int pid = me.getValue();
+                int type = me.getKey();
+                result.add(new ParameterId(pdef, pid, SimpleParameterIdMap.getRawType(type),
+                        SimpleParameterIdMap.getEngType(type)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reserves direct memory for a table, evicting the least recently used other tables if the budget would be
+     * exceeded.
+     * <p>
+     * Called with the write lock of the requester held; the tables being evicted are only locked if their lock is
+     * available to avoid deadlocks between two tables evicting each other.
+     *
+     * @return true if the memory has been reserved
+     */
+    boolean reserve(OffHeapTable requester, long n) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + n <= cacheConfig.maxOffHeapSize) {
+                if (usedBytes.compareAndSet(used, used + n)) {
+                    return true;
+                }
+            } else if (!evictColdest(requester)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean evictColdest(OffHeapTable requester) {
+        List<OffHeapTable> candidates = new ArrayList<>();
+        for (OffHeapTable table : tables.values()) {
+            if (table != requester && table.allocatedBytes > 0) {
+                candidates.add(table);
+            }
+        }
+        Collections.sort(candidates, (t1, t2) -> Long.compare(t1.lastAccess, t2.lastAccess));
+        for (OffHeapTable table : candidates) {
+            if (table.lock.writeLock().tryLock()) {
+                try {
+                    tables.remove(table.pids, table);
+                    long freed = table.release();
+                    usedBytes.addAndGet(-freed);
+                    log.debug("Evicted table with {} parameters freeing {} bytes", table.numParams, freed);
+                    return true;
+                } finally {
+                    table.lock.writeLock().unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Removes all the tables and starts a new status dictionary such that the statuses of the removed values are not
+     * kept.
+     */
+    @Override
+    public void clear() {
+        statusDictionary = new StatusDictionary();
+        for (OffHeapTable table : tables.values()) {
+            table.lock.writeLock().lock();
+            try {
+                tables.remove(table.pids, table);
+                usedBytes.addAndGet(-table.release());
+            } finally {
+                table.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Assigns ids to the distinct parameter statuses such that only the id is stored in the rows.
+     */
+    static class StatusDictionary {
+        final Map<ParameterStatus, Integer> ids = new HashMap<>();
+        final List<ParameterStatus> statuses = new ArrayList<>();
+
+        StatusDictionary() {
+            statuses.add(ParameterStatus.NOMINAL);
+            ids.put(ParameterStatus.NOMINAL, 0);
+        }
+
+        synchronized int getId(ParameterStatus status) {
+            if (status == ParameterStatus.NOMINAL) {
+                return 0;
+            }
+            Integer id = ids.get(status);
+            if (id == null) {
+                // the dictionary keeps its own copy since the status of a value may be changed after being cached
+                ParameterStatus copy = ParameterStatus.sharedCopy(status);
+                id = statuses.size();
+                statuses.add(copy);
+                ids.put(copy, id);
+            }
+            return id;
+        }
+
+        synchronized ParameterStatus get(int id) {
+            return statuses.get(id);
+        }
+
+        synchronized int size() {
+            return statuses.size();
+        }
+    }
+
+    /**
+     * Stores the rows of a list of parameters of predefined types.
+     * <p>
+     * Each row is made of a fixed part with {@link #COLUMN_SIZE} bytes for each parameter followed by the variable
+     * length values (strings, binaries, aggregates, etc) referenced by offset and length from the fixed part.
+     * <p>
+     * The rows are written one after the other in the data buffer, wrapping around to the beginning when there is no
+     * space left at the end. The index buffer is a circular list with an entry for each row, sorted by generation
+     * time.
+     */
+    class OffHeapTable {
+        final SortedIntArray pids;
+        final int numParams;
+        final Type[] rawTypes;
+        final Type[] engTypes;
+        final StatusDictionary dictionary;
+
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile long lastAccess;
+
+        ByteBuffer data;
+        ByteBuffer index;
+        // number of index entries, at most maxNumEntries
+        int indexCapacity;
+        // position in the index of the oldest row
+        int first;
+        // number of rows
+        int count;
+        long allocatedBytes;
+        boolean evicted;
+
+        // used to encode the rows before copying them in the data buffer
+        ByteBuffer scratch;
+
+        OffHeapTable(SortedIntArray pids, List<ParameterValue> sortedPvList) {
+            this.pids = pids;
+            this.numParams = pids.size();
+            this.rawTypes = new Type[numParams];
+            this.engTypes = new Type[numParams];
+            for (int i = 0; i < numParams; i++) {
+                ParameterValue pv = sortedPvList.get(i);
+                rawTypes[i] = pv.getRawValue() == null ? null : pv.getRawValue().getType();
+                engTypes[i] = pv.getEngValue() == null ? null : pv.getEngValue().getType();
+            }
+            this.scratch = ByteBuffer.allocate(numParams * COLUMN_SIZE);
+            this.dictionary = statusDictionary;
+        }
+
+        /**
+         * Adds a row to the table. The row may be dropped if it is older than the last row or if there is not enough
+         * memory to store it.
+         *
+         * @return false if the table has been evicted and the row has not been added
+         */
+        boolean add(long t, List<ParameterValue> sortedPvList) {
+            lock.writeLock().lock();
+            try {
+                if (evicted) {
+                    return false;
+                }
+                lastAccess = accessCounter.incrementAndGet();
+                if (count > 0 && t < getTime(count - 1)) {
+                    // older than the last row -> ignore, the index has to stay sorted
+                    return true;
+                }
+                ByteBuffer row = encodeRow(sortedPvList);
+                int len = row.remaining();
+                if (data == null && !allocate(len)) {
+                    return true;
+                }
+                while (true) {
+                    int pos = (count == indexCapacity) ? -1 : findRoom(len);
+                    if (pos >= 0) {
+                        data.position(pos);
+                        data.put(row);
+                        int idx = slot(count) * INDEX_ENTRY_SIZE;
+                        index.putLong(idx, t);
+                        index.putInt(idx + 8, pos);
+                        index.putInt(idx + 12, len);
+                        count++;
+                        return true;
+                    }
+                    if (count == 0) {
+                        // the row does not fit in the empty buffer
+                        if (!growData(len)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    boolean young = t - getTime(0) < cacheConfig.maxDuration;
+                    if (young && (count == indexCapacity ? growIndex() : growData(len))) {
+                        continue;
+                    }
+                    // remove the oldest row
+                    first = (first + 1 == indexCapacity) ? 0 : first + 1;
+                    count--;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private boolean allocate(int rowLength) {
+            int icap = Math.min(INITIAL_NUM_ROWS, Math.max(cacheConfig.maxNumEntries, 1));
+            int dcap = rowLength * icap;
+            if (!reserve(this, (long) dcap + icap * INDEX_ENTRY_SIZE)) {
+                log.debug("Not enough space to cache a table of {} parameters", numParams);
+                return false;
+            }
+            allocatedBytes = (long) dcap + icap * INDEX_ENTRY_SIZE;
+            data = ByteBuffer.allocateDirect(dcap);
+            index = ByteBuffer.allocateDirect(icap * INDEX_ENTRY_SIZE);
+            indexCapacity = icap;
+            first = 0;
+            count = 0;
+            return true;
+        }
+
+        /**
+         * Finds a contiguous space for a row of length len
+         *
+         * @return the position of the space in the data buffer or -1 if there is not enough space
+         */
+        private int findRoom(int len) {
+            int capacity = data.capacity();
+            if (count == 0) {
+                return len <= capacity ? 0 : -1;
+            }
+            int head = getOffset(0);
+            int tail = getOffset(count - 1) + getLength(count - 1);
+            if (tail > head) { // the rows are in [head, tail)
+                if (capacity - tail >= len) {
+                    return tail;
+                } else if (head >= len) {
+                    return 0;
+                } else {
+                    return -1;
+                }
+            } else { // the rows are in [head, capacity) and [0, tail)
+                return (head - tail >= len) ? tail : -1;
+            }
+        }
+
+        private boolean growIndex() {
+            if (indexCapacity >= cacheConfig.maxNumEntries) {
+                return false;
+            }
+            int newCapacity = (int) Math.min(2L * indexCapacity, cacheConfig.maxNumEntries);
+            long n = (long) (newCapacity - indexCapacity) * INDEX_ENTRY_SIZE;
+            if (!reserve(this, n)) {
+                return false;
+            }
+            allocatedBytes += n;
+            ByteBuffer newIndex = ByteBuffer.allocateDirect(newCapacity * INDEX_ENTRY_SIZE);
+            for (int i = 0; i < count; i++) {
+                int idx = slot(i) * INDEX_ENTRY_SIZE;
+                newIndex.putLong(i * INDEX_ENTRY_SIZE, index.getLong(idx));
+                newIndex.putInt(i * INDEX_ENTRY_SIZE + 8, index.getInt(idx + 8));
+                newIndex.putInt(i * INDEX_ENTRY_SIZE + 12, index.getInt(idx + 12));
+            }
+            index = newIndex;
+            indexCapacity = newCapacity;
+            first = 0;
+            return true;
+        }
+
+        private boolean growData(int len) {
+            int capacity = data.capacity();
+            long newCapacity = Math.max(2L * capacity, (long) capacity + len);
+            if (newCapacity > Integer.MAX_VALUE || !reserve(this, newCapacity - capacity)) {
+                return false;
+            }
+            allocatedBytes += newCapacity - capacity;
+            ByteBuffer newData = ByteBuffer.allocateDirect((int) newCapacity);
+            // copy the rows in order, the data is no longer wrapped around
+            for (int i = 0; i < count; i++) {
+                int offset = getOffset(i);
+                int length = getLength(i);
+                int pos = newData.position();
+                ByteBuffer src = data.duplicate();
+                src.limit(offset + length).position(offset);
+                newData.put(src);
+                index.putInt(slot(i) * INDEX_ENTRY_SIZE + 8, pos);
+            }
+            data = newData;
+            return true;
+        }
+
+        /**
+         * frees the buffers
+         *
+         * @return the number of bytes freed
+         */
+        long release() {
+            evicted = true;
+            long freed = allocatedBytes;
+            data = null;
+            index = null;
+            count = 0;
+            allocatedBytes = 0;
+            return freed;
+        }
+
+        private int slot(int i) {
+            int k = first + i;
+            return k < indexCapacity ? k : k - indexCapacity;
+        }
+
+        private long getTime(int i) {
+            return index.getLong(slot(i) * INDEX_ENTRY_SIZE);
+        }
+
+        private int getOffset(int i) {
+            return index.getInt(slot(i) * INDEX_ENTRY_SIZE + 8);
+        }
+
+        private int getLength(int i) {
+            return index.getInt(slot(i) * INDEX_ENTRY_SIZE + 12);
+        }
+
+        long getLastTime() {
+            lock.readLock().lock();
+            try {
+                return count == 0 ? Long.MIN_VALUE : getTime(count - 1);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        ParameterValue getLastValue(ParameterId p) {
+            lock.readLock().lock();
+            try {
+                if (count == 0) {
+                    return null;
+                }
+                lastAccess = accessCounter.incrementAndGet();
+                return decode(count - 1, pids.search(p.id), p);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void retrieveLastValues(List<ParameterId> sublist, List<ParameterValue> result) {
+            lock.readLock().lock();
+            try {
+                if (count == 0) {
+                    return;
+                }
+                lastAccess = accessCounter.incrementAndGet();
+                for (ParameterId p : sublist) {
+                    result.add(decode(count - 1, pids.search(p.id), p));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Adds to the result the values with the generation time in the (start, stop] interval, newest first
+         */
+        void retrieveAll(ParameterId p, long start, long stop, List<ParameterValue> result) {
+            lock.readLock().lock();
+            try {
+                if (count == 0) {
+                    return;
+                }
+                lastAccess = accessCounter.incrementAndGet();
+                int col = pids.search(p.id);
+                for (int i = upperBound(stop) - 1; i >= 0 && getTime(i) > start; i--) {
+                    result.add(decode(i, col, p));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return the index of the first row with the generation time greater than t or count if there is none
+         */
+        private int upperBound(long t) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (getTime(mid) <= t) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private ByteBuffer encodeRow(List<ParameterValue> sortedPvList) {
+            int varPos = numParams * COLUMN_SIZE;
+            for (int col = 0; col < numParams; col++) {
+                ParameterValue pv = sortedPvList.get(col);
+                int base = col * COLUMN_SIZE;
+                // the scratch buffer may be replaced by a bigger one when encoding the variable length values
+                scratch.putLong(base, pv.getAcquisitionTime());
+                scratch.putInt(base + 8, dictionary.getId(pv.getStatus()));
+                varPos = encodeValue(base + 12, varPos, pv.getRawValue());
+                varPos = encodeValue(base + 20, varPos, pv.getEngValue());
+            }
+            ByteBuffer row = scratch.duplicate();
+            row.limit(varPos).position(0);
+            return row;
+        }
+
+        /**
+         * Writes the value at the position pos in the fixed part of the row. The variable length values are written at
+         * varPos and their offset and length are written at pos.
+         *
+         * @return the new position for the variable length values
+         */
+        private int encodeValue(int pos, int varPos, Value v) {
+            if (v == null) {
+                return varPos;
+            }
+            ByteBuffer bb = scratch;
+            switch (v.getType()) {
+            case BOOLEAN:
+                bb.putLong(pos, v.getBooleanValue() ? 1 : 0);
+                return varPos;
+            case DOUBLE:
+                bb.putDouble(pos, v.getDoubleValue());
+                return varPos;
+            case FLOAT:
+                bb.putFloat(pos, v.getFloatValue());
+                return varPos;
+            case SINT32:
+                bb.putInt(pos, v.getSint32Value());
+                return varPos;
+            case UINT32:
+                bb.putInt(pos, v.getUint32Value());
+                return varPos;
+            case SINT64:
+                bb.putLong(pos, v.getSint64Value());
+                return varPos;
+            case UINT64:
+                bb.putLong(pos, v.getUint64Value());
+                return varPos;
+            case TIMESTAMP:
+                bb.putLong(pos, v.getTimestampValue());
+                return varPos;
+            case STRING:
+                return putBytes(pos, varPos, null, v.getStringValue().getBytes(StandardCharsets.UTF_8));
+            case BINARY:
+                return putBytes(pos, varPos, null, v.getBinaryValue());
+            case ENUMERATED:
+                return putBytes(pos, varPos, new int[] { (int) (v.getSint64Value() >> 32), (int) v.getSint64Value() },
+                        v.getStringValue().getBytes(StandardCharsets.UTF_8));
+            case ARRAY:
+                return putBytes(pos, varPos, ((ArrayValue) v).getDimensions(),
+                        ValueUtility.toGbp(v).toByteArray());
+            case AGGREGATE:
+                return putBytes(pos, varPos, null, ValueUtility.toGbp(v).toByteArray());
+            default:
+                throw new IllegalStateException("Unknown type " + v.getType());
+            }
+        }
+
+        private int putBytes(int pos, int varPos, int[] header, byte[] b) {
+            int headerLength = header == null ? 0 : 4 * (header.length + 1);
+            int len = headerLength + b.length;
+            if (varPos + len > scratch.capacity()) {
+                ByteBuffer bb = ByteBuffer.allocate(Math.max(2 * scratch.capacity(), varPos + len));
+                bb.put(scratch.array(), 0, varPos);
+                scratch = bb;
+            }
+            ByteBuffer bb = scratch;
+            bb.putInt(pos, varPos);
+            bb.putInt(pos + 4, len);
+            if (header != null) {
+                bb.putInt(varPos, header.length);
+                for (int i = 0; i < header.length; i++) {
+                    bb.putInt(varPos + 4 * (i + 1), header[i]);
+                }
+            }
+            bb.position(varPos + headerLength);
+            bb.put(b);
+            return varPos + len;
+        }
+
+        private ParameterValue decode(int i, int col, ParameterId p) {
+            int offset = getOffset(i);
+            int base = offset + col * COLUMN_SIZE;
+            ParameterValue pv = new ParameterValue(p.pdef);
+            pv.setGenerationTime(getTime(i));
+            pv.setAcquisitionTime(data.getLong(base));
+            pv.setStatus(dictionary.get(data.getInt(base + 8)));
+            if (p.rawType != null) {
+                pv.setRawValue(decodeValue(offset, base + 12, p.rawType));
+            }
+            if (p.engType != null) {
+                pv.setEngValue(decodeValue(offset, base + 20, p.engType));
+            }
+            return pv;
+        }
+
+        private Value decodeValue(int rowOffset, int pos, Type type) {
+            ByteBuffer bb = data;
+            switch (type) {
+            case BOOLEAN:
+                return ValueUtility.getBooleanValue(bb.getLong(pos) != 0);
+            case DOUBLE:
+                return ValueUtility.getDoubleValue(bb.getDouble(pos));
+            case FLOAT:
+                return ValueUtility.getFloatValue(bb.getFloat(pos));
+            case SINT32:
+                return ValueUtility.getSint32Value(bb.getInt(pos));
+            case UINT32:
+                return ValueUtility.getUint32Value(bb.getInt(pos));
+            case SINT64:
+                return ValueUtility.getSint64Value(bb.getLong(pos));
+            case UINT64:
+                return ValueUtility.getUint64Value(bb.getLong(pos));
+            case TIMESTAMP:
+                return ValueUtility.getTimestampValue(bb.getLong(pos));
+            default:
+                break;
+            }
+            ByteBuffer vb = bb.duplicate();
+            int start = rowOffset + bb.getInt(pos);
+            vb.limit(start + bb.getInt(pos + 4)).position(start);
+            switch (type) {
+            case STRING:
+                return ValueUtility.getStringValue(new String(getBytes(vb), StandardCharsets.UTF_8));
+            case BINARY:
+                return ValueUtility.getBinaryValue(getBytes(vb));
+            case ENUMERATED:
+                vb.getInt();
+                long l = ((long) vb.getInt() << 32) | (vb.getInt() & 0xFFFFFFFFL);
+                return ValueUtility.getEnumeratedValue(l, new String(getBytes(vb), StandardCharsets.UTF_8));
+            case ARRAY:
+                int[] dim = new int[vb.getInt()];
+                for (int k = 0; k < dim.length; k++) {
+                    dim[k] = vb.getInt();
+                }
+                ArrayValue flat = (ArrayValue) parseGpb(vb);
+                if (dim.length == 1) {
+                    return flat;
+                }
+                ArrayValue av = new ArrayValue(dim, flat.getElementType());
+                for (int k = 0; k < flat.flatLength(); k++) {
+                    av.setElementValue(k, flat.getElementValue(k));
+                }
+                return av;
+            case AGGREGATE:
+                return parseGpb(vb);
+            default:
+                throw new IllegalStateException("Unknown type " + type);
+            }
+        }
+
+        private byte[] getBytes(ByteBuffer vb) {
+            byte[] b = new byte[vb.remaining()];
+            vb.get(b);
+            return b;
+        }
+
+        private Value parseGpb(ByteBuffer vb) {
+            try {
+                return ValueUtility.fromGpb(org.yamcs.protobuf.Yamcs.Value.parseFrom(vb));
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
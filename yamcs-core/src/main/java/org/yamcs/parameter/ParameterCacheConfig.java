@@ -6,12 +6,23 @@ public class ParameterCacheConfig {
     //maximum duration of the cache
     final long maxDuration;
     final int maxNumEntries;
+    //if true, the values are stored outside of the Java heap
+    final boolean offHeap;
+    //maximum size in bytes of the memory used by the off-heap cache
+    final long maxOffHeapSize;
     
     public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries) {
+        this(enabled, cacheAll, duration, maxNumEntries, false, 0);
+    }
+
+    public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries, boolean offHeap,
+            long maxOffHeapSize) {
         this.enabled = enabled;
         this.cacheAll = cacheAll;
         this.maxDuration = duration;
         this.maxNumEntries = maxNumEntries;
+        this.offHeap = offHeap;
+        this.maxOffHeapSize = maxOffHeapSize;
     }
    
 }
@@ -11,5 +11,14 @@ import org.yamcs.parameter.ParameterValue;
  *
  */
 public interface ParameterConsumer {
+    /**
+     * Called with the parameters delivered for the subscription.
+     * <p>
+     * The list is unmodifiable; it is not modified by the caller after this method returns so it can be kept by the
+     * consumer.
+     * 
+     * @param subscriptionId
+     * @param items
+     */
     void updateItems(int subscriptionId, List<ParameterValue> items);
 }
@@ -1,6 +1,7 @@
 package org.yamcs.parameter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -18,6 +19,8 @@ import org.yamcs.Processor;
 import org.yamcs.alarms.AlarmServer;
 import org.yamcs.alarms.ParameterAlarmStreamer;
 import org.yamcs.api.Log;
+import org.yamcs.parameter.DeliveryTable.DeliveryBuffers;
+import org.yamcs.parameter.DeliveryTable.ValueListView;
 import org.yamcs.protobuf.Yamcs.NamedObjectId;
 import org.yamcs.xtce.DataSource;
 import org.yamcs.xtce.Parameter;
@@ -49,11 +52,17 @@ public class ParameterRequestManager extends AbstractService implements Paramete
     // these are the consumers that may update the list of parameters
     // they are delivered with priority such that in one update cycle the algorithms (or derived values) are also
     // computed
-    private Map<Integer, DVParameterConsumer> request2DVParameterConsumerMap = new HashMap<>();
+    private Map<Integer, DVParameterConsumer> request2DVParameterConsumerMap = new ConcurrentHashMap<>();
 
     // contains subscribe all
     private SubscriptionArray subscribeAll = new SubscriptionArray();
 
+    // incremented each time the subscriptions change; the delivery table is rebuilt when it is out of date
+    private final AtomicInteger subscriptionsVersion = new AtomicInteger();
+    private volatile DeliveryTable deliveryTable;
+    private final Object deliveryTableLock = new Object();
+    private final ThreadLocal<DeliveryBuffers> deliveryBuffers = ThreadLocal.withInitial(DeliveryBuffers::new);
+
     private ParameterAlarmChecker alarmChecker;
     private Map<Class<?>, ParameterProvider> parameterProviders = new LinkedHashMap<>();
 
@@ -93,7 +102,11 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
 
         if (cacheConfig.enabled) {
-            parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            if (cacheConfig.offHeap) {
+                parameterCache = new OffHeapParameterCache(yproc.getInstance(), cacheConfig);
+            } else {
+                parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            }
         }
     }
 
@@ -141,6 +154,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
         subscribeAll.add(id);
         request2ParameterConsumerMap.put(id, consumer);
+        subscriptionsChanged();
         return id;
     }
 
@@ -153,7 +167,9 @@ public class ParameterRequestManager extends AbstractService implements Paramete
      * @return
      */
     public boolean unsubscribeAll(int subscriptionId) {
-        return subscribeAll.remove(subscriptionId);
+        boolean removed = subscribeAll.remove(subscriptionId);
+        subscriptionsChanged();
+        return removed;
     }
 
     public int addRequest(final List<Parameter> paraList, final ParameterConsumer tpc) {
@@ -168,6 +184,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
 
         request2ParameterConsumerMap.put(id, tpc);
+        subscriptionsChanged();
         return id;
     }
 
@@ -185,6 +202,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         subscribeToProviders(para);
         addItemToRequest(id, para);
         request2ParameterConsumerMap.put(id, tpc);
+        subscriptionsChanged();
 
         return id;
     }
@@ -206,6 +224,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             addItemToRequest(id, paraList.get(i));
         }
         request2DVParameterConsumerMap.put(id, dvtpc);
+        subscriptionsChanged();
         return id;
     }
 
@@ -225,6 +244,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             addItemToRequest(subscriptionId, paraList.get(i));
         }
         request2ParameterConsumerMap.put(subscriptionId, tpc);
+        subscriptionsChanged();
     }
 
     /**
@@ -311,6 +331,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
         SubscriptionArray al_req = param2RequestMap.get(para);
         al_req.add(id);
+        subscriptionsChanged();
     }
 
     private void removeItemFromRequest(int subscriptionId, Parameter para) {
@@ -318,6 +339,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             SubscriptionArray al_req = param2RequestMap.get(para);
             // remove the subscription from the list of this parameter
             if (al_req.remove(subscriptionId)) {
+                subscriptionsChanged();
                 /*
                  * Don't remove the al_req from the map and
                  * don't ask provider to stop providing
@@ -365,9 +387,36 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
         request2ParameterConsumerMap.remove(subscriptionId);
         request2DVParameterConsumerMap.remove(subscriptionId);
+        subscriptionsChanged();
         return result;
     }
 
+    private void subscriptionsChanged() {
+        subscriptionsVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the delivery table, rebuilding it if the subscriptions have changed since it has been built.
+     */
+    private DeliveryTable getDeliveryTable() {
+        DeliveryTable dt = deliveryTable;
+        if (dt != null && dt.version == subscriptionsVersion.get()) {
+            return dt;
+        }
+        synchronized (deliveryTableLock) {
+            dt = deliveryTable;
+            // the version is read before building the table such that any change happening concurrently with the
+            // building will cause a new rebuild at the next delivery
+            int version = subscriptionsVersion.get();
+            if (dt == null || dt.version != version) {
+                dt = new DeliveryTable(version, param2RequestMap, subscribeAll, request2ParameterConsumerMap,
+                        request2DVParameterConsumerMap);
+                deliveryTable = dt;
+            }
+            return dt;
+        }
+    }
+
     private void subscribeToProviders(Parameter param) throws NoProviderException {
         if (shouldSubcribeAllParameters) {
             return;
@@ -421,93 +470,94 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         throw new InvalidIdentification(paraId);
     }
 
+    /**
+     * Delivers the parameters to the subscribers.
+     * <p>
+     * The parameters are collected in reused buffers. At the end they are copied in one array allocated for this
+     * delivery and each {@link ParameterConsumer} receives an unmodifiable view of its part of the array such that it
+     * can keep it after the call returns. The derived value consumers (internal) receive the reused buffers and may
+     * not keep them.
+     */
     @Override
     public void update(Collection<ParameterValue> params) {
         log.trace("ParamRequestManager.updateItems with {} parameters", params.size());
 
         lastValueCache.update(params);
-        // maps subscription id to a list of (value,id) to be delivered for that subscription
-        HashMap<Integer, ArrayList<ParameterValue>> delivery = new HashMap<>();
-
-        // so first we add to the delivery the parameters just received
-        updateDelivery(delivery, params);
-
-        // then if the delivery updates some of the parameters required by the derived values
-        // compute the derived values
-        for (Map.Entry<Integer, DVParameterConsumer> entry : request2DVParameterConsumerMap.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-            if (delivery.containsKey(subscriptionId)) {
-                List<ParameterValue> pvList = entry.getValue().updateParameters(subscriptionId,
-                        delivery.get(subscriptionId));
-                lastValueCache.update(pvList);
-                updateDelivery(delivery, pvList);
+        DeliveryTable dt = getDeliveryTable();
+        DeliveryBuffers buffers = deliveryBuffers.get();
+        if (buffers.inUse) { // called from one of the consumers while delivering
+            buffers = new DeliveryBuffers();
+        }
+        buffers.ensureCapacity(dt.size());
+        buffers.inUse = true;
+        try {
+            // so first we add to the delivery the parameters just received
+            updateDelivery(dt, buffers, params);
+
+            // then if the delivery updates some of the parameters required by the derived values
+            // compute the derived values
+            for (int slot : dt.dvSlots) {
+                List<ParameterValue> al = buffers.lists[slot];
+                if (!al.isEmpty()) {
+                    List<ParameterValue> pvList = dt.dvConsumers[slot].updateParameters(dt.subscriptionIds[slot], al);
+                    lastValueCache.update(pvList);
+                    updateDelivery(dt, buffers, pvList);
+                }
             }
-        }
 
-        // and finally deliver the delivery :)
-        for (Map.Entry<Integer, ArrayList<ParameterValue>> entry : delivery.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-            if (request2DVParameterConsumerMap.containsKey(subscriptionId)) {
-                continue;
-            }
-            if (alarmChecker != null && alarmChecker.getSubscriptionId() == subscriptionId) {
-                continue;
+            // and finally deliver the delivery :)
+            Arrays.sort(buffers.touched, 0, buffers.numTouched);
+            int n = 0;
+            for (int i = 0; i < buffers.numTouched; i++) {
+                int slot = buffers.touched[i];
+                if (dt.consumers[slot] != null) {
+                    n += buffers.lists[slot].size();
+                }
             }
-
-            ArrayList<ParameterValue> al = entry.getValue();
-            ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
-            if (consumer == null) {
-                log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
-                        subscriptionId);
-            } else {
-                consumer.updateItems(subscriptionId, al);
+            ParameterValue[] values = new ParameterValue[n];
+            int offset = 0;
+            for (int i = 0; i < buffers.numTouched; i++) {
+                int slot = buffers.touched[i];
+                ParameterConsumer consumer = dt.consumers[slot];
+                if (consumer == null) {
+                    continue;
+                }
+                List<ParameterValue> l = buffers.lists[slot];
+                int size = l.size();
+                for (int k = 0; k < size; k++) {
+                    values[offset + k] = l.get(k);
+                }
+                consumer.updateItems(dt.subscriptionIds[slot], new ValueListView(values, offset, size));
+                offset += size;
             }
+        } finally {
+            buffers.clear();
+            buffers.inUse = false;
         }
     }
 
     /**
      * adds the passed parameters to the delivery
      * 
-     * @param delivery
+     * @param dt
+     * @param buffers
      * @param params
      */
-    private void updateDelivery(HashMap<Integer, ArrayList<ParameterValue>> delivery,
-            Collection<ParameterValue> params) {
+    private void updateDelivery(DeliveryTable dt, DeliveryBuffers buffers, Collection<ParameterValue> params) {
         if (params == null) {
             return;
         }
 
-        for (Iterator<ParameterValue> it = params.iterator(); it.hasNext();) {
-            ParameterValue pv = it.next();
-            Parameter pDef = pv.getParameter();
-            SubscriptionArray cowal = param2RequestMap.get(pDef);
+        for (ParameterValue pv : params) {
             // now walk through the requests and add this item to their delivery list
-            if (cowal == null) {
-                continue;
-            }
-
-            for (int s : cowal.getArray()) {
-                ArrayList<ParameterValue> al = delivery.get(s);
-                if (al == null) {
-                    al = new ArrayList<>();
-                    delivery.put(s, al);
-                }
-                al.add(pv);
+            for (int slot : dt.getSlots(pv.getParameter())) {
+                buffers.add(slot, pv);
             }
         }
 
         // update the subscribeAll subscriptions
-        for (int id : subscribeAll.getArray()) {
-            ArrayList<ParameterValue> al = delivery.get(id);
-
-            if (al == null) {
-                al = new ArrayList<>();
-                delivery.put(id, al);
-            }
-
-            for (ParameterValue pv : params) {
-                al.add(pv);
-            }
+        for (int slot : dt.allSlots) {
+            buffers.addAll(slot, params);
         }
         if (alarmChecker != null) {
             try {
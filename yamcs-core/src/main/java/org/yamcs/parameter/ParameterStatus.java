@@ -7,7 +7,7 @@ import org.yamcs.protobuf.Pvalue.RangeCondition;
 import org.yamcs.utils.DoubleRange;
 
 public class ParameterStatus {
-    public static final ParameterStatus NOMINAL = new ParameterStatus();
+    public static final ParameterStatus NOMINAL = new ParameterStatus(true);
 
 
     private AcquisitionStatus acquisitionStatus = AcquisitionStatus.ACQUIRED;
@@ -25,6 +25,60 @@ public class ParameterStatus {
     //-1 means it's not set.
     private long expireMillis = -1;
 
+    // shared instances are referenced by multiple parameter values and are copied before being modified
+    private final boolean shared;
+
+    public ParameterStatus() {
+        this(false);
+    }
+
+    private ParameterStatus(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Creates a non shared copy of the status
+     */
+    public ParameterStatus(ParameterStatus other) {
+        this(other, false);
+    }
+
+    private ParameterStatus(ParameterStatus other, boolean shared) {
+        this(shared);
+        this.acquisitionStatus = other.acquisitionStatus;
+        this.processingStatus = other.processingStatus;
+        this.monitoringResult = other.monitoringResult;
+        this.deltaMonitoringResult = other.deltaMonitoringResult;
+        this.rangeCondition = other.rangeCondition;
+        this.watchRange = other.watchRange;
+        this.warningRange = other.warningRange;
+        this.distressRange = other.distressRange;
+        this.criticalRange = other.criticalRange;
+        this.severeRange = other.severeRange;
+        this.expireMillis = other.expireMillis;
+    }
+
+    /**
+     * Creates a nominal status with the given expiration which can be shared between multiple parameter values; the
+     * values make a copy of it before changing their status.
+     */
+    public static ParameterStatus sharedNominal(long expireMillis) {
+        ParameterStatus status = new ParameterStatus(true);
+        status.expireMillis = expireMillis;
+        return status;
+    }
+
+    /**
+     * Creates a copy of the status which can be shared between multiple parameter values
+     */
+    public static ParameterStatus sharedCopy(ParameterStatus other) {
+        return new ParameterStatus(other, true);
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
     public AcquisitionStatus getAcquisitionStatus() {
         return acquisitionStatus;
     }
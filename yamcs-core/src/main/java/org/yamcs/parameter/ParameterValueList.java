@@ -1,6 +1,8 @@
 package org.yamcs.parameter;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.function.Consumer;
@@ -13,6 +15,12 @@ import org.yamcs.xtce.Parameter;
  * Stores a collection of ParameterValue indexed on Parameter
  * 
  * It works like a LinkedHashMap&lt;Parameter, LinkedList&lt;ParameterValue&gt;&gt;  
+ * 
+ * The values are kept in an array in the insertion order and the hash chains are made of indices in parallel int
+ * arrays such that adding a value does not allocate any object (except when the arrays have to grow).
+ * 
+ * The values can be added while iterating; an iterator fails with a {@link ConcurrentModificationException} if the
+ * gaps left by the removed values have been compacted since it was created.
  *
  * 
  * Not thread safe
@@ -20,18 +28,26 @@ import org.yamcs.xtce.Parameter;
  *
  */
 public class ParameterValueList implements Collection<ParameterValue> {
-    Entry[] table;
+    static final int NONE = -1;
+
+    // first index in values of each hash bucket
+    int[] table;
+
+    // values in the insertion order; the removed values are set to null
+    ParameterValue[] values;
+    // index of the next value in the same hash bucket
+    int[] next;
+    // number of slots used in values including the removed ones
+    int count;
+    // incremented each time the values are moved to remove the gaps
+    int compactions;
 
-    Entry head;
     int size;
     int threshold; 
     float loadFactor = 0.75f;
 
     public ParameterValueList() {
-        size = 0;
-        table = new Entry[16];
-        threshold = (int)(table.length*loadFactor);
-        initHead();
+        init(16, 16);
     }
 
     /**     
@@ -39,34 +55,28 @@ public class ParameterValueList implements Collection<ParameterValue> {
      */
     public ParameterValueList(Collection<ParameterValue> pvs) {
         int len = (int)(pvs.size()/loadFactor)+ 1;
-        len = roundUpToPowerOfTwo(len);
-        table = new Entry[len];
-        threshold = (int)(len * loadFactor);
-        size = 0;
-        initHead();
+        init(roundUpToPowerOfTwo(len), pvs.size());
         for(ParameterValue pv:pvs) {
             doAdd(pv);
         }
     }
 
-
-
     //used for unit tests to ensure max collision
     ParameterValueList(int capacity, Collection<ParameterValue> pvs) {
-        int len = roundUpToPowerOfTwo(capacity);
-        table = new Entry[len];
-        threshold = (int)(len * loadFactor);
-        size = 0;
-        initHead();
-
+        init(roundUpToPowerOfTwo(capacity), pvs.size());
         for(ParameterValue pv:pvs) {
             doAdd(pv);
         }
     }
 
-    private void initHead() {
-        head = new Entry(null);
-        head.before = head.after = head;
+    private void init(int tableLength, int valuesLength) {
+        table = new int[tableLength];
+        Arrays.fill(table, NONE);
+        threshold = (int)(tableLength * loadFactor);
+        values = new ParameterValue[Math.max(valuesLength, 1)];
+        next = new int[values.length];
+        size = 0;
+        count = 0;
     }
 
     @Override
@@ -88,50 +98,68 @@ public class ParameterValueList implements Collection<ParameterValue> {
      * @return
      */
     public int count(Parameter p) {
-        int hash = getHash(p);
-        int index = hash & (table.length - 1);
-        Entry e = table[index];
-        int count = 0;
-
-        while(e!=null) {
-            if(e.pv.getParameter()==p) {
-                count++;
+        int index = getHash(p) & (table.length - 1);
+        int c = 0;
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                c++;
             }
-            e = e.next;
         }
-        return count;
+        return c;
     }
 
     private void ensureCapacity(int newCapacity) {
-        Entry[] oldt = table;
-        Entry[] newt = new Entry[newCapacity];
-
-
-        //transfer content
-        for(int i = 0; i<oldt.length; i++) {
-            Entry e = oldt[i];
-            while(e!=null) {
-                int hash = getHash(e.pv.getParameter());
-                int index = hash & (newt.length - 1);
-
-                Entry next = e.next;
-                e.next = null;
-                Entry e1 = newt[index];
-                if(e1 == null) {
-                    newt[index] = e;
-                } else {
-                    while(e1.next!=null) {
-                        e1=e1.next;
-                    }
-                    e1.next = e;
+        table = new int[newCapacity];
+        rehash();
+    }
 
-                }
-                e = next;
+    /**
+     * rebuilds the hash chains from the values array, keeping the insertion order in each chain
+     */
+    private void rehash() {
+        int[] t = table;
+        Arrays.fill(t, NONE);
+        int[] last = new int[t.length];
+        for(int i = 0; i<count; i++) {
+            ParameterValue pv = values[i];
+            if(pv==null) {
+                continue;
+            }
+            next[i] = NONE;
+            int index = getHash(pv.getParameter()) & (t.length - 1);
+            if(t[index] == NONE) {
+                t[index] = i;
+            } else {
+                next[last[index]] = i;
             }
+            last[index] = i;
         }
-        table = newt;
     }
 
+    /**
+     * makes room for at least one more value, either by removing the gaps left by the removed values (if they are at
+     * least a quarter of the array) or by growing the arrays
+     */
+    private void ensureSlot() {
+        int gaps = count - size;
+        if(gaps > 0 && gaps >= count/4) {
+            compactions++;
+            int k = 0;
+            for(int i = 0; i<count; i++) {
+                if(values[i]!=null) {
+                    values[k++] = values[i];
+                }
+            }
+            Arrays.fill(values, k, count, null);
+            count = k;
+            rehash();
+        }
+        if(count == values.length) {
+            int newLength = 2*values.length;
+            values = Arrays.copyOf(values, newLength);
+            next = Arrays.copyOf(next, newLength);
+        }
+    }
 
     /**
      * add a parameter to the hashtable, to the end of the list for the same parameter
@@ -139,30 +167,27 @@ public class ParameterValueList implements Collection<ParameterValue> {
      * @param pv
      */
     private void doAdd(ParameterValue pv) {
-        Entry newEntry = new Entry(pv);
-        Entry[] t = table;
-
-        int hash = getHash(pv.getParameter());
-        int index = hash & (t.length - 1);
-        if(t[index] == null) {
-            t[index] = newEntry;
+        if(count == values.length) {
+            ensureSlot();
+        }
+        int k = count++;
+        values[k] = pv;
+        next[k] = NONE;
+
+        int[] t = table;
+        int index = getHash(pv.getParameter()) & (t.length - 1);
+        if(t[index] == NONE) {
+            t[index] = k;
         } else {
-            Entry e = t[index];
-            while(e.next!=null) {
-                e=e.next;
+            int i = t[index];
+            while(next[i]!=NONE) {
+                i = next[i];
             }
-            e.next = newEntry;
+            next[i] = k;
         }
-        newEntry.after = head;
-        newEntry.before = head.before;
-        head.before.after = newEntry;
-        head.before = newEntry;
-
         size++;
     }
 
-
-
     private int getHash(Parameter p) {
         return p.hashCode();
     }
@@ -180,9 +205,9 @@ public class ParameterValueList implements Collection<ParameterValue> {
     public ParameterValue getLastInserted(Parameter p) {
         int index =  getHash(p) & (table.length - 1);
         ParameterValue r = null;
-        for(Entry e = table[index] ; e!=null; e=e.next) {
-            if(e.pv.getParameter()==p) {
-                r = e.pv;
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                r = values[i];
             }
         }
         return r;
@@ -190,14 +215,12 @@ public class ParameterValueList implements Collection<ParameterValue> {
     
     public ParameterValue getFirstInserted(Parameter p) {
         int index =  getHash(p) & (table.length - 1);
-        ParameterValue r = null;
-        for(Entry e = table[index] ; e!=null; e=e.next) {
-            if(e.pv.getParameter()==p) {
-                r = e.pv;
-                break;
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                return values[i];
             }
         }
-        return r;
+        return null;
     }
     
     /**
@@ -208,9 +231,9 @@ public class ParameterValueList implements Collection<ParameterValue> {
      */
     public void forEach(Parameter p, Consumer<ParameterValue> action) {
         int index =  getHash(p) & (table.length - 1);
-        for(Entry e = table[index] ; e!=null; e=e.next) {
-            if(e.pv.getParameter()==p) {
-                action.accept(e.pv);
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                action.accept(values[i]);
             }
         }
     }
@@ -223,45 +246,22 @@ public class ParameterValueList implements Collection<ParameterValue> {
      */
     public ParameterValue removeLast(Parameter p) {
         int index =  getHash(p) & (table.length - 1);
-        Entry e = table[index];
-        if(e == null) {
-            return null;
-        }
-
-        Entry prev_r = null;
-
-        Entry prev_e = null;
-        Entry r = null;
-
-        while(e!=null) {
-            if(e.pv.getParameter()==p) {
-                prev_r = prev_e;
-                r = e;
+        int prev = NONE;
+        int prevR = NONE;
+        int r = NONE;
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                prevR = prev;
+                r = i;
             }
-            prev_e = e;
-            e = e.next;
+            prev = i;
         }
-
-        if(r==null) {
+        if(r==NONE) {
             return null;
         }
-
-        size--;
-        if(table[index]==r) {
-            table[index] = r.next;
-        } else {
-            prev_r.next = r.next;
-        }
-        removeEntryFromLinkedList(r);
-        return r.pv;
+        return remove(index, prevR, r);
     }
 
-    private void removeEntryFromLinkedList(Entry r) {
-        Entry b = r.before;
-        Entry a = r.after;
-        b.after = a;
-        a.before = b;
-    }
     /**
      * Remove the first inserted value for Parameter p
      * 
@@ -270,37 +270,30 @@ public class ParameterValueList implements Collection<ParameterValue> {
      */
     public ParameterValue removeFirst(Parameter p) {
         int index =  getHash(p) & (table.length - 1);
-        Entry prev = table[index];
-        if(prev == null) {
-            return null;
-        }
-
-
-        Entry e = prev;
-        Entry r = null;
-
-        while(e!=null) {
-            if(e.pv.getParameter()==p) {
-                r = e;
-                break;
+        int prev = NONE;
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i].getParameter()==p) {
+                return remove(index, prev, i);
             }
-            prev = e;
-            e = e.next;
-        }
-
-        if(r==null) {
-            return null;
+            prev = i;
         }
+        return null;
+    }
 
-        size--;
-        if(table[index]==r) {
-            table[index] = r.next;
+    /**
+     * unlinks the value at position r from the chain of the bucket index; prev is the position of the previous value
+     * in the chain
+     */
+    private ParameterValue remove(int index, int prev, int r) {
+        if(prev==NONE) {
+            table[index] = next[r];
         } else {
-            prev.next = r.next;
+            next[prev] = next[r];
         }
-        removeEntryFromLinkedList(r);
-
-        return r.pv;
+        ParameterValue pv = values[r];
+        values[r] = null;
+        size--;
+        return pv;
     }
 
     /**
@@ -370,8 +363,8 @@ public class ParameterValueList implements Collection<ParameterValue> {
         ParameterValue pv = (ParameterValue)o;
 
         int index =  getHash(pv.getParameter()) & (table.length - 1);
-        for(Entry e = table[index] ; e!=null; e=e.next) {
-            if(e.pv==pv) {
+        for(int i = table[index]; i!=NONE; i = next[i]) {
+            if(values[i]==pv) {
                 return true;
             }
         }
@@ -463,33 +456,33 @@ public class ParameterValueList implements Collection<ParameterValue> {
     }
     
     
-    static class Entry {
-        final ParameterValue pv;
-        Entry next, before, after;
-        Entry(ParameterValue pv) {
-            this.pv = pv;
-        }
-    }
-
-
     private final class Iter implements Iterator<ParameterValue> {
-        Entry next = head.after;
+        final int expectedCompactions = compactions;
+        // position of the next value; the values removed after the iterator has passed them are skipped
+        int pos = 0;
+
+        private void advance() {
+            if(compactions != expectedCompactions) {
+                throw new ConcurrentModificationException();
+            }
+            while(pos<count && values[pos]==null) {
+                pos++;
+            }
+        }
 
         @Override
         public boolean hasNext() {
-            return next!=head;
+            advance();
+            return pos<count;
         }
 
         @Override
         public ParameterValue next() {
-            if(next==head) {
+            advance();
+            if(pos>=count) {
                 throw new NoSuchElementException();
             }
-
-            Entry r = next;
-            next = r.after;
-
-            return r.pv;
+            return values[pos++];
         }
 
         @Override
@@ -498,7 +491,4 @@ public class ParameterValueList implements Collection<ParameterValue> {
         }
 
     }
-
-
-   
 }
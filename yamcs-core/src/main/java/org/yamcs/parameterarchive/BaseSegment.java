@@ -23,6 +23,8 @@ public abstract class BaseSegment {
     public static final byte FORMAT_ID_LongValueSegment = 18;
     public static final byte FORMAT_ID_BinaryValueSegment = 19;
     public static final byte FORMAT_ID_BooleanValueSegment = 20;
+    public static final byte FORMAT_ID_RollupSegment = 21;
+    public static final byte FORMAT_ID_SegmentStats = 22;
 
     protected byte formatId;
 
@@ -66,6 +68,10 @@ public abstract class BaseSegment {
             return LongValueSegment.parseFrom(bb);
         case FORMAT_ID_BinaryValueSegment:
             return BinaryValueSegment.parseFrom(bb);
+        case FORMAT_ID_RollupSegment:
+            return RollupSegment.parseFrom(bb);
+        case FORMAT_ID_SegmentStats:
+            return SegmentStats.parseFrom(bb);
         default:
           throw new DecodingException("Invalid format id "+formatId);
         }
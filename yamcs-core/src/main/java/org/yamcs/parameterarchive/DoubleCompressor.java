@@ -0,0 +1,118 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+
+import org.yamcs.utils.BitReader;
+import org.yamcs.utils.BitWriter;
+
+/**
+ * Implements for 64 bits doubles the floating point compression scheme described here:
+ * http://www.vldb.org/pvldb/vol8/p1816-teller.pdf
+ * <p>
+ * Same as {@link FloatCompressor} except that the number of leading zeros and the number of meaningful bits are stored
+ * on 6 bits.
+ */
+public class DoubleCompressor {
+    /**
+     * compress the first n elements from the array of doubles into the ByteBuffer
+     */
+    static public void compress(double[] da, int n, ByteBuffer bb) {
+        if (n == 0) {
+            return;
+        }
+        BitWriter bw = new BitWriter(bb);
+
+        long prevV = Double.doubleToRawLongBits(da[0]);
+        write(bw, prevV, 64);
+
+        int prevLz = 100; // such that the first comparison lz>=prevLz will fail
+        int prevTz = 0;
+
+        for (int i = 1; i < n; i++) {
+            long v = Double.doubleToRawLongBits(da[i]);
+            long xor = v ^ prevV;
+            if (xor == 0) {
+                // same value as the previous one, store single '0' bit
+                bw.write(0, 1);
+            } else {
+                bw.write(1, 1);
+                int lz = Long.numberOfLeadingZeros(xor);
+                int tz = Long.numberOfTrailingZeros(xor);
+                if ((lz >= prevLz) && (tz >= prevTz) && (lz < prevLz + 7)) {
+                    // control bit '0': the meaningful bits fall within the block of previous meaningful bits
+                    bw.write(0, 1);
+                    write(bw, xor >>> prevTz, 64 - prevLz - prevTz);
+                } else {
+                    // control bit '1': store the number of leading zeros and the number of meaningful bits (64 stored
+                    // as 0) followed by the meaningful bits
+                    int mb = 64 - lz - tz;
+                    bw.write(1, 1);
+                    bw.write(lz, 6);
+                    bw.write(mb, 6);
+                    write(bw, xor >>> tz, mb);
+                    prevLz = lz;
+                    prevTz = tz;
+                }
+            }
+            prevV = v;
+        }
+        bw.flush();
+    }
+
+    public static double[] decompress(ByteBuffer bb, int n) {
+        double[] da = new double[n];
+        if (n == 0) {
+            return da;
+        }
+        BitReader br = new BitReader(bb);
+        long v = read(br, 64);
+        da[0] = Double.longBitsToDouble(v);
+
+        int tz = 0; // trailing zeros
+        int mb = 0; // meaningful bits
+        for (int i = 1; i < n; i++) {
+            int bit = br.read(1);
+            if (bit == 0) {
+                // same with the previous value
+                da[i] = da[i - 1];
+            } else {
+                bit = br.read(1);
+                if (bit == 1) {
+                    int lz = br.read(6);
+                    mb = br.read(6);
+                    // this happens when mb is 64 and overflows the 6 bits
+                    if (mb == 0) {
+                        mb = 64;
+                    }
+                    tz = 64 - lz - mb;
+                }
+                v ^= read(br, mb) << tz;
+                da[i] = Double.longBitsToDouble(v);
+            }
+        }
+        return da;
+    }
+
+    public static void compress(double[] da, ByteBuffer bb) {
+        compress(da, da.length, bb);
+    }
+
+    // the BitWriter and BitReader work with at most 32 bits at a time
+    private static void write(BitWriter bw, long x, int numBits) {
+        if (numBits > 32) {
+            bw.write((int) (x >>> 32), numBits - 32);
+            bw.write((int) x, 32);
+        } else {
+            bw.write((int) x, numBits);
+        }
+    }
+
+    private static long read(BitReader br, int numBits) {
+        if (numBits > 32) {
+            long x = br.readLong(numBits - 32);
+            return (x << 32) | br.readLong(32);
+        } else {
+            return br.readLong(numBits);
+        }
+    }
+}
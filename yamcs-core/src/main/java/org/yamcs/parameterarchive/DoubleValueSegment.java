@@ -1,5 +1,6 @@
 package org.yamcs.parameterarchive;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -11,8 +12,13 @@ import org.yamcs.utils.ValueUtility;
 import org.yamcs.utils.VarIntUtil;
 
 
+/**
+ * 64 bits doubles, encoded with the XOR based compression of {@link DoubleCompressor} if that is smaller than the raw
+ * encoding.
+ */
 public class DoubleValueSegment extends BaseSegment implements ValueSegment {
     final static byte SUBFORMAT_ID_RAW = 0;
+    final static byte SUBFORMAT_ID_COMPRESSED = 1;
     
     DoubleArray values;
     
@@ -24,6 +30,24 @@ public class DoubleValueSegment extends BaseSegment implements ValueSegment {
             
     @Override
     public void writeTo(ByteBuffer bb) {
+        int position = bb.position();
+        int n = values.size();
+
+        // try to write it compressed, if we get a buffer overflow or the result is bigger, revert to raw encoding
+        try {
+            bb.put(SUBFORMAT_ID_COMPRESSED);
+            VarIntUtil.writeVarInt32(bb, n);
+            DoubleCompressor.compress(values.array(), n, bb);
+            if (bb.position() - position <= 1 + VarIntUtil.getEncodedSize(n) + 8 * n) {
+                return;
+            }
+        } catch (BufferOverflowException e) {
+        }
+        bb.position(position);
+        writeRaw(bb);
+    }
+
+    private void writeRaw(ByteBuffer bb) {
         bb.put(SUBFORMAT_ID_RAW);
         int n = values.size();
         VarIntUtil.writeVarInt32(bb, n);
@@ -34,14 +58,16 @@ public class DoubleValueSegment extends BaseSegment implements ValueSegment {
 
     private void parse(ByteBuffer bb) throws DecodingException {
         byte fid = bb.get();
-        if(fid!=SUBFORMAT_ID_RAW) {
-            throw new DecodingException("Uknown sub format id: "+fid);
-        }
         int n = VarIntUtil.readVarInt32(bb);
-        values = new DoubleArray(n);
-        
-        for(int i=0;i<n;i++) {
-            values.add(bb.getDouble());
+        if (fid == SUBFORMAT_ID_RAW) {
+            values = new DoubleArray(n);
+            for (int i = 0; i < n; i++) {
+                values.add(bb.getDouble());
+            }
+        } else if (fid == SUBFORMAT_ID_COMPRESSED) {
+            values = DoubleArray.wrap(DoubleCompressor.decompress(bb, n));
+        } else {
+            throw new DecodingException("Uknown sub format id: "+fid);
         }
     }
     public static DoubleValueSegment parseFrom(ByteBuffer bb) throws DecodingException {
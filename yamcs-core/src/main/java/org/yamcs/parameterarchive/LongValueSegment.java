@@ -1,5 +1,6 @@
 package org.yamcs.parameterarchive;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -11,9 +12,18 @@ import org.yamcs.utils.LongArray;
 import org.yamcs.utils.ValueUtility;
 import org.yamcs.utils.VarIntUtil;
 
+import me.lemire.integercompression.IntWrapper;
+
+/**
+ * 64 bits integers, encoded as deltas of deltas if that is smaller than the raw encoding.
+ */
 public class LongValueSegment extends BaseSegment implements ValueSegment {
 
     final static int SUBFORMAT_ID_RAW = 0;
+    // compressed with DeltaZigzag and then FastPFOR128 plus VarInt64 for remaining; only used if all the deltas of
+    // deltas fit into 32 bits
+    final static int SUBFORMAT_ID_DELTAZG_FPF128_VB = 1;
+    final static int SUBFORMAT_ID_DELTAZG_VB = 2; // compressed with DeltaZigzag plus VarInt64
     LongArray values;
 
     // all possible types that can be stored by this segment
@@ -41,6 +51,67 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
 
     @Override
     public void writeTo(ByteBuffer bb) {
+        int position = bb.position();
+        int n = values.size();
+        // try first to write compressed, if we fail (for random data we may exceed the buffer) or the result is
+        // bigger, then write in raw format
+        try {
+            writeCompressed(bb);
+            if (bb.position() - position <= 1 + VarIntUtil.getEncodedSize(n) + 8 * n) {
+                return;
+            }
+        } catch (IndexOutOfBoundsException | BufferOverflowException e) {
+        }
+        bb.position(position);
+        writeRaw(bb);
+    }
+
+    // the first value is written separately as varint, it is usually big and would prevent using FastPFOR
+    private void writeCompressed(ByteBuffer bb) {
+        long[] ddz = VarIntUtil.encodeDeltaDeltaZigZag(values);
+        int size = ddz.length;
+
+        IntWrapper inputoffset = new IntWrapper(1);
+        IntWrapper outputoffset = new IntWrapper(0);
+        int[] xc = null;
+        if (fitsInt(ddz)) {
+            int[] ddz32 = new int[size];
+            for (int i = 1; i < size; i++) {
+                ddz32[i] = (int) ddz[i];
+            }
+            xc = new int[size];
+            FastPFORFactory.get().compress(ddz32, inputoffset, size - 1, xc, outputoffset);
+        }
+        if (outputoffset.get() == 0) {
+            // fastpfor not used or didn't compress anything, probably there were too few datapoints
+            writeHeader(SUBFORMAT_ID_DELTAZG_VB, bb);
+        } else {
+            writeHeader(SUBFORMAT_ID_DELTAZG_FPF128_VB, bb);
+        }
+        VarIntUtil.writeVarInt32(bb, size);
+        if (size > 0) {
+            VarIntUtil.writeVarInt64(bb, ddz[0]);
+        }
+        int length = outputoffset.get();
+        for (int i = 0; i < length; i++) {
+            bb.putInt(xc[i]);
+        }
+        // write the remaining values varint compressed
+        for (int i = inputoffset.get(); i < size; i++) {
+            VarIntUtil.writeVarInt64(bb, ddz[i]);
+        }
+    }
+
+    private static boolean fitsInt(long[] ddz) {
+        for (int i = 1; i < ddz.length; i++) {
+            if ((ddz[i] >>> 32) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeRaw(ByteBuffer bb) {
         writeHeader(SUBFORMAT_ID_RAW, bb);
         int n = values.size();
         VarIntUtil.writeVarInt32(bb, n);
@@ -60,13 +131,24 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
     private void parse(ByteBuffer bb) throws DecodingException {
         byte x = bb.get();
         int subFormatId = x & 0xF;
-        if (subFormatId != SUBFORMAT_ID_RAW)
-            throw new DecodingException("Unknown subformatId " + subFormatId + " for LongValueSegment");
-        
         numericType = (x >> 4) & 3;
 
         int n = VarIntUtil.readVarInt32(bb);
 
+        switch (subFormatId) {
+        case SUBFORMAT_ID_RAW:
+            parseRaw(bb, n);
+            break;
+        case SUBFORMAT_ID_DELTAZG_FPF128_VB: // intentional fall through
+        case SUBFORMAT_ID_DELTAZG_VB:
+            parseCompressed(bb, n, subFormatId);
+            break;
+        default:
+            throw new DecodingException("Unknown subformatId " + subFormatId + " for LongValueSegment");
+        }
+    }
+
+    private void parseRaw(ByteBuffer bb, int n) throws DecodingException {
         if (bb.limit() - bb.position() < 8 * n) {
             throw new DecodingException("Cannot decode long segment: expected " + (8 * n) + " bytes and only "
                     + (bb.limit() - bb.position()) + " available");
@@ -77,6 +159,35 @@ public class LongValueSegment extends BaseSegment implements ValueSegment {
         }
     }
 
+    private void parseCompressed(ByteBuffer bb, int n, int subFormatId) {
+        long[] ddz = new long[n];
+        if (n > 0) {
+            ddz[0] = VarIntUtil.readVarInt64(bb);
+        }
+
+        IntWrapper inputoffset = new IntWrapper(0);
+        IntWrapper outputoffset = new IntWrapper(1);
+        int position = bb.position();
+
+        if (subFormatId == SUBFORMAT_ID_DELTAZG_FPF128_VB) {
+            int[] x = new int[(bb.limit() - bb.position()) / 4];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = bb.getInt();
+            }
+            int[] ddz32 = new int[n];
+            FastPFORFactory.get().uncompress(x, inputoffset, x.length, ddz32, outputoffset);
+            bb.position(position + inputoffset.get() * 4);
+            for (int i = 1; i < outputoffset.get(); i++) {
+                ddz[i] = ddz32[i] & 0xFFFFFFFFL;
+            }
+        }
+
+        for (int i = Math.max(1, outputoffset.get()); i < n; i++) {
+            ddz[i] = VarIntUtil.readVarInt64(bb);
+        }
+        values = LongArray.wrap(VarIntUtil.decodeDeltaDeltaZigZag(ddz));
+    }
+
     public static LongValueSegment parseFrom(ByteBuffer bb) throws DecodingException {
         LongValueSegment r = new LongValueSegment();
         r.parse(bb);
@@ -1,14 +1,24 @@
 package org.yamcs.parameterarchive;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
@@ -19,6 +29,7 @@ import org.yamcs.parameterarchive.ParameterArchive.Partition;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.DecodingException;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
 
@@ -38,17 +49,123 @@ public class MultiParameterDataRetrieval {
     public void retrieve(Consumer<ParameterIdValueList> consumer) throws RocksDBException, DecodingException, IOException {
         count = 0;
         try {
+            if (mpvr.parallelism > 1) {
+                retrieveParallel(consumer);
+                return;
+            }
             List<Partition> parts = parchive.getPartitions(getIntervalStart(mpvr.start), getIntervalEnd(mpvr.stop), mpvr.ascending);
             for (Partition p : parts) {
-                retrieveFromPartition(p, consumer);
+                retrieveFromPartition(p, mpvr.start, mpvr.stop, merger -> sendAllData(merger, consumer));
             }
         } catch (ConsumerAbortException e) {
             log.debug("Stoped early due to receiving ConsumerAbortException");
         }
     }
 
-    private void retrieveFromPartition(Partition p, Consumer<ParameterIdValueList> consumer)
+    /**
+     * The segments of one parameter group never span multiple intervals, so the intervals can be decoded independently
+     * of each other. They are decoded on the retrieval pool and the results are passed to the consumer in order on the
+     * calling thread.
+     */
+    private void retrieveParallel(Consumer<ParameterIdValueList> consumer)
             throws RocksDBException, DecodingException, IOException {
+        NavigableMap<Long, Partition> intervals = getIntervalsWithData();
+        Iterator<Map.Entry<Long, Partition>> it = mpvr.ascending ? intervals.entrySet().iterator()
+                : intervals.descendingMap().entrySet().iterator();
+        ForkJoinPool pool = parchive.getRetrievalPool();
+        int maxQueued = mpvr.parallelism + mpvr.prefetch;
+        Deque<Future<List<ParameterIdValueList>>> queue = new ArrayDeque<>();
+        try {
+            while (true) {
+                while (it.hasNext() && queue.size() < maxQueued && running(queue) < mpvr.parallelism) {
+                    Map.Entry<Long, Partition> me = it.next();
+                    queue.add(pool.submit(() -> retrieveInterval(me.getValue(), me.getKey())));
+                }
+                if (queue.isEmpty()) {
+                    break;
+                }
+                sendAllData(getResult(queue.poll()), consumer);
+            }
+        } finally {
+            for (Future<List<ParameterIdValueList>> f : queue) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private List<ParameterIdValueList> retrieveInterval(Partition p, long intervalStart)
+            throws RocksDBException, DecodingException, IOException {
+        List<ParameterIdValueList> l = new ArrayList<>();
+        retrieveFromPartition(p, Math.max(mpvr.start, intervalStart), Math.min(mpvr.stop, getIntervalEnd(intervalStart)),
+                merger -> l.addAll(merger.values.values()));
+        return l;
+    }
+
+    /**
+     * Finds the intervals where the requested parameter groups have data by scanning the keys of their time segments.
+     * 
+     * @return the interval starts mapped to the partition containing them
+     */
+    private NavigableMap<Long, Partition> getIntervalsWithData() throws RocksDBException, IOException {
+        NavigableMap<Long, Partition> intervals = new TreeMap<>();
+        int timeId = parchive.getParameterIdDb().timeParameterId;
+        int[] pgids = IntStream.of(mpvr.parameterGroupIds).distinct().toArray();
+        for (Partition p : parchive.getPartitions(getIntervalStart(mpvr.start), getIntervalEnd(mpvr.stop), true)) {
+            for (int pgid : pgids) {
+                byte[] rangeStart = new SegmentKey(timeId, pgid, getIntervalStart(mpvr.start), (byte) 0).encode();
+                byte[] rangeStop = new SegmentKey(timeId, pgid, mpvr.stop, Byte.MAX_VALUE).encode();
+                try (AscendingRangeIterator ari = new AscendingRangeIterator(parchive.getIterator(p), rangeStart, false,
+                        rangeStop, false)) {
+                    while (ari.isValid()) {
+                        intervals.put(getIntervalStart(SegmentKey.decode(ari.key()).segmentStart), p);
+                        ari.next();
+                    }
+                }
+            }
+        }
+        return intervals;
+    }
+
+    private static int running(Deque<Future<List<ParameterIdValueList>>> queue) {
+        int n = 0;
+        for (Future<List<ParameterIdValueList>> f : queue) {
+            if (!f.isDone()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static List<ParameterIdValueList> getResult(Future<List<ParameterIdValueList>> f)
+            throws RocksDBException, DecodingException, IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the parameter archive retrieval");
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RocksDBException) {
+                throw (RocksDBException) t;
+            } else if (t instanceof DecodingException) {
+                throw (DecodingException) t;
+            } else if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else {
+                throw new IOException(t);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the data from the segments starting in the [segmentStart, segmentStop] range of the partition.
+     * <p>
+     * The sink is called each time all the segments having the same start have been merged.
+     */
+    private void retrieveFromPartition(Partition p, long segmentStart, long segmentStop,
+            Consumer<SegmentMerger> sink) throws RocksDBException, DecodingException, IOException {
         RocksIterator[] its = new RocksIterator[mpvr.parameterIds.length];
         Map<PartitionIterator, String> partition2ParameterName = new HashMap<>();
         PriorityQueue<PartitionIterator> queue = new PriorityQueue<>(new PartitionIteratorComparator(mpvr.ascending));
@@ -59,7 +176,7 @@ public class MultiParameterDataRetrieval {
             its[i] = parchive.getIterator(p);
 
             PartitionIterator pi = new PartitionIterator(its[i], mpvr.parameterIds[i], mpvr.parameterGroupIds[i],
-                    mpvr.start, mpvr.stop, mpvr.ascending, retrieveEng, mpvr.retrieveRawValues.get(i),
+                    segmentStart, segmentStop, mpvr.ascending, retrieveEng, mpvr.retrieveRawValues.get(i),
                     mpvr.retrieveParamStatus);
             if (pi.isValid()) {
                 queue.add(pi);
@@ -72,17 +189,13 @@ public class MultiParameterDataRetrieval {
 
         try {
             while (!queue.isEmpty()) {
-                if ((mpvr.limit > 0) && (count >= mpvr.limit)) {
-                    break;
-                }
-
                 PartitionIterator pit = queue.poll();
                 SegmentKey key = pit.key();
                 if (merger == null) {
                     merger = new SegmentMerger(key, mpvr);
                 } else {
                     if (key.segmentStart != merger.key.segmentStart) {
-                        sendAllData(merger, consumer);
+                        sink.accept(merger);
                         merger = new SegmentMerger(key, mpvr);
                     }
                 }
@@ -143,7 +256,7 @@ public class MultiParameterDataRetrieval {
                 }
             }
             if (merger != null) {
-                sendAllData(merger, consumer);
+                sink.accept(merger);
             }
 
         } finally {
@@ -156,18 +269,22 @@ public class MultiParameterDataRetrieval {
     }
 
     private void sendAllData(SegmentMerger merger, Consumer<ParameterIdValueList> consumer) {
-        Collection<ParameterIdValueList> c = merger.values.values();
+        sendAllData(merger.values.values(), consumer);
+    }
+
+    private void sendAllData(Collection<ParameterIdValueList> c, Consumer<ParameterIdValueList> consumer) {
         if (mpvr.limit < 0) {
-            merger.values.values().forEach(consumer);
+            c.forEach(consumer);
         } else {
-            if (count < mpvr.limit) {
-                for (ParameterIdValueList pivl : c) {
-                    consumer.accept(pivl);
-                    count++;
-                    if (count >= mpvr.limit) {
-                        break;
-                    }
+            for (ParameterIdValueList pivl : c) {
+                if (count >= mpvr.limit) {
+                    break;
                 }
+                consumer.accept(pivl);
+                count++;
+            }
+            if (count >= mpvr.limit) {
+                throw new ConsumerAbortException();
             }
         }
     }
@@ -17,6 +17,10 @@ public class MultipleParameterValueRequest {
     
     
     int limit = -1;
+
+    // parallel retrieval settings; parallelism = 1 means sequential retrieval on the calling thread
+    int parallelism = 1;
+    int prefetch = 4;
     
     public MultipleParameterValueRequest(long start, long stop, String[] parameterNames, int[] parameterIds, int[] parameterGroupIds, 
             BitSet retrieveRawValues, boolean ascending) {
@@ -90,4 +94,40 @@ public class MultipleParameterValueRequest {
     public void setLimit(int limit) {
         this.limit = limit;
     }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of time intervals decoded concurrently.
+     * <p>
+     * With a value greater than 1, the segments of the different intervals are decoded on the retrieval pool of the
+     * parameter archive and then passed to the consumer in order on the calling thread.
+     * 
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism has to be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Number of decoded time intervals which can wait for the consumer in a parallel retrieval. Together with the
+     * parallelism, this limits the memory used by the retrieval.
+     * 
+     * @param prefetch
+     */
+    public void setPrefetch(int prefetch) {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch cannot be negative");
+        }
+        this.prefetch = prefetch;
+    }
 }
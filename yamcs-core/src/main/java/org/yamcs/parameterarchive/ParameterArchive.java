@@ -5,10 +5,13 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
@@ -49,6 +52,15 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TimeBasedPartition;
  * 
  * An segment covers at most maxSegmentSize values for one parameter
  * 
+ * For the numeric parameters, rollup segments (min, max, sum and count per bucket) can be stored at the resolutions
+ * configured with the rollupResolutions option. They are written together with the value segments and used to serve
+ * the long range downsampled requests.
+ * 
+ * For each numeric engineering value segment, a small {@link SegmentStats} record (min, max, count, first and last
+ * time) is stored in a separate key range. The value filtered retrievals (see
+ * {@link #retrieveValues(String, ParameterRequest, ValueFilter, Consumer)}) use it to decode only the segments which
+ * may contain matching values.
+ * 
  * 
  * 
  * @author nm
@@ -81,6 +93,12 @@ public class ParameterArchive extends AbstractYamcsService {
     YConfiguration backFillerConfig;
     boolean realtimeFillerEnabled;
     boolean backFillerEnabled;
+    // rollup levels (index in RollupSegment.RESOLUTIONS) sorted by increasing resolution
+    int[] rollupLevels = new int[0];
+    // used for the parallel retrievals, created when first needed
+    private ForkJoinPool retrievalPool;
+    int retrievalThreads;
+    int retrievalParallelism;
 
     @Override
     public Spec getSpec() {
@@ -89,6 +107,10 @@ public class ParameterArchive extends AbstractYamcsService {
         spec.addOption("realtimeFiller", OptionType.ANY);
         spec.addOption("partitioningSchema", OptionType.STRING).withDefault("YYYY")
                 .withChoices("YYYY/DOY", "YYYY/MM", "YYYY", "none");
+        spec.addOption("rollupResolutions", OptionType.LIST).withElementType(OptionType.INTEGER);
+        spec.addOption("retrievalThreads", OptionType.INTEGER)
+                .withDefault(Runtime.getRuntime().availableProcessors());
+        spec.addOption("retrievalParallelism", OptionType.INTEGER).withDefault(1);
 
         return spec;
     }
@@ -112,6 +134,29 @@ public class ParameterArchive extends AbstractYamcsService {
             log.debug("realtimeFillerConfig: {}", realtimeFillerConfig);
         }
 
+        if (config.containsKey("rollupResolutions")) {
+            List<Integer> l = config.getList("rollupResolutions");
+            rollupLevels = new int[l.size()];
+            for (int i = 0; i < l.size(); i++) {
+                int level = RollupSegment.getLevel(1000L * l.get(i));
+                if (level < 0) {
+                    throw new ConfigurationException("Unsupported rollup resolution " + l.get(i)
+                            + " seconds. Supported values are 1, 10, 60, 600, 3600 and 86400");
+                }
+                rollupLevels[i] = level;
+            }
+            Arrays.sort(rollupLevels);
+        }
+
+        retrievalThreads = config.getInt("retrievalThreads");
+        if (retrievalThreads < 1) {
+            throw new ConfigurationException("retrievalThreads has to be at least 1");
+        }
+        retrievalParallelism = config.getInt("retrievalParallelism");
+        if (retrievalParallelism < 1) {
+            throw new ConfigurationException("retrievalParallelism has to be at least 1");
+        }
+
         String schema = config.getString("partitioningSchema");
         if (!"none".equalsIgnoreCase(schema)) {
             partitioningSchema = TimePartitionSchema.getInstance(schema);
@@ -251,6 +296,12 @@ public class ParameterArchive extends AbstractYamcsService {
                     SegmentKey.TYPE_ENG_VALUE).encode();
             byte[] engValue = vsEncoder.encode(vs);
             writeBatch.put(engKey, engValue);
+            if (vs instanceof ValueSegment) {
+                writeStats(writeBatch, parameterId, pgs, timeSegment, (ValueSegment) vs);
+                if (rollupLevels.length > 0) {
+                    writeRollups(writeBatch, parameterId, pgs, timeSegment, (ValueSegment) vs);
+                }
+            }
 
             if (STORE_RAW_VALUES && consolidatedRawValues != null) {
                 BaseSegment rvs = consolidatedRawValues.get(i);
@@ -285,6 +336,75 @@ public class ParameterArchive extends AbstractYamcsService {
         }
     }
 
+    private void writeStats(WriteBatch writeBatch, int parameterId, PGSegment pgs, SortedTimeSegment timeSegment,
+            ValueSegment vs) throws RocksDBException {
+        if (pgs.getParameterGroupId() > SegmentKey.MAX_ROLLUP_PARAMETER_GROUP_ID) {
+            return;
+        }
+        SegmentStats stats = SegmentStats.build(timeSegment, vs);
+        if (stats == null) { // not numeric
+            return;
+        }
+        byte[] key = new SegmentKey(parameterId, SegmentKey.getStatsGroupId(pgs.getParameterGroupId()),
+                pgs.getSegmentStart(), SegmentKey.TYPE_STATS).encode();
+        writeBatch.put(key, vsEncoder.encode(stats));
+    }
+
+    private void writeRollups(WriteBatch writeBatch, int parameterId, PGSegment pgs, SortedTimeSegment timeSegment,
+            ValueSegment vs) throws RocksDBException {
+        if (pgs.getParameterGroupId() > SegmentKey.MAX_ROLLUP_PARAMETER_GROUP_ID) {
+            return;
+        }
+        for (int level : rollupLevels) {
+            RollupSegment rs = RollupSegment.build(RollupSegment.RESOLUTIONS[level], timeSegment, vs);
+            if (rs == null) { // not numeric
+                return;
+            }
+            byte[] key = new SegmentKey(parameterId, SegmentKey.getRollupGroupId(pgs.getParameterGroupId(), level),
+                    pgs.getSegmentStart(), SegmentKey.TYPE_ROLLUP).encode();
+            writeBatch.put(key, vsEncoder.encode(rs));
+        }
+    }
+
+    /**
+     * Returns the coarsest configured rollup resolution which gives at least sampleCount buckets in the interval.
+     * 
+     * @param duration
+     *            - the duration of the interval in milliseconds
+     * @param sampleCount
+     *            - the number of samples required
+     * @return the resolution in milliseconds or -1 if none of the configured resolutions is fine enough
+     */
+    public long getRollupResolution(long duration, int sampleCount) {
+        for (int i = rollupLevels.length - 1; i >= 0; i--) {
+            long resolution = RollupSegment.RESOLUTIONS[rollupLevels[i]];
+            if (duration / resolution >= sampleCount) {
+                return resolution;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the values of one parameter whose engineering value matches the filter.
+     * <p>
+     * Only the segments whose {@link SegmentStats} show that they may contain matching values are read; the segments
+     * written without stats (by older versions) are always read.
+     * 
+     * @param parameterFqn
+     *            - the fully qualified name of the parameter
+     * @param request
+     *            - the time interval, order and what to retrieve
+     * @param filter
+     *            - the filter to be applied on the engineering values
+     * @param consumer
+     *            - receives the matching values, at most one array per segment
+     */
+    public void retrieveValues(String parameterFqn, ParameterRequest request, ValueFilter filter,
+            Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
+        new SingleParameterArchiveRetrieval(this, parameterFqn, request, filter).retrieve(consumer);
+    }
+
     /**
      * get partition for segment, creating it if it doesn't exist
      * 
@@ -366,6 +486,11 @@ public class ParameterArchive extends AbstractYamcsService {
             realtimeFiller.stopAsync();
             realtimeFiller.awaitTerminated();
         }
+        synchronized (this) {
+            if (retrievalPool != null) {
+                retrievalPool.shutdownNow();
+            }
+        }
         notifyStopped();
     }
 
@@ -406,6 +531,22 @@ public class ParameterArchive extends AbstractYamcsService {
         return tablespace.getRdb(p.partitionDir, false).newIterator();
     }
 
+    /**
+     * 
+     * @return the segment stored under the given key in the partition or null if there is no such segment
+     */
+    BaseSegment getSegment(Partition p, SegmentKey key) throws RocksDBException, IOException {
+        byte[] v = tablespace.getRdb(p.partitionDir, false).get(key.encode());
+        if (v == null) {
+            return null;
+        }
+        try {
+            return vsEncoder.decode(v, key.segmentStart);
+        } catch (DecodingException e) {
+            throw new DatabaseCorruptionException(e);
+        }
+    }
+
     public SortedTimeSegment getTimeSegment(Partition p, long segmentStart, int parameterGroupId)
             throws RocksDBException, IOException {
         byte[] timeKey = new SegmentKey(parameterIdMap.timeParameterId, parameterGroupId, segmentStart,
@@ -421,6 +562,33 @@ public class ParameterArchive extends AbstractYamcsService {
         }
     }
 
+    /**
+     * 
+     * @return the number of time intervals decoded concurrently by the retrievals not specifying it
+     */
+    public int getRetrievalParallelism() {
+        return retrievalParallelism;
+    }
+
+    /**
+     * 
+     * @return the maximum parallelism of a retrieval; this is the size of the retrieval pool
+     */
+    public int getRetrievalThreads() {
+        return retrievalThreads;
+    }
+
+    /**
+     * 
+     * @return the pool used to decode the segments in parallel for the retrievals requesting it
+     */
+    synchronized ForkJoinPool getRetrievalPool() {
+        if (retrievalPool == null) {
+            retrievalPool = new ForkJoinPool(retrievalThreads);
+        }
+        return retrievalPool;
+    }
+
     Partition getPartitions(long instant) {
         synchronized (partitions) {
             return partitions.getFit(instant);
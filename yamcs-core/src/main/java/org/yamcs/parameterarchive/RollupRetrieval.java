@@ -0,0 +1,216 @@
+package org.yamcs.parameterarchive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.utils.DatabaseCorruptionException;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
+
+/**
+ * Retrieves the rollup buckets of one parameter at a given resolution.
+ * <p>
+ * The buckets found in the different segments and parameter groups are merged such that each bucket start appears
+ * only once in the result.
+ * <p>
+ * The rollups are only written for the data archived after they have been enabled. The retrieval checks that each
+ * value segment in the interval has its rollup segment; if not, {@link #isComplete()} returns false and the buckets
+ * do not represent all the values of the interval.
+ *
+ * @author nm
+ *
+ */
+public class RollupRetrieval {
+    private static final Logger log = LoggerFactory.getLogger(RollupRetrieval.class);
+    final ParameterArchive parchive;
+    final String parameterFqn;
+    final long resolution;
+    final int level;
+    final long start, stop;
+    final SegmentEncoderDecoder segmentEncoder = new SegmentEncoderDecoder();
+    boolean complete = true;
+
+    /**
+     *
+     * @param parchive
+     * @param parameterFqn
+     * @param resolution
+     *            - one of the {@link RollupSegment#RESOLUTIONS}
+     * @param start
+     * @param stop
+     */
+    public RollupRetrieval(ParameterArchive parchive, String parameterFqn, long resolution, long start, long stop) {
+        this.parchive = parchive;
+        this.parameterFqn = parameterFqn;
+        this.resolution = resolution;
+        this.level = RollupSegment.getLevel(resolution);
+        if (level < 0) {
+            throw new IllegalArgumentException("Unsupported rollup resolution " + resolution);
+        }
+        this.start = start;
+        this.stop = stop;
+    }
+
+    /**
+     *
+     * @return the buckets overlapping with the [start, stop) interval sorted by start time
+     */
+    public List<Bucket> retrieve() throws RocksDBException, IOException {
+        TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        ParameterId[] pids = parchive.getParameterIdDb().get(parameterFqn);
+        if (pids == null) {
+            log.debug("No parameter id found in the parameter archive for {}", parameterFqn);
+            return new ArrayList<>();
+        }
+        List<Partition> parts = parchive.getPartitions(ParameterArchive.getIntervalStart(start),
+                ParameterArchive.getIntervalEnd(stop), true);
+        for (ParameterId pid : pids) {
+            int[] pgids = parchive.getParameterGroupIdDb().getAllGroups(pid.pid);
+            for (Partition p : parts) {
+                for (int pgid : pgids) {
+                    Set<Long> rollupStarts = new HashSet<>();
+                    if (pgid <= SegmentKey.MAX_ROLLUP_PARAMETER_GROUP_ID) {
+                        retrieveFromPartition(p, pid.pid, SegmentKey.getRollupGroupId(pgid, level), buckets,
+                                rollupStarts);
+                    }
+                    if (complete) {
+                        complete = checkCoverage(p, pid.pid, pgid, rollupStarts);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * 
+     * @return false if some values in the interval are not covered by the rollups returned by {@link #retrieve()}
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * checks that all the value segments of the parameter group in the partition have a rollup segment
+     */
+    private boolean checkCoverage(Partition p, int pid, int pgid, Set<Long> rollupStarts)
+            throws RocksDBException, IOException {
+        byte[] rangeStart = new SegmentKey(pid, pgid, ParameterArchive.getIntervalStart(start), (byte) 0).encode();
+        byte[] rangeStop = new SegmentKey(pid, pgid, stop, Byte.MAX_VALUE).encode();
+        RocksIterator it = parchive.getIterator(p);
+        try (AscendingRangeIterator ari = new AscendingRangeIterator(it, rangeStart, false, rangeStop, false)) {
+            while (ari.isValid()) {
+                SegmentKey key = SegmentKey.decode(ari.key());
+                if (key.type == SegmentKey.TYPE_ENG_VALUE && !rollupStarts.contains(key.segmentStart)) {
+                    log.debug("No rollup found for {} segment {}", parameterFqn, key.segmentStart);
+                    return false;
+                }
+                ari.next();
+            }
+        }
+        return true;
+    }
+
+    private void retrieveFromPartition(Partition p, int pid, int rollupGroupId, Map<Long, Bucket> buckets,
+            Set<Long> rollupStarts) throws RocksDBException, IOException {
+        byte[] rangeStart = new SegmentKey(pid, rollupGroupId, ParameterArchive.getIntervalStart(start), (byte) 0)
+                .encode();
+        byte[] rangeStop = new SegmentKey(pid, rollupGroupId, stop, Byte.MAX_VALUE).encode();
+        RocksIterator it = parchive.getIterator(p);
+        try (AscendingRangeIterator ari = new AscendingRangeIterator(it, rangeStart, false, rangeStop, false)) {
+            while (ari.isValid()) {
+                SegmentKey key = SegmentKey.decode(ari.key());
+                rollupStarts.add(key.segmentStart);
+                RollupSegment rs;
+                try {
+                    rs = (RollupSegment) segmentEncoder.decode(ari.value(), key.segmentStart);
+                } catch (DecodingException e) {
+                    throw new DatabaseCorruptionException(e);
+                }
+                for (int i = 0; i < rs.size(); i++) {
+                    long t = rs.getBucketStart(i);
+                    if (t + resolution <= start || t >= stop) {
+                        continue;
+                    }
+                    Bucket b = buckets.get(t);
+                    if (b == null) {
+                        buckets.put(t, new Bucket(t, rs.getMin(i), rs.getMax(i), rs.getSum(i), rs.getCount(i)));
+                    } else {
+                        b.merge(rs.getMin(i), rs.getMax(i), rs.getSum(i), rs.getCount(i));
+                    }
+                }
+                ari.next();
+            }
+        }
+    }
+
+    /**
+     * Aggregated values of a parameter in the interval [start, start + resolution)
+     */
+    public static class Bucket {
+        final long start;
+        double min;
+        double max;
+        double sum;
+        int count;
+
+        Bucket(long start, double min, double max, double sum, int count) {
+            this.start = start;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+            this.count = count;
+        }
+
+        void merge(double min, double max, double sum, int count) {
+            if (min < this.min) {
+                this.min = min;
+            }
+            if (max > this.max) {
+                this.max = max;
+            }
+            this.sum += sum;
+            this.count += count;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getAverage() {
+            return sum / count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Bucket [start=" + start + ", min=" + min + ", max=" + max + ", sum=" + sum + ", count=" + count
+                    + "]";
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+
+import org.yamcs.parameter.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.DoubleArray;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.LongArray;
+import org.yamcs.utils.UnsignedLong;
+import org.yamcs.utils.VarIntUtil;
+
+/**
+ * Downsampled view of a numeric value segment: the values are aggregated in buckets of fixed duration (the resolution)
+ * aligned to multiples of the resolution and for each bucket the min, max, sum and count are stored.
+ * <p>
+ * One rollup segment is written for each resolution next to each engineering value segment of a numeric parameter.
+ * Since the value segments do not start on bucket boundaries, the first and the last bucket of a rollup segment may be
+ * incomplete and have to be merged with the buckets from the neighbouring segments.
+ *
+ * @author nm
+ *
+ */
+public class RollupSegment extends BaseSegment {
+    static final byte SUBFORMAT_ID_RAW = 0;
+
+    /**
+     * The supported resolutions in milliseconds. The index in this array is the rollup level which is encoded in the
+     * {@link SegmentKey} so the array can only be extended at the end, up to 7 elements (the level 7 is used for the
+     * {@link SegmentStats}).
+     */
+    public static final long[] RESOLUTIONS = { 1000, 10_000, 60_000, 600_000, 3600_000, 86400_000 };
+
+    LongArray bucketStarts;
+    DoubleArray min;
+    DoubleArray max;
+    DoubleArray sum;
+    IntArray count;
+
+    RollupSegment() {
+        super(FORMAT_ID_RollupSegment);
+        bucketStarts = new LongArray();
+        min = new DoubleArray();
+        max = new DoubleArray();
+        sum = new DoubleArray();
+        count = new IntArray();
+    }
+
+    /**
+     * Builds the rollup of a value segment
+     *
+     * @param resolution
+     *            - bucket duration in milliseconds
+     * @param timeSegment
+     *            - the timestamps of the values
+     * @param valueSegment
+     *            - the values
+     * @return the rollup segment or null if the values are not numeric
+     */
+    static RollupSegment build(long resolution, SortedTimeSegment timeSegment, ValueSegment valueSegment) {
+        int n = valueSegment.size();
+        if (n == 0 || !isNumeric(valueSegment.getValue(0).getType())) {
+            return null;
+        }
+        RollupSegment rs = new RollupSegment();
+        int k = -1;
+        long bucketEnd = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            long t = timeSegment.getTime(i);
+            double v = toDouble(valueSegment.getValue(i));
+            if (t >= bucketEnd) {
+                long bucketStart = t - Math.floorMod(t, resolution);
+                bucketEnd = bucketStart + resolution;
+                rs.bucketStarts.add(bucketStart);
+                rs.min.add(v);
+                rs.max.add(v);
+                rs.sum.add(v);
+                rs.count.add(1);
+                k++;
+            } else {
+                if (v < rs.min.get(k)) {
+                    rs.min.set(k, v);
+                }
+                if (v > rs.max.get(k)) {
+                    rs.max.set(k, v);
+                }
+                rs.sum.set(k, rs.sum.get(k) + v);
+                rs.count.set(k, rs.count.get(k) + 1);
+            }
+        }
+        return rs;
+    }
+
+    static boolean isNumeric(Type type) {
+        switch (type) {
+        case SINT32:
+        case UINT32:
+        case SINT64:
+        case UINT64:
+        case FLOAT:
+        case DOUBLE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    static double toDouble(Value v) {
+        switch (v.getType()) {
+        case SINT32:
+            return v.getSint32Value();
+        case UINT32:
+            return v.getUint32Value() & 0xFFFFFFFFL;
+        case SINT64:
+            return v.getSint64Value();
+        case UINT64:
+            return UnsignedLong.toDouble(v.getUint64Value());
+        case FLOAT:
+            return v.getFloatValue();
+        case DOUBLE:
+            return v.getDoubleValue();
+        default:
+            throw new IllegalArgumentException("Not a numeric value: " + v.getType());
+        }
+    }
+
+    @Override
+    public void writeTo(ByteBuffer bb) {
+        bb.put(SUBFORMAT_ID_RAW);
+        int n = bucketStarts.size();
+        VarIntUtil.writeVarInt32(bb, n);
+        if (n == 0) {
+            return;
+        }
+        bb.putLong(bucketStarts.get(0));
+        for (int i = 1; i < n; i++) {
+            VarIntUtil.writeVarInt64(bb, bucketStarts.get(i) - bucketStarts.get(i - 1));
+        }
+        for (int i = 0; i < n; i++) {
+            VarIntUtil.writeVarInt32(bb, count.get(i));
+            bb.putDouble(min.get(i));
+            bb.putDouble(max.get(i));
+            bb.putDouble(sum.get(i));
+        }
+    }
+
+    private void parse(ByteBuffer bb) throws DecodingException {
+        byte fid = bb.get();
+        if (fid != SUBFORMAT_ID_RAW) {
+            throw new DecodingException("Uknown sub format id: " + fid);
+        }
+        int n = VarIntUtil.readVarInt32(bb);
+        if (n == 0) {
+            return;
+        }
+        long t = bb.getLong();
+        bucketStarts.add(t);
+        for (int i = 1; i < n; i++) {
+            t += VarIntUtil.readVarInt64(bb);
+            bucketStarts.add(t);
+        }
+        for (int i = 0; i < n; i++) {
+            count.add(VarIntUtil.readVarInt32(bb));
+            min.add(bb.getDouble());
+            max.add(bb.getDouble());
+            sum.add(bb.getDouble());
+        }
+    }
+
+    public static RollupSegment parseFrom(ByteBuffer bb) throws DecodingException {
+        RollupSegment r = new RollupSegment();
+        r.parse(bb);
+        return r;
+    }
+
+    @Override
+    public int getMaxSerializedSize() {
+        return 14 + 39 * bucketStarts.size();
+    }
+
+    @Override
+    public int size() {
+        return bucketStarts.size();
+    }
+
+    public long getBucketStart(int idx) {
+        return bucketStarts.get(idx);
+    }
+
+    public double getMin(int idx) {
+        return min.get(idx);
+    }
+
+    public double getMax(int idx) {
+        return max.get(idx);
+    }
+
+    public double getSum(int idx) {
+        return sum.get(idx);
+    }
+
+    public int getCount(int idx) {
+        return count.get(idx);
+    }
+
+    /**
+     *
+     * @param resolution
+     * @return the rollup level corresponding to the resolution or -1 if the resolution is not supported
+     */
+    public static int getLevel(long resolution) {
+        for (int i = 0; i < RESOLUTIONS.length; i++) {
+            if (RESOLUTIONS[i] == resolution) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
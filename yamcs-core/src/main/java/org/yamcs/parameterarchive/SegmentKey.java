@@ -18,7 +18,21 @@ public class SegmentKey {
     public static final byte TYPE_ENG_VALUE = 0;
     public static final byte TYPE_RAW_VALUE = 1;
     public static final byte TYPE_PARAMETER_STATUS = 2;
-    
+    public static final byte TYPE_ROLLUP = 3;
+    public static final byte TYPE_STATS = 4;
+
+    /**
+     * The rollup segments are stored under a parameter group id having the highest bit set and the rollup level in the
+     * next three bits. This way they are sorted after the value segments of the parameter and grouped by level so one
+     * level can be read without going through the raw data or through the other levels.
+     */
+    static final int ROLLUP_GROUP_FLAG = 0x80000000;
+    static final int MAX_ROLLUP_PARAMETER_GROUP_ID = 0x0FFFFFFF;
+    /**
+     * The last rollup level is not used for rollups but for the {@link SegmentStats} of the value segments
+     */
+    static final int STATS_LEVEL = 7;
+
     public SegmentKey(int parameterId, int parameterGroupId, long segmentStart, byte type) {
         this.parameterId = parameterId;
         this.parameterGroupId = parameterGroupId;
@@ -27,6 +41,29 @@ public class SegmentKey {
     }
     
 
+    /**
+     * 
+     * @param parameterGroupId
+     * @param level
+     *            - rollup level (index in {@link RollupSegment#RESOLUTIONS})
+     * @return the parameter group id under which the rollup segments of the given level are stored
+     */
+    static int getRollupGroupId(int parameterGroupId, int level) {
+        if (parameterGroupId > MAX_ROLLUP_PARAMETER_GROUP_ID) {
+            throw new IllegalArgumentException("Parameter group id too large for storing rollups: " + parameterGroupId);
+        }
+        return ROLLUP_GROUP_FLAG | (level << 28) | parameterGroupId;
+    }
+
+    /**
+     * 
+     * @param parameterGroupId
+     * @return the parameter group id under which the {@link SegmentStats} of the value segments are stored
+     */
+    static int getStatsGroupId(int parameterGroupId) {
+        return getRollupGroupId(parameterGroupId, STATS_LEVEL);
+    }
+
     public byte[] encode() {
         ByteBuffer bb = ByteBuffer.allocate(17);
         bb.putInt(parameterId);
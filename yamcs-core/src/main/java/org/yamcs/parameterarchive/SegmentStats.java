@@ -0,0 +1,130 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.VarIntUtil;
+
+/**
+ * Summary of a numeric engineering value segment: the minimum and maximum value, the number of values and the time of
+ * the first and last value.
+ * <p>
+ * One such record is written next to each numeric value segment, under its own parameter group id (see
+ * {@link SegmentKey#getStatsGroupId(int)}), such that the value filtered retrievals can find the candidate segments by
+ * reading only the (small) stats records.
+ * <p>
+ * The NaN values are not taken into account for the min and max; if all the values are NaN, the min and max are NaN.
+ *
+ * @author nm
+ *
+ */
+public class SegmentStats extends BaseSegment {
+    static final byte SUBFORMAT_ID_RAW = 0;
+
+    double min = Double.NaN;
+    double max = Double.NaN;
+    int count;
+    long firstTime;
+    long lastTime;
+
+    SegmentStats() {
+        super(FORMAT_ID_SegmentStats);
+    }
+
+    /**
+     * Builds the stats of a value segment
+     *
+     * @param timeSegment
+     *            - the timestamps of the values
+     * @param valueSegment
+     *            - the values
+     * @return the stats or null if the segment is empty or the values are not numeric
+     */
+    static SegmentStats build(SortedTimeSegment timeSegment, ValueSegment valueSegment) {
+        int n = valueSegment.size();
+        if (n == 0 || !RollupSegment.isNumeric(valueSegment.getValue(0).getType())) {
+            return null;
+        }
+        SegmentStats stats = new SegmentStats();
+        stats.count = n;
+        stats.firstTime = timeSegment.getTime(0);
+        stats.lastTime = timeSegment.getTime(n - 1);
+        for (int i = 0; i < n; i++) {
+            double v = RollupSegment.toDouble(valueSegment.getValue(i));
+            if (Double.isNaN(v)) {
+                continue;
+            }
+            if (Double.isNaN(stats.min) || v < stats.min) {
+                stats.min = v;
+            }
+            if (Double.isNaN(stats.max) || v > stats.max) {
+                stats.max = v;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer bb) {
+        bb.put(SUBFORMAT_ID_RAW);
+        VarIntUtil.writeVarInt32(bb, count);
+        bb.putLong(firstTime);
+        VarIntUtil.writeVarInt64(bb, lastTime - firstTime);
+        bb.putDouble(min);
+        bb.putDouble(max);
+    }
+
+    private void parse(ByteBuffer bb) throws DecodingException {
+        byte fid = bb.get();
+        if (fid != SUBFORMAT_ID_RAW) {
+            throw new DecodingException("Uknown sub format id: " + fid);
+        }
+        count = VarIntUtil.readVarInt32(bb);
+        firstTime = bb.getLong();
+        lastTime = firstTime + VarIntUtil.readVarInt64(bb);
+        min = bb.getDouble();
+        max = bb.getDouble();
+    }
+
+    public static SegmentStats parseFrom(ByteBuffer bb) throws DecodingException {
+        SegmentStats r = new SegmentStats();
+        r.parse(bb);
+        return r;
+    }
+
+    @Override
+    public int getMaxSerializedSize() {
+        return 40;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentStats [min=" + min + ", max=" + max + ", count=" + count + ", firstTime=" + firstTime
+                + ", lastTime=" + lastTime + "]";
+    }
+}
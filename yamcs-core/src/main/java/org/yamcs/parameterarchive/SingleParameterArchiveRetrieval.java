@@ -1,8 +1,12 @@
 package org.yamcs.parameterarchive;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.function.Consumer;
 
@@ -15,6 +19,9 @@ import org.yamcs.parameterarchive.MultiParameterDataRetrieval.PartitionIteratorC
 import org.yamcs.parameterarchive.ParameterArchive.Partition;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.DatabaseCorruptionException;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.IntArray;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
 
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
@@ -26,10 +33,23 @@ public class SingleParameterArchiveRetrieval {
     final ParameterId[] pids;
     
     final int[] parameterGroupIds; 
+    final SegmentEncoderDecoder segmentEncoder = new SegmentEncoderDecoder();
+    // if not null, only the values matching it are retrieved
+    final ValueFilter filter;
     
     public SingleParameterArchiveRetrieval(ParameterArchive parchive, String parameterFqn, ParameterRequest spvr) {
+        this(parchive, parameterFqn, spvr, null);
+    }
+
+    /**
+     * Retrieves only the values whose engineering value matches the filter. The {@link SegmentStats} are used to skip
+     * the segments which cannot contain matching values.
+     */
+    public SingleParameterArchiveRetrieval(ParameterArchive parchive, String parameterFqn, ParameterRequest spvr,
+            ValueFilter filter) {
         this.spvr = spvr;
         this.parchive = parchive;
+        this.filter = filter;
 
         pids = parchive.getParameterIdDb().get(parameterFqn);
         if (pids == null) {
@@ -45,6 +65,7 @@ public class SingleParameterArchiveRetrieval {
         ParameterId pid = parchive.getParameterIdDb().getParameterId(parameterId);
         this.pids = new ParameterId[]{pid};
         this.parameterGroupIds = null;
+        this.filter = null;
     }
     
     SingleParameterArchiveRetrieval(ParameterArchive parchive, int parameterId, int[] parameterGroupIds, ParameterRequest spvr) {
@@ -53,7 +74,7 @@ public class SingleParameterArchiveRetrieval {
         ParameterId pid1 = parchive.getParameterIdDb().getParameterId(parameterId);
         this.pids = new ParameterId[]{pid1};
         this.parameterGroupIds = parameterGroupIds;
-      
+        this.filter = null;
     }
     boolean hasData() {
         return pids != null;
@@ -85,7 +106,11 @@ public class SingleParameterArchiveRetrieval {
 
         List<Partition> parts = parchive.getPartitions(getIntervalStart(spvr.start), getIntervalEnd(spvr.stop),
                 spvr.ascending);
-        if (pgids.length == 1) {
+        if (filter != null) {
+            for (Partition p : parts) {
+                retrieveFilteredValuesFromPartition(pid, pgids, p, consumer);
+            }
+        } else if (pgids.length == 1) {
             for (Partition p : parts) {
                 retrieveValuesFromPartitionSingleGroup(pid, pgids[0], p, consumer);
             }
@@ -116,7 +141,7 @@ public class SingleParameterArchiveRetrieval {
                     throw new DatabaseCorruptionException(msg);
                 }
 
-                retriveValuesFromSegment(pid, timeSegment, pit, spvr, consumer);
+                retriveValuesFromSegment(pid, timeSegment, pit, consumer);
                 pit.next();
             }
         } finally {
@@ -157,7 +182,7 @@ public class SingleParameterArchiveRetrieval {
                     log.error(msg);
                     throw new DatabaseCorruptionException(msg);
                 }
-                retriveValuesFromSegment(pid, timeSegment, pit, spvr, merger);
+                retriveValuesFromSegment(pid, timeSegment, pit, merger);
                 pit.next();
                 if (pit.isValid()) {
                     queue.add(pit);
@@ -171,25 +196,123 @@ public class SingleParameterArchiveRetrieval {
         }
     }
 
+    // value filtered retrieval: the stats are used to select the candidate segments from all the groups, then only
+    // the candidates are read, in order, and their values filtered
+    private void retrieveFilteredValuesFromPartition(ParameterId pid, int[] parameterGroupIds, Partition p,
+            Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
+        List<SegmentKey> candidates = new ArrayList<>();
+        for (int pgid : parameterGroupIds) {
+            collectCandidates(pid, pgid, p, candidates);
+        }
+        Comparator<SegmentKey> cmp = Comparator.comparingLong(k -> k.segmentStart);
+        candidates.sort(spvr.ascending ? cmp : cmp.reversed());
+
+        Consumer<ParameterValueArray> c = consumer;
+        SegmentMerger merger = null;
+        if (parameterGroupIds.length > 1) {
+            merger = new SegmentMerger(pid, spvr, consumer);
+            c = merger;
+        }
+        for (SegmentKey key : candidates) {
+            int pgid = key.parameterGroupId;
+            SortedTimeSegment timeSegment = parchive.getTimeSegment(p, key.segmentStart, pgid);
+            if (timeSegment == null) {
+                String msg = "Cannot find a time segment for parameterGroupId=" + pgid + " segmentStart = "
+                        + key.segmentStart + " despite having a value segment for parameterId: " + pid.pid;
+                log.error(msg);
+                throw new DatabaseCorruptionException(msg);
+            }
+            // the engineering values are always read, they are needed for filtering
+            ValueSegment engValueSegment = (ValueSegment) parchive.getSegment(p,
+                    new SegmentKey(pid.pid, pgid, key.segmentStart, SegmentKey.TYPE_ENG_VALUE));
+            ValueSegment rawValueSegment = spvr.isRetrieveRawValues() ? (ValueSegment) parchive.getSegment(p,
+                    new SegmentKey(pid.pid, pgid, key.segmentStart, SegmentKey.TYPE_RAW_VALUE)) : null;
+            ParameterStatusSegment parameterStatusSegment = spvr.isRetrieveParameterStatus()
+                    ? (ParameterStatusSegment) parchive.getSegment(p,
+                            new SegmentKey(pid.pid, pgid, key.segmentStart, SegmentKey.TYPE_PARAMETER_STATUS))
+                    : null;
+            retriveValuesFromSegment(pid, timeSegment, engValueSegment, rawValueSegment, parameterStatusSegment, c);
+        }
+        if (merger != null) {
+            merger.flush();
+        }
+    }
+
+    /**
+     * Adds to the list the keys (with the type of the time segment) of the segments of the parameter in the group which
+     * overlap with the requested interval and whose stats show they may contain values matching the filter.
+     * <p>
+     * The time segments of the group give all the segments of the parameter; those without stats (written before the
+     * stats were introduced) are candidates as well. There is no candidate if the engineering type is not numeric since
+     * the filter does not match the non numeric values.
+     */
+    private void collectCandidates(ParameterId pid, int parameterGroupId, Partition p, List<SegmentKey> candidates)
+            throws RocksDBException, IOException {
+        if (!RollupSegment.isNumeric(pid.engType)) {
+            return;
+        }
+        long rangeStart = ParameterArchive.getIntervalStart(spvr.start);
+        Map<Long, SegmentStats> statsMap = new HashMap<>();
+        if (parameterGroupId <= SegmentKey.MAX_ROLLUP_PARAMETER_GROUP_ID) {
+            int statsGroupId = SegmentKey.getStatsGroupId(parameterGroupId);
+            try (AscendingRangeIterator it = new AscendingRangeIterator(parchive.getIterator(p),
+                    new SegmentKey(pid.pid, statsGroupId, rangeStart, (byte) 0).encode(), false,
+                    new SegmentKey(pid.pid, statsGroupId, spvr.stop, Byte.MAX_VALUE).encode(), false)) {
+                while (it.isValid()) {
+                    SegmentKey key = SegmentKey.decode(it.key());
+                    try {
+                        statsMap.put(key.segmentStart, (SegmentStats) segmentEncoder.decode(it.value(),
+                                key.segmentStart));
+                    } catch (DecodingException e) {
+                        throw new DatabaseCorruptionException(e);
+                    }
+                    it.next();
+                }
+            }
+        }
+
+        int timeId = parchive.getParameterIdDb().timeParameterId;
+        try (AscendingRangeIterator it = new AscendingRangeIterator(parchive.getIterator(p),
+                new SegmentKey(timeId, parameterGroupId, rangeStart, (byte) 0).encode(), false,
+                new SegmentKey(timeId, parameterGroupId, spvr.stop, Byte.MAX_VALUE).encode(), false)) {
+            while (it.isValid()) {
+                SegmentKey key = SegmentKey.decode(it.key());
+                SegmentStats stats = statsMap.get(key.segmentStart);
+                if (stats == null || (filter.mayMatch(stats) && stats.lastTime >= spvr.start
+                        && stats.firstTime <= spvr.stop)) {
+                    candidates.add(key);
+                }
+                it.next();
+            }
+        }
+    }
+
     private void retriveValuesFromSegment(ParameterId pid, SortedTimeSegment timeSegment, PartitionIterator pit,
-            ParameterRequest pvr, Consumer<ParameterValueArray> consumer) {
-        ValueSegment engValueSegment = pit.engValue();
-        ValueSegment rawValueSegment = pit.rawValue();
-        ParameterStatusSegment parameterStatusSegment = pit.parameterStatus();
+            Consumer<ParameterValueArray> consumer) {
+        retriveValuesFromSegment(pid, timeSegment, pit.engValue(), pit.rawValue(), pit.parameterStatus(), consumer);
+    }
 
+    private void retriveValuesFromSegment(ParameterId pid, SortedTimeSegment timeSegment,
+            ValueSegment engValueSegment, ValueSegment rawValueSegment, ParameterStatusSegment parameterStatusSegment,
+            Consumer<ParameterValueArray> consumer) {
+        ParameterRequest pvr = spvr;
+        boolean sendEng = true;
         // if raw type is not null it means that rawValues do exist-> if rawValueSegment is null means they are equal with the
         // engValues
         if ((rawValueSegment == null) && (pid.getRawType()!=null)) {
             rawValueSegment = engValueSegment;
             
             if(!spvr.isRetrieveEngineeringValues()) {
-                engValueSegment = null;
+                sendEng = false;
             }
         }
 
         if ((engValueSegment == null) && (rawValueSegment == null) && (parameterStatusSegment == null)) {
             return;
         }
+        if (!sendEng && filter == null) {
+            engValueSegment = null;
+        }
 
         int posStart, posStop;
         if (pvr.ascending) {
@@ -250,9 +373,57 @@ public class SingleParameterArchiveRetrieval {
             paramStatus = parameterStatusSegment.getRangeArray(posStart, posStop, pvr.ascending);
         }
         ParameterValueArray pva = new ParameterValueArray(timestamps, engValues, rawValues, paramStatus);
+        if (filter != null) {
+            pva = filter(pva, sendEng);
+            if (pva == null) {
+                return;
+            }
+        }
         consumer.accept(pva);
     }
 
+    // keeps only the values whose engineering value matches the filter
+    private ParameterValueArray filter(ParameterValueArray pva, boolean sendEng) {
+        if (pva.engValues == null) {
+            return null;
+        }
+        IntArray idx = new IntArray();
+        for (int i = 0; i < pva.size(); i++) {
+            if (filter.matches(pva.engValues.getValue(i))) {
+                idx.add(i);
+            }
+        }
+        int n = idx.size();
+        if (n == 0) {
+            return null;
+        }
+        if (n == pva.size()) {
+            return sendEng ? pva : new ParameterValueArray(pva.timestamps, null, pva.rawValues, pva.paramStatus);
+        }
+        long[] timestamps = new long[n];
+        for (int k = 0; k < n; k++) {
+            timestamps[k] = pva.timestamps[idx.get(k)];
+        }
+        ValueArray engValues = sendEng ? select(pva.engValues, idx) : null;
+        ValueArray rawValues = pva.rawValues == null ? null : select(pva.rawValues, idx);
+        ParameterStatus[] paramStatus = null;
+        if (pva.paramStatus != null) {
+            paramStatus = new ParameterStatus[n];
+            for (int k = 0; k < n; k++) {
+                paramStatus[k] = pva.paramStatus[idx.get(k)];
+            }
+        }
+        return new ParameterValueArray(timestamps, engValues, rawValues, paramStatus);
+    }
+
+    private static ValueArray select(ValueArray va, IntArray idx) {
+        ValueArray r = new ValueArray(va.getType(), idx.size());
+        for (int k = 0; k < idx.size(); k++) {
+            r.setValue(k, va.getValue(idx.get(k)));
+        }
+        return r;
+    }
+
     /**
      * Merges ParameterValueArray for same parameter and sends the result to the final consumer
      * 
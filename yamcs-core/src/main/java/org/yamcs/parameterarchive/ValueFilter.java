@@ -0,0 +1,97 @@
+package org.yamcs.parameterarchive;
+
+import org.yamcs.parameter.Value;
+
+/**
+ * Filter on the numeric engineering values used for the value filtered retrievals: a value matches if it is in the
+ * interval between min and max, each of the limits being inclusive or exclusive.
+ * <p>
+ * The non numeric values and the NaN never match.
+ *
+ * @author nm
+ *
+ */
+public class ValueFilter {
+    final double min;
+    final boolean minInclusive;
+    final double max;
+    final boolean maxInclusive;
+
+    /**
+     *
+     * @param min
+     *            - the lower limit, {@link Double#NEGATIVE_INFINITY} for no lower limit
+     * @param minInclusive
+     *            - if true, the values equal to min match
+     * @param max
+     *            - the upper limit, {@link Double#POSITIVE_INFINITY} for no upper limit
+     * @param maxInclusive
+     *            - if true, the values equal to max match
+     */
+    public ValueFilter(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            throw new IllegalArgumentException("The limits cannot be NaN");
+        }
+        this.min = min;
+        this.minInclusive = minInclusive;
+        this.max = max;
+        this.maxInclusive = maxInclusive;
+    }
+
+    /**
+     *
+     * @return a filter matching the values strictly greater than x
+     */
+    public static ValueFilter greaterThan(double x) {
+        return new ValueFilter(x, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     *
+     * @return a filter matching the values strictly smaller than x
+     */
+    public static ValueFilter lessThan(double x) {
+        return new ValueFilter(Double.NEGATIVE_INFINITY, true, x, false);
+    }
+
+    public boolean matches(double v) {
+        return (minInclusive ? v >= min : v > min) && (maxInclusive ? v <= max : v < max);
+    }
+
+    public boolean matches(Value v) {
+        return RollupSegment.isNumeric(v.getType()) && matches(RollupSegment.toDouble(v));
+    }
+
+    /**
+     *
+     * @return false if none of the values of the segment summarised by the stats can match
+     */
+    public boolean mayMatch(SegmentStats stats) {
+        if (Double.isNaN(stats.min)) {
+            return false;
+        }
+        return (minInclusive ? stats.max >= min : stats.max > min)
+                && (maxInclusive ? stats.min <= max : stats.min < max);
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public boolean isMinInclusive() {
+        return minInclusive;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public boolean isMaxInclusive() {
+        return maxInclusive;
+    }
+
+    @Override
+    public String toString() {
+        return (minInclusive ? "[" : "(") + min + ", " + max + (maxInclusive ? "]" : ")");
+    }
+}
@@ -4,8 +4,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * A user contains identifying information and a convenient set of methods to perform access control.
@@ -19,6 +27,11 @@ import java.util.Set;
  * 
  * Additionally a special attribute <tt>superuser</tt> may have been granted to a user. Users with this attribute are
  * not subjected to privilege checking (i.e. they are allowed everything, even without being assigned privileges).
+ * <p>
+ * The object privileges are compiled when they are added to the user: the literal objects and the prefix patterns
+ * (e.g. <tt>/YSS/SIMULATOR/.*</tt>) are looked up in hash sets and only the other patterns are matched as regular
+ * expressions. The result of the object privilege checks is kept in a bounded cache which is cleared when the privileges
+ * change.
  */
 public class User {
 
@@ -35,6 +48,11 @@ public class User {
     private Set<SystemPrivilege> systemPrivileges = new HashSet<>();
     private Map<ObjectPrivilegeType, Set<ObjectPrivilege>> objectPrivileges = new HashMap<>();
 
+    static final int MAX_CACHED_DECISIONS = 10000;
+    private final Map<ObjectPrivilegeType, PrivilegeMatcher> matchers = new ConcurrentHashMap<>();
+    // (type, object) -> decision; replaced each time the privileges change
+    private volatile Cache<ObjectPrivilege, Boolean> decisionCache = newDecisionCache();
+
     public User(AuthenticationInfo authenticationInfo) {
         this.authenticationInfo = authenticationInfo;
         this.username = authenticationInfo.getPrincipal();
@@ -77,13 +95,19 @@ public class User {
         systemPrivileges.add(systemPrivilege);
     }
 
-    public void addObjectPrivilege(ObjectPrivilege objectPrivilege) {
+    public synchronized void addObjectPrivilege(ObjectPrivilege objectPrivilege) {
         Set<ObjectPrivilege> privilegesForType = objectPrivileges.get(objectPrivilege.getType());
         if (privilegesForType == null) {
             privilegesForType = new HashSet<>();
             objectPrivileges.put(objectPrivilege.getType(), privilegesForType);
         }
-        privilegesForType.add(objectPrivilege);
+        if (privilegesForType.add(objectPrivilege)) {
+            // the matchers are copied such that the concurrent checks see either the old or the new one
+            PrivilegeMatcher matcher = new PrivilegeMatcher(matchers.get(objectPrivilege.getType()));
+            matcher.add(objectPrivilege.getObject());
+            matchers.put(objectPrivilege.getType(), matcher);
+            decisionCache = newDecisionCache();
+        }
     }
 
     public boolean hasSystemPrivilege(SystemPrivilege systemPrivilege) {
@@ -99,13 +123,23 @@ public class User {
             return true;
         }
 
-        for (ObjectPrivilege privilege : getObjectPrivileges(type)) {
-            if (object.matches(privilege.getObject())) {
-                return true;
-            }
+        // read the cache before the matcher, see addObjectPrivilege
+        Cache<ObjectPrivilege, Boolean> cache = decisionCache;
+        PrivilegeMatcher matcher = matchers.get(type);
+        if (matcher == null) {
+            return false;
         }
+        ObjectPrivilege key = new ObjectPrivilege(type, object);
+        Boolean decision = cache.getIfPresent(key);
+        if (decision == null) {
+            decision = matcher.matches(object);
+            cache.put(key, decision);
+        }
+        return decision;
+    }
 
-        return false;
+    private static Cache<ObjectPrivilege, Boolean> newDecisionCache() {
+        return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DECISIONS).build();
     }
 
     public Map<String, Object> serialize() {
@@ -135,4 +169,97 @@ public class User {
     public String toString() {
         return username;
     }
+
+    /**
+     * Matches an object against the privileges of one type. The patterns are split in literals, prefixes (a literal
+     * followed by <tt>.*</tt>) and regular expressions; the result is the same as checking
+     * <code>object.matches(pattern)</code> for each pattern.
+     */
+    static class PrivilegeMatcher {
+        final Set<String> literals;
+        final Set<String> prefixes;
+        // distinct lengths of the prefixes
+        final TreeSet<Integer> prefixLengths;
+        final List<Pattern> patterns;
+        // patterns which do not compile; they are matched with String.matches which throws the syntax exception
+        final List<String> invalidPatterns;
+
+        PrivilegeMatcher(PrivilegeMatcher other) {
+            if (other == null) {
+                literals = new HashSet<>();
+                prefixes = new HashSet<>();
+                prefixLengths = new TreeSet<>();
+                patterns = new ArrayList<>();
+                invalidPatterns = new ArrayList<>();
+            } else {
+                literals = new HashSet<>(other.literals);
+                prefixes = new HashSet<>(other.prefixes);
+                prefixLengths = new TreeSet<>(other.prefixLengths);
+                patterns = new ArrayList<>(other.patterns);
+                invalidPatterns = new ArrayList<>(other.invalidPatterns);
+            }
+        }
+
+        void add(String regex) {
+            if (isLiteral(regex, regex.length())) {
+                literals.add(regex);
+            } else if (regex.endsWith(".*") && isLiteral(regex, regex.length() - 2)) {
+                String prefix = regex.substring(0, regex.length() - 2);
+                prefixes.add(prefix);
+                prefixLengths.add(prefix.length());
+            } else {
+                try {
+                    patterns.add(Pattern.compile(regex));
+                } catch (PatternSyntaxException e) {
+                    invalidPatterns.add(regex);
+                }
+            }
+        }
+
+        boolean matches(String object) {
+            if (literals.contains(object)) {
+                return true;
+            }
+            for (int length : prefixLengths) {
+                if (length > object.length()) {
+                    break;
+                }
+                if (prefixes.contains(object.substring(0, length)) && !hasLineTerminator(object, length)) {
+                    return true;
+                }
+            }
+            for (Pattern p : patterns) {
+                if (p.matcher(object).matches()) {
+                    return true;
+                }
+            }
+            for (String regex : invalidPatterns) {
+                if (object.matches(regex)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // true if the first n characters of the regex do not contain any special character
+        static boolean isLiteral(String regex, int n) {
+            for (int i = 0; i < n; i++) {
+                if ("\\[](){}.*+?^$|".indexOf(regex.charAt(i)) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // the '.' of the prefix patterns does not match the line terminators
+        static boolean hasLineTerminator(String s, int from) {
+            for (int i = from; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
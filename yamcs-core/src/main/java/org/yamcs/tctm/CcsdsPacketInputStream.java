@@ -20,6 +20,8 @@ import org.yamcs.YConfiguration;
 public class CcsdsPacketInputStream implements PacketInputStream {
     DataInputStream dataInputStream;
     int maxPacketLength = 1500;
+    // the primary header is read first in this array to find out the size of the packet
+    final byte[] hdr = new byte[6];
 
     public CcsdsPacketInputStream(InputStream inputStream, Map<String, Object> args) {
         this.dataInputStream = new DataInputStream(inputStream);
@@ -32,7 +34,6 @@ public class CcsdsPacketInputStream implements PacketInputStream {
 
     @Override
     public byte[] readPacket() throws IOException {
-        byte[] hdr = new byte[6];
         dataInputStream.readFully(hdr);
         int remaining = ((hdr[4] & 0xFF) << 8) + (hdr[5] & 0xFF) + 1;
         int pktLength = remaining + hdr.length;
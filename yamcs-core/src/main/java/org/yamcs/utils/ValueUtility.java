@@ -29,11 +29,33 @@ import org.yamcs.yarch.DataType;
 import com.google.protobuf.ByteString;
 
 public class ValueUtility {
+    // the values are immutable so the most frequent ones (flags, small counters, enumeration states) are shared
+    private static final Value TRUE = new BooleanValue(true);
+    private static final Value FALSE = new BooleanValue(false);
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 255;
+    private static final Value[] SMALL_UINT32 = new Value[SMALL_INT_MAX + 1];
+    private static final Value[] SMALL_SINT32 = new Value[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+    static {
+        for (int i = 0; i < SMALL_UINT32.length; i++) {
+            SMALL_UINT32[i] = new UInt32Value(i);
+        }
+        for (int i = 0; i < SMALL_SINT32.length; i++) {
+            SMALL_SINT32[i] = new SInt32Value(i + SMALL_INT_MIN);
+        }
+    }
+
     public static Value getUint32Value(int x) {
+        if (x >= 0 && x <= SMALL_INT_MAX) {
+            return SMALL_UINT32[x];
+        }
         return new UInt32Value(x);
     }
 
     public static Value getSint32Value(int x) {
+        if (x >= SMALL_INT_MIN && x <= SMALL_INT_MAX) {
+            return SMALL_SINT32[x - SMALL_INT_MIN];
+        }
         return new SInt32Value(x);
     }
 
@@ -58,7 +80,7 @@ public class ValueUtility {
     }
 
     public static Value getBooleanValue(boolean b) {
-        return new BooleanValue(b);
+        return b ? TRUE : FALSE;
     }
 
     public static Value getFloatValue(float f) {
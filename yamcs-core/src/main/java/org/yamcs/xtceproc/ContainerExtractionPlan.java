@@ -0,0 +1,111 @@
+package org.yamcs.xtceproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FloatDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.SequenceEntry;
+import org.yamcs.xtce.SequenceEntry.ReferenceLocationType;
+
+/**
+ * Flattened view of the subscribed part of a {@link SequenceContainer}, compiled by the {@link Subscription} and used
+ * by the {@link SequenceContainerProcessor} to avoid walking the sorted entry sets for each packet.
+ * <p>
+ * For each entry the absolute bit position (relative to the start of the buffer) is precomputed if it can be
+ * determined statically, that is if the entry is located relative to the container start or if it follows directly
+ * an entry which has a fixed position and a fixed size. The entries which have an include condition, a repeat, or
+ * whose position depends on the data are processed by the interpretive path.
+ * <p>
+ * The inheriting containers are dispatched via an {@link InheritanceDispatchIndex} when their restriction criteria
+ * allow it.
+ *
+ * @author nm
+ *
+ */
+class ContainerExtractionPlan {
+    final SequenceContainer container;
+    final SequenceEntry[] entries;
+    // absolute bit position of each entry or -1 if it is not known statically
+    final int[] positions;
+    // if not null, the entry is a fixed position, fixed size, unconditional parameter entry
+    final ParameterEntry[] fixedEntries;
+    // the containers inheriting from this one which are part of the subscription and can be found via the index
+    final InheritanceDispatchIndex dispatchIndex;
+    // the other inheriting containers, whose restriction criteria are evaluated one by one
+    final SequenceContainer[] linearContainers;
+
+    ContainerExtractionPlan(SequenceContainer container, SortedSet<SequenceEntry> entrySet,
+            Set<SequenceContainer> inheriting) {
+        this.container = container;
+        int n = entrySet == null ? 0 : entrySet.size();
+        entries = n == 0 ? new SequenceEntry[0] : entrySet.toArray(new SequenceEntry[n]);
+        positions = new int[n];
+        fixedEntries = new ParameterEntry[n];
+        List<SequenceEntry> containerEntries = container.getEntryList();
+
+        int prevEnd = -1; // end position of the previous entry if known statically, otherwise -1
+        SequenceEntry prev = null;
+        for (int i = 0; i < n; i++) {
+            SequenceEntry se = entries[i];
+            int pos = -1;
+            if (se.getReferenceLocation() == ReferenceLocationType.containerStart) {
+                pos = se.getLocationInContainerInBits();
+            } else if (prevEnd >= 0 && se.getIndex() > 0 && containerEntries.get(se.getIndex() - 1) == prev) {
+                pos = prevEnd + se.getLocationInContainerInBits();
+            }
+            positions[i] = pos;
+
+            prevEnd = -1;
+            if (pos >= 0 && se.getIncludeCondition() == null && se.getRepeatEntry() == null
+                    && se instanceof ParameterEntry) {
+                int size = getFixedSize((ParameterEntry) se);
+                if (size > 0) {
+                    fixedEntries[i] = (ParameterEntry) se;
+                    prevEnd = pos + size;
+                }
+            }
+            prev = se;
+        }
+        if (inheriting == null) {
+            dispatchIndex = null;
+            linearContainers = new SequenceContainer[0];
+        } else {
+            List<SequenceContainer> unindexed = new ArrayList<>();
+            dispatchIndex = InheritanceDispatchIndex.build(inheriting, unindexed);
+            linearContainers = unindexed.toArray(new SequenceContainer[unindexed.size()]);
+        }
+    }
+
+    /**
+     *
+     * @return the size in bits of the parameter if it is encoded as a binary integer or float without any custom
+     *         decoder, or -1 otherwise
+     */
+    static int getFixedSize(ParameterEntry pe) {
+        ParameterType ptype = pe.getParameter().getParameterType();
+        if (!(ptype instanceof BaseDataType)) {
+            return -1;
+        }
+        DataEncoding de = ((BaseDataType) ptype).getEncoding();
+        if (de == null || de.getFromBinaryTransformAlgorithm() != null) {
+            return -1;
+        }
+        if (de instanceof IntegerDataEncoding
+                && ((IntegerDataEncoding) de).getEncoding() != IntegerDataEncoding.Encoding.STRING) {
+            return de.getSizeInBits();
+        }
+        if (de instanceof FloatDataEncoding
+                && ((FloatDataEncoding) de).getEncoding() != FloatDataEncoding.Encoding.STRING) {
+            return de.getSizeInBits();
+        }
+        return -1;
+    }
+}
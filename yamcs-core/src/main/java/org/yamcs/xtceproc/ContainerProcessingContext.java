@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.yamcs.ContainerExtractionResult;
+import org.yamcs.parameter.ParameterStatus;
 import org.yamcs.parameter.ParameterValue;
 import org.yamcs.parameter.ParameterValueList;
 import org.yamcs.parameter.Value;
@@ -40,13 +41,16 @@ public class ContainerProcessingContext {
     public final DataEncodingDecoder dataEncodingProcessor;
     public final ValueProcessor valueProcessor;
     public final CriteriaEvaluator criteriaEvaluator;
+    // same object as the criteriaEvaluator, used for the lookups in the inheritance dispatch index
+    final CriteriaEvaluatorImpl criteriaEvaluatorImpl;
 
     public ContainerProcessingContext(ProcessorData pdata, BitBuffer buffer, ContainerProcessingResult result,
             Subscription subscription, ContainerProcessingOptions options) {
         this.pdata = pdata;
         this.buffer = buffer;
         this.subscription = subscription;
-        this.criteriaEvaluator = new CriteriaEvaluatorImpl(result.params, pdata.getLastValueCache());
+        this.criteriaEvaluatorImpl = new CriteriaEvaluatorImpl(result.params, pdata.getLastValueCache());
+        this.criteriaEvaluator = criteriaEvaluatorImpl;
         this.result = result;
         this.options = options;
 
@@ -63,6 +67,8 @@ public class ContainerProcessingContext {
         long generationTime;
         ProcessingStatistics stats;
         long expireMillis = -1; // -1 means not defined
+        // status shared by all the nominal parameter values extracted with the current expireMillis
+        ParameterStatus nominalStatus = ParameterStatus.NOMINAL;
 
         public ContainerProcessingResult(long aquisitionTime, long generationTime, ProcessingStatistics stats) {
             this.acquisitionTime = aquisitionTime;
@@ -70,6 +76,25 @@ public class ContainerProcessingContext {
             this.stats = stats;
         }
 
+        void setExpireMillis(long expireMillis) {
+            if (expireMillis != this.expireMillis) {
+                this.expireMillis = expireMillis;
+                this.nominalStatus = ParameterStatus.sharedNominal(expireMillis);
+            }
+        }
+
+        /**
+         * Sets the expiration of a newly extracted parameter value. The values having a nominal status (the most
+         * common case) share the same status object instead of allocating one each.
+         */
+        void setExpiration(ParameterValue pv) {
+            if (pv.getStatus() == ParameterStatus.NOMINAL) {
+                pv.setStatus(nominalStatus);
+            } else {
+                pv.setExpireMillis(expireMillis);
+            }
+        }
+
     }
 
     /**
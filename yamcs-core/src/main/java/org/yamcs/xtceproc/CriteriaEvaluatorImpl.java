@@ -91,6 +91,21 @@ public class CriteriaEvaluatorImpl implements CriteriaEvaluator {
         }
     }
 
+    /**
+     * Resolves the value of the parameter as it is compared for equality by {@link #evaluate}
+     * 
+     * @param paramRef
+     * @return the value as a Long for the integer parameters, as a String for the string and enumerated parameters or
+     *         null if no value is available or if the value has another type.
+     */
+    Object resolveEqualityKey(ParameterInstanceRef paramRef) {
+        ResolvedValue rv = resolveParameter(paramRef);
+        if (rv == null || (rv.evaluator != intEvaluator && rv.evaluator != stringEvaluator)) {
+            return null;
+        }
+        return rv.value;
+    }
+
     private ResolvedValue resolveParameter(ParameterInstanceRef paramRef) {
         ParameterValue pv = null;
         Parameter p = paramRef.getParameter();
@@ -0,0 +1,214 @@
+package org.yamcs.xtceproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yamcs.xtce.Comparison;
+import org.yamcs.xtce.ComparisonList;
+import org.yamcs.xtce.MatchCriteria;
+import org.yamcs.xtce.OperatorType;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterInstanceRef;
+import org.yamcs.xtce.SequenceContainer;
+
+/**
+ * Hash index used to find the inheriting containers whose restriction criteria are met without evaluating each of
+ * them.
+ * <p>
+ * Only the containers whose restriction criteria consist of equality comparisons between the same set of parameters
+ * and integer or string constants can be indexed (e.g. the packets inheriting from a CCSDS header with a condition
+ * on APID and packet id). The criteria of the other containers have to be evaluated one by one.
+ *
+ * @author nm
+ *
+ */
+class InheritanceDispatchIndex {
+    static final SequenceContainer[] NONE = new SequenceContainer[0];
+
+    // the parameters whose values form the key
+    final ParameterInstanceRef[] keyRefs;
+    // the key is the value of the parameter if there is only one key parameter, otherwise the list of values
+    final Map<Object, SequenceContainer[]> index;
+
+    private InheritanceDispatchIndex(ParameterInstanceRef[] keyRefs, Map<Object, SequenceContainer[]> index) {
+        this.keyRefs = keyRefs;
+        this.index = index;
+    }
+
+    /**
+     * Returns the indexed containers whose restriction criteria are met.
+     *
+     * @param evaluator
+     *            used to resolve the values of the key parameters
+     * @return the matching containers; an empty array if there is none
+     */
+    SequenceContainer[] lookup(CriteriaEvaluatorImpl evaluator) {
+        SequenceContainer[] r;
+        if (keyRefs.length == 1) {
+            Object v = evaluator.resolveEqualityKey(keyRefs[0]);
+            r = (v == null) ? null : index.get(v);
+        } else {
+            Object[] key = new Object[keyRefs.length];
+            for (int i = 0; i < keyRefs.length; i++) {
+                Object v = evaluator.resolveEqualityKey(keyRefs[i]);
+                if (v == null) {
+                    return NONE;
+                }
+                key[i] = v;
+            }
+            r = index.get(Arrays.asList(key));
+        }
+        return r == null ? NONE : r;
+    }
+
+    /**
+     * Builds the index for the largest group of containers having indexable criteria on the same parameters.
+     *
+     * @param containers
+     *            - the inheriting containers
+     * @param unindexed
+     *            - the containers which are not part of the index are added to this list
+     * @return the index or null if less than two containers could be indexed
+     */
+    static InheritanceDispatchIndex build(Collection<SequenceContainer> containers, List<SequenceContainer> unindexed) {
+        Map<Set<RefKey>, List<SequenceContainer>> groups = new LinkedHashMap<>();
+        for (SequenceContainer sc : containers) {
+            List<Comparison> comparisons = getIndexableComparisons(sc.getRestrictionCriteria());
+            if (comparisons == null) {
+                unindexed.add(sc);
+            } else {
+                groups.computeIfAbsent(getSignature(comparisons), k -> new ArrayList<>()).add(sc);
+            }
+        }
+        List<SequenceContainer> indexed = Collections.emptyList();
+        for (List<SequenceContainer> l : groups.values()) {
+            if (l.size() > indexed.size()) {
+                indexed = l;
+            }
+        }
+        if (indexed.size() < 2) {
+            for (List<SequenceContainer> l : groups.values()) {
+                unindexed.addAll(l);
+            }
+            return null;
+        }
+        for (List<SequenceContainer> l : groups.values()) {
+            if (l != indexed) {
+                unindexed.addAll(l);
+            }
+        }
+
+        List<Comparison> first = getIndexableComparisons(indexed.get(0).getRestrictionCriteria());
+        ParameterInstanceRef[] keyRefs = new ParameterInstanceRef[first.size()];
+        Map<RefKey, Integer> keyPositions = new HashMap<>();
+        for (int i = 0; i < keyRefs.length; i++) {
+            keyRefs[i] = first.get(i).getParameterRef();
+            keyPositions.put(new RefKey(keyRefs[i]), i);
+        }
+
+        Map<Object, List<SequenceContainer>> m = new HashMap<>();
+        for (SequenceContainer sc : indexed) {
+            List<Comparison> comparisons = getIndexableComparisons(sc.getRestrictionCriteria());
+            Object key;
+            if (keyRefs.length == 1) {
+                key = getKeyValue(comparisons.get(0));
+            } else {
+                Object[] k = new Object[keyRefs.length];
+                for (Comparison c : comparisons) {
+                    k[keyPositions.get(new RefKey(c.getParameterRef()))] = getKeyValue(c);
+                }
+                key = Arrays.asList(k);
+            }
+            m.computeIfAbsent(key, k -> new ArrayList<>()).add(sc);
+        }
+        Map<Object, SequenceContainer[]> index = new HashMap<>();
+        for (Map.Entry<Object, List<SequenceContainer>> me : m.entrySet()) {
+            index.put(me.getKey(), me.getValue().toArray(new SequenceContainer[0]));
+        }
+        return new InheritanceDispatchIndex(keyRefs, index);
+    }
+
+    /**
+     *
+     * @return the comparisons making the criteria if all of them are indexable equality comparisons on distinct
+     *         parameters, otherwise null
+     */
+    static List<Comparison> getIndexableComparisons(MatchCriteria criteria) {
+        List<Comparison> comparisons;
+        if (criteria instanceof Comparison) {
+            comparisons = Collections.singletonList((Comparison) criteria);
+        } else if (criteria instanceof ComparisonList) {
+            comparisons = ((ComparisonList) criteria).getComparisonList();
+        } else {
+            return null;
+        }
+        if (comparisons.isEmpty()) {
+            return null;
+        }
+        Set<RefKey> refs = new HashSet<>();
+        for (Comparison c : comparisons) {
+            ParameterInstanceRef ref = c.getParameterRef();
+            if (c.getComparisonOperator() != OperatorType.EQUALITY || ref.getParameter() == null
+                    || ref.getMemberPath() != null || getKeyValue(c) == null || !refs.add(new RefKey(ref))) {
+                return null;
+            }
+        }
+        return comparisons;
+    }
+
+    private static Set<RefKey> getSignature(List<Comparison> comparisons) {
+        Set<RefKey> s = new HashSet<>();
+        for (Comparison c : comparisons) {
+            s.add(new RefKey(c.getParameterRef()));
+        }
+        return s;
+    }
+
+    /**
+     *
+     * @return the value of the comparison converted the same way as by the {@link CriteriaEvaluatorImpl} or null if
+     *         the value is not an integer or a string
+     */
+    private static Object getKeyValue(Comparison c) {
+        Object v = c.getValue();
+        if (v instanceof Integer) {
+            return ((Integer) v).longValue();
+        } else if (v instanceof Long || v instanceof String) {
+            return v;
+        } else {
+            return null;
+        }
+    }
+
+    static class RefKey {
+        final Parameter parameter;
+        final boolean useCalibratedValue;
+
+        RefKey(ParameterInstanceRef ref) {
+            this.parameter = ref.getParameter();
+            this.useCalibratedValue = ref.useCalibratedValue();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * parameter.hashCode() + (useCalibratedValue ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RefKey)) {
+                return false;
+            }
+            RefKey other = (RefKey) obj;
+            return parameter == other.parameter && useCalibratedValue == other.useCalibratedValue;
+        }
+    }
+}
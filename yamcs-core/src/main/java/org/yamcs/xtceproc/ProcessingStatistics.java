@@ -8,6 +8,8 @@ public class ProcessingStatistics {
 
     long lastUpdated; // local java time of the last update
     public ConcurrentHashMap<String, TmStats> stats = new ConcurrentHashMap<>();
+    // statistics about the dispatching of the packets to the inheriting containers, keyed by parent container name
+    public ConcurrentHashMap<String, DispatchStats> dispatchStats = new ConcurrentHashMap<>();
 
     public void newPacket(SequenceContainer seq, int subscribedParameterCount, long acquisitionTime,
             long generationTime) {
@@ -20,8 +22,32 @@ public class ProcessingStatistics {
         lastUpdated = System.currentTimeMillis();
     }
 
+    /**
+     * Called each time the inheriting containers of a container have been looked up for a packet
+     * 
+     * @param seq
+     *            - the parent container
+     * @param indexed
+     *            - true if the inheriting containers have been looked up via the dispatch index
+     * @param indexHits
+     *            - number of inheriting containers found in the index
+     * @param linearEvaluations
+     *            - number of restriction criteria evaluated one by one
+     */
+    public void newDispatch(SequenceContainer seq, boolean indexed, int indexHits, int linearEvaluations) {
+        DispatchStats s = dispatchStats.computeIfAbsent(seq.getName(), k -> new DispatchStats(k));
+        s.qualifiedName = seq.getQualifiedName();
+        s.dispatchedPackets++;
+        if (indexed) {
+            s.indexLookups++;
+        }
+        s.indexHits += indexHits;
+        s.linearEvaluations += linearEvaluations;
+    }
+
     public void reset() {
         stats.clear();
+        dispatchStats.clear();
     }
 
     public long getLastUpdated() {
@@ -40,4 +66,17 @@ public class ProcessingStatistics {
             this.packetName = packetName;
         }
     }
+
+    public static class DispatchStats {
+        public final String containerName;
+        public String qualifiedName;
+        public long dispatchedPackets;
+        public long indexLookups;
+        public long indexHits;
+        public long linearEvaluations;
+
+        DispatchStats(String containerName) {
+            this.containerName = containerName;
+        }
+    }
 }
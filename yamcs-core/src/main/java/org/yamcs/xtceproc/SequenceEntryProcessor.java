@@ -94,11 +94,11 @@ public class SequenceEntryProcessor {
 
         pv.setAcquisitionTime(pcontext.result.acquisitionTime);
         pv.setGenerationTime(pcontext.result.generationTime);
-        pv.setExpireMillis(pcontext.result.expireMillis);
+        pcontext.result.setExpiration(pv);
         return pv;
     }
 
-    private void extractParameterEntry(ParameterEntry pe) {
+    void extractParameterEntry(ParameterEntry pe) {
         ContainerParameterValue pv = extractParameter(pe.getParameter());
         pv.setSequenceEntry(pe);
         pcontext.result.params.add(pv);
@@ -147,7 +147,7 @@ public class SequenceEntryProcessor {
 
         pv.setAcquisitionTime(pcontext.result.acquisitionTime);
         pv.setGenerationTime(pcontext.result.generationTime);
-        pv.setExpireMillis(pcontext.result.expireMillis);
+        pcontext.result.setExpiration(pv);
         pv.setSequenceEntry(pe);
 
         pcontext.result.params.add(pv);
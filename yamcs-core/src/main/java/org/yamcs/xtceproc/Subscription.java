@@ -33,6 +33,9 @@ public class Subscription {
 
     // For each container list the derived containers which have to be processed also
     private final Map<SequenceContainer, HashSet<SequenceContainer>> container2InheritingContainerMap = new HashMap<>();
+
+    // extraction plans compiled from the two maps above; cleared each time the subscription changes
+    private final Map<SequenceContainer, ContainerExtractionPlan> extractionPlans = new HashMap<>();
     Logger log = LoggerFactory.getLogger(Subscription.class);
 
     XtceDb xtcedb;
@@ -141,12 +144,16 @@ public class Subscription {
 
     private void addContainer2Entry(SequenceContainer sc, SequenceEntry se) {
         TreeSet<SequenceEntry> ts = container2EntryMap.computeIfAbsent(sc, k-> new TreeSet<SequenceEntry>());
-        ts.add(se);
+        if (ts.add(se)) {
+            extractionPlans.clear();
+        }
     }
 
     private void addContainer2InheritingContainer(SequenceContainer container, SequenceContainer inheritedContainer) {
         HashSet<SequenceContainer> hs = container2InheritingContainerMap.computeIfAbsent(container, k -> new HashSet<>());
-        hs.add(inheritedContainer);
+        if (hs.add(inheritedContainer)) {
+            extractionPlans.clear();
+        }
     }
 
     public SortedSet<SequenceEntry> getEntries(SequenceContainer container) {
@@ -157,6 +164,22 @@ public class Subscription {
         return container2InheritingContainerMap.get(container);
     }
 
+    /**
+     * Returns the extraction plan for the container, compiling it if the subscription has changed since the last call.
+     * 
+     * @param container
+     * @return the extraction plan for the subscribed part of the container
+     */
+    ContainerExtractionPlan getExtractionPlan(SequenceContainer container) {
+        ContainerExtractionPlan plan = extractionPlans.get(container);
+        if (plan == null) {
+            plan = new ContainerExtractionPlan(container, container2EntryMap.get(container),
+                    container2InheritingContainerMap.get(container));
+            extractionPlans.put(container, plan);
+        }
+        return plan;
+    }
+
     /**
      * Get the set of all containers subscribed
      * 
@@ -10,7 +10,7 @@ import org.yamcs.xtce.Parameter;
 
 public class ValueProcessor {
     ContainerProcessingContext pcontext;
-    Logger log = LoggerFactory.getLogger(this.getClass().getName());
+    static final Logger log = LoggerFactory.getLogger(ValueProcessor.class);
 
     public ValueProcessor(ContainerProcessingContext pcontext) {
         this.pcontext = pcontext;
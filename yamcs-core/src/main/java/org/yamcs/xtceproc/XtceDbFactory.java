@@ -1,13 +1,8 @@
 package org.yamcs.xtceproc;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Path;
@@ -16,11 +11,14 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -153,15 +151,9 @@ public class XtceDbFactory {
 
             rootSs.addSpaceSystem(yamcsSs);
 
-            int n;
-            while ((n = resolveReferences(rootSs, rootSs)) > 0) {
-            }
-
-            StringBuilder sb = new StringBuilder();
-            collectUnresolvedReferences(rootSs, sb);
-            if (n == 0) {
-                throw new DatabaseLoadException("Cannot resolve (circular?) references: " + sb.toString());
-            }
+            long t0 = System.nanoTime();
+            resolveReferences(rootSs);
+            log.debug("References resolved in {} ms", (System.nanoTime() - t0) / 1000_000);
             setQualifiedNames(rootSs, "");
             db = new XtceDb(rootSs);
 
@@ -202,27 +194,60 @@ public class XtceDbFactory {
     }
 
     /**
-     * resolves references in ss by going recursively to all sub-space systems (in the first call ss=rootSs)
-     *
-     * @param ss
-     * @param sysDb
-     * @return the number of references resolved or -1 if there was no reference to be resolved
+     * resolves all the references of the space system tree.
+     * <p>
+     * The references are first looked up in a {@link NameIndex} built once for the whole tree. The ones not found there
+     * (aliases, aggregate members, relative paths or items created during the resolution) are looked up by walking the
+     * space system hierarchy. Only the references which could not be resolved because their target is not itself
+     * resolved are retried, as long as some progress is made.
      */
-    private static int resolveReferences(SpaceSystem rootSs, SpaceSystem ss) throws DatabaseLoadException {
-        List<NameReference> refs = ss.getUnresolvedReferences();
-
-        // This can happen when we deserialise the SpaceSystem since the unresolved references is a transient list.
-        if (refs == null) {
-            refs = Collections.emptyList();
+    private static void resolveReferences(SpaceSystem rootSs) throws DatabaseLoadException {
+        NameIndex index = new NameIndex(rootSs);
+        List<SpaceSystem> pending = new ArrayList<>();
+        collectSpaceSystemsWithReferences(rootSs, pending);
+
+        while (!pending.isEmpty()) {
+            int n = 0;
+            Iterator<SpaceSystem> it = pending.iterator();
+            while (it.hasNext()) {
+                SpaceSystem ss = it.next();
+                n += resolveReferences(rootSs, ss, index);
+                if (ss.getUnresolvedReferences().isEmpty()) {
+                    it.remove();
+                }
+            }
+            if (n == 0) {
+                StringBuilder sb = new StringBuilder();
+                collectUnresolvedReferences(rootSs, sb);
+                throw new DatabaseLoadException("Cannot resolve (circular?) references: " + sb.toString());
+            }
         }
+    }
 
-        int n = (refs.size() == 0) ? -1 : 0;
+    private static void collectSpaceSystemsWithReferences(SpaceSystem ss, List<SpaceSystem> list) {
+        // the unresolved references is a transient list, it is null for deserialised space systems
+        List<NameReference> refs = ss.getUnresolvedReferences();
+        if (refs != null && !refs.isEmpty()) {
+            list.add(ss);
+        }
+        for (SpaceSystem ss1 : ss.getSubSystems()) {
+            collectSpaceSystemsWithReferences(ss1, list);
+        }
+    }
 
-        Iterator<NameReference> it = refs.iterator();
+    /**
+     * resolves the references of the space system ss
+     *
+     * @return the number of references resolved
+     */
+    private static int resolveReferences(SpaceSystem rootSs, SpaceSystem ss, NameIndex index)
+            throws DatabaseLoadException {
+        int n = 0;
+        Iterator<NameReference> it = ss.getUnresolvedReferences().iterator();
         while (it.hasNext()) {
             NameReference nr = it.next();
 
-            ResolvedReference rr = findReference(rootSs, nr, ss);
+            ResolvedReference rr = findReference(rootSs, nr, ss, index);
             if (rr == null && nr.getType() == Type.PARAMETER
                     && nr.getReference().startsWith(XtceDb.YAMCS_SPACESYSTEM_NAME)) {
                 // Special case for system parameters: they are created on the fly
@@ -247,14 +272,6 @@ public class XtceDbFactory {
                 it.remove();
             }
         }
-        for (SpaceSystem ss1 : ss.getSubSystems()) {
-            int m = resolveReferences(rootSs, ss1);
-            if (n == -1) {
-                n = m;
-            } else if (m > 0) {
-                n += m;
-            }
-        }
         return n;
     }
 
@@ -320,6 +337,30 @@ public class XtceDbFactory {
         }
     }
 
+    /**
+     * same as {@link #findReference(SpaceSystem, NameReference, SpaceSystem)} but looking first into the index
+     */
+    static ResolvedReference findReference(SpaceSystem rootSs, NameReference nr, SpaceSystem ss, NameIndex index) {
+        String ref = nr.getReference();
+        if (ref.startsWith("/")) {
+            NameDescription nd = index.get(nr.getType(), ref);
+            return nd == null ? findReference(rootSs, nr) : new ResolvedReference(nd);
+        } else if (ref.startsWith("./") || ref.startsWith("..")) {
+            return findReference(ss, nr);
+        } else {
+            // go up until the root
+            SpaceSystem startSs = ss;
+            while (true) {
+                NameDescription nd = index.get(nr.getType(), startSs, ref);
+                ResolvedReference rr = nd == null ? findReference(startSs, nr) : new ResolvedReference(nd);
+                if ((rr != null) || (startSs == rootSs)) {
+                    return rr;
+                }
+                startSs = startSs.getParent();
+            }
+        }
+    }
+
     /**
      * searches for aliases in the parent hierarchy
      * 
@@ -580,16 +621,14 @@ public class XtceDbFactory {
         }
     }
 
-    private static XtceDb loadSerializedInstance(File serializedFile) throws IOException, ClassNotFoundException {
+    private static XtceDb loadSerializedInstance(File serializedFile) throws IOException {
         log.debug("Loading serialized XTCE DB from: {}", serializedFile);
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serializedFile))) {
-            XtceDb db = (XtceDb) in.readObject();
-            log.info("Loaded XTCE DB from {} with {} containers, {} parameters and {} commands",
-                    serializedFile, db.getSequenceContainers().size(), db.getParameterNames().size(),
-                    db.getMetaCommands().size());
-            return db;
-        }
+        XtceDb db = XtceDbSerializer.read(serializedFile);
+        log.info("Loaded XTCE DB from {} with {} containers, {} parameters and {} commands",
+                serializedFile, db.getSequenceContainers().size(), db.getParameterNames().size(),
+                db.getMetaCommands().size());
+        return db;
     }
 
     private static File resolveSerializedFile(String filename) {
@@ -611,10 +650,8 @@ public class XtceDbFactory {
     private static void saveSerializedInstance(LoaderTree loaderTree, XtceDb db, File serializedFile,
             File consistencyFile) throws IOException {
         serializedFile.getParentFile().mkdirs();
-        try (OutputStream os = new FileOutputStream(serializedFile);
-                ObjectOutputStream out = new ObjectOutputStream(os);
-                FileWriter fw = new FileWriter(consistencyFile)) {
-            out.writeObject(db);
+        XtceDbSerializer.write(db, serializedFile);
+        try (FileWriter fw = new FileWriter(consistencyFile)) {
             loaderTree.writeConsistencyDate(fw);
         }
     }
@@ -731,20 +768,42 @@ public class XtceDbFactory {
             return false;
         }
 
+        /**
+         * Loads the space system tree. The subtrees are loaded in parallel on a pool of at most one thread per
+         * processor.
+         */
         public SpaceSystem load() throws ConfigurationException {
+            int parallelism = Math.min(size(), Runtime.getRuntime().availableProcessors());
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
             try {
-                SpaceSystem rss = root.load();
-                if (children != null) {
-                    for (LoaderTree lt : children) {
-                        SpaceSystem ss = lt.load();
-                        rss.addSpaceSystem(ss);
-                        ss.setParent(rss);
-                    }
+                LoadTask task = new LoadTask(this);
+                pool.invoke(task);
+                if (task.error != null) {
+                    throw task.error;
                 }
-                return rss;
-            } catch (ConfigurationException e) {
-                throw e;
+                return task.spaceSystem;
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        SpaceSystem loadRoot() throws ConfigurationException {
+            long t0 = System.nanoTime();
+            SpaceSystem ss = root.load();
+            if (!(root instanceof RootSpaceSystemLoader)) {
+                log.info("Loaded {} in {} ms", root.getConfigName(), (System.nanoTime() - t0) / 1000_000);
             }
+            return ss;
+        }
+
+        int size() {
+            int n = 1;
+            if (children != null) {
+                for (LoaderTree lt : children) {
+                    n += lt.size();
+                }
+            }
+            return n;
         }
 
         public void writeConsistencyDate(FileWriter fw) throws IOException {
@@ -757,6 +816,54 @@ public class XtceDbFactory {
         }
     }
 
+    /**
+     * Loads the root of a loader tree while the children subtrees are loaded by other tasks. The exceptions are kept
+     * such that the first one in the order of the tree is thrown as it is by {@link LoaderTree#load()}.
+     */
+    @SuppressWarnings("serial")
+    static class LoadTask extends RecursiveAction {
+        final LoaderTree loaderTree;
+        SpaceSystem spaceSystem;
+        RuntimeException error;
+
+        LoadTask(LoaderTree loaderTree) {
+            this.loaderTree = loaderTree;
+        }
+
+        @Override
+        protected void compute() {
+            List<LoadTask> subtasks = new ArrayList<>();
+            if (loaderTree.children != null) {
+                for (LoaderTree lt : loaderTree.children) {
+                    LoadTask t = new LoadTask(lt);
+                    t.fork();
+                    subtasks.add(t);
+                }
+            }
+            try {
+                spaceSystem = loaderTree.loadRoot();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            for (LoadTask t : subtasks) {
+                t.join();
+                if (error == null) {
+                    error = t.error;
+                }
+            }
+            try {
+                if (error == null) {
+                    for (LoadTask t : subtasks) {
+                        spaceSystem.addSpaceSystem(t.spaceSystem);
+                        t.spaceSystem.setParent(spaceSystem);
+                    }
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+    }
+
     // fake loader for the root (empty) space system
     static class RootSpaceSystemLoader implements SpaceSystemLoader {
         @Override
@@ -781,6 +888,65 @@ public class XtceDbFactory {
         }
     }
 
+    /**
+     * Index of the items of a space system tree by type and path, the path being made of the names of the space
+     * systems from the root (the qualified names are not yet set while resolving the references).
+     * <p>
+     * Only the items existing when the index is built are part of it.
+     */
+    static class NameIndex {
+        final Map<Type, Map<String, NameDescription>> items = new EnumMap<>(Type.class);
+        final Map<SpaceSystem, String> paths = new IdentityHashMap<>();
+
+        NameIndex(SpaceSystem rootSs) {
+            for (Type type : Type.values()) {
+                items.put(type, new HashMap<>());
+            }
+            add(rootSs, "");
+        }
+
+        private void add(SpaceSystem ss, String path) {
+            paths.put(ss, path);
+            for (Parameter p : ss.getParameters()) {
+                put(Type.PARAMETER, path, p);
+            }
+            for (ParameterType ptype : ss.getParameterTypes()) {
+                put(Type.PARAMETER_TYPE, path, (NameDescription) ptype);
+            }
+            for (SequenceContainer sc : ss.getSequenceContainers()) {
+                put(Type.SEQUENCE_CONTAINER, path, sc);
+            }
+            for (MetaCommand mc : ss.getMetaCommands()) {
+                put(Type.META_COMMAND, path, mc);
+            }
+            for (Algorithm algo : ss.getAlgorithms()) {
+                put(Type.ALGORITHM, path, algo);
+            }
+            for (SpaceSystem ss1 : ss.getSubSystems()) {
+                add(ss1, path + "/" + ss1.getName());
+            }
+        }
+
+        private void put(Type type, String path, NameDescription nd) {
+            items.get(type).put(path + "/" + nd.getName(), nd);
+        }
+
+        /**
+         * @return the item with the given absolute path or null if there is none in the index
+         */
+        NameDescription get(Type type, String path) {
+            return items.get(type).get(path);
+        }
+
+        /**
+         * @return the item with the given path relative to the space system ss or null if there is none in the index
+         */
+        NameDescription get(Type type, SpaceSystem ss, String relativePath) {
+            String path = paths.get(ss);
+            return path == null ? null : get(type, path + "/" + relativePath);
+        }
+    }
+
     static class ResolvedReference {
         final NameDescription nd;
         final PathElement[] aggregateMemberPath;
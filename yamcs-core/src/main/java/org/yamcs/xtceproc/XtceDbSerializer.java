@@ -0,0 +1,163 @@
+package org.yamcs.xtceproc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.yamcs.xtce.XtceDb;
+
+/**
+ * Java serialization of an {@link XtceDb} used by the {@link XtceDbFactory} to cache the loaded MDB.
+ * <p>
+ * The file starts with a magic number and a format version followed by the Java serialization of the XtceDb.
+ * Compared with writing the XtceDb directly with an {@link ObjectOutputStream}:
+ * <ul>
+ * <li>the equal strings are written once and are shared again after loading.</li>
+ * <li>only the types known to be part of the MDB can be written and read: the yamcs classes, the strings, the boxed
+ * primitives, the enums, the arrays and the collections (and locks) of java.util. Writing a MDB containing any other
+ * type fails instead of producing a file which may not be read back.</li>
+ * </ul>
+ * A file with another format version cannot be read; a class whose serialVersionUID has changed is rejected by the
+ * Java serialization. In both cases the MDB has to be loaded from the source.
+ */
+public final class XtceDbSerializer {
+    static final int MAGIC = 0x594D4442; // YMDB
+    public static final int FORMAT_VERSION = 2;
+
+    // Object is part of it for the Object[] arrays
+    static final Set<String> JAVA_LANG_CLASSES = new HashSet<>(Arrays.asList(Object.class.getName(),
+            String.class.getName(), Boolean.class.getName(), Character.class.getName(), Number.class.getName(),
+            Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+            Float.class.getName(), Double.class.getName(), Enum.class.getName()));
+
+    private XtceDbSerializer() {
+    }
+
+    public static void write(XtceDb db, File file) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(db, os);
+        }
+    }
+
+    public static void write(XtceDb db, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.flush();
+        SerializerOutputStream oos = new SerializerOutputStream(os);
+        oos.writeObject(db);
+        oos.flush();
+    }
+
+    public static XtceDb read(File file) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            return read(is);
+        }
+    }
+
+    public static XtceDb read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a serialized MDB");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported serialized MDB version " + version + " (expected "
+                        + FORMAT_VERSION + ")");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Corrupted serialized MDB", e);
+        }
+        try {
+            Object o = new SerializerInputStream(is).readObject();
+            if (!(o instanceof XtceDb)) {
+                throw new IOException("The file does not contain a XtceDb");
+            }
+            return (XtceDb) o;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot read the serialized MDB", e);
+        }
+    }
+
+    /**
+     * the types which can be part of the serialized MDB
+     */
+    static boolean isSupported(String className) {
+        int k = 0;
+        while (className.startsWith("[", k)) {
+            k++;
+        }
+        if (k > 0) { // array
+            if (className.length() == k + 1) { // primitive
+                return true;
+            }
+            className = className.substring(k + 1, className.length() - 1);
+        }
+        return className.startsWith("org.yamcs.") || JAVA_LANG_CLASSES.contains(className)
+                || className.startsWith("java.util.");
+    }
+
+    static boolean isSupported(Object o) {
+        String name = o.getClass().getName();
+        if (name.startsWith("java.util.")) {
+            // the collections and the lock guarding the XtceDb
+            return o instanceof Collection || o instanceof Map || name.startsWith("java.util.concurrent.locks.");
+        }
+        return isSupported(name);
+    }
+
+    static class SerializerOutputStream extends ObjectOutputStream {
+        final Map<String, String> strings = new HashMap<>();
+
+        SerializerOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                String s = (String) obj;
+                String s1 = strings.putIfAbsent(s, s);
+                return s1 == null ? s : s1;
+            }
+            if (!isSupported(obj)) {
+                throw new IOException("Cannot serialize " + obj.getClass() + " in the MDB: unsupported type");
+            }
+            return obj;
+        }
+    }
+
+    static class SerializerInputStream extends ObjectInputStream {
+        SerializerInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isSupported(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "unsupported type in the serialized MDB");
+            }
+            return Class.forName(desc.getName(), false, XtceDbSerializer.class.getClassLoader());
+        }
+    }
+}
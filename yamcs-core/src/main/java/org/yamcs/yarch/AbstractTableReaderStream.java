@@ -33,14 +33,18 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                                              // partitioned on a non index
                                              // column
 
+    // conditions on the other columns and projection; null if there is none
+    private RowFilter rowFilter;
+
     static AtomicInteger count = new AtomicInteger(0);
     volatile protected boolean quit = false;
     Comparator<byte[]> bytesComparator = UnsignedBytes.lexicographicalComparator();
-    private Tuple lastEmitted;
 
     final protected PartitionManager partitionManager;
     final protected boolean ascending;
     final protected boolean follow;
+    // number of threads that may be used for reading the partitions
+    protected int parallelism = 1;
 
     protected AbstractTableReaderStream(YarchDatabaseInstance ydb, TableDefinition tblDef,
             PartitionManager partitionManager, boolean ascending, boolean follow) {
@@ -53,8 +57,8 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
 
     @Override
     public void run() {
-        log.debug("starting a table stream from table {} with rangeIndexFilter {} \n partitionFilter: {}",
-                tableDefinition.getName(), rangeIndexFilter, partitionValueFilter);
+        log.debug("starting a table stream from table {} with rangeIndexFilter {} \n partitionFilter: {}"
+                + "\n rowFilter: {}", tableDefinition.getName(), rangeIndexFilter, partitionValueFilter, rowFilter);
 
         try {
             Iterator<List<Partition>> partitionIterator;
@@ -82,13 +86,7 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                 }
             }
 
-            while ((!quit) && partitionIterator.hasNext()) {
-                List<Partition> partitions = partitionIterator.next();
-                boolean endReached = runPartitions(partitions, rangeIndexFilter);
-                if (endReached) {
-                    break;
-                }
-            }
+            runIntervals(partitionIterator, rangeIndexFilter);
         } catch (Exception e) {
             log.error("got exception ", e);
         } finally {
@@ -96,6 +94,21 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
         }
     }
 
+    /**
+     * Runs the partitions provided by the iterator, one time interval at a time, until the stop condition is met.
+     * <p>
+     * Can be overridden by the storage engines able to read multiple intervals in parallel.
+     */
+    protected void runIntervals(Iterator<List<Partition>> partitionIterator, IndexFilter range) throws IOException {
+        while ((!quit) && partitionIterator.hasNext()) {
+            List<Partition> partitions = partitionIterator.next();
+            boolean endReached = runPartitions(partitions, range);
+            if (endReached) {
+                break;
+            }
+        }
+    }
+
     /**
      * Runs the partitions sending data only that conform with the start and end filters. returns true if the stop
      * condition is met
@@ -105,41 +118,49 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     protected abstract boolean runPartitions(List<Partition> partitions, IndexFilter range) throws IOException;
 
     protected boolean emitIfNotPastStop(byte[] key, byte[] value, byte[] rangeEnd, boolean strictEnd) {
-        boolean emit = true;
-        if (rangeEnd != null) { // check if we have reached the end
-            int c = compare(key, rangeEnd);
-            if (c < 0 || (c == 0 && !strictEnd)) {
-                emit = true;
-            } else {
-                emit = false;
-            }
-        }
-        lastEmitted = dataToTuple(key, value);
+        boolean emit = !isPastStop(key, rangeEnd, strictEnd);
         if (emit) {
-            emitTuple(lastEmitted);
+            Tuple t = dataToTuple(key, value);
+            if (t != null) {
+                emitTuple(t);
+            }
         }
         return emit;
     }
 
     protected boolean emitIfNotPastStart(byte[] key, byte[] value, byte[] rangeStart, boolean strictStart) {
-        boolean emit = true;
-        if (rangeStart != null) { // check if we have reached the start
-            int c = compare(key, rangeStart);
-            if (c > 0) {
-                emit = true;
-            } else if ((c == 0) && (!strictStart)) {
-                emit = true;
-            } else {
-                emit = false;
-            }
-        }
-        lastEmitted = dataToTuple(key, value);
+        boolean emit = !isPastStart(key, rangeStart, strictStart);
         if (emit) {
-            emitTuple(lastEmitted);
+            Tuple t = dataToTuple(key, value);
+            if (t != null) {
+                emitTuple(t);
+            }
         }
         return emit;
     }
 
+    /**
+     * returns true if the key is after the end of the range (used when reading in ascending order)
+     */
+    protected boolean isPastStop(byte[] key, byte[] rangeEnd, boolean strictEnd) {
+        if (rangeEnd == null) {
+            return false;
+        }
+        int c = compare(key, rangeEnd);
+        return c > 0 || (c == 0 && strictEnd);
+    }
+
+    /**
+     * returns true if the key is before the start of the range (used when reading in descending order)
+     */
+    protected boolean isPastStart(byte[] key, byte[] rangeStart, boolean strictStart) {
+        if (rangeStart == null) {
+            return false;
+        }
+        int c = compare(key, rangeStart);
+        return c < 0 || (c == 0 && strictStart);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public boolean addRelOpFilter(ColumnExpression cexpr, RelOp relOp, Object value) throws StreamSqlException {
@@ -177,7 +198,7 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                 rangeIndexFilter.strictStart = rangeIndexFilter.strictEnd = false;
                 break;
             case NOT_EQUAL:
-                // TODO - two ranges have to be created
+                getRowFilter().addCondition(cdef, relOp, cv);
             }
             return true;
         } else if ((relOp == RelOp.EQUAL) && tableDefinition.hasPartitioning()) {
@@ -194,7 +215,56 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                 return true;
             }
         }
-        return false;
+        return addColumnCondition(cexpr, relOp, value);
+    }
+
+    /**
+     * Pushes conditions on the other columns to the row filter, if the comparison can be evaluated without the
+     * compiled expression.
+     */
+    private boolean addColumnCondition(ColumnExpression cexpr, RelOp relOp, Object value) {
+        ColumnDefinition cdef = tableDefinition.getColumnDefinition(cexpr.getName());
+        if (cdef == null) { // could be a protobuf field
+            return false;
+        }
+        DataType type = cdef.getType();
+        if (DataType.isNumber(type)) {
+            // the numbers are compared without conversion, as in the compiled expressions
+            if (!(value instanceof Number)) {
+                return false;
+            }
+            getRowFilter().addCondition(cdef, relOp, value);
+            return true;
+        }
+        boolean eq = relOp == RelOp.EQUAL || relOp == RelOp.NOT_EQUAL;
+        if (!eq || (type != DataType.STRING && type != DataType.ENUM && type != DataType.BOOLEAN)) {
+            return false;
+        }
+        Object cv;
+        try {
+            cv = DataType.castAs(type, value);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        getRowFilter().addCondition(cdef, relOp, cv);
+        return true;
+    }
+
+    private RowFilter getRowFilter() {
+        if (rowFilter == null) {
+            rowFilter = new RowFilter(tableDefinition);
+        }
+        return rowFilter;
+    }
+
+    @Override
+    public void setProjection(Set<String> columns) {
+        getRowFilter().setProjection(columns);
+    }
+
+    @Override
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
     }
 
     // if the value partitioning column is of type Enum, we have to convert all
@@ -225,9 +295,31 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
         return values;
     }
 
+    /**
+     * 
+     * @return the tuple or null if the row does not match the row filter
+     */
     protected Tuple dataToTuple(byte[] k, byte[] v) {
-        return tableDefinition.deserialize(k, v); // TODO adapt to the stream
-                                                  // schema
+        return tableDefinition.deserialize(k, v, rowFilter);
+    }
+
+    /**
+     * Same as {@link #dataToTuple(byte[], byte[])} but using the given filter; used when decoding the rows in
+     * multiple threads, the filter being not thread safe.
+     * 
+     * @param filter
+     *            - obtained with {@link #copyRowFilter()}
+     */
+    protected Tuple dataToTuple(byte[] k, byte[] v, RowFilter filter) {
+        return tableDefinition.deserialize(k, v, filter);
+    }
+
+    /**
+     * 
+     * @return a copy of the row filter or null if there is no filter
+     */
+    protected RowFilter copyRowFilter() {
+        return rowFilter == null ? null : rowFilter.copy();
     }
 
     /**
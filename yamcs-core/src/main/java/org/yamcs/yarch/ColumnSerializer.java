@@ -1,8 +1,11 @@
 package org.yamcs.yarch;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Serializes column values to byte arrays (used as part of tables) and back
@@ -45,5 +48,52 @@ public interface ColumnSerializer<T> {
      * @throws IOException
      */
     public T fromByteArray(byte[] b, ColumnDefinition cd) throws IOException ;
-    
+
+    /**
+     * Read one column value from a heap buffer. Used for the values of the table rows stored in the v2 format (see
+     * {@link TableDefinition#serializeValue(Tuple)}).
+     * <p>
+     * The default implementation reads the same encoding as {@link #deserialize(DataInputStream, ColumnDefinition)}.
+     * 
+     * @param buf
+     *            - buffer positioned at the beginning of the value; the position is advanced to the end of the value
+     * @param cd
+     *            the column definition for the involved column
+     * @return the deserialized value
+     * @throws IOException
+     */
+    default T deserialize(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+        ByteArrayInputStream bais = new ByteArrayInputStream(buf.array(), buf.arrayOffset() + buf.position(),
+                buf.remaining());
+        T v = deserialize(new DataInputStream(bais), cd);
+        buf.position(buf.limit() - bais.available());
+        return v;
+    }
+
+    /**
+     * Write one column value into the buffer. Used for the values of the table rows stored in the v2 format.
+     * <p>
+     * The default implementation writes the same encoding as {@link #serialize(DataOutputStream, Object)}.
+     * 
+     * @param buf
+     * @param v
+     * @throws BufferOverflowException
+     *             if there is not enough space in the buffer
+     */
+    default void serialize(ByteBuffer buf, T v) {
+        buf.put(toByteArray(v));
+    }
+
+    /**
+     * Skip over one column value written with {@link #serialize(ByteBuffer, Object)}.
+     * <p>
+     * The default implementation deserializes the value.
+     * 
+     * @param buf
+     * @param cd
+     * @throws IOException
+     */
+    default void skip(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+        deserialize(buf, cd);
+    }
 }
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,6 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YConfiguration;
 import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.VarIntUtil;
 import org.yamcs.yarch.DataType._type;
 
 import com.google.common.collect.BiMap;
@@ -116,6 +120,22 @@ public class ColumnSerializerFactory {
 
 
 
+    /**
+     * reads the varint size prefix of the variable length values stored in the v2 format
+     */
+    static int readSize(ByteBuffer buf) throws IOException {
+        int size;
+        try {
+            size = VarIntUtil.readVarInt32(buf);
+        } catch (DecodingException e) {
+            throw new IOException(e);
+        }
+        if (size > maxBinaryLength) {
+            throw new IOException("serialized size too big " + size + ">" + maxBinaryLength);
+        }
+        return size;
+    }
+
     static abstract class AbstractColumnSerializer<T> implements ColumnSerializer<T> {
         int size;
         public AbstractColumnSerializer(int size) {
@@ -149,6 +169,21 @@ public class ColumnSerializerFactory {
             stream.writeBoolean((Boolean)v);
         }
 
+        @Override
+        public Boolean deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.get() != 0;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Boolean v) {
+            buf.put((byte) (v ? 1 : 0));
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 1);
+        }
+
         @Override
         public byte[] toByteArray(Boolean v) {
             boolean b = (Boolean)v;
@@ -172,6 +207,21 @@ public class ColumnSerializerFactory {
             stream.writeByte((Byte)v);
         }
 
+        @Override
+        public Byte deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.get();
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Byte v) {
+            buf.put(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 1);
+        }
+
         @Override
         public byte[] toByteArray(Byte v) {
             return new byte[]{v};
@@ -194,6 +244,21 @@ public class ColumnSerializerFactory {
             stream.writeShort((Short)v);
         }
 
+        @Override
+        public Short deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.getShort();
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Short v) {
+            buf.putShort(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 2);
+        }
+
         @Override
         public byte[] toByteArray(Short v) {
             short s = v;
@@ -217,6 +282,21 @@ public class ColumnSerializerFactory {
             stream.writeInt((Integer)v);
         }
 
+        @Override
+        public Integer deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.getInt();
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Integer v) {
+            buf.putInt(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 4);
+        }
+
         @Override
         public byte[] toByteArray(Integer v) {
             int x = v;
@@ -243,6 +323,21 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, Double v) throws IOException {
             stream.writeDouble(v);
         }
+
+        @Override
+        public Double deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.getDouble();
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Double v) {
+            buf.putDouble(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 8);
+        }
     }
     static  class LongColumnSerializer extends AbstractColumnSerializer<Long> {
         public LongColumnSerializer() {
@@ -258,6 +353,21 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, Long v) throws IOException {
             stream.writeLong(v);
         }
+
+        @Override
+        public Long deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return buf.getLong();
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, Long v) {
+            buf.putLong(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 8);
+        }
     }
 
     static  class StringColumnSerializer extends AbstractColumnSerializer<String> {
@@ -274,6 +384,28 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, String v) throws IOException {
             stream.writeUTF(v);
         }
+
+        // in the v2 format the strings are stored as varint size followed by the UTF-8 bytes
+        @Override
+        public String deserialize(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            int size = readSize(buf);
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), size, StandardCharsets.UTF_8);
+            buf.position(buf.position() + size);
+            return s;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, String v) {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            VarIntUtil.writeVarInt32(buf, b.length);
+            buf.put(b);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            int size = readSize(buf);
+            buf.position(buf.position() + size);
+        }
     }
 
     static class BinaryColumnSerializer implements ColumnSerializer<byte[]> {
@@ -295,6 +427,25 @@ public class ColumnSerializerFactory {
             stream.write(v);
         }
 
+        @Override
+        public byte[] deserialize(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            byte[] bp = new byte[readSize(buf)];
+            buf.get(bp);
+            return bp;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, byte[] v) {
+            VarIntUtil.writeVarInt32(buf, v.length);
+            buf.put(v);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            int size = readSize(buf);
+            buf.position(buf.position() + size);
+        }
+
         @Override
         public byte[] toByteArray(byte[] v) {
             byte[] r = new byte[4+v.length];
@@ -327,7 +478,7 @@ public class ColumnSerializerFactory {
             }
             byte[] bp = new byte[length];
             stream.readFully(bp);
-            return readProtobufMessage(bp);
+            return readProtobufMessage(bp, 0, bp.length);
         }
 
         @Override
@@ -337,12 +488,33 @@ public class ColumnSerializerFactory {
             stream.write(b);
         }
 
+        @Override
+        public MessageLite deserialize(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            int size = readSize(buf);
+            MessageLite msg = readProtobufMessage(buf.array(), buf.arrayOffset() + buf.position(), size);
+            buf.position(buf.position() + size);
+            return msg;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, MessageLite v) {
+            VarIntUtil.writeVarInt32(buf, v.getSerializedSize());
+            buf.put(v.toByteArray());
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+            int size = readSize(buf);
+            buf.position(buf.position() + size);
+        }
+
        
 
-        private MessageLite readProtobufMessage(byte[] bp) throws InvalidProtocolBufferException {
+        private MessageLite readProtobufMessage(byte[] bp, int offset, int length)
+                throws InvalidProtocolBufferException {
             try {
                 Builder b = (Builder) newBuilderMethod.invoke(null);
-                b.mergeFrom(bp);
+                b.mergeFrom(bp, offset, length);
                 return b.build();
             } catch (IllegalAccessException | InvocationTargetException e) {
                 throw new IllegalStateException(e);
@@ -380,6 +552,27 @@ public class ColumnSerializerFactory {
             stream.writeShort(v1);
         }
 
+        @Override
+        public String deserialize(ByteBuffer buf, ColumnDefinition cd) {
+            return enumValues.inverse().get(buf.getShort());
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf, String v) {
+            Short v1;
+            if ((enumValues == null) || (v1 = enumValues.get(v)) == null) {
+                tblDef.addEnumValue(this, v);
+                serialize(buf, v);
+                return;
+            }
+            buf.putShort(v1);
+        }
+
+        @Override
+        public void skip(ByteBuffer buf, ColumnDefinition cd) {
+            buf.position(buf.position() + 2);
+        }
+
         void setEnumValues(BiMap<String,Short> enumValues) {
             this.enumValues=enumValues;
         }
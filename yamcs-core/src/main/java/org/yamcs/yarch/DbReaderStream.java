@@ -10,4 +10,22 @@ import org.yamcs.yarch.streamsql.StreamSqlException;
 public interface DbReaderStream {
     public boolean addRelOpFilter(ColumnExpression cexpr, RelOp relOp, Object value) throws StreamSqlException;
     public boolean addInFilter(ColumnExpression cexpr, boolean negation, Set<Object> values) throws StreamSqlException;
+
+    /**
+     * Informs the stream that only the given columns are used downstream. The stream may omit the other columns from
+     * the tuples it emits.
+     * 
+     * @param columns
+     */
+    public default void setProjection(Set<String> columns) {
+    }
+
+    /**
+     * Allows the stream to read the data using up to the given number of threads. The order of the emitted tuples
+     * is not affected.
+     * 
+     * @param parallelism
+     */
+    public default void setParallelism(int parallelism) {
+    }
 }
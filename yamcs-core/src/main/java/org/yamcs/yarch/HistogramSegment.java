@@ -98,10 +98,14 @@ public class HistogramSegment {
     int dtime;
 
     /**
+     * Adds a point to the segment. Can be called multiple times on the same segment; the results fields are about the
+     * last call.
+     * 
      * @param dtime1
      *            delta time from segment start in milliseconds
      */
     public void merge(int dtime1) {
+        resetMergeState();
         this.dtime = dtime1;
         for (int i = 0; i < pps.size(); i++) {
             HistogramSegment.SegRecord r = pps.get(i);
@@ -164,6 +168,14 @@ public class HistogramSegment {
     int leftInterval = -1;
     int rightInterval = -1;
 
+    private void resetMergeState() {
+        mergeLeft = mergeRight = false;
+        duplicate = leftUpdated = centerAdded = rightUpdated = rightDeleted = false;
+        leftIndex = rightIndex = -1;
+        left = right = null;
+        leftInterval = rightInterval = -1;
+    }
+
     private void checkMergeLeft() { // check if it can be merged to left
         if ((dtime - left.dstop) < MAX_INTERVAL) {
             if (left.num == 1) {
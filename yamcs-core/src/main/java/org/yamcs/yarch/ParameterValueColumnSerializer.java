@@ -4,13 +4,17 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.OptionalInt;
 
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.utils.VarIntUtil;
 import org.yamcs.yarch.ColumnSerializerFactory.AbstractColumnSerializer;
 
 import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedOutputStream;
 
 public class ParameterValueColumnSerializer extends AbstractColumnSerializer<ParameterValue>{
 
@@ -40,4 +44,34 @@ public class ParameterValueColumnSerializer extends AbstractColumnSerializer<Par
         stream.writeInt(size);
         gpv.writeTo(stream);
     }
+
+    @Override
+    public ParameterValue deserialize(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+        int size = ColumnSerializerFactory.readSize(buf);
+        org.yamcs.protobuf.Pvalue.ParameterValue gpv = org.yamcs.protobuf.Pvalue.ParameterValue.newBuilder()
+                .mergeFrom(buf.array(), buf.arrayOffset() + buf.position(), size).build();
+        buf.position(buf.position() + size);
+        return ParameterValue.fromGpb(cd.getName(), gpv);
+    }
+
+    @Override
+    public void serialize(ByteBuffer buf, ParameterValue pv) {
+        org.yamcs.protobuf.Pvalue.ParameterValue gpv = pv.toProtobufParameterValue(Optional.empty(), OptionalInt.empty(), false);
+        int size = gpv.getSerializedSize();
+        VarIntUtil.writeVarInt32(buf, size);
+        try {
+            CodedOutputStream cos = CodedOutputStream.newInstance(buf);
+            gpv.writeTo(cos);
+            cos.flush();
+        } catch (IOException e) {
+            // thrown by the CodedOutputStream if the buffer is too small
+            throw new BufferOverflowException();
+        }
+    }
+
+    @Override
+    public void skip(ByteBuffer buf, ColumnDefinition cd) throws IOException {
+        int size = ColumnSerializerFactory.readSize(buf);
+        buf.position(buf.position() + size);
+    }
 }
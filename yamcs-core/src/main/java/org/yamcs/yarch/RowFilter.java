@@ -0,0 +1,245 @@
+package org.yamcs.yarch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yamcs.utils.IntArray;
+import org.yamcs.yarch.streamsql.RelOp;
+
+/**
+ * Conditions on the column values and list of columns pushed by the query into the table reader, such that the rows
+ * not matching the conditions and the columns not needed are not decoded.
+ * <p>
+ * Used from the table reader thread only.
+ */
+public class RowFilter {
+    final TableDefinition tableDefinition;
+    final List<Condition> conditions = new ArrayList<>();
+    // if null, all columns are part of the tuple
+    Set<String> projection;
+
+    // the fields below are computed for a given value definition of the table
+    TupleDefinition valueDef;
+    Condition[] keyConditions;
+    boolean[] keyProjected;
+    Condition[] valueConditions;
+    boolean[] valueProjected;
+    int numValueConditions;
+    // definitions of the filtered rows indexed by the value columns present in the row
+    Map<IntArray, TupleDefinition> rowDefinitions = new HashMap<>();
+
+    public RowFilter(TableDefinition tableDefinition) {
+        this.tableDefinition = tableDefinition;
+    }
+
+    /**
+     * Adds a condition on the value of a column. The rows not having the column do not match the condition.
+     *
+     * @param cdef
+     * @param relOp
+     * @param value
+     *            - has to be of the column type
+     */
+    public void addCondition(ColumnDefinition cdef, RelOp relOp, Object value) {
+        conditions.add(new Condition(cdef, relOp, value));
+        valueDef = null;
+    }
+
+    /**
+     * Restricts the columns of the tuples to the given ones
+     */
+    public void setProjection(Set<String> columns) {
+        this.projection = columns;
+        valueDef = null;
+    }
+
+    /**
+     * 
+     * @return a filter with the same conditions and projection, to be used from another thread
+     */
+    RowFilter copy() {
+        RowFilter rf = new RowFilter(tableDefinition);
+        rf.conditions.addAll(conditions);
+        rf.projection = projection;
+        return rf;
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty() && projection == null;
+    }
+
+    /**
+     * prepares the arrays used for filtering rows of the given value definition
+     */
+    void prepare(TupleDefinition vdef) {
+        if (vdef == valueDef) {
+            return;
+        }
+        TupleDefinition keyDef = tableDefinition.getKeyDefinition();
+        keyConditions = new Condition[keyDef.size()];
+        keyProjected = new boolean[keyDef.size()];
+        valueConditions = new Condition[vdef.size()];
+        valueProjected = new boolean[vdef.size()];
+        numValueConditions = 0;
+        for (Condition c : conditions) {
+            int idx = keyDef.getColumnIndex(c.cdef.getName());
+            if (idx >= 0) {
+                keyConditions[idx] = Condition.and(keyConditions[idx], c);
+            } else {
+                idx = vdef.getColumnIndex(c.cdef.getName());
+                if (idx >= 0) {
+                    if (valueConditions[idx] == null) {
+                        numValueConditions++;
+                    }
+                    valueConditions[idx] = Condition.and(valueConditions[idx], c);
+                } else { // the column does not exist, no row can match
+                    numValueConditions = Integer.MAX_VALUE;
+                }
+            }
+        }
+        for (int i = 0; i < keyDef.size(); i++) {
+            keyProjected[i] = projection == null || projection.contains(keyDef.getColumn(i).getName());
+        }
+        for (int i = 0; i < vdef.size(); i++) {
+            valueProjected[i] = projection == null || projection.contains(vdef.getColumn(i).getName());
+        }
+        rowDefinitions.clear();
+        valueDef = vdef;
+    }
+
+    /**
+     * returns the definition of a row made of the projected key columns followed by the given value columns
+     */
+    TupleDefinition getRowDefinition(IntArray valueIdx) {
+        TupleDefinition tdef = rowDefinitions.get(valueIdx);
+        if (tdef == null) {
+            tdef = new TupleDefinition();
+            TupleDefinition keyDef = tableDefinition.getKeyDefinition();
+            for (int i = 0; i < keyDef.size(); i++) {
+                if (keyProjected[i]) {
+                    tdef.addColumn(keyDef.getColumn(i));
+                }
+            }
+            for (int i = 0; i < valueIdx.size(); i++) {
+                tdef.addColumn(valueDef.getColumn(valueIdx.get(i)));
+            }
+            if (rowDefinitions.size() < TableDefinition.MAX_ROW_DEFINITIONS) {
+                rowDefinitions.put(valueIdx, tdef);
+            }
+        }
+        return tdef;
+    }
+
+    /**
+     * Applies the filter on a fully decoded tuple
+     *
+     * @return the tuple restricted to the projected columns or null if the tuple does not match the conditions
+     */
+    Tuple apply(Tuple t) {
+        for (Condition c : conditions) {
+            if (!t.hasColumn(c.cdef.getName()) || !c.matches(t.getColumn(c.cdef.getName()))) {
+                return null;
+            }
+        }
+        if (projection == null) {
+            return t;
+        }
+        TupleDefinition tdef = new TupleDefinition();
+        List<Object> cols = new ArrayList<>(projection.size());
+        for (int i = 0; i < t.size(); i++) {
+            ColumnDefinition cd = t.getColumnDefinition(i);
+            if (projection.contains(cd.getName())) {
+                tdef.addColumn(cd);
+                cols.add(t.getColumn(i));
+            }
+        }
+        return new Tuple(tdef, cols);
+    }
+
+    @Override
+    public String toString() {
+        return "conditions: " + conditions + " projection: " + projection;
+    }
+
+    static class Condition {
+        final ColumnDefinition cdef;
+        final RelOp relOp;
+        final Object value;
+        // additional condition on the same column
+        Condition next;
+
+        Condition(ColumnDefinition cdef, RelOp relOp, Object value) {
+            this.cdef = cdef;
+            this.relOp = relOp;
+            this.value = value;
+        }
+
+        static Condition and(Condition c1, Condition c2) {
+            if (c1 == null) {
+                return c2;
+            }
+            Condition c = new Condition(c2.cdef, c2.relOp, c2.value);
+            c.next = c1;
+            return c;
+        }
+
+        boolean matches(Object v) {
+            if (v == null) {
+                return false;
+            }
+            boolean m;
+            switch (relOp) {
+            case EQUAL:
+                m = compare(v) == 0;
+                break;
+            case NOT_EQUAL:
+                m = compare(v) != 0;
+                break;
+            case GREATER:
+                m = compare(v) > 0;
+                break;
+            case GREATER_OR_EQUAL:
+                m = compare(v) >= 0;
+                break;
+            case LESS:
+                m = compare(v) < 0;
+                break;
+            case LESS_OR_EQUAL:
+                m = compare(v) <= 0;
+                break;
+            default:
+                throw new IllegalStateException("Unknown operator " + relOp);
+            }
+            return m && (next == null || next.matches(v));
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private int compare(Object v) {
+            if (v instanceof Number) {
+                Number n1 = (Number) v;
+                Number n2 = (Number) value;
+                if (isIntegral(n1) && isIntegral(n2)) {
+                    return Long.compare(n1.longValue(), n2.longValue());
+                } else {
+                    return Double.compare(n1.doubleValue(), n2.doubleValue());
+                }
+            } else if (relOp == RelOp.EQUAL || relOp == RelOp.NOT_EQUAL) {
+                return v.equals(value) ? 0 : 1;
+            } else {
+                return ((Comparable) v).compareTo(value);
+            }
+        }
+
+        private static boolean isIntegral(Number n) {
+            return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+        }
+
+        @Override
+        public String toString() {
+            return cdef.getName() + " " + relOp.getSign() + " " + value;
+        }
+    }
+}
@@ -5,16 +5,23 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.utils.DatabaseCorruptionException;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.IntArray;
 import org.yamcs.utils.StringConverter;
+import org.yamcs.utils.VarIntUtil;
 import org.yamcs.yarch.ColumnSerializerFactory.EnumColumnSerializer;
 import org.yamcs.yarch.PartitioningSpec._type;
 import org.yamcs.yarch.streamsql.ColumnNotFoundException;
@@ -34,6 +41,18 @@ import com.google.common.collect.HashBiMap;
  * 
  * The key is encoded as a bytestream of all the columns in order The value is
  * encoded as a bytestream of all the columns prceded by their index.
+ * <p>
+ * Two encodings of the value are supported:
+ * <ul>
+ * <li>v1: each column is preceded by its index as a 4 bytes integer and the
+ * row ends with a -1 index. The first byte of a row is therefore always 0 or
+ * 0xFF.</li>
+ * <li>v2: the row starts with the {@link #VALUE_FORMAT_V2} byte, followed by
+ * the columns preceded by their index as varint. The strings, binaries and
+ * protobuf messages are preceded by their size as varint.</li>
+ * </ul>
+ * The rows are written in the v2 format and the rows in v1 format are read
+ * until they are rewritten, such that the tables are migrated lazily.
  * 
  * 
  * A table can also be partitioned in multiple files on disc, according to the
@@ -110,6 +129,23 @@ public class TableDefinition {
     // used for new rocksdb storage engine
     private String tablespaceName;
 
+    /**
+     * first byte of the values serialized in the v2 format
+     */
+    public static final byte VALUE_FORMAT_V2 = 2;
+    // maximum number of different row definitions that are cached
+    static final int MAX_ROW_DEFINITIONS = 1000;
+
+    // definitions of the rows read from the table, indexed by the value columns present in the row
+    // they are shared between all the tuples having the same columns
+    private final Map<IntArray, TupleDefinition> rowDefinitions = new ConcurrentHashMap<>();
+
+    // buffers larger than this are not kept for reuse after serializing a value
+    static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+    // buffer reused by each thread to serialize the values
+    static final ThreadLocal<ByteBuffer> serializationBuffer = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(1024));
+
     /**
      * Used when creating an "empty"(i.e. no enum values) table via sql.
      * 
@@ -405,6 +441,7 @@ public class TableDefinition {
         }
         ydb.serializeTableDefinition(this);
         enumValues = serializedEmumValues;
+        rowDefinitions.clear();
     }
 
     /**
@@ -461,14 +498,68 @@ public class TableDefinition {
 
     /**
      * Transform the value part of the tuple into a byte array to be written on
-     * disk. Each column is preceded by a tag (the column index). If there are
-     * columns in the tuple which are not in the valueDef, they are added and
-     * the TableDefinition is serialized on disk.
+     * disk, using the v2 format. Each column is preceded by a tag (the column
+     * index). If there are columns in the tuple which are not in the valueDef,
+     * they are added and the TableDefinition is serialized on disk.
      * 
      * @param t
      * @return the serialized version of the value part of the tuple
      */
     public byte[] serializeValue(Tuple t) {
+        ByteBuffer bb = serializationBuffer.get();
+        while (true) {
+            bb.clear();
+            try {
+                if (!serializeValue(t, bb)) { // call again this function after adding the missing columns
+                    addMissingValueColumns(t.getDefinition());
+                    continue;
+                }
+            } catch (BufferOverflowException e) {
+                bb = ByteBuffer.allocate(2 * bb.capacity());
+                if (bb.capacity() <= MAX_REUSED_BUFFER_SIZE) {
+                    serializationBuffer.set(bb);
+                }
+                continue;
+            }
+            return Arrays.copyOf(bb.array(), bb.position());
+        }
+    }
+
+    /**
+     * @return false if the tuple contains columns not part of the table
+     *         definition
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private boolean serializeValue(Tuple t, ByteBuffer bb) {
+        TupleDefinition tdef = t.getDefinition();
+        bb.put(VALUE_FORMAT_V2);
+        for (int i = 0; i < tdef.size(); i++) {
+            ColumnDefinition tupleCd = tdef.getColumn(i);
+            if (keyDef.hasColumn(tupleCd.getName())) {
+                continue;
+            }
+            int cidx = valueDef.getColumnIndex(tupleCd.getName());
+            if (cidx == -1) {
+                return false;
+            }
+            ColumnDefinition tableCd = valueDef.getColumn(cidx);
+            Object v = t.getColumn(i);
+            Object v1 = DataType.castAs(tupleCd.type, tableCd.type, v);
+            ColumnSerializer tcs = valueSerializers.get(cidx);
+            VarIntUtil.writeVarInt32(bb, cidx);
+            tcs.serialize(bb, v1);
+        }
+        return true;
+    }
+
+    /**
+     * Transform the value part of the tuple into a byte array using the v1
+     * format, readable by the previous versions.
+     * 
+     * @param t
+     * @return the serialized version of the value part of the tuple
+     */
+    byte[] serializeValueV1(Tuple t) {
         TupleDefinition tdef = t.getDefinition();
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             DataOutputStream dos = new DataOutputStream(baos);
@@ -481,7 +572,7 @@ public class TableDefinition {
                 if (cidx == -1) { // call again this function after adding the
                                   // missing columns to the table
                     addMissingValueColumns(tdef);
-                    return serializeValue(t);
+                    return serializeValueV1(t);
                 }
                 ColumnDefinition tableCd = valueDef.getColumn(cidx);
                 Object v = t.getColumn(i);
@@ -499,45 +590,165 @@ public class TableDefinition {
     }
 
     public Tuple deserialize(byte[] k, byte[] v) {
-        TupleDefinition tdef = keyDef.copy();
-        ArrayList<Object> cols = new ArrayList<>();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(k));
+        TupleDefinition vdef = valueDef;
+        int numKeys = keyDef.size();
+        Object[] cols = new Object[numKeys + vdef.size()];
+        IntArray columnIdx = new IntArray(vdef.size());
         try {
             // deserialize the key
-            for (int i = 0; i < keyDef.size(); i++) {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(k));
+            for (int i = 0; i < numKeys; i++) {
                 ColumnDefinition cd = keyDef.getColumn(i);
-                ColumnSerializer cs = keySerializers.get(i);
-                Object o = cs.deserialize(dis, cd);
-                cols.add(o);
+                ColumnSerializer<?> cs = keySerializers.get(i);
+                cols[i] = cs.deserialize(dis, cd);
             }
 
             // deserialize the value
-            dis = new DataInputStream(new ByteArrayInputStream(v));
-            while (true) {
-                int cidx = dis.readInt(); // column index
-                if (cidx == -1) {
-                    break;
+            if (v.length > 0 && v[0] == VALUE_FORMAT_V2) {
+                ByteBuffer bb = ByteBuffer.wrap(v, 1, v.length - 1);
+                while (bb.hasRemaining()) {
+                    int cidx = VarIntUtil.readVarInt32(bb);
+                    checkColumnIndex(vdef, cidx);
+                    cols[numKeys + columnIdx.size()] = valueSerializers.get(cidx).deserialize(bb,
+                            vdef.getColumn(cidx));
+                    columnIdx.add(cidx);
                 }
-                if (cidx >= valueDef.size()) {
-                    throw new IllegalArgumentException(
-                            "Reference to index " + cidx + " found but the table definition does not have this column");
+            } else {
+                dis = new DataInputStream(new ByteArrayInputStream(v));
+                while (true) {
+                    int cidx = dis.readInt(); // column index
+                    if (cidx == -1) {
+                        break;
+                    }
+                    checkColumnIndex(vdef, cidx);
+                    cols[numKeys + columnIdx.size()] = valueSerializers.get(cidx).deserialize(dis,
+                            vdef.getColumn(cidx));
+                    columnIdx.add(cidx);
                 }
+            }
+        } catch (IOException | DecodingException | BufferUnderflowException e) {
+            throw new DatabaseCorruptionException(
+                    "cannot deserialize (" + StringConverter.byteBufferToHexString(ByteBuffer.wrap(k)) + ","
+                            + StringConverter.byteBufferToHexString(ByteBuffer.wrap(v)) + ")",
+                    e);
+        }
+        int n = numKeys + columnIdx.size();
+        if (n < cols.length) {
+            cols = Arrays.copyOf(cols, n);
+        }
+        return new Tuple(getRowDefinition(vdef, columnIdx), cols);
+    }
+
+    /**
+     * Deserializes a row decoding only the columns required by the filter.
+     * <p>
+     * For the rows in the v2 format, the columns used in the filter conditions are decoded first and the other columns
+     * are skipped; the projected columns are decoded only if the row matches the conditions. The rows in the v1 format
+     * are fully decoded and then filtered.
+     * 
+     * @param k
+     * @param v
+     * @param filter
+     *            - if null, the full row is returned
+     * @return the tuple containing the projected columns or null if the row does not match the filter conditions
+     */
+    @SuppressWarnings("rawtypes")
+    public Tuple deserialize(byte[] k, byte[] v, RowFilter filter) {
+        if (filter == null) {
+            return deserialize(k, v);
+        }
+        if (v.length == 0 || v[0] != VALUE_FORMAT_V2) {
+            Tuple t = deserialize(k, v);
+            return filter.apply(t);
+        }
+        TupleDefinition vdef = valueDef;
+        filter.prepare(vdef);
+
+        int numKeys = keyDef.size();
+        Object[] cols = new Object[numKeys + vdef.size()];
+        int n = 0;
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(k));
+            for (int i = 0; i < numKeys; i++) {
+                Object o = keySerializers.get(i).deserialize(dis, keyDef.getColumn(i));
+                RowFilter.Condition c = filter.keyConditions[i];
+                if (c != null && !c.matches(o)) {
+                    return null;
+                }
+                if (filter.keyProjected[i]) {
+                    cols[n++] = o;
+                }
+            }
 
-                ColumnDefinition cd = valueDef.getColumn(cidx);
+            // first pass: check the conditions and find the position of the projected columns
+            ByteBuffer bb = ByteBuffer.wrap(v, 1, v.length - 1);
+            IntArray columnIdx = new IntArray(vdef.size());
+            IntArray positions = new IntArray(vdef.size());
+            int numMatched = 0;
+            while (bb.hasRemaining()) {
+                int cidx = VarIntUtil.readVarInt32(bb);
+                checkColumnIndex(vdef, cidx);
+                if (filter.valueProjected[cidx]) {
+                    columnIdx.add(cidx);
+                    positions.add(bb.position());
+                }
                 ColumnSerializer cs = valueSerializers.get(cidx);
+                RowFilter.Condition c = filter.valueConditions[cidx];
+                if (c == null) {
+                    cs.skip(bb, vdef.getColumn(cidx));
+                } else if (c.matches(cs.deserialize(bb, vdef.getColumn(cidx)))) {
+                    numMatched++;
+                } else {
+                    return null;
+                }
+            }
+            if (numMatched < filter.numValueConditions) { // some columns are missing from the row
+                return null;
+            }
 
-                Object o = cs.deserialize(dis, cd);
-                tdef.addColumn(cd);
-                cols.add(o);
+            // second pass: decode the projected columns
+            for (int i = 0; i < columnIdx.size(); i++) {
+                int cidx = columnIdx.get(i);
+                bb.position(positions.get(i));
+                cols[n++] = valueSerializers.get(cidx).deserialize(bb, vdef.getColumn(cidx));
             }
-        } catch (IOException e) {
+            if (n < cols.length) {
+                cols = Arrays.copyOf(cols, n);
+            }
+            return new Tuple(filter.getRowDefinition(columnIdx), cols);
+        } catch (IOException | DecodingException | BufferUnderflowException e) {
             throw new DatabaseCorruptionException(
                     "cannot deserialize (" + StringConverter.byteBufferToHexString(ByteBuffer.wrap(k)) + ","
                             + StringConverter.byteBufferToHexString(ByteBuffer.wrap(v)) + ")",
                     e);
         }
+    }
+
+    private static void checkColumnIndex(TupleDefinition vdef, int cidx) {
+        if (cidx < 0 || cidx >= vdef.size()) {
+            throw new IllegalArgumentException(
+                    "Reference to index " + cidx + " found but the table definition does not have this column");
+        }
+    }
 
-        return new Tuple(tdef, cols.toArray());
+    /**
+     * returns the definition of a row containing the key columns followed by the given value columns.
+     * <p>
+     * The definitions are cached such that the rows with the same columns share the same definition; they should not
+     * be modified.
+     */
+    private TupleDefinition getRowDefinition(TupleDefinition vdef, IntArray columnIdx) {
+        TupleDefinition tdef = rowDefinitions.get(columnIdx);
+        if (tdef == null) {
+            tdef = keyDef.copy();
+            for (int i = 0; i < columnIdx.size(); i++) {
+                tdef.addColumn(vdef.getColumn(columnIdx.get(i)));
+            }
+            if (rowDefinitions.size() < MAX_ROW_DEFINITIONS) {
+                rowDefinitions.put(columnIdx, tdef);
+            }
+        }
+        return tdef;
     }
 
     public boolean isCompressed() {
@@ -415,7 +415,15 @@ public class YarchDatabaseInstance {
     }
 
     public StreamSqlResult execute(String query, Object... args) throws StreamSqlException, ParseException {
-        ExecutionContext context = new ExecutionContext(instanceName);
+        return execute(new ExecutionContext(instanceName), query, args);
+    }
+
+    /**
+     * Executes the query in the given context; the context allows to pass options which are not part of the query
+     * language (e.g. the parallelism of the table readers).
+     */
+    public StreamSqlResult execute(ExecutionContext context, String query, Object... args)
+            throws StreamSqlException, ParseException {
         StreamSqlParser parser = new StreamSqlParser(new java.io.StringReader(query));
         parser.setArgs(args);
         try {
@@ -84,15 +84,18 @@ public class HistogramRebuilder {
         stream.addSubscriber(new StreamSubscriber() {
             @Override
             public void streamClosed(Stream stream) {
-                cf.complete(null);
+                try {
+                    tw.flushHistograms();
+                    cf.complete(null);
+                } catch (Exception e) {
+                    cf.completeExceptionally(e);
+                }
             }
 
             @Override
             public void onTuple(Stream stream, Tuple tuple) {
                 try {
-                    RdbPartition partition = tw.getDbPartition(tuple);
-                    YRDB db = tablespace.getRdb(partition.dir, false);
-                    tw.addHistogram(db, tuple);
+                    tw.addHistogram(tuple);
                 } catch (Exception e) {
                     cf.completeExceptionally(e);
                 }
@@ -0,0 +1,263 @@
+package org.yamcs.yarch.rocksdb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.yamcs.YamcsServer;
+import org.yamcs.utils.ByteArrayWrapper;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.rocksdb.RdbConfig.TableWriterConfig;
+
+/**
+ * Table writer which collects the tuples in one RocksDB {@link WriteBatch} per partition and commits them all together
+ * when either the maximum number of tuples has been collected or the oldest tuple has been waiting for more than the
+ * configured latency.
+ * <p>
+ * To avoid one point read for each tuple in the INSERT and UPSERT modes, the keys of the last inserted tuples are kept
+ * in memory and for the other keys the bloom filters are consulted (via {@link YRDB#keyMayExist(byte[])}) before
+ * reading from the database.
+ * <p>
+ * Only the INSERT, UPSERT and LOAD modes are supported; the append modes need to read back the rows and use the
+ * {@link RdbTableWriter}.
+ *
+ * @author nm
+ *
+ */
+public class RdbBatchedTableWriter extends RdbTableWriter {
+    static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, (ThreadFactory) r -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        t.setName("RdbBatchedTableWriter-commit");
+        return t;
+    });
+    static final WriteOptions writeOptions = new WriteOptions();
+    static final long STATS_INTERVAL = 60000;
+
+    final TableWriterConfig config;
+    final Map<RdbPartition, PartitionBatch> batches = new HashMap<>();
+    final Map<ByteArrayWrapper, Boolean> recentKeys;
+
+    // number of tuples in the uncommitted batches
+    int pendingCount;
+    // System.nanoTime() when the first tuple of the uncommitted batches has been received
+    long firstPendingTime;
+
+    // statistics
+    long numCommits;
+    long numCommittedTuples;
+    long totalCommitTime;
+    long maxCommitTime;
+    long lastStatsTime;
+
+    final ScheduledFuture<?> commitFuture;
+    boolean closed = false;
+
+    public RdbBatchedTableWriter(Tablespace tablespace, YarchDatabaseInstance ydb, TableDefinition tableDefinition,
+            InsertMode mode, RdbPartitionManager pm, TableWriterConfig config) {
+        super(tablespace, ydb, tableDefinition, mode, pm);
+        if (mode == InsertMode.INSERT_APPEND || mode == InsertMode.UPSERT_APPEND) {
+            throw new IllegalArgumentException("Insert mode " + mode + " not supported by the batched writer");
+        }
+        this.config = config;
+        // the uncommitted keys are always the most recently inserted ones so they will not be evicted
+        int keyCacheSize = Math.max(config.getKeyCacheSize(), config.getMaxBatchSize());
+        this.recentKeys = new LinkedHashMap<ByteArrayWrapper, Boolean>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Boolean> eldest) {
+                return size() > keyCacheSize;
+            }
+        };
+        long latency = config.getMaxBatchLatency();
+        commitFuture = timer.scheduleAtFixedRate(this::commitIfExpired, latency, latency, TimeUnit.MILLISECONDS);
+        lastStatsTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void onTuple(Stream stream, Tuple t) {
+        if (closed) {
+            log.warn("Received tuple after the writer has been closed, ignoring");
+            return;
+        }
+        try {
+            RdbPartition partition = getDbPartition(t);
+            PartitionBatch pb = batches.get(partition);
+            if (pb == null) {
+                pb = new PartitionBatch(tablespace.getRdb(partition.dir, false));
+                batches.put(partition, pb);
+            }
+            byte[] k = getPartitionKey(partition, tableDefinition.serializeKey(t));
+            boolean inserted;
+            switch (mode) {
+            case INSERT:
+                inserted = !exists(pb.db, k);
+                if (inserted) {
+                    pb.put(k, tableDefinition.serializeValue(t));
+                }
+                break;
+            case UPSERT:
+                inserted = !exists(pb.db, k);
+                pb.put(k, tableDefinition.serializeValue(t));
+                break;
+            default: // LOAD
+                inserted = true;
+                pb.put(k, tableDefinition.serializeValue(t));
+            }
+            if (inserted && tableDefinition.hasHistogram()) {
+                addHistogram(t);
+            }
+            if (pendingCount == 0) {
+                firstPendingTime = System.nanoTime();
+            }
+            pendingCount++;
+            if (pendingCount >= config.getMaxBatchSize()) {
+                commit();
+            }
+        } catch (IOException | RocksDBException e) {
+            handleError(e);
+        }
+    }
+
+    private boolean exists(YRDB db, byte[] k) throws RocksDBException {
+        ByteArrayWrapper baw = new ByteArrayWrapper(k);
+        if (recentKeys.containsKey(baw)) {
+            return true;
+        }
+        recentKeys.put(baw, Boolean.TRUE);
+        return db.keyMayExist(k) && db.get(k) != null;
+    }
+
+    private synchronized void commitIfExpired() {
+        try {
+            if (pendingCount > 0 && System.nanoTime() - firstPendingTime >= config.getMaxBatchLatency() * 1_000_000) {
+                commit();
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastStatsTime >= STATS_INTERVAL) {
+                lastStatsTime = now;
+                log.debug("{}.{}: {} commits, {} tuples, average commit time: {} us, max commit time: {} us",
+                        ydb.getName(), tableDefinition.getName(), numCommits, numCommittedTuples,
+                        getAverageCommitTime(), maxCommitTime / 1000);
+            }
+        } catch (RocksDBException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * Writes all the pending batches to the database.
+     * <p>
+     * The key cache is not cleared after the commit such that the next inserts can still use it.
+     */
+    private void commit() throws RocksDBException {
+        long t0 = System.nanoTime();
+        try {
+            for (PartitionBatch pb : batches.values()) {
+                pb.db.write(writeOptions, pb.batch);
+            }
+        } finally {
+            for (PartitionBatch pb : batches.values()) {
+                pb.batch.close();
+                tablespace.dispose(pb.db);
+            }
+            batches.clear();
+        }
+        long d = System.nanoTime() - t0;
+        numCommits++;
+        numCommittedTuples += pendingCount;
+        totalCommitTime += d;
+        if (d > maxCommitTime) {
+            maxCommitTime = d;
+        }
+        pendingCount = 0;
+    }
+
+    private void handleError(Exception e) {
+        log.error("failed to insert a record: ", e);
+        YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                "failed to insert a record in " + tableDefinition.getName() + ": " + e);
+    }
+
+    /**
+     * commits the pending tuples and stops the commit timer.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        commitFuture.cancel(false);
+        try {
+            if (pendingCount > 0) {
+                commit();
+            }
+            flushHistograms();
+        } catch (IOException | RocksDBException e) {
+            handleError(e);
+        }
+    }
+
+    @Override
+    public void streamClosed(Stream stream) {
+        close();
+    }
+
+    /**
+     *
+     * @return the number of tuples waiting to be committed
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     *
+     * @return the number of batches committed
+     */
+    public synchronized long getNumCommits() {
+        return numCommits;
+    }
+
+    /**
+     *
+     * @return average time in microseconds for writing the batches to the database
+     */
+    public synchronized long getAverageCommitTime() {
+        return numCommits == 0 ? 0 : totalCommitTime / numCommits / 1000;
+    }
+
+    /**
+     *
+     * @return maximum time in microseconds for writing the batches to the database
+     */
+    public synchronized long getMaxCommitTime() {
+        return maxCommitTime / 1000;
+    }
+
+    static class PartitionBatch {
+        final YRDB db;
+        final WriteBatch batch = new WriteBatch();
+
+        PartitionBatch(YRDB db) {
+            this.db = db;
+        }
+
+        void put(byte[] k, byte[] v) {
+            batch.put(k, v);
+        }
+    }
+}
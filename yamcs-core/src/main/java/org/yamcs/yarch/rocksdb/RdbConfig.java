@@ -31,9 +31,12 @@ public class RdbConfig {
     public static final String KEY_OPTIONS = "options";
     public static final String KEY_TABLESPACE_NAME_PATTERN = "tablespaceNamePattern";
     public static final String KEY_TF_CONFIG = "tableFormatConfig";
+    public static final String KEY_TABLE_WRITER_CONFIG = "tableWriterConfig";
+    public static final String KEY_TABLE_NAME_PATTERN = "tableNamePattern";
     public static final int DEFAULT_MAX_OPEN_FILES = 1000;
     
     private List<TablespaceConfig> tblConfigList = new ArrayList<>();
+    private List<TableWriterConfig> twConfigList = new ArrayList<>();
     final Env env;
     final ColumnFamilyOptions defaultColumnFamilyOptions;
     final Options defaultOptions;
@@ -61,6 +64,15 @@ public class RdbConfig {
                     tblConfigList.add(tblConf);
                 }
             }
+            if(rdbOptions.containsKey(KEY_TABLE_WRITER_CONFIG)) {
+                List<Object> twConfigs = YConfiguration.getList(rdbOptions, KEY_TABLE_WRITER_CONFIG);
+                for(Object o: twConfigs) {
+                    if(!(o instanceof Map)) {
+                        throw new ConfigurationException("Error in rdbConfig -> tableWriterConfig in yamcs.yaml: the entries of tableWriterConfig have to be maps");
+                    }
+                    twConfigList.add(new TableWriterConfig((Map<String, Object>)o));
+                }
+            }
         }
         
         env = Env.getDefault();
@@ -127,6 +139,70 @@ public class RdbConfig {
         return null;
     }
     
+    /**
+     * 
+     * @param tableName
+     * @return the first table writer config that matches the table name or null if no config matches
+     */
+    public TableWriterConfig getTableWriterConfig(String tableName) {
+        for(TableWriterConfig twc: twConfigList) {
+            if(twc.tableNamePattern.matcher(tableName).matches()) {
+                return twc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Configuration of the batched table writer (see {@link RdbBatchedTableWriter}).
+     * <p>
+     * The tuples are collected in a RocksDB WriteBatch and committed when either maxBatchSize tuples have been
+     * collected or the oldest tuple in the batch is older than maxBatchLatency milliseconds.
+     */
+    public static class TableWriterConfig {
+        public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+        public static final int DEFAULT_MAX_BATCH_LATENCY = 5;
+        public static final int DEFAULT_KEY_CACHE_SIZE = 10000;
+
+        Pattern tableNamePattern;
+        int maxBatchSize;
+        long maxBatchLatency;
+        int keyCacheSize;
+
+        TableWriterConfig(Map<String, Object> m) throws ConfigurationException {
+            String s = YConfiguration.getString(m, KEY_TABLE_NAME_PATTERN);
+            try {
+                tableNamePattern = Pattern.compile(s);
+            } catch (PatternSyntaxException e) {
+                throw new ConfigurationException("Cannot parse regexp "+e);
+            }
+            maxBatchSize = YConfiguration.getInt(m, "maxBatchSize", DEFAULT_MAX_BATCH_SIZE);
+            maxBatchLatency = YConfiguration.getLong(m, "maxBatchLatency", DEFAULT_MAX_BATCH_LATENCY);
+            keyCacheSize = YConfiguration.getInt(m, "keyCacheSize", DEFAULT_KEY_CACHE_SIZE);
+            if(maxBatchSize<1 || maxBatchLatency<1) {
+                throw new ConfigurationException("Exception when reading table writer configuration for '"+tableNamePattern+"': maxBatchSize and maxBatchLatency have to be positive");
+            }
+        }
+
+        public TableWriterConfig(int maxBatchSize, long maxBatchLatency, int keyCacheSize) {
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchLatency = maxBatchLatency;
+            this.keyCacheSize = keyCacheSize;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public long getMaxBatchLatency() {
+            return maxBatchLatency;
+        }
+
+        public int getKeyCacheSize() {
+            return keyCacheSize;
+        }
+    }
+
     public static class TablespaceConfig {
         Pattern tableNamePattern;
         ColumnFamilyOptions cfOptions = new ColumnFamilyOptions();
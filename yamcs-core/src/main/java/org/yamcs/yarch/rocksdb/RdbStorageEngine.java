@@ -25,6 +25,7 @@ import org.yamcs.yarch.TableWriter.InsertMode;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.YarchException;
+import org.yamcs.yarch.rocksdb.RdbConfig.TableWriterConfig;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 
 /**
@@ -117,6 +118,16 @@ public class RdbStorageEngine implements StorageEngine {
         }
         checkFormatVersion(ydb, tblDef);
 
+        TableWriterConfig twConfig = RdbConfig.getInstance().getTableWriterConfig(tblDef.getName());
+        if (twConfig != null) {
+            if (insertMode == InsertMode.INSERT_APPEND || insertMode == InsertMode.UPSERT_APPEND) {
+                log.warn("Insert mode {} not supported by the batched table writer; using the default writer for {}",
+                        insertMode, tblDef.getName());
+            } else {
+                return new RdbBatchedTableWriter(getTablespace(ydb, tblDef), ydb, tblDef, insertMode,
+                        partitionManagers.get(tblDef), twConfig);
+            }
+        }
         return new RdbTableWriter(getTablespace(ydb, tblDef), ydb, tblDef, insertMode, partitionManagers.get(tblDef));
     }
 
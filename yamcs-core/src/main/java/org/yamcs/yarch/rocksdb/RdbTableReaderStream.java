@@ -1,10 +1,17 @@
 package org.yamcs.yarch.rocksdb;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.rocksdb.ReadOptions;
@@ -18,7 +25,9 @@ import org.yamcs.yarch.IndexFilter;
 import org.yamcs.yarch.Partition;
 import org.yamcs.yarch.PartitioningSpec;
 import org.yamcs.yarch.RawTuple;
+import org.yamcs.yarch.RowFilter;
 import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchDatabaseInstance;
 
 /**
@@ -28,6 +37,9 @@ import org.yamcs.yarch.YarchDatabaseInstance;
  */
 public class RdbTableReaderStream extends AbstractTableReaderStream implements Runnable, DbReaderStream {
     static AtomicInteger count = new AtomicInteger(0);
+    // used in the parallel scan: the rows buffered for one time interval are limited to approximately this number
+    static final int MAX_BUFFERED_ROWS = 8192;
+    static final int MIN_CHUNK_SIZE = 16;
     final PartitioningSpec partitioningSpec;
     final TableDefinition tableDefinition;
     private long numRecordsRead = 0;
@@ -50,6 +62,15 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
     }
 
 
+    @Override
+    protected void runIntervals(Iterator<List<Partition>> partitionIterator, IndexFilter range) throws IOException {
+        if (parallelism > 1 && !follow) {
+            new ParallelScan(partitionIterator, range).run();
+        } else {
+            super.runIntervals(partitionIterator, range);
+        }
+    }
+
     /**
      * reads a file, sending data only that conform with the start and end filters. 
      * returns true if the stop condition is met
@@ -59,26 +80,8 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
      */
     @Override
     protected boolean runPartitions(List<Partition> partitions, IndexFilter range) throws IOException {
-       
-        byte[] rangeStart=null;
-        boolean strictStart=false;
-        byte[] rangeEnd=null;
-        boolean strictEnd=false;
-
-        if(range!=null) {
-            ColumnDefinition cd = tableDefinition.getKeyDefinition().getColumn(0);
-            ColumnSerializer cs = tableDefinition.getColumnSerializer(cd.getName());
-            if(range.keyStart!=null) {
-                strictStart = range.strictStart;
-                rangeStart = cs.toByteArray(range.keyStart);
-            }
-            if(range.keyEnd!=null) {
-                strictEnd = range.strictEnd;
-                rangeEnd = cs.toByteArray(range.keyEnd);
-            }
-        }
-        
-        return runValuePartitions(partitions, rangeStart, strictStart, rangeEnd, strictEnd);
+        KeyRange kr = new KeyRange(tableDefinition, range);
+        return runValuePartitions(partitions, kr.start, kr.strictStart, kr.end, kr.strictEnd);
     }
 
     /*
@@ -204,6 +207,308 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
         return numRecordsRead;
     }
 
+    /**
+     * The range of the first key column converted to the serialized form of the column
+     */
+    static class KeyRange {
+        byte[] start = null;
+        boolean strictStart = false;
+        byte[] end = null;
+        boolean strictEnd = false;
+
+        KeyRange(TableDefinition tblDef, IndexFilter range) {
+            if (range == null) {
+                return;
+            }
+            ColumnDefinition cd = tblDef.getKeyDefinition().getColumn(0);
+            ColumnSerializer<?> cs = tblDef.getColumnSerializer(cd.getName());
+            if (range.keyStart != null) {
+                strictStart = range.strictStart;
+                start = serialize(cs, range.keyStart);
+            }
+            if (range.keyEnd != null) {
+                strictEnd = range.strictEnd;
+                end = serialize(cs, range.keyEnd);
+            }
+        }
+
+        // the key values of the filter have been converted to the column type when the filter has been built
+        @SuppressWarnings("unchecked")
+        private static <T> byte[] serialize(ColumnSerializer<T> cs, Object v) {
+            return cs.toByteArray((T) v);
+        }
+    }
+
+    /**
+     * Reads the partitions using the scan pool of the tablespace.
+     * <p>
+     * The partitions of the current time interval and of the next parallelism-1 intervals are read and decoded in
+     * chunks by the pool threads, while the stream thread merges the chunks of the current interval such that the
+     * tuples are emitted in the same order as when reading serially.
+     * <p>
+     * The pool threads never block: each partition has at most one chunk read in advance, the next one being
+     * requested only when the stream thread starts consuming it. The pool is shared by all the streams of the
+     * tablespace; the parallelism limits the number of intervals read in advance by one stream.
+     */
+    class ParallelScan {
+        final Iterator<List<Partition>> partitionIterator;
+        final ExecutorService executor;
+        final Deque<IntervalScan> intervals = new ArrayDeque<>();
+        final byte[] rangeStart;
+        final boolean strictStart;
+        final byte[] rangeEnd;
+        final boolean strictEnd;
+
+        ParallelScan(Iterator<List<Partition>> partitionIterator, IndexFilter range) {
+            this.partitionIterator = partitionIterator;
+            KeyRange kr = new KeyRange(tableDefinition, range);
+            rangeStart = kr.start;
+            strictStart = kr.strictStart;
+            rangeEnd = kr.end;
+            strictEnd = kr.strictEnd;
+            executor = tablespace.getScanExecutor();
+        }
+
+        void run() throws IOException {
+            try {
+                prefetch();
+                while (!quit && !intervals.isEmpty()) {
+                    IntervalScan is = intervals.poll();
+                    boolean endReached;
+                    try {
+                        endReached = is.merge();
+                    } finally {
+                        is.close();
+                    }
+                    if (endReached) {
+                        break;
+                    }
+                    prefetch();
+                }
+            } finally {
+                for (IntervalScan is : intervals) {
+                    is.close();
+                }
+            }
+        }
+
+        private void prefetch() {
+            while (!quit && intervals.size() < parallelism && partitionIterator.hasNext()) {
+                intervals.add(new IntervalScan(partitionIterator.next()));
+            }
+        }
+
+        /**
+         * scans the partitions of one time interval; they are all in the same RocksDB database
+         */
+        class IntervalScan {
+            final List<PartitionScan> scans = new ArrayList<>();
+            YRDB rdb;
+            ReadOptions readOptions;
+            Snapshot snapshot;
+
+            IntervalScan(List<Partition> partitions) {
+                RdbPartition p1 = (RdbPartition) partitions.get(0);
+                log.debug("opening database {}", p1.dir);
+                try {
+                    rdb = tablespace.getRdb(p1.dir, false);
+                } catch (IOException e) {
+                    log.error("Failed to open database", e);
+                    return;
+                }
+                readOptions = new ReadOptions();
+                snapshot = rdb.getDb().getSnapshot();
+                readOptions.setSnapshot(snapshot);
+                int chunkSize = Math.max(MIN_CHUNK_SIZE, MAX_BUFFERED_ROWS / partitions.size());
+                for (Partition p : partitions) {
+                    PartitionScan ps = new PartitionScan(((RdbPartition) p).tbsIndex, chunkSize);
+                    ps.next = executor.submit(ps::readChunk);
+                    scans.add(ps);
+                }
+            }
+
+            /**
+             * merges the rows of the partitions and emits the tuples
+             * 
+             * @return true if the end of the range has been reached
+             */
+            boolean merge() throws IOException {
+                Comparator<byte[]> keyComparator = ascending ? new SuffixAscendingComparator(4)
+                        : new SuffixDescendingComparator(4);
+                PriorityQueue<PartitionScan> queue = new PriorityQueue<>(Math.max(1, scans.size()),
+                        (ps1, ps2) -> keyComparator.compare(ps1.key(), ps2.key()));
+                for (PartitionScan ps : scans) {
+                    if (ps.advance()) {
+                        queue.add(ps);
+                    }
+                }
+                while (!quit && !queue.isEmpty()) {
+                    PartitionScan ps = queue.poll();
+                    emitTuple(ps.tuple());
+                    if (ps.advance()) {
+                        queue.add(ps);
+                    }
+                }
+                boolean endReached = false;
+                for (PartitionScan ps : scans) {
+                    endReached |= ps.endReached;
+                }
+                return endReached;
+            }
+
+            void close() {
+                for (PartitionScan ps : scans) {
+                    ps.close();
+                }
+                if (snapshot != null) {
+                    snapshot.close();
+                }
+                if (readOptions != null) {
+                    readOptions.close();
+                }
+                if (rdb != null) {
+                    tablespace.dispose(rdb);
+                }
+            }
+
+            /**
+             * Reads one partition in chunks. The chunks are read by the pool threads, one at a time.
+             * <p>
+             * The chunks are read while holding the lock of this object such that {@link #close()} can wait for the
+             * read in progress before closing the iterator; the database resources are released by the interval only
+             * after all its partitions have been closed.
+             */
+            class PartitionScan {
+                final int tbsIndex;
+                final int chunkSize;
+                final RowFilter rowFilter = copyRowFilter();
+                DbIterator iterator;
+                // set by the pool thread when the row past the end of the range has been found
+                boolean endReached;
+                // set by close; no chunk is read afterwards
+                boolean closed;
+
+                Future<Chunk> next;
+                Chunk current;
+                int pos;
+
+                PartitionScan(int tbsIndex, int chunkSize) {
+                    this.tbsIndex = tbsIndex;
+                    this.chunkSize = chunkSize;
+                }
+
+                // executed in the pool
+                synchronized Chunk readChunk() {
+                    if (closed) {
+                        Chunk chunk = new Chunk(0);
+                        chunk.last = true;
+                        return chunk;
+                    }
+                    if (iterator == null) {
+                        RocksIterator rocksIt = rdb.getDb().newIterator(readOptions);
+                        iterator = getPartitionIterator(rocksIt, tbsIndex, ascending, rangeStart, strictStart,
+                                rangeEnd, strictEnd);
+                    }
+                    Chunk chunk = new Chunk(chunkSize);
+                    while (chunk.size < chunkSize) {
+                        if (quit || !iterator.isValid()) {
+                            chunk.last = true;
+                            break;
+                        }
+                        byte[] dbKey = iterator.key();
+                        byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
+                        if (ascending ? isPastStop(key, rangeEnd, strictEnd)
+                                : isPastStart(key, rangeStart, strictStart)) {
+                            endReached = true;
+                            chunk.last = true;
+                            break;
+                        }
+                        Tuple t = dataToTuple(key, iterator.value(), rowFilter);
+                        if (t != null) {
+                            chunk.keys[chunk.size] = dbKey;
+                            chunk.tuples[chunk.size] = t;
+                            chunk.size++;
+                        }
+                        if (ascending) {
+                            iterator.next();
+                        } else {
+                            iterator.prev();
+                        }
+                    }
+                    return chunk;
+                }
+
+                /**
+                 * moves to the next row, waiting for the next chunk if necessary
+                 * 
+                 * @return false if there is no more row in this partition
+                 */
+                boolean advance() throws IOException {
+                    pos++;
+                    while (current == null || pos >= current.size) {
+                        if (next == null) {
+                            return false;
+                        }
+                        current = waitForChunk();
+                        pos = 0;
+                        next = current.last ? null : executor.submit(this::readChunk);
+                    }
+                    return true;
+                }
+
+                private Chunk waitForChunk() throws IOException {
+                    try {
+                        return next.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while reading partition", e);
+                    } catch (ExecutionException e) {
+                        throw new IOException("Failed to read partition", e.getCause());
+                    }
+                }
+
+                byte[] key() {
+                    return current.keys[pos];
+                }
+
+                Tuple tuple() {
+                    return current.tuples[pos];
+                }
+
+                /**
+                 * Closes the iterator. If a chunk is being read by a pool thread, waits for the read to finish; a
+                 * chunk read which has not started yet will not read anything.
+                 */
+                void close() {
+                    if (next != null) {
+                        next.cancel(false);
+                        next = null;
+                    }
+                    synchronized (this) {
+                        closed = true;
+                        if (iterator != null) {
+                            iterator.close();
+                            iterator = null;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static class Chunk {
+        final byte[][] keys;
+        final Tuple[] tuples;
+        int size;
+        // no chunk follows this one
+        boolean last;
+
+        Chunk(int chunkSize) {
+            keys = new byte[chunkSize][];
+            tuples = new Tuple[chunkSize];
+        }
+    }
+
     
     class RdbRawTuple extends RawTuple {       
         int index; //used for sorting tuples with equals keys
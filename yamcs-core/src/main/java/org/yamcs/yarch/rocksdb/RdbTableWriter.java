@@ -3,13 +3,24 @@ package org.yamcs.yarch.rocksdb;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YamcsServer;
 import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.ByteArrayWrapper;
+import org.yamcs.utils.IntArray;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.ColumnSerializer;
@@ -28,6 +39,11 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;;
 
 /**
  * table writer that prepends the partition binary value in front of the key
+ * <p>
+ * The histogram points are accumulated in memory per histogram segment and written to the database in batches, when
+ * too many points are pending, after a short latency or when the writer is closed. Each segment is read and written
+ * once per batch instead of once per tuple. The points pending at the time of a crash are lost; the histograms can be
+ * rebuilt from the table data with the {@link HistogramRebuilder}.
  * 
  * @author nm
  *
@@ -39,6 +55,23 @@ public class RdbTableWriter extends TableWriter {
     static final byte[] zerobytes = new byte[0];
     Tablespace tablespace;
 
+    static final ScheduledThreadPoolExecutor histogramTimer = new ScheduledThreadPoolExecutor(1, (ThreadFactory) r -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        t.setName("RdbTableWriter-histograms");
+        return t;
+    });
+    static final WriteOptions histogramWriteOptions = new WriteOptions();
+    // the pending histogram points are written to the database when their number reaches this value
+    static int maxPendingHistogramPoints = 10000;
+    // or when the oldest one is waiting for more than this number of milliseconds
+    static long histogramLatency = 1000;
+
+    // histogram points not yet written to the database, indexed by the database key of the segment
+    final Map<ByteArrayWrapper, PendingSegment> pendingHistograms = new LinkedHashMap<>();
+    int numPendingHistogramPoints;
+    ScheduledFuture<?> histogramFlushFuture;
+
     public RdbTableWriter(Tablespace tablespace, YarchDatabaseInstance ydb, TableDefinition tableDefinition,
             InsertMode mode, RdbPartitionManager pm) {
         super(ydb, tableDefinition, mode);
@@ -75,7 +108,7 @@ public class RdbTableWriter extends TableWriter {
             }
 
             if (inserted && tableDefinition.hasHistogram()) {
-                addHistogram(db, t);
+                addHistogram(t);
             }
             if (updated && tableDefinition.hasHistogram()) {
                 // TODO updateHistogram(t);
@@ -135,7 +168,8 @@ public class RdbTableWriter extends TableWriter {
         if (v != null) {// append to an existing row
             Tuple oldt = tableDefinition.deserialize(k, v);
             TupleDefinition tdef = t.getDefinition();
-            TupleDefinition oldtdef = oldt.getDefinition();
+            // the definition of the deserialized tuple is shared with other tuples, make a copy before modifying it
+            TupleDefinition oldtdef = oldt.getDefinition().copy();
 
             boolean changed = false;
             ArrayList<Object> cols = new ArrayList<Object>(oldt.getColumns().size() + t.getColumns().size());
@@ -148,6 +182,7 @@ public class RdbTableWriter extends TableWriter {
                 }
             }
             if (changed) {
+                oldt.setDefinition(oldtdef);
                 oldt.setColumns(cols);
                 v = tableDefinition.serializeValue(oldt);
                 db.put(k, v);
@@ -169,7 +204,8 @@ public class RdbTableWriter extends TableWriter {
             byte[] k = Arrays.copyOfRange(dbKey, TBS_INDEX_SIZE, dbKey.length);
             Tuple oldt = tableDefinition.deserialize(k, v);
             TupleDefinition tdef = t.getDefinition();
-            TupleDefinition oldtdef = oldt.getDefinition();
+            // the definition of the deserialized tuple is shared with other tuples, make a copy before modifying it
+            TupleDefinition oldtdef = oldt.getDefinition().copy();
 
             boolean changed = false;
             ArrayList<Object> cols = new ArrayList<>(oldt.getColumns().size() + t.getColumns().size());
@@ -187,6 +223,7 @@ public class RdbTableWriter extends TableWriter {
                 }
             }
             if (changed) {
+                oldt.setDefinition(oldtdef);
                 oldt.setColumns(cols);
                 v = tableDefinition.serializeValue(oldt);
                 db.put(dbKey, v);
@@ -200,7 +237,7 @@ public class RdbTableWriter extends TableWriter {
     }
 
     // prepends the partition binary value to the key
-    private byte[] getPartitionKey(RdbPartition partition, byte[] k) {
+    byte[] getPartitionKey(RdbPartition partition, byte[] k) {
         byte[] pk = ByteArrayUtils.encodeInt(partition.tbsIndex, new byte[4 + k.length], 0);
         System.arraycopy(k, 0, pk, 4, k.length);
         return pk;
@@ -231,15 +268,23 @@ public class RdbTableWriter extends TableWriter {
         return (RdbPartition) partitionManager.createAndGetPartition(time, value);
     }
 
+    /**
+     * writes the pending histogram points to the database
+     */
     public void close() {
+        try {
+            flushHistograms();
+        } catch (IOException | RocksDBException e) {
+            log.error("failed to write the histograms: ", e);
+        }
     }
 
     @Override
     public void streamClosed(Stream stream) {
-
+        close();
     }
 
-    protected synchronized void addHistogram(YRDB db, Tuple t) throws IOException, RocksDBException {
+    protected synchronized void addHistogram(Tuple t) throws IOException, RocksDBException {
         List<String> histoColumns = tableDefinition.getHistogramColumns();
         for (String columnName : histoColumns) {
             if (!t.hasColumn(columnName)) {
@@ -249,26 +294,116 @@ public class RdbTableWriter extends TableWriter {
             RdbHistogramInfo histo = (RdbHistogramInfo) partitionManager.createAndGetHistogram(time, columnName);
             ColumnSerializer cs = tableDefinition.getColumnSerializer(columnName);
             byte[] v = cs.toByteArray(t.getColumn(columnName));
-            addHistogramForColumn(db, histo.tbsIndex, v, time);
+            addHistogramForColumn(histo, v, time);
+        }
+        if (numPendingHistogramPoints >= maxPendingHistogramPoints) {
+            flushHistograms();
+        } else if (numPendingHistogramPoints > 0 && histogramFlushFuture == null) {
+            histogramFlushFuture = histogramTimer.schedule(this::flushHistogramsOnTimer, histogramLatency,
+                    TimeUnit.MILLISECONDS);
         }
     }
 
-    private void addHistogramForColumn(YRDB db, int histoTbsIndex, byte[] columnv, long time) throws RocksDBException {
+    private void addHistogramForColumn(RdbHistogramInfo histo, byte[] columnv, long time) {
         long sstart = time / HistogramSegment.GROUPING_FACTOR;
         int dtime = (int) (time % HistogramSegment.GROUPING_FACTOR);
 
-        HistogramSegment segment;
-        byte[] key = HistogramSegment.key(sstart, columnv);
-        byte[] val = db.get(dbKey(histoTbsIndex, key));
-        if (val == null) {
-            segment = new HistogramSegment(columnv, sstart);
-        } else {
-            segment = new HistogramSegment(columnv, sstart, val);
+        ByteArrayWrapper k = new ByteArrayWrapper(dbKey(histo.tbsIndex, HistogramSegment.key(sstart, columnv)));
+        PendingSegment ps = pendingHistograms.get(k);
+        if (ps == null) {
+            ps = new PendingSegment(histo.partitionDir, sstart, columnv);
+            pendingHistograms.put(k, ps);
+        }
+        ps.dtimes.add(dtime);
+        numPendingHistogramPoints++;
+    }
+
+    private synchronized void flushHistogramsOnTimer() {
+        histogramFlushFuture = null;
+        try {
+            flushHistograms();
+        } catch (IOException | RocksDBException e) {
+            log.error("failed to write the histograms: ", e);
+            YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                    "failed to write the histograms of " + tableDefinition.getName() + ": " + e);
+        }
+    }
+
+    /**
+     * Merges the pending points into the histogram segments from the database and writes them back, one batch for
+     * each database.
+     */
+    protected synchronized void flushHistograms() throws IOException, RocksDBException {
+        if (histogramFlushFuture != null) {
+            histogramFlushFuture.cancel(false);
+            histogramFlushFuture = null;
         }
+        if (pendingHistograms.isEmpty()) {
+            return;
+        }
+        Map<String, HistogramBatch> batches = new HashMap<>();
+        try {
+            for (Map.Entry<ByteArrayWrapper, PendingSegment> me : pendingHistograms.entrySet()) {
+                PendingSegment ps = me.getValue();
+                HistogramBatch hb = batches.get(ps.partitionDir);
+                if (hb == null) {
+                    hb = new HistogramBatch(tablespace.getRdb(ps.partitionDir, false));
+                    batches.put(ps.partitionDir, hb);
+                }
+                byte[] k = me.getKey().getData();
+                byte[] val = hb.db.get(k);
+                HistogramSegment segment;
+                if (val == null) {
+                    segment = new HistogramSegment(ps.columnv, ps.sstart);
+                } else {
+                    segment = new HistogramSegment(ps.columnv, ps.sstart, val);
+                }
+                for (int i = 0; i < ps.dtimes.size(); i++) {
+                    segment.merge(ps.dtimes.get(i));
+                }
+                hb.batch.put(k, segment.val());
+            }
+            for (HistogramBatch hb : batches.values()) {
+                hb.db.write(histogramWriteOptions, hb.batch);
+            }
+        } finally {
+            for (HistogramBatch hb : batches.values()) {
+                hb.batch.close();
+                tablespace.dispose(hb.db);
+            }
+            pendingHistograms.clear();
+            numPendingHistogramPoints = 0;
+        }
+    }
 
-        segment.merge(dtime);
+    /**
+     * 
+     * @return the number of histogram points not yet written to the database
+     */
+    public synchronized int getNumPendingHistogramPoints() {
+        return numPendingHistogramPoints;
+    }
+
+    static class PendingSegment {
+        final String partitionDir;
+        final long sstart;
+        final byte[] columnv;
+        // delta times from the segment start, in the order they have been received
+        final IntArray dtimes = new IntArray();
 
-        byte[] k = dbKey(histoTbsIndex, segment.key());
-        db.put(k, segment.val());
+        PendingSegment(String partitionDir, long sstart, byte[] columnv) {
+            this.partitionDir = partitionDir;
+            this.sstart = sstart;
+            this.columnv = columnv;
+        }
+    }
+
+    static class HistogramBatch {
+        final YRDB db;
+        final WriteBatch batch = new WriteBatch();
+
+        HistogramBatch(YRDB db) {
+            this.db = db;
+        }
     }
 }
\ No newline at end of file
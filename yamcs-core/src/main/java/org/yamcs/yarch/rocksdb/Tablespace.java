@@ -5,6 +5,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import org.rocksdb.ColumnFamilyHandle;
@@ -19,6 +24,7 @@ import org.yamcs.utils.IntArray;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import static org.yamcs.utils.ByteArrayUtils.decodeInt;
@@ -75,6 +81,8 @@ public class Tablespace {
     long maxTbsIndex;
 
     RDBFactory rdbFactory;
+    // used by the parallel table scans, created when first needed
+    private ThreadPoolExecutor scanExecutor;
 
     public Tablespace(String name) {
         this.name = name;
@@ -347,6 +355,26 @@ public class Tablespace {
 
     public void close() {
         rdbFactory.shutdown();
+        synchronized (this) {
+            if (scanExecutor != null) {
+                scanExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Returns the pool used to read the table partitions in parallel. It is shared by all the table streams of this
+     * tablespace and it has one thread for each available processor; the threads are stopped when they are idle.
+     */
+    synchronized ExecutorService getScanExecutor() {
+        if (scanExecutor == null) {
+            int n = Runtime.getRuntime().availableProcessors();
+            ThreadFactory tf = new ThreadFactoryBuilder().setNameFormat("Tablespace[" + name + "]-scan-%d")
+                    .setDaemon(true).build();
+            scanExecutor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), tf);
+            scanExecutor.allowCoreThreadTimeOut(true);
+        }
+        return scanExecutor;
     }
 
     public RDBFactory getRdbFactory() {
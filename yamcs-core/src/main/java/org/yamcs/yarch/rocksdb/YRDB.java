@@ -19,6 +19,8 @@ import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.yarch.rocksdb.RdbConfig.TablespaceConfig;
@@ -182,6 +184,22 @@ public class YRDB {
         db.put(k, v);
     }
 
+    /**
+     * {@link RocksDB#write}
+     */
+    public void write(WriteOptions writeOpts, WriteBatch batch) throws RocksDBException {
+        db.write(writeOpts, batch);
+    }
+
+    /**
+     * 
+     * @return false if the key definitely does not exist in the database (uses the bloom filters if they are
+     *         configured)
+     */
+    public boolean keyMayExist(byte[] k) {
+        return db.keyMayExist(k, new StringBuilder());
+    }
+
     public List<byte[]> getColumnFamilies() {
         List<byte[]> l = new ArrayList<>();
         for (ByteArrayWrapper baw : columnFamilies.keySet()) {
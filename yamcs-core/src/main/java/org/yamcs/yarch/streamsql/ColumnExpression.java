@@ -1,5 +1,7 @@
 package org.yamcs.yarch.streamsql;
 
+import java.util.Set;
+
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.CompiledExpression;
 import org.yamcs.yarch.DataType;
@@ -116,6 +118,11 @@ public class ColumnExpression extends Expression {
         throw new GenericStreamSqlException("Cannot use protobuf fields of type '" + type + "' in sql expressions");
     }
 
+    @Override
+    public void collectColumns(Set<String> columns) {
+        columns.add(fieldName == null ? name : className);
+    }
+
     @Override
     public void fillCode_getValueReturn(StringBuilder code) throws StreamSqlException {
         if (fieldName == null) {
@@ -6,10 +6,18 @@ package org.yamcs.yarch.streamsql;
  */
 public class ExecutionContext {
 	String dbname;
+	// number of threads that the table readers created in this context may use
+	int parallelism = 1;
 	public ExecutionContext(String dbname){
 		this.dbname=dbname;
 	}
 	public String getDbName() {
 		return dbname;
 	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
 }
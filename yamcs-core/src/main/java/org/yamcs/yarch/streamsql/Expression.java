@@ -3,6 +3,7 @@ package org.yamcs.yarch.streamsql;
 import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.janino.SimpleCompiler;
@@ -60,6 +61,17 @@ public abstract class Expression {
         return this;
     }
 
+    /**
+     * Adds to the set the names of the input columns used by this expression
+     */
+    public void collectColumns(Set<String> columns) {
+        if (children != null) {
+            for (Expression c : children) {
+                c.collectColumns(columns);
+            }
+        }
+    }
+
     public void collectAggregates(List<AggregateExpression> list) {
         if (isAggregate()) {
             list.add((AggregateExpression) this);
@@ -2,7 +2,9 @@ package org.yamcs.yarch.streamsql;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.CompiledAggregateExpression;
@@ -233,6 +235,18 @@ public class SelectExpression implements StreamExpression {
             DbReaderStream dbStream = (DbReaderStream) stream;
             whereClause = whereClause.addFilter(dbStream);
         }
+        if ((stream instanceof DbReaderStream) && !selectStar && aggOutputDef == null
+                && !selectList.contains(SelectItem.STAR)) {
+            // only the columns used by the query have to be read from the table
+            Set<String> columns = new HashSet<>();
+            for (SelectItem item : selectList) {
+                item.expr.collectColumns(columns);
+            }
+            if (whereClause != null) {
+                whereClause.collectColumns(columns);
+            }
+            ((DbReaderStream) stream).setProjection(columns);
+        }
         CompiledExpression cWhereClause = (whereClause == null) ? null : whereClause.compile();
 
         List<CompiledExpression> caggInputList = null;
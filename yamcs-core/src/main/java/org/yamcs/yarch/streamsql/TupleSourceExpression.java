@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.DbReaderStream;
 import org.yamcs.yarch.HistogramReaderStream;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.TableDefinition;
@@ -120,6 +121,9 @@ public class TupleSourceExpression {
             if (tbl != null) {
                 if (histoColumn == null) {
                     stream = ydb.getStorageEngine(tbl).newTableReaderStream(ydb, tbl, ascending, follow);
+                    if ((c.getParallelism() > 1) && (stream instanceof DbReaderStream)) {
+                        ((DbReaderStream) stream).setParallelism(c.getParallelism());
+                    }
                 } else {
                     HistogramReaderStream histoStream;
                     try {
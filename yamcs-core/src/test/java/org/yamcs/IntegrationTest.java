@@ -159,6 +159,28 @@ public class IntegrationTest extends AbstractIntegrationTest {
         checkPvals(psr.getSubscribedList(), 2, pdata.getParameterList(), packetGenerator);
     }
 
+    @Test
+    public void testWsParameterConflation() throws Exception {
+        ParameterSubscriptionRequest subscrList = getSubscription(false, false, false,
+                "/REFMDB/SUBSYS1/IntegerPara1_1_7", "/REFMDB/SUBSYS1/IntegerPara1_1_6").toBuilder()
+                        .setUpdateInterval(500).build();
+        WebSocketRequest wsr = new WebSocketRequest("parameter", "subscribe", subscrList);
+        wsClient.sendRequest(wsr).get();
+
+        for (int i = 0; i < 20; i++) {
+            packetGenerator.generate_PKT1_1();
+        }
+
+        // the 20 updates are conflated in at most two messages containing each parameter once
+        ParameterData pdata = wsListener.parameterDataList.poll(2, TimeUnit.SECONDS);
+        checkPvals(pdata.getParameterList(), packetGenerator);
+        pdata = wsListener.parameterDataList.poll(1, TimeUnit.SECONDS);
+        if (pdata != null) {
+            checkPvals(pdata.getParameterList(), packetGenerator);
+            assertNull(wsListener.parameterDataList.poll(1, TimeUnit.SECONDS));
+        }
+    }
+
     @Test
     public void testWsParameterAggrArrayMember() throws Exception {
         // note that the array has only 150 elements (0-149), the [150] is subscribed but never received
@@ -101,6 +101,22 @@ public class ParameterArchiveIntegrationTest extends AbstractIntegrationTest {
         AcquisitionStatus acqs = pdata.getParameter(0).getAcquisitionStatus();
         assertEquals(AcquisitionStatus.ACQUIRED, acqs);
 
+        // value filtered requests
+        resp = restClient.doRequest(
+                "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/FloatPara1_1_2?start=2015-01-02T10:00:00&stop=2015-01-02T11:00:00&minValue=0.1&maxValue=0.2",
+                HttpMethod.GET, "").get();
+        pdata = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        assertEquals(100, pdata.getParameterCount());
+        pv = pdata.getParameter(0);
+        assertEquals(0.167291805148, pv.getEngValue().getFloatValue(), 1e-5);
+        assertEquals(2850, pv.getExpireMillis());
+
+        resp = restClient.doRequest(
+                "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/FloatPara1_1_2?start=2015-01-02T10:00:00&stop=2015-01-02T11:00:00&minValue=0.2",
+                HttpMethod.GET, "").get();
+        pdata = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        assertEquals(0, pdata.getParameterCount());
+
         // add some realtime data
         generatePkt13AndPps("2015-01-02T12:00:00", 10);
 
@@ -150,6 +166,37 @@ public class ParameterArchiveIntegrationTest extends AbstractIntegrationTest {
         }
     }
 
+    @Test
+    public void testRestRetrievalParallel() throws Exception {
+        generatePkt13AndPps("2015-02-02T10:00:00", 4 * 3600);
+        buildParameterArchive("2015-02-02T10:00:00", "2015-02-02T15:00:00");
+
+        String url = "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/FloatPara1_1_2"
+                + "?start=2015-02-02T10:00:00&stop=2015-02-02T14:00:00&norealtime&order=asc&limit=20000";
+        String resp = restClient.doRequest(url, HttpMethod.GET, "").get();
+        ListParameterValuesResponse seq = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        // the values span several segments (about 70 minutes each) which are decoded in parallel
+        assertTrue(seq.getParameterCount() > 3 * 3600);
+
+        resp = restClient.doRequest(url + "&parallelism=4", HttpMethod.GET, "").get();
+        ListParameterValuesResponse par = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        assertEquals(seq, par);
+
+        String descUrl = url.replace("order=asc", "order=desc");
+        resp = restClient.doRequest(descUrl, HttpMethod.GET, "").get();
+        seq = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        resp = restClient.doRequest(descUrl + "&parallelism=3", HttpMethod.GET, "").get();
+        par = fromJson(resp, ListParameterValuesResponse.newBuilder()).build();
+        assertEquals(seq, par);
+
+        try {
+            restClient.doRequest(url + "&parallelism=5", HttpMethod.GET, "").get();
+            fail("should have thrown an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getMessage().contains("parallelism has to be between 1 and 4"));
+        }
+    }
+
     @Test
     public void testRestRanges() throws Exception {
         generatePkt13AndPps("2018-01-01T10:00:00", 2 * 3600);
@@ -231,6 +278,15 @@ public class ParameterArchiveIntegrationTest extends AbstractIntegrationTest {
         engValue = pv.getEngValue();
         assertEquals(packetGenerator.paggr1_member2, engValue.getUint32Value());
         assertFalse(pv.hasExpireMillis());
+
+        try {
+            restClient.doRequest(
+                    "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/aggregate_para1.member2?start=2019-04-06T01:59:00&stop=2019-04-06T03:00:00&minValue=0",
+                    HttpMethod.GET, "").get();
+            fail("should have thrown an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getMessage().contains("not supported for aggregate or array members"));
+        }
         
         //build the parameter archive
         buildParameterArchive("2019-04-06T00:00:00", "2019-04-06T03:00:00");
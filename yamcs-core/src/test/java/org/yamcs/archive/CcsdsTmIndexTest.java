@@ -88,6 +88,63 @@ public class CcsdsTmIndexTest extends YarchTestCase {
         // tmindex.printApidDb();
     }
 
+    @Test
+    public void testOpenRun() throws Exception {
+        CcsdsTmIndex tmindex = new CcsdsTmIndex(ydb.getName(), false);
+        short apid = 100;
+        for (int i = 0; i < 1500; i++) {
+            tmindex.addPacket(apid, 1000L + i, (short) i);
+        }
+        // duplicate
+        tmindex.addPacket(apid, 1100L, (short) 100);
+
+        // another index reading the same database sees only what has been written out
+        CcsdsTmIndex tmindex1 = new CcsdsTmIndex(ydb.getName(), false);
+        CcsdsIndexIterator it = tmindex1.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        assertEqual(it.getNextRecord(), 1000, 2000, 1001);
+        assertNull(it.getNextRecord());
+        it.close();
+
+        it = tmindex.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        assertEqual(it.getNextRecord(), 1000, 2499, 1500);
+        assertNull(it.getNextRecord());
+        it.close();
+
+        // the run is found in the database by the new index
+        tmindex1.addPacket(apid, 2500L, (short) 1500);
+        // a gap creates a new record
+        tmindex1.addPacket(apid, 2600L, (short) 1502);
+        tmindex1.addPacket(apid, 2601L, (short) 1503);
+        it = tmindex1.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        assertEqual(it.getNextRecord(), 1000, 2500, 1501);
+        assertEqual(it.getNextRecord(), 2600, 2601, 2);
+        assertNull(it.getNextRecord());
+        it.close();
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        long flushInterval = CcsdsTmIndex.flushInterval;
+        CcsdsTmIndex.flushInterval = 100;
+        try {
+            CcsdsTmIndex tmindex = new CcsdsTmIndex(ydb.getName(), false);
+            short apid = 200;
+            for (int i = 0; i < 10; i++) {
+                tmindex.addPacket(apid, 1000L + i, (short) i);
+            }
+            // no other packet is received, the open run is written out by the timer
+            Thread.sleep(500);
+            CcsdsTmIndex tmindex1 = new CcsdsTmIndex(ydb.getName(), true);
+            CcsdsIndexIterator it = tmindex1.new CcsdsIndexIterator((short) -1, -1L, -1L);
+            assertEqual(it.getNextRecord(), 1000, 1009, 10);
+            assertNull(it.getNextRecord());
+            it.close();
+            tmindex.close();
+        } finally {
+            CcsdsTmIndex.flushInterval = flushInterval;
+        }
+    }
+
     @Test
     @Ignore
     public void testApidIndexSameTimeAndWraparound() throws Exception {
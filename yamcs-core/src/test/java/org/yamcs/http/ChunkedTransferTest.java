@@ -0,0 +1,86 @@
+package org.yamcs.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.api.MediaType;
+import org.yamcs.http.HttpRequestHandler.ChunkedTransferStats;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+
+public class ChunkedTransferTest {
+    EmbeddedChannel channel;
+    ChannelHandlerContext ctx;
+
+    @Before
+    public void before() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        HttpRequestHandler.startChunkedTransfer(ctx,
+                new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/api/test"), MediaType.OCTET_STREAM,
+                null);
+    }
+
+    @Test
+    public void testPauseUntilWritable() throws Exception {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        CompletableFuture<Void> cf = writeChunkAsync();
+
+        Thread.sleep(300);
+        assertFalse(cf.isDone());
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        cf.get(5, TimeUnit.SECONDS);
+
+        ChunkedTransferStats stats = channel.attr(HttpRequestHandler.CTX_CHUNK_STATS).get();
+        assertEquals(1, stats.stallCount);
+        assertTrue(stats.stallTime >= 300);
+
+        // the channel is writable, the write does not block
+        writeChunkAsync().get(5, TimeUnit.SECONDS);
+        assertEquals(1, stats.stallCount);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testCloseWhilePaused() throws Exception {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        CompletableFuture<Void> cf = writeChunkAsync();
+        Thread.sleep(100);
+        channel.close();
+        try {
+            cf.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ClosedChannelException);
+        }
+        assertTrue(cf.isCompletedExceptionally());
+        channel.finishAndReleaseAll();
+    }
+
+    private CompletableFuture<Void> writeChunkAsync() {
+        CompletableFuture<Void> cf = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                HttpRequestHandler.writeChunk(ctx, Unpooled.wrappedBuffer(new byte[100]));
+                cf.complete(null);
+            } catch (Exception e) {
+                cf.completeExceptionally(e);
+            }
+        }).start();
+        return cf;
+    }
+}
@@ -52,4 +52,21 @@ public class RestDownsamplerTest {
         assertEquals(2, sample1.min, 1e-10);
         assertEquals(2, sample1.max, 1e-10);
     }
+
+    @Test
+    public void testAggregatedSampling() {
+        RestDownsampler sampler = new RestDownsampler(0, 100, 2);
+
+        sampler.process(10, 1, 3, 8, 4);
+        sampler.process(20, 6);
+        sampler.process(30, 0, 10, 20, 4);
+
+        List<Sample> samples = sampler.collect();
+        assertEquals(1, samples.size());
+        Sample sample = samples.get(0);
+        assertEquals(9, sample.n);
+        assertEquals(0, sample.min, 1e-10);
+        assertEquals(10, sample.max, 1e-10);
+        assertEquals((8 + 6 + 20) / 9., sample.avg, 1e-10);
+    }
 }
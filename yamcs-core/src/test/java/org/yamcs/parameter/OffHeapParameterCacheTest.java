@@ -0,0 +1,367 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameterarchive.TestUtils;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+public class OffHeapParameterCacheTest {
+    Parameter p1 = new Parameter("p1");
+    Parameter p2 = new Parameter("p2");
+
+    @BeforeClass
+    public static void before() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void test1() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true, 1024 * 1024);
+
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc); // 1 second
+        assertNull(pcache.getLastValue(p1));
+
+        
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        p1v1.setExpireMillis(1000);
+        
+        
+        ParameterValue p2v1 = getFloatParameterValue(p2, 10);
+        p2v1.setAcquisitionStatus(AcquisitionStatus.INVALID);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+        TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
+
+        ParameterValue p1v2 = getStringParameterValue(p1, 20);
+        p1v2.setExpireMillis(1000);
+        
+        pcache.update(Arrays.asList(p1v2));
+
+        TestUtils.checkEquals(p1v2, pcache.getLastValue(p1));
+        TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
+
+        // the values are decoded from the cache so the expiration is not seen by the original values
+        p1v1.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+        p1v2.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1, p2));
+
+        checkEquals(pvlist, p1v2, p2v1);
+
+        pvlist = pcache.getValues(Arrays.asList(p2, p1));
+        checkEquals(pvlist, p2v1, p1v1);
+
+    }
+
+    @Test
+    public void testNoCacheAll() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, false, 1000, 4096, true, 1024 * 1024);
+
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc); // 1 second
+        ParameterValue p1v0 = getStringParameterValue(p1, 0);
+        pcache.update(Arrays.asList(p1v0));
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        ParameterValue p2v1 = getFloatParameterValue(p2, 10);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+        assertNull(pcache.getLastValue(p2));
+
+        ParameterValue p2v2 = getStringParameterValue(p2, 20);
+        pcache.update(Arrays.asList(p2v2));
+
+        TestUtils.checkEquals(p2v2, pcache.getLastValue(p2));
+
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1, p2));
+        checkEquals(pvlist, p1v1, p2v2);
+
+        pvlist = pcache.getValues(Arrays.asList(p2, p1));
+        checkEquals(pvlist, p2v2, p1v1);
+
+    }
+
+    @Test
+    public void testCircularity() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        assertNull(pcache.getLastValue(p1));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 100L);
+            pv.setAcquisitionStatus(AcquisitionStatus.INVALID);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+        ParameterValue pv0 = expectedPVlist.get(0);
+        
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(10, pvlist.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(pv0.getStatus().hashCode(), pvlist.get(i).getStatus().hashCode());
+            TestUtils.checkEquals(expectedPVlist.get(9 - i), pvlist.get(i));
+        }
+
+        for (int i = 10; i < 16; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 100L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+
+        pvlist = pcache.getAllValues(p1);
+
+        assertEquals(16, pvlist.size());
+        for (int i = 0; i < 16; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(15 - i), pvlist.get(i));
+        }
+
+        ParameterValue pv = getUint64ParameterValue(p1, 16 * 100L);
+        pcache.update(Arrays.asList(pv));
+        expectedPVlist.add(pv);
+
+        pvlist = pcache.getAllValues(p1);
+        assertEquals(16, pvlist.size());
+        for (int i = 0; i < 16; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(16 - i), pvlist.get(i));
+        }
+    }
+
+    @Test
+    public void test5() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 2000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc); // should keep at least 200 samples
+        assertNull(pcache.getLastValue(p1));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(256, pvlist.size());
+        for (int i = 0; i < 256; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(255 - i), pvlist.get(i));
+        }
+        ParameterValue pv = getUint64ParameterValue(p1, 256 * 10L);
+        pcache.update(Arrays.asList(pv));
+        expectedPVlist.add(pv);
+
+        pv = getUint64ParameterValue(p1, 257 * 10L);
+        pcache.update(Arrays.asList(pv));
+        expectedPVlist.add(pv);
+
+        pvlist = pcache.getAllValues(p1);
+        assertEquals(256, pvlist.size());
+        for (int i = 0; i < 256; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(257 - i), pvlist.get(i));
+        }
+
+    }
+
+    @Test
+    public void testMaxSize() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 2000, 128, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc); // should keep max 128 samples
+        assertNull(pcache.getLastValue(p1));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(128, pvlist.size());
+        for (int i = 0; i < 128; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(255 - i), pvlist.get(i));
+        }
+        ParameterValue pv = getUint64ParameterValue(p1, 256 * 10L);
+        pcache.update(Arrays.asList(pv));
+        expectedPVlist.add(pv);
+
+        pv = getUint64ParameterValue(p1, 257 * 10L);
+        pcache.update(Arrays.asList(pv));
+        expectedPVlist.add(pv);
+
+        pvlist = pcache.getAllValues(p1);
+        assertEquals(128, pvlist.size());
+        for (int i = 0; i < 128; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(257 - i), pvlist.get(i));
+        }
+
+    }
+
+    @Test
+    public void testMaxSizeNotPowerOfTwo() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 2000, 100, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+        assertEquals(100, pcache.tables.values().iterator().next().indexCapacity);
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(100, pvlist.size());
+        for (int i = 0; i < 100; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(249 - i), pvlist.get(i));
+        }
+    }
+
+    @Test
+    public void testClearStatuses() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 100000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        for (int i = 0; i < 100; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            pv.setExpireMillis(1000 + i);
+            pcache.update(Arrays.asList(pv));
+        }
+        assertEquals(101, pcache.statusDictionary.size());
+
+        pcache.clear();
+        assertEquals(1, pcache.statusDictionary.size());
+
+        ParameterValue pv = getUint64ParameterValue(p1, 2000);
+        pv.setExpireMillis(500);
+        pcache.update(Arrays.asList(pv));
+        assertEquals(2, pcache.statusDictionary.size());
+        ParameterValue pv1 = pcache.getLastValue(p1);
+        TestUtils.checkEquals(pv, pv1);
+        assertEquals(500, pv1.getExpireMills());
+    }
+
+    @Test
+    public void testTimeRange() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 2000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        assertNull(pcache.getAllValues(p1, 0, 1000));
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ParameterValue pv = getStringParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+        List<ParameterValue> pvlist = pcache.getAllValues(p1, 200, 300);
+        assertEquals(10, pvlist.size());
+        for (int i = 0; i < 10; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(30 - i), pvlist.get(i));
+        }
+        assertNull(pcache.getAllValues(p1, 990, 2000));
+        assertNull(pcache.getAllValues(p1, -100, -1));
+    }
+
+    @Test
+    public void testValueTypes() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+
+        ParameterValue pv1 = new ParameterValue(p1);
+        pv1.setGenerationTime(10);
+        pv1.setRawValue(ValueUtility.getUint32Value(3));
+        pv1.setEngValue(ValueUtility.getEnumeratedValue(3, "three"));
+        pv1.setExpireMillis(1000);
+
+        ParameterValue pv2 = new ParameterValue(p2);
+        pv2.setGenerationTime(10);
+        ArrayValue av = new ArrayValue(new int[] { 2, 3 }, Type.SINT32);
+        for (int i = 0; i < 6; i++) {
+            av.setElementValue(i, ValueUtility.getSint32Value(i - 3));
+        }
+        pv2.setRawValue(ValueUtility.getBinaryValue(new byte[] { 1, 2, 3 }));
+        pv2.setEngValue(av);
+        pcache.update(Arrays.asList(pv1, pv2));
+
+        TestUtils.checkEquals(pv1, pcache.getLastValue(p1));
+        ParameterValue pv2c = pcache.getLastValue(p2);
+        assertEquals(pv2.getRawValue(), pv2c.getRawValue());
+        ArrayValue av1 = (ArrayValue) pv2c.getEngValue();
+        assertArrayEquals(av.getDimensions(), av1.getDimensions());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(av.getElementValue(i), av1.getElementValue(i));
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 100000, 4096, true, 4096);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        for (int i = 0; i < 100; i++) {
+            pcache.update(Arrays.asList(getUint64ParameterValue(p1, i * 10L)));
+        }
+        int n1 = pcache.getAllValues(p1).size();
+        assertTrue(pcache.getUsedBytes() <= 4096);
+
+        // p2 evicts p1 which has not been accessed since
+        for (int i = 0; i < 100; i++) {
+            pcache.update(Arrays.asList(getUint64ParameterValue(p2, i * 10L)));
+        }
+        assertTrue(pcache.getUsedBytes() <= 4096);
+        assertNull(pcache.getLastValue(p1));
+        assertEquals(n1, pcache.getAllValues(p2).size());
+        TestUtils.checkEquals(getUint64ParameterValue(p2, 990), pcache.getLastValue(p2));
+
+        pcache.clear();
+        assertEquals(0, pcache.getUsedBytes());
+    }
+
+    @Test
+    public void testAddToEvictedTable() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true, 1024 * 1024);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        pcache.update(Arrays.asList(getUint64ParameterValue(p1, 10)));
+
+        // simulate the eviction of the table after being retrieved from the map by the update below
+        OffHeapParameterCache.OffHeapTable table = pcache.tables.values().iterator().next();
+        pcache.usedBytes.addAndGet(-table.release());
+
+        pcache.update(Arrays.asList(getUint64ParameterValue(p1, 20)));
+        TestUtils.checkEquals(getUint64ParameterValue(p1, 20), pcache.getLastValue(p1));
+        assertNotSame(table, pcache.tables.values().iterator().next());
+    }
+
+    ParameterValue getUint64ParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setAcquisitionTime(t+5);
+        pv.setEngineeringValue(ValueUtility.getUint64Value(t));
+        return pv;
+    }
+
+    ParameterValue getFloatParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setEngineeringValue(ValueUtility.getFloatValue((float) t));
+        return pv;
+    }
+
+    ParameterValue getStringParameterValue(Parameter p, long timestamp) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(timestamp);
+        pv.setEngineeringValue(ValueUtility.getStringValue(p.getName() + "_" + timestamp));
+        return pv;
+    }
+
+    public static void checkEquals(List<ParameterValue> actual, ParameterValue... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            ParameterValue pv = expected[i];
+            TestUtils.checkEquals(pv, actual.get(i));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -228,4 +229,71 @@ public class ParameterValueListTest {
 	
 	assertFalse(it.hasNext());
     }
+
+    @Test
+    public void testAddAfterRemove() {
+	Parameter[] params = new Parameter[3];
+	for (int i = 0; i<3; i++) {
+	    params[i] = new Parameter("parameter"+i);
+	}
+	List<ParameterValue> expected = new ArrayList<ParameterValue>();
+	ParameterValueList pvlist = new ParameterValueList();
+	for (int i = 0; i<100; i++) {
+	    ParameterValue pv = new ParameterValue(params[i%3]);
+	    pv.setStringValue("pv"+i);
+	    pvlist.add(pv);
+	    expected.add(pv);
+	    if(i%2 == 1) {
+		//the gaps left by the removed values are reused when the list is full
+		expected.remove(pvlist.removeFirst(params[i%3]));
+	    }
+	}
+	assertEquals(expected.size(), pvlist.getSize());
+	assertEquals(expected, new ArrayList<ParameterValue>(pvlist));
+	for (int i = 0; i<3; i++) {
+	    List<ParameterValue> l = new ArrayList<ParameterValue>();
+	    pvlist.forEach(params[i], (ParameterValue pv) -> l.add(pv));
+	    assertEquals(pvlist.count(params[i]), l.size());
+	    assertEquals(l.get(l.size()-1), pvlist.getLastInserted(params[i]));
+	    assertEquals(l.get(0), pvlist.getFirstInserted(params[i]));
+	}
+    }
+
+    @Test
+    public void testModifyWhileIterating() {
+	Parameter p1 = new Parameter("p1");
+	Parameter p2 = new Parameter("p2");
+	ParameterValue pv1 = new ParameterValue(p1);
+	ParameterValue pv2 = new ParameterValue(p2);
+	ParameterValue pv3 = new ParameterValue(p1);
+	ParameterValueList pvlist = new ParameterValueList();
+	pvlist.add(pv1);
+	pvlist.add(pv2);
+
+	Iterator<ParameterValue> it = pvlist.iterator();
+	assertSame(pv1, it.next());
+	//the removed values are skipped and the added values are returned
+	assertSame(pv2, pvlist.removeFirst(p2));
+	pvlist.add(pv3);
+	assertTrue(it.hasNext());
+	assertSame(pv3, it.next());
+	assertFalse(it.hasNext());
+
+	//the compaction of the gaps invalidates the iterator
+	for (int i = 0; i<13; i++) {
+	    pvlist.add(new ParameterValue(p2));
+	}
+	it = pvlist.iterator();
+	it.next();
+	for (int i = 0; i<8; i++) {
+	    pvlist.removeFirst(p2);
+	}
+	pvlist.add(new ParameterValue(p2));
+	try {
+	    it.next();
+	    fail("ConcurrentModificationException expected");
+	} catch (ConcurrentModificationException e) {
+	    //expected
+	}
+    }
 }
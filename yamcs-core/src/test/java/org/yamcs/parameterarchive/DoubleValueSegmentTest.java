@@ -2,14 +2,22 @@ package org.yamcs.parameterarchive;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
+import org.junit.Ignore;
 import org.junit.Test;
+import org.yamcs.parameter.Value;
 import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.DoubleArray;
 import org.yamcs.utils.ValueUtility;
+import org.yamcs.utils.VarIntUtil;
 
 public class DoubleValueSegmentTest {
     @Test
@@ -30,4 +38,122 @@ public class DoubleValueSegmentTest {
         assertArrayEquals(new double[]{1.2, 2.3,3}, fvs1.getRange(0, 3, true).getDoubleArray(), 1e-10);
         assertArrayEquals(new double[]{3, 2.3}, fvs1.getRange(0, 2, false).getDoubleArray(), 1e-10);
     }
+
+    @Test
+    public void testCompressed() throws DecodingException {
+        List<Value> values = new ArrayList<>();
+        double x = 20;
+        Random r = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            x += r.nextGaussian() * 0.1;
+            values.add(ValueUtility.getDoubleValue(Math.round(x * 100) / 100.0));
+        }
+        values.set(10, ValueUtility.getDoubleValue(Double.NaN));
+        values.set(11, ValueUtility.getDoubleValue(Double.NEGATIVE_INFINITY));
+        values.set(12, ValueUtility.getDoubleValue(-0.0));
+        values.set(13, ValueUtility.getDoubleValue(Double.MIN_VALUE));
+        DoubleValueSegment dvs = DoubleValueSegment.consolidate(values);
+
+        ByteBuffer bb = ByteBuffer.allocate(dvs.getMaxSerializedSize());
+        dvs.writeTo(bb);
+        assertEquals(DoubleValueSegment.SUBFORMAT_ID_COMPRESSED, bb.get(0));
+        assertTrue(bb.position() < 8 * values.size());
+
+        bb.flip();
+        DoubleValueSegment dvs1 = DoubleValueSegment.parseFrom(bb);
+        assertEquals(values.size(), dvs1.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), dvs1.getValue(i));
+        }
+    }
+
+    @Test
+    public void testRandom() throws DecodingException {
+        List<Value> values = new ArrayList<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            values.add(ValueUtility.getDoubleValue(Double.longBitsToDouble(r.nextLong())));
+        }
+        DoubleValueSegment dvs = DoubleValueSegment.consolidate(values);
+
+        ByteBuffer bb = ByteBuffer.allocate(dvs.getMaxSerializedSize());
+        dvs.writeTo(bb);
+        // the compression does not help for random data
+        assertEquals(DoubleValueSegment.SUBFORMAT_ID_RAW, bb.get(0));
+
+        bb.flip();
+        DoubleValueSegment dvs1 = DoubleValueSegment.parseFrom(bb);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), dvs1.getValue(i));
+        }
+    }
+
+    /**
+     * Compression ratio and decoding speed for a random walk rounded to 2 decimals and for the 5V_Current samples
+     * converted to doubles, in segments of 4096 values. The values rounded to decimals have random mantissas and do not
+     * compress well.
+     *
+     * <pre>
+     * random walk: ratio 1.32, raw decode 312 Mvalues/s, compressed decode 44 Mvalues/s
+     * 5V_Current: ratio 7.13, raw decode 361 Mvalues/s, compressed decode 134 Mvalues/s
+     * </pre>
+     */
+    @Ignore
+    @Test
+    public void benchmark() throws Exception {
+        double[] walk = new double[1 << 20];
+        double x = 20;
+        Random r = new Random(1);
+        for (int i = 0; i < walk.length; i++) {
+            x += r.nextGaussian() * 0.1;
+            walk[i] = Math.round(x * 100) / 100.0;
+        }
+        float[] fa = FloatCompress.readFile("src/test/resources/parameterarchive/5V_Current.txt.gz");
+        double[] current = new double[fa.length];
+        for (int i = 0; i < fa.length; i++) {
+            current[i] = fa[i];
+        }
+        for (int k = 0; k < 10; k++) {
+            benchmark("random walk", walk);
+            benchmark("5V_Current", current);
+        }
+    }
+
+    private void benchmark(String name, double[] data) throws DecodingException {
+        int segSize = 4096;
+        List<ByteBuffer> raw = new ArrayList<>();
+        List<ByteBuffer> compressed = new ArrayList<>();
+        long rawSize = 0;
+        long compressedSize = 0;
+        for (int i = 0; i + segSize <= data.length; i += segSize) {
+            DoubleValueSegment dvs = new DoubleValueSegment();
+            dvs.values = DoubleArray.wrap(Arrays.copyOfRange(data, i, i + segSize));
+            ByteBuffer bb = ByteBuffer.allocate(dvs.getMaxSerializedSize());
+            dvs.writeTo(bb);
+            bb.flip();
+            compressed.add(bb);
+            compressedSize += bb.limit();
+
+            bb = ByteBuffer.allocate(dvs.getMaxSerializedSize());
+            bb.put(DoubleValueSegment.SUBFORMAT_ID_RAW);
+            VarIntUtil.writeVarInt32(bb, segSize);
+            for (int j = 0; j < segSize; j++) {
+                bb.putDouble(dvs.values.get(j));
+            }
+            bb.flip();
+            raw.add(bb);
+            rawSize += bb.limit();
+        }
+        long n = (long) segSize * raw.size();
+        System.out.printf("%s: ratio %.2f, raw decode %d Mvalues/s, compressed decode %d Mvalues/s%n", name,
+                rawSize / (double) compressedSize, decodeSpeed(raw, n), decodeSpeed(compressed, n));
+    }
+
+    private long decodeSpeed(List<ByteBuffer> segments, long n) throws DecodingException {
+        long t0 = System.nanoTime();
+        for (ByteBuffer bb : segments) {
+            DoubleValueSegment.parseFrom(bb.duplicate());
+        }
+        return n * 1000 / (System.nanoTime() - t0);
+    }
 }
@@ -4,12 +4,19 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
+import org.junit.Ignore;
 import org.junit.Test;
+import org.yamcs.parameter.Value;
 import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.LongArray;
 import org.yamcs.utils.ValueUtility;
+import org.yamcs.utils.VarIntUtil;
 
 public class LongValueSegmentTest {
     @Test
@@ -71,4 +78,147 @@ public class LongValueSegmentTest {
         assertArrayEquals(new long[]{1, 2,3}, fvs1.getRange(0, 3, true).getLongArray());
         assertArrayEquals(new long[]{3, 2}, fvs1.getRange(0, 2, false).getLongArray());
     }
+
+    @Test
+    public void testCompressed() throws DecodingException {
+        // timestamps every second with some jitter
+        List<Value> values = new ArrayList<>();
+        Random r = new Random(1);
+        long t = 1_500_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            values.add(ValueUtility.getTimestampValue(t + i * 1000 + r.nextInt(10)));
+        }
+        LongValueSegment lvs = LongValueSegment.consolidate(values, Type.TIMESTAMP);
+
+        ByteBuffer bb = ByteBuffer.allocate(lvs.getMaxSerializedSize());
+        lvs.writeTo(bb);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_DELTAZG_FPF128_VB, bb.get(0) & 0xF);
+        assertTrue(bb.position() < values.size());
+
+        bb.flip();
+        LongValueSegment lvs1 = LongValueSegment.parseFrom(bb);
+        assertEquals(values.size(), lvs1.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), lvs1.getValue(i));
+        }
+    }
+
+    @Test
+    public void testLargeDeltas() throws DecodingException {
+        // the deltas of deltas do not fit into 32 bits
+        List<Value> values = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            values.add(ValueUtility.getSint64Value(i % 3 == 0 ? (1L << 40) * i : i));
+        }
+        LongValueSegment lvs = LongValueSegment.consolidate(values, Type.SINT64);
+
+        ByteBuffer bb = ByteBuffer.allocate(lvs.getMaxSerializedSize());
+        lvs.writeTo(bb);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_DELTAZG_VB, bb.get(0) & 0xF);
+
+        bb.flip();
+        LongValueSegment lvs1 = LongValueSegment.parseFrom(bb);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), lvs1.getValue(i));
+        }
+    }
+
+    @Test
+    public void testRandom() throws DecodingException {
+        List<Value> values = new ArrayList<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            values.add(ValueUtility.getUint64Value(r.nextLong()));
+        }
+        LongValueSegment lvs = LongValueSegment.consolidate(values, Type.UINT64);
+
+        ByteBuffer bb = ByteBuffer.allocate(lvs.getMaxSerializedSize());
+        lvs.writeTo(bb);
+        assertEquals(LongValueSegment.SUBFORMAT_ID_RAW, bb.get(0) & 0xF);
+
+        bb.flip();
+        LongValueSegment lvs1 = LongValueSegment.parseFrom(bb);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), lvs1.getValue(i));
+        }
+    }
+
+    @Test
+    public void testReadRaw() throws DecodingException {
+        // segment written before the compression was introduced
+        ByteBuffer bb = ByteBuffer.allocate(26);
+        bb.put((byte) (1 << 4));
+        VarIntUtil.writeVarInt32(bb, 3);
+        bb.putLong(-5);
+        bb.putLong(7);
+        bb.putLong(Long.MAX_VALUE);
+        bb.flip();
+
+        LongValueSegment lvs = LongValueSegment.parseFrom(bb);
+        assertArrayEquals(new long[] { -5, 7, Long.MAX_VALUE }, lvs.getRange(0, 3, true).getLongArray());
+        assertEquals(ValueUtility.getSint64Value(-5), lvs.getValue(0));
+    }
+
+    /**
+     * Compression ratio and decoding speed for timestamps every second with a jitter of a few milliseconds and for
+     * a counter, in segments of 4096 values.
+     *
+     * <pre>
+     * timestamps: ratio 11.85, raw decode 241 Mvalues/s, compressed decode 107 Mvalues/s
+     * counter: ratio 146.30, raw decode 244 Mvalues/s, compressed decode 54 Mvalues/s
+     * </pre>
+     */
+    @Ignore
+    @Test
+    public void benchmark() throws Exception {
+        long[] timestamps = new long[1 << 20];
+        long[] counter = new long[1 << 20];
+        Random r = new Random(1);
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = 1_500_000_000_000L + i * 1000L + r.nextInt(10);
+            counter[i] = 1_000_000_000_000L + i;
+        }
+        for (int k = 0; k < 10; k++) {
+            benchmark("timestamps", timestamps);
+            benchmark("counter", counter);
+        }
+    }
+
+    private void benchmark(String name, long[] data) throws DecodingException {
+        int segSize = 4096;
+        List<ByteBuffer> raw = new ArrayList<>();
+        List<ByteBuffer> compressed = new ArrayList<>();
+        long rawSize = 0;
+        long compressedSize = 0;
+        for (int i = 0; i + segSize <= data.length; i += segSize) {
+            LongValueSegment lvs = new LongValueSegment(Type.SINT64);
+            lvs.values = LongArray.wrap(Arrays.copyOfRange(data, i, i + segSize));
+            ByteBuffer bb = ByteBuffer.allocate(lvs.getMaxSerializedSize());
+            lvs.writeTo(bb);
+            bb.flip();
+            compressed.add(bb);
+            compressedSize += bb.limit();
+
+            bb = ByteBuffer.allocate(lvs.getMaxSerializedSize());
+            bb.put((byte) (1 << 4));
+            VarIntUtil.writeVarInt32(bb, segSize);
+            for (int j = 0; j < segSize; j++) {
+                bb.putLong(lvs.values.get(j));
+            }
+            bb.flip();
+            raw.add(bb);
+            rawSize += bb.limit();
+        }
+        long n = (long) segSize * raw.size();
+        System.out.printf("%s: ratio %.2f, raw decode %d Mvalues/s, compressed decode %d Mvalues/s%n", name,
+                rawSize / (double) compressedSize, decodeSpeed(raw, n), decodeSpeed(compressed, n));
+    }
+
+    private long decodeSpeed(List<ByteBuffer> segments, long n) throws DecodingException {
+        long t0 = System.nanoTime();
+        for (ByteBuffer bb : segments) {
+            LongValueSegment.parseFrom(bb.duplicate());
+        }
+        return n * 1000 / (System.nanoTime() - t0);
+    }
 }
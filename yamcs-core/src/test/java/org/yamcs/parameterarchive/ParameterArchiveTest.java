@@ -271,6 +271,155 @@ public class ParameterArchiveTest {
 
     }
 
+    @Test
+    public void testRollups() throws Exception {
+        parchive = new ParameterArchive();
+        Map<String, Object> conf = new HashMap<>();
+        if (partitioningSchema != null) {
+            conf.put("partitioningSchema", partitioningSchema);
+        }
+        conf.put("rollupResolutions", Arrays.asList(1, 60));
+        parchive.init(instance, parchive.getSpec().validate(YConfiguration.wrap(conf)));
+
+        assertEquals(60000, parchive.getRollupResolution(3600 * 1000, 60));
+        assertEquals(1000, parchive.getRollupResolution(3600 * 1000, 61));
+        assertEquals(-1, parchive.getRollupResolution(3600 * 1000, 3601));
+
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), Type.SINT32);
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+
+        // two segments sharing the bucket [1000, 2000)
+        PGSegment pgSegment1 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        pgSegment1.addRecord(500, Arrays.asList(TestUtils.getParameterValue(p1, 500, 5)));
+        pgSegment1.addRecord(1500, Arrays.asList(TestUtils.getParameterValue(p1, 1500, 15)));
+        parchive.writeToArchive(pgSegment1);
+
+        PGSegment pgSegment2 = new PGSegment(pg1id, 1700, IntArray.wrap(p1id));
+        pgSegment2.addRecord(1700, Arrays.asList(TestUtils.getParameterValue(p1, 1700, 17)));
+        pgSegment2.addRecord(2500, Arrays.asList(TestUtils.getParameterValue(p1, 2500, 25)));
+        parchive.writeToArchive(pgSegment2);
+
+        List<RollupRetrieval.Bucket> l = new RollupRetrieval(parchive, p1.getQualifiedName(), 1000, 0, 3000)
+                .retrieve();
+        assertEquals(3, l.size());
+        assertEquals(1000, l.get(1).getStart());
+        assertEquals(15, l.get(1).getMin(), 0);
+        assertEquals(17, l.get(1).getMax(), 0);
+        assertEquals(16, l.get(1).getAverage(), 0);
+        assertEquals(2, l.get(1).getCount());
+
+        l = new RollupRetrieval(parchive, p1.getQualifiedName(), 60000, 0, 3000).retrieve();
+        assertEquals(1, l.size());
+        assertEquals(5, l.get(0).getMin(), 0);
+        assertEquals(25, l.get(0).getMax(), 0);
+        assertEquals(4, l.get(0).getCount());
+
+        // the rollups do not show up in the raw data retrieval
+        List<ParameterValueArray> l1 = retrieveSingleParamSingleGroup(0, 3000, p1id, pg1id, true);
+        assertEquals(2, l1.size());
+        assertEquals(2, l1.get(0).timestamps.length);
+        assertEquals(2, l1.get(1).timestamps.length);
+
+        RollupRetrieval rr = new RollupRetrieval(parchive, p1.getQualifiedName(), 1000, 0, 3000);
+        rr.retrieve();
+        assertTrue(rr.isComplete());
+
+        // a segment archived without rollups makes the retrieval incomplete
+        Partition part = parchive.getPartitions(0, 3000, true).get(0);
+        parchive.getTablespace().getRdb(part.getPartitionDir(), false).delete(
+                new SegmentKey(p1id, SegmentKey.getRollupGroupId(pg1id, RollupSegment.getLevel(1000)), 1700,
+                        SegmentKey.TYPE_ROLLUP).encode());
+        rr = new RollupRetrieval(parchive, p1.getQualifiedName(), 1000, 0, 3000);
+        l = rr.retrieve();
+        assertFalse(rr.isComplete());
+        assertEquals(2, l.size());
+
+        // the segment is outside the interval
+        rr = new RollupRetrieval(parchive, p1.getQualifiedName(), 1000, 0, 1000);
+        rr.retrieve();
+        assertTrue(rr.isComplete());
+    }
+
+    @Test
+    public void testValueFilter() throws Exception {
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), Type.SINT32);
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+
+        PGSegment pgSegment1 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        pgSegment1.addRecord(500, Arrays.asList(TestUtils.getParameterValue(p1, 500, 5)));
+        pgSegment1.addRecord(1500, Arrays.asList(TestUtils.getParameterValue(p1, 1500, 15)));
+        parchive.writeToArchive(pgSegment1);
+
+        PGSegment pgSegment2 = new PGSegment(pg1id, 1700, IntArray.wrap(p1id));
+        pgSegment2.addRecord(1700, Arrays.asList(TestUtils.getParameterValue(p1, 1700, 17)));
+        pgSegment2.addRecord(2500, Arrays.asList(TestUtils.getParameterValue(p1, 2500, 25)));
+        parchive.writeToArchive(pgSegment2);
+
+        PGSegment pgSegment3 = new PGSegment(pg1id, 3000, IntArray.wrap(p1id));
+        pgSegment3.addRecord(3000, Arrays.asList(TestUtils.getParameterValue(p1, 3000, 1)));
+        pgSegment3.addRecord(3500, Arrays.asList(TestUtils.getParameterValue(p1, 3500, 2)));
+        parchive.writeToArchive(pgSegment3);
+
+        Partition part = parchive.getPartitions(0, 4000, true).get(0);
+        SegmentStats stats = (SegmentStats) parchive.getSegment(part,
+                new SegmentKey(p1id, SegmentKey.getStatsGroupId(pg1id), 1700, SegmentKey.TYPE_STATS));
+        assertEquals(17, stats.getMin(), 0);
+        assertEquals(25, stats.getMax(), 0);
+        assertEquals(2, stats.getCount());
+        assertEquals(1700, stats.getFirstTime());
+        assertEquals(2500, stats.getLastTime());
+
+        // corrupt the value segment of the last segment: it should not be read because it cannot match
+        parchive.getTablespace().getRdb(part.getPartitionDir(), false).put(
+                new SegmentKey(p1id, pg1id, 3000, SegmentKey.TYPE_ENG_VALUE).encode(), new byte[] { 100 });
+
+        List<ParameterValueArray> l = retrieveFiltered(0, 4000, true, ValueFilter.greaterThan(16));
+        assertEquals(1, l.size());
+        assertTrue(Arrays.equals(new long[] { 1700, 2500 }, l.get(0).timestamps));
+        assertEquals(17, l.get(0).engValues.getValue(0).getSint32Value());
+        assertEquals(2, l.get(0).paramStatus.length);
+
+        l = retrieveFiltered(0, 4000, false, new ValueFilter(15, true, 20, false));
+        assertEquals(2, l.size());
+        assertTrue(Arrays.equals(new long[] { 1700 }, l.get(0).timestamps));
+        assertTrue(Arrays.equals(new long[] { 1500 }, l.get(1).timestamps));
+
+        assertTrue(retrieveFiltered(0, 4000, true, ValueFilter.greaterThan(25)).isEmpty());
+        assertTrue(retrieveFiltered(1600, 2900, true, ValueFilter.lessThan(17)).isEmpty());
+
+        // segments without stats (written by older versions) are read
+        parchive.getTablespace().getRdb(part.getPartitionDir(), false).delete(
+                new SegmentKey(p1id, SegmentKey.getStatsGroupId(pg1id), 0, SegmentKey.TYPE_STATS).encode());
+        l = retrieveFiltered(0, 4000, true, new ValueFilter(4, true, 10, true));
+        assertEquals(1, l.size());
+        assertTrue(Arrays.equals(new long[] { 500 }, l.get(0).timestamps));
+    }
+
+    @Test
+    public void testValueFilterNonNumeric() throws Exception {
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), Type.STRING);
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+
+        PGSegment pgSegment1 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        pgSegment1.addRecord(500, Arrays.asList(TestUtils.getParameterValue(p1, 500, "5")));
+        parchive.writeToArchive(pgSegment1);
+
+        // the value segment is not read, the string values cannot match
+        Partition part = parchive.getPartitions(0, 4000, true).get(0);
+        parchive.getTablespace().getRdb(part.getPartitionDir(), false).put(
+                new SegmentKey(p1id, pg1id, 0, SegmentKey.TYPE_ENG_VALUE).encode(), new byte[] { 100 });
+
+        assertTrue(retrieveFiltered(0, 4000, true, ValueFilter.greaterThan(0)).isEmpty());
+    }
+
+    List<ParameterValueArray> retrieveFiltered(long start, long stop, boolean ascending, ValueFilter filter)
+            throws Exception {
+        SingleValueConsumer c = new SingleValueConsumer();
+        parchive.retrieveValues(p1.getQualifiedName(), new ParameterRequest(start, stop, ascending, true, false, true),
+                filter, c);
+        return c.list;
+    }
+
     List<ParameterValueArray> retrieveSingleParamSingleGroup(long start, long stop, int parameterId,
             int parameterGroupId, boolean ascending, boolean retrieveEngValues, boolean retrieveRawValues,
             boolean retriveParamStatus) throws Exception {
@@ -585,6 +734,68 @@ public class ParameterArchiveTest {
 
     }
 
+    @Test
+    public void testMultipleParametersParallel() throws Exception {
+        int p1id = parchive.getParameterIdDb().createAndGet(p1.getQualifiedName(), Type.SINT32);
+        int p2id = parchive.getParameterIdDb().createAndGet(p2.getQualifiedName(), Type.SINT32);
+        int pg1id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id, p2id));
+        int pg2id = parchive.getParameterGroupIdDb().createAndGet(IntArray.wrap(p1id));
+
+        // 10 intervals over two partitions, with some intervals left empty
+        long t0 = TimeEncoding.parse("2016-12-31T00:00:00");
+        long interval = ParameterArchive.getIntervalDuration();
+        for (int k = 0; k < 10; k++) {
+            if (k % 4 == 3) {
+                continue;
+            }
+            long segStart = ParameterArchive.getIntervalStart(t0 + k * interval);
+            PGSegment pgs1 = new PGSegment(pg1id, segStart, IntArray.wrap(p1id, p2id));
+            PGSegment pgs2 = new PGSegment(pg2id, segStart, IntArray.wrap(p1id));
+            for (int i = 0; i < 20; i++) {
+                long t = segStart + 1000 * i;
+                pgs1.addRecord(t, Arrays.asList(TestUtils.getParameterValue(p1, t, k * 100 + i),
+                        TestUtils.getParameterValue(p2, t, -k * 100 - i)));
+                pgs2.addRecord(t + 500, Arrays.asList(TestUtils.getParameterValue(p1, t + 500, k * 100 + i)));
+            }
+            parchive.writeToArchive(segStart, Arrays.asList(pgs1, pgs2));
+        }
+        int[] pids = new int[] { p1id, p2id, p1id };
+        int[] pgids = new int[] { pg1id, pg1id, pg2id };
+
+        for (boolean ascending : new boolean[] { true, false }) {
+            List<ParameterIdValueList> seq = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids,
+                    ascending, -1, 1);
+            assertEquals(8 * 40, seq.size());
+            List<ParameterIdValueList> par = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids,
+                    ascending, -1, 3);
+            checkSame(seq, par);
+
+            long start = t0 + 2 * interval + 5000;
+            long stop = t0 + 6 * interval + 5000;
+            seq = retrieveMultipleParameters(start, stop, pids, pgids, ascending, -1, 1);
+            par = retrieveMultipleParameters(start, stop, pids, pgids, ascending, -1, 4);
+            checkSame(seq, par);
+
+            seq = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids, ascending, 50, 1);
+            assertEquals(50, seq.size());
+            par = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids, ascending, 50, 2);
+            checkSame(seq, par);
+        }
+    }
+
+    private void checkSame(List<ParameterIdValueList> expected, List<ParameterIdValueList> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            List<ParameterValue> l1 = expected.get(i).getValues();
+            List<ParameterValue> l2 = actual.get(i).getValues();
+            assertEquals(l1.size(), l2.size());
+            for (int j = 0; j < l1.size(); j++) {
+                assertEquals(l1.get(j).getGenerationTime(), l2.get(j).getGenerationTime());
+                assertEquals(l1.get(j).getEngValue(), l2.get(j).getEngValue());
+            }
+        }
+    }
+
     @Test
     public void testExpireMillis() throws Exception {
         long t = TimeEncoding.parse("2018-03-19T10:35:00");
@@ -617,6 +828,11 @@ public class ParameterArchiveTest {
 
     List<ParameterIdValueList> retrieveMultipleParameters(long start, long stop, int[] parameterIds,
             int[] parameterGroupIds, boolean ascending, int limit) throws Exception {
+        return retrieveMultipleParameters(start, stop, parameterIds, parameterGroupIds, ascending, limit, 1);
+    }
+
+    List<ParameterIdValueList> retrieveMultipleParameters(long start, long stop, int[] parameterIds,
+            int[] parameterGroupIds, boolean ascending, int limit, int parallelism) throws Exception {
         String[] parameterNames = new String[parameterIds.length];
         for (int i = 0; i < parameterIds.length; i++) {
             parameterNames[i] = "p" + parameterIds[i];
@@ -627,6 +843,7 @@ public class ParameterArchiveTest {
         MultipleParameterValueRequest mpvr = new MultipleParameterValueRequest(start, stop, parameterNames,
                 parameterIds, parameterGroupIds, retrieveRawValues, ascending);
         mpvr.setLimit(limit);
+        mpvr.setParallelism(parallelism);
 
         MultiParameterDataRetrieval mpdr = new MultiParameterDataRetrieval(parchive, mpvr);
         MultiValueConsumer c = new MultiValueConsumer();
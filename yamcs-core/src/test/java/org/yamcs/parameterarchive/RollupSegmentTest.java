@@ -0,0 +1,71 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.ValueUtility;
+
+public class RollupSegmentTest {
+
+    @Test
+    public void testBuild() throws DecodingException {
+        long[] times = { 100, 900, 1000, 1500, 4200 };
+        int[] values = { 3, -2, 10, 20, 7 };
+        SortedTimeSegment timeSegment = new SortedTimeSegment(0);
+        List<Value> l = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            timeSegment.add(times[i]);
+            l.add(ValueUtility.getSint32Value(values[i]));
+        }
+        IntValueSegment vs = IntValueSegment.consolidate(l, true);
+
+        RollupSegment rs = RollupSegment.build(1000, timeSegment, vs);
+        checkBuckets(rs);
+
+        ByteBuffer bb = ByteBuffer.allocate(rs.getMaxSerializedSize());
+        rs.writeTo(bb);
+        bb.limit(bb.position());
+        bb.rewind();
+        RollupSegment rs1 = RollupSegment.parseFrom(bb);
+        checkBuckets(rs1);
+    }
+
+    private void checkBuckets(RollupSegment rs) {
+        assertEquals(3, rs.size());
+
+        assertEquals(0, rs.getBucketStart(0));
+        assertEquals(-2, rs.getMin(0), 0);
+        assertEquals(3, rs.getMax(0), 0);
+        assertEquals(1, rs.getSum(0), 0);
+        assertEquals(2, rs.getCount(0));
+
+        assertEquals(1000, rs.getBucketStart(1));
+        assertEquals(10, rs.getMin(1), 0);
+        assertEquals(20, rs.getMax(1), 0);
+        assertEquals(30, rs.getSum(1), 0);
+        assertEquals(2, rs.getCount(1));
+
+        assertEquals(4000, rs.getBucketStart(2));
+        assertEquals(7, rs.getMin(2), 0);
+        assertEquals(7, rs.getMax(2), 0);
+        assertEquals(1, rs.getCount(2));
+    }
+
+    @Test
+    public void testNotNumeric() {
+        SortedTimeSegment timeSegment = new SortedTimeSegment(0);
+        timeSegment.add(100);
+        List<Value> l = new ArrayList<>();
+        l.add(ValueUtility.getStringValue("bla"));
+        ValueSegment vs = (ValueSegment) StringValueSegment.consolidate(l);
+
+        assertNull(RollupSegment.build(1000, timeSegment, vs));
+    }
+}
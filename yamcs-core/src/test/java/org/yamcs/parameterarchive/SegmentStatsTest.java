@@ -0,0 +1,72 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.ValueUtility;
+
+public class SegmentStatsTest {
+
+    @Test
+    public void testBuild() throws DecodingException {
+        SortedTimeSegment timeSegment = new SortedTimeSegment(0);
+        List<Value> l = new ArrayList<>();
+        double[] values = { 3.5, Double.NaN, -2, 10 };
+        for (int i = 0; i < values.length; i++) {
+            timeSegment.add(100 + 1000 * i);
+            l.add(ValueUtility.getDoubleValue(values[i]));
+        }
+        SegmentStats stats = SegmentStats.build(timeSegment, DoubleValueSegment.consolidate(l));
+        checkStats(stats);
+
+        ByteBuffer bb = ByteBuffer.allocate(stats.getMaxSerializedSize());
+        stats.writeTo(bb);
+        bb.limit(bb.position());
+        bb.rewind();
+        checkStats(SegmentStats.parseFrom(bb));
+
+        assertTrue(ValueFilter.greaterThan(9).mayMatch(stats));
+        assertFalse(ValueFilter.greaterThan(10).mayMatch(stats));
+        assertTrue(new ValueFilter(10, true, 20, true).mayMatch(stats));
+        assertFalse(ValueFilter.lessThan(-2).mayMatch(stats));
+        assertTrue(new ValueFilter(0, true, 1, true).mayMatch(stats));
+    }
+
+    @Test
+    public void testNaN() {
+        SortedTimeSegment timeSegment = new SortedTimeSegment(0);
+        timeSegment.add(10);
+        SegmentStats stats = SegmentStats.build(timeSegment,
+                DoubleValueSegment.consolidate(Arrays.asList(ValueUtility.getDoubleValue(Double.NaN))));
+        assertTrue(Double.isNaN(stats.getMin()));
+        assertFalse(new ValueFilter(Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true).mayMatch(stats));
+    }
+
+    @Test
+    public void testNotNumeric() {
+        SortedTimeSegment timeSegment = new SortedTimeSegment(0);
+        timeSegment.add(10);
+        ValueSegment vs = (ValueSegment) StringValueSegment
+                .consolidate(Arrays.asList(ValueUtility.getStringValue("x")));
+        assertNull(SegmentStats.build(timeSegment, vs));
+        assertFalse(ValueFilter.greaterThan(0).matches(ValueUtility.getStringValue("x")));
+    }
+
+    private void checkStats(SegmentStats stats) {
+        assertEquals(-2, stats.getMin(), 0);
+        assertEquals(10, stats.getMax(), 0);
+        assertEquals(4, stats.getCount());
+        assertEquals(100, stats.getFirstTime());
+        assertEquals(3100, stats.getLastTime());
+    }
+}
@@ -0,0 +1,66 @@
+package org.yamcs.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class UserTest {
+    static final ObjectPrivilegeType TYPE = ObjectPrivilegeType.ReadParameter;
+
+    @Test
+    public void testMatchers() {
+        User user = new User("test");
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/YSS/SIMULATOR/BatteryVoltage1"));
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/REFMDB/SUBSYS1/.*"));
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/REFMDB/.*/IntegerPara1_[0-9]"));
+
+        assertTrue(user.hasObjectPrivilege(TYPE, "/YSS/SIMULATOR/BatteryVoltage1"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/YSS/SIMULATOR/BatteryVoltage12"));
+        assertTrue(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS1/FloatPara1_1_2"));
+        assertTrue(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS1/"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS1"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS1/a\nb"));
+        assertTrue(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS2/IntegerPara1_3"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/REFMDB/SUBSYS2/IntegerPara1_33"));
+        assertFalse(user.hasObjectPrivilege(ObjectPrivilegeType.Command, "/YSS/SIMULATOR/BatteryVoltage1"));
+    }
+
+    @Test
+    public void testSameAsRegex() {
+        String[] patterns = { "abc", "a.c", ".*", "a.*", "a\\.b.*", "(ab)+.*", "/x/[a-z]*", "x|y", "" };
+        String[] objects = { "abc", "a.c", "a", "", "a.bc", "axbc", "abab", "/x/yz", "x", "y", "xy", "a\nb" };
+        for (String pattern : patterns) {
+            User user = new User("test");
+            user.addObjectPrivilege(new ObjectPrivilege(TYPE, pattern));
+            for (String object : objects) {
+                assertEquals(pattern + " " + object, object.matches(pattern), user.hasObjectPrivilege(TYPE, object));
+            }
+        }
+    }
+
+    @Test
+    public void testCacheInvalidation() {
+        User user = new User("test");
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/a/.*"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/b/x"));
+        assertFalse(user.hasObjectPrivilege(TYPE, "/b/x"));
+
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/b/x"));
+        assertTrue(user.hasObjectPrivilege(TYPE, "/b/x"));
+        for (String object : Arrays.asList("/a/x", "/a/y")) {
+            assertTrue(user.hasObjectPrivilege(TYPE, object));
+        }
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidPattern() {
+        User user = new User("test");
+        user.addObjectPrivilege(new ObjectPrivilege(TYPE, "/a/(.*"));
+        user.hasObjectPrivilege(TYPE, "/a/b");
+    }
+}
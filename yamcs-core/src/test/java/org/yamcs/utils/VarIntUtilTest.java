@@ -80,6 +80,15 @@ public class VarIntUtilTest {
         
     }
     
+    @Test
+    public void testDeltaDeltaZigZagLong() throws Exception {
+        long[] a = new long[] { 0, Long.MAX_VALUE, Long.MIN_VALUE, -1, 1L << 40, (1L << 40) + 1000,
+                (1L << 40) + 2000, 3 };
+        long[] ddz = VarIntUtil.encodeDeltaDeltaZigZag(LongArray.wrap(a));
+        assertArrayEquals(a, VarIntUtil.decodeDeltaDeltaZigZag(ddz));
+        assertEquals(0, ddz[6]);
+    }
+
     @Test
     public void testEncodeDecodeIntArray() {
         IntArray s1 = IntArray.wrap(1,5,20);
@@ -6,6 +6,14 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.junit.Test;
 import org.yamcs.YConfiguration;
 import org.yamcs.xtce.*;
@@ -129,6 +137,73 @@ public class XtceDbFactoryTest {
         assertNull(rr);
     }
 
+    @Test
+    public void testResolveReferenceWithIndex() {
+        SpaceSystem root = new SpaceSystem("");
+        root.setParent(root);
+        SpaceSystem a = new SpaceSystem("a");
+        root.addSpaceSystem(a);
+        SpaceSystem a_b1 = new SpaceSystem("b1");
+        a.addSpaceSystem(a_b1);
+        SpaceSystem a_b2 = new SpaceSystem("b2");
+        a.addSpaceSystem(a_b2);
+        SpaceSystem a_b2_c1 = new SpaceSystem("c1");
+        a_b2.addSpaceSystem(a_b2_c1);
+
+        a.addParameter(new Parameter("p1"));
+        a_b1.addParameter(new Parameter("p1"));
+        a_b2_c1.addParameter(new Parameter("p1"));
+        a_b2_c1.addParameter(new Parameter("p2"));
+        SequenceContainer sc = new SequenceContainer("p1");
+        a_b1.addSequenceContainer(sc);
+
+        XtceDbFactory.NameIndex index = new XtceDbFactory.NameIndex(root);
+        String[] refs = { "/a/b2/c1/p1", "/a/p1", "p1", "p2", "b2/c1/p1", "c1/p2", "../p1", "./p1", "/a/..", "p3" };
+        for (SpaceSystem ss : Arrays.asList(root, a, a_b1, a_b2, a_b2_c1)) {
+            for (String ref : refs) {
+                for (Type type : Arrays.asList(Type.PARAMETER, Type.SEQUENCE_CONTAINER)) {
+                    UnresolvedNameReference nr = new UnresolvedNameReference(ref, type);
+                    ResolvedReference rr1 = XtceDbFactory.findReference(root, nr, ss);
+                    ResolvedReference rr2 = XtceDbFactory.findReference(root, nr, ss, index);
+                    assertSame(rr1 == null ? null : rr1.nd, rr2 == null ? null : rr2.nd);
+                }
+            }
+        }
+        assertSame(sc, XtceDbFactory.findReference(root,
+                new UnresolvedNameReference("p1", Type.SEQUENCE_CONTAINER), a_b1, index).nd);
+    }
+
+    @Test
+    public void testLoadSubtrees() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        Map<String, Object> sheetArgs = new HashMap<>();
+        sheetArgs.put("file", "mdb/refmdb.xls");
+        sheetArgs.put("enableAliasReferences", false);
+        List<Object> treeConfig = Arrays.asList(loaderConfig("sheet", sheetArgs),
+                loaderConfig("xtce", Collections.singletonMap("file", "src/test/resources/xtce/BogusSAT-1.xml")),
+                loaderConfig("xtce",
+                        Collections.singletonMap("file", "src/test/resources/xtce/ccsds-green-book.xml")));
+
+        XtceDb db = XtceDbFactory.createInstance(treeConfig, false, false);
+        assertNotNull(db.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1"));
+        assertNotNull(db.getSpaceSystem("/BogusSAT/SC001"));
+        assertNotNull(db.getParameter("/SpaceVehicle/SecH"));
+        Set<String> names = new HashSet<>();
+        for (SpaceSystem ss : db.getRootSpaceSystem().getSubSystems()) {
+            assertSame(db.getRootSpaceSystem(), ss.getParent());
+            names.add(ss.getName());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("REFMDB", "BogusSAT", "SpaceVehicle", "yamcs")), names);
+    }
+
+    private Map<String, Object> loaderConfig(String type, Map<String, Object> args) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("type", type);
+        m.put("args", args);
+        return m;
+    }
+
     @Test
     public void testInstantiation() throws Exception {
         YConfiguration.setupTest("XtceDbFactoryTest");
@@ -22,11 +22,14 @@ import static org.yamcs.RefMdbPacketGenerator.pStringIntTermPara1_5_3;
 import static org.yamcs.RefMdbPacketGenerator.pTerminatedStringPara1_3_3;
 import static org.yamcs.RefMdbPacketGenerator.pTerminatedStringPara1_3_4;
 
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.yamcs.ConfigurationException;
 import org.yamcs.ContainerExtractionResult;
@@ -39,6 +42,8 @@ import org.yamcs.algorithms.AlgorithmExecutionContext;
 import org.yamcs.parameter.ParameterValueList;
 import org.yamcs.parameter.Value;
 import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Pvalue.MonitoringResult;
+import org.yamcs.tctm.CcsdsPacketInputStream;
 import org.yamcs.utils.BitBuffer;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.ValueUtility;
@@ -47,6 +52,7 @@ import org.yamcs.xtce.DataEncoding;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.ProcessingStatistics.DispatchStats;
 
 public class XtceTmExtractorTest {
 
@@ -123,6 +129,26 @@ public class XtceTmExtractorTest {
         assertEquals((long) (1500 * 1.9), pv.getExpireMills());
     }
 
+    @Test
+    public void testSharedStatus() {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb);
+        tmExtractor.provideAll();
+        tmExtractor.processPacket(tmGenerator.generate_PKT1_2(), TimeEncoding.getWallclockTime(),
+                TimeEncoding.getWallclockTime());
+
+        ParameterValueList received = tmExtractor.getParameterResult();
+        ParameterValue pv1 = received.getLastInserted(xtcedb.getParameter("/REFMDB/SUBSYS1/LEIntegerPara1_2_1"));
+        ParameterValue pv2 = received.getLastInserted(xtcedb.getParameter("/REFMDB/SUBSYS1/LEIntegerPara1_2_2"));
+        assertTrue(pv1.getStatus() == pv2.getStatus());
+
+        pv1.setMonitoringResult(MonitoringResult.WARNING);
+        assertEquals(MonitoringResult.WARNING, pv1.getMonitoringResult());
+        assertEquals((long) (1500 * 1.9), pv1.getExpireMills());
+        assertNull(pv2.getMonitoringResult());
+        assertEquals((long) (1500 * 1.9), pv2.getExpireMills());
+    }
+
     @Test
     public void testPKT1_3StringStructure() throws ConfigurationException {
         RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
@@ -857,6 +883,119 @@ public class XtceTmExtractorTest {
         assertEquals(99, pv.getEngValue().getUint32Value());
     }
 
+    @Test
+    public void testSubscriptionChange() throws ConfigurationException {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb);
+        Parameter p1 = xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6");
+        Parameter p2 = xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_7");
+        tmExtractor.startProviding(p1);
+
+        byte[] bb = tmGenerator.generate_PKT1_1();
+        tmExtractor.processPacket(bb, TimeEncoding.getWallclockTime(), TimeEncoding.getWallclockTime());
+        ParameterValueList received = tmExtractor.getParameterResult();
+        assertEquals(tmGenerator.pIntegerPara1_1_6, received.getLastInserted(p1).getEngValue().getUint32Value());
+        assertNull(received.getLastInserted(p2));
+
+        // the extraction plan has to be recompiled after the subscription change
+        tmExtractor.startProviding(p2);
+        tmExtractor.processPacket(bb, TimeEncoding.getWallclockTime(), TimeEncoding.getWallclockTime());
+        received = tmExtractor.getParameterResult();
+        assertEquals(tmGenerator.pIntegerPara1_1_6, received.getLastInserted(p1).getEngValue().getUint32Value());
+        assertEquals(tmGenerator.pIntegerPara1_1_7, received.getLastInserted(p2).getEngValue().getUint32Value());
+    }
+
+    @Test
+    public void testInheritanceDispatchIndex() throws ConfigurationException {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb);
+        tmExtractor.provideAll();
+
+        tmExtractor.processPacket(tmGenerator.generate_PKT1_1(), TimeEncoding.getWallclockTime(),
+                TimeEncoding.getWallclockTime());
+        tmExtractor.processPacket(tmGenerator.generate_PKT1_3(), TimeEncoding.getWallclockTime(),
+                TimeEncoding.getWallclockTime());
+
+        ProcessingStatistics stats = tmExtractor.getStatistics();
+        assertEquals(1, stats.stats.get("PKT1_1").receivedPackets);
+        assertEquals(1, stats.stats.get("PKT1_3").receivedPackets);
+
+        DispatchStats ds = stats.dispatchStats.get("PKT1");
+        assertEquals(2, ds.dispatchedPackets);
+        assertEquals(2, ds.indexLookups);
+        assertEquals(2, ds.indexHits);
+    }
+
+    /**
+     * Measures the extraction of all parameters from PKT1_1 (best of 5 runs of 500000 packets).
+     * <p>
+     * Results on Intel(R) Xeon(R) Processor (1 core), OpenJDK 17.0.9
+     *
+     * <pre>
+     * interpretive extraction (previous implementation): 3.5 us/packet
+     * compiled extraction plans:                         2.9 us/packet
+     * </pre>
+     */
+    @Ignore
+    @Test
+    public void testPerformance() {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb);
+        tmExtractor.provideAll();
+        byte[] bb = tmGenerator.generate_PKT1_1();
+
+        int n = 500_000;
+        for (int k = 0; k < 5; k++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                tmExtractor.processPacket(bb, 0, 0);
+            }
+            long t1 = System.nanoTime();
+            System.out.println(String.format("%.2f us/packet", (t1 - t0) / 1000.0 / n));
+        }
+    }
+
+    /**
+     * Measures the memory allocated by the extraction of all parameters from PKT1_1 (14 parameters), the packet being
+     * read from a stream as done by the TCP links.
+     * <p>
+     * Results on Intel(R) Xeon(R) Processor (1 core), OpenJDK 17.0.9
+     *
+     * <pre>
+     * previous implementation:                                 4032 bytes/packet
+     * shared status for the nominal values, reused CCSDS header: 3168 bytes/packet
+     * array based ParameterValueList, shared small int values:   2872 bytes/packet
+     * </pre>
+     */
+    @Ignore
+    @Test
+    public void testAllocationRate() throws Exception {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(xtcedb);
+        tmExtractor.provideAll();
+        byte[] bb = tmGenerator.generate_PKT1_1();
+
+        int n = 200_000;
+        byte[] stream = new byte[n * bb.length];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(bb, 0, stream, i * bb.length, bb.length);
+        }
+        com.sun.management.ThreadMXBean tmxb = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (int k = 0; k < 5; k++) {
+            CcsdsPacketInputStream pis = new CcsdsPacketInputStream(new ByteArrayInputStream(stream));
+            long a0 = tmxb.getThreadAllocatedBytes(tid);
+            for (int i = 0; i < n; i++) {
+                tmExtractor.processPacket(pis.readPacket(), 0, 0);
+            }
+            long a1 = tmxb.getThreadAllocatedBytes(tid);
+            System.out.println((a1 - a0) / n + " bytes/packet");
+        }
+    }
+
     void printParaList(ParameterValueList pvl) {
         System.out.println(String.format("%-30s %10s %10s", "name", "eng", "raw"));
         System.out.println(String.format("----------------------------------------------------"));
@@ -196,5 +196,22 @@ public class HistogramSegmentTest {
         assertTrue(segment.rightUpdated);
         assertSegEquals(6000, 8000, (short)3, segment.pps.get(1));
         assertFalse(segment.rightDeleted);
-    }    
+    }
+
+    @Test
+    public void testRepeatedMerge() {
+        // merging multiple points in the same segment object gives the same result as reading back the segment
+        // before each point
+        int[] dtimes = { 1000, 2000, 3000, 3000, 200000, 201000, 500, 202000, 100000, 4000 };
+        HistogramSegment segment1 = new HistogramSegment(grp1, 0);
+        HistogramSegment segment2 = new HistogramSegment(grp1, 0);
+        for (int dt : dtimes) {
+            segment1.merge(dt);
+            segment2 = new HistogramSegment(grp1, 0, segment2.val());
+            segment2.merge(dt);
+            assertArrayEquals(segment2.val(), segment1.val());
+        }
+        assertEquals(segment2.duplicate, segment1.duplicate);
+        assertEquals(segment2.leftUpdated, segment1.leftUpdated);
+    }
 }
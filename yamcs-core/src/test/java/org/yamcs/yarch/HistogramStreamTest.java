@@ -69,6 +69,31 @@ public class HistogramStreamTest extends YarchTestCase {
         ydb.execute("drop table test1");
     }
 
+    @Test
+    public void testWriteBehind() throws Exception {
+        ydb.execute("create table test4(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) "
+                + "histogram(name) partition by time(gentime)");
+        execute("create stream test4_in(gentime timestamp, seqNum int, name string)");
+        execute("insert into test4 select * from test4_in");
+        Stream s = ydb.getStream("test4_in");
+        for (int i = 0; i < n; i++) {
+            s.emitTuple(new Tuple(s.getDefinition(), new Object[] { 1000L * i, i, "histotest" }));
+        }
+        // the stream is not closed, the histogram is written after the latency
+        int num = 0;
+        for (int k = 0; k < 50 && num < n; k++) {
+            Thread.sleep(100);
+            ydb.execute("create stream test4_out" + k + " as select * from test4 histogram(name)");
+            num = 0;
+            for (Tuple t : fetchAll("test4_out" + k)) {
+                num += (Integer) t.getColumn(3);
+            }
+        }
+        assertEquals(n, num);
+        execute("close stream test4_in");
+        ydb.execute("drop table test4");
+    }
+
     @Test
     public void test2() throws Exception {
         populate("test2");
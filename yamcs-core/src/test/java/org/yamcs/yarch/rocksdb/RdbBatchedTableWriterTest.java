@@ -0,0 +1,100 @@
+package org.yamcs.yarch.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.HistogramIterator;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.TableWriter.InsertMode;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.rocksdb.RdbConfig.TableWriterConfig;
+
+public class RdbBatchedTableWriterTest extends YarchTestCase {
+    TableDefinition tblDef;
+    RdbStorageEngine rse;
+
+    @Before
+    public void createTable() throws Exception {
+        ydb.execute("create table test1(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) "
+                + "histogram(name) partition by time(gentime) table_format=compressed");
+        tblDef = ydb.getTable("test1");
+        rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+    }
+
+    RdbBatchedTableWriter newWriter(InsertMode mode, int maxBatchSize, long maxBatchLatency) {
+        return new RdbBatchedTableWriter(rse.getTablespace(ydb), ydb, tblDef, mode,
+                rse.partitionManagers.get(tblDef), new TableWriterConfig(maxBatchSize, maxBatchLatency, 5));
+    }
+
+    Tuple tuple(long gentime, int seqNum, String name) {
+        return new Tuple(tblDef.getTupleDefinition(), new Object[] { gentime, seqNum, name });
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        RdbBatchedTableWriter tw = newWriter(InsertMode.INSERT, 10, 100000);
+        for (int i = 0; i < 25; i++) {
+            tw.onTuple(null, tuple(1000L * i, i, "p" + (i % 2)));
+        }
+        assertEquals(5, tw.getPendingCount());
+        assertEquals(2, tw.getNumCommits());
+
+        // duplicates in the current batch, in the key cache and in the database
+        tw.onTuple(null, tuple(24000L, 24, "dup"));
+        tw.onTuple(null, tuple(0L, 0, "dup"));
+        tw.close();
+        assertEquals(0, tw.getPendingCount());
+
+        List<Tuple> tlist = fetchAllFromTable("test1");
+        assertEquals(25, tlist.size());
+        for (Tuple t : tlist) {
+            int seqNum = (Integer) t.getColumn("seqNum");
+            assertEquals("p" + (seqNum % 2), t.getColumn("name"));
+        }
+
+        HistogramIterator iter = rse.getHistogramIterator(ydb, tblDef, "name", new TimeInterval());
+        int n = 0;
+        while (iter.hasNext()) {
+            n += iter.next().getNumTuples();
+        }
+        iter.close();
+        assertEquals(25, n);
+    }
+
+    @Test
+    public void testUpsert() throws Exception {
+        RdbBatchedTableWriter tw = newWriter(InsertMode.UPSERT, 3, 100000);
+        for (int i = 0; i < 10; i++) {
+            tw.onTuple(null, tuple(1000L * i, i, "p1"));
+        }
+        for (int i = 0; i < 10; i++) {
+            tw.onTuple(null, tuple(1000L * i, i, "p2"));
+        }
+        tw.close();
+
+        List<Tuple> tlist = fetchAllFromTable("test1");
+        assertEquals(10, tlist.size());
+        for (Tuple t : tlist) {
+            assertEquals("p2", t.getColumn("name"));
+        }
+    }
+
+    @Test
+    public void testLatencyCommit() throws Exception {
+        RdbBatchedTableWriter tw = newWriter(InsertMode.INSERT, 1000, 5);
+        tw.onTuple(null, tuple(1000L, 1, "p1"));
+        tw.onTuple(null, tuple(2000L, 2, "p1"));
+        for (int i = 0; i < 100 && tw.getPendingCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, tw.getPendingCount());
+        assertEquals(1, tw.getNumCommits());
+        assertEquals(2, fetchAllFromTable("test1").size());
+        tw.close();
+    }
+}
@@ -0,0 +1,192 @@
+package org.yamcs.yarch.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.streamsql.ExecutionContext;
+
+public class RdbParallelScanTest extends YarchTestCase {
+    static final int NUM_DAYS = 5;
+    static final int NUM_NAMES = 30;
+    static final int NUM_ROWS = 6000;
+    long t0;
+    int streamCount = 0;
+
+    @Before
+    public void populate() throws Exception {
+        ydb.execute("create table test1(gentime timestamp, seq int, pname enum, eng double, "
+                + "primary key(gentime, seq)) partition by time_and_value(gentime('YYYY/DOY'), pname)");
+        ydb.execute("create stream test1_in(gentime timestamp, seq int, pname enum, eng double)");
+        ydb.execute("insert into test1 select * from test1_in");
+        Stream s = ydb.getStream("test1_in");
+
+        t0 = TimeEncoding.parse("2020-03-01T00:00:00");
+        long step = NUM_DAYS * 86400_000L / NUM_ROWS;
+        for (int i = 0; i < NUM_ROWS; i++) {
+            // a few rows with the same time in different partitions
+            long t = t0 + (i / 3) * step;
+            s.emitTuple(new Tuple(s.getDefinition(), new Object[] { t, i, "p" + (i % NUM_NAMES), (double) i }));
+        }
+        s.close();
+    }
+
+    @Test
+    public void testAscending() throws Exception {
+        check("select * from test1", NUM_ROWS);
+    }
+
+    @Test
+    public void testDescending() throws Exception {
+        check("select * from test1 order desc", NUM_ROWS);
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        long start = t0 + 86400_000L + 1234;
+        long stop = t0 + 3 * 86400_000L + 5678;
+        check("select * from test1 where gentime >= " + start + " and gentime < " + stop, -1);
+        check("select * from test1 where gentime > " + start + " and gentime <= " + stop + " order desc", -1);
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        check("select gentime, eng from test1 where pname in ('p3', 'p7', 'p11') and eng > 1000", -1);
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        Tablespace tablespace = RdbStorageEngine.getInstance().getTablespace(ydb);
+        fetch("select * from test1", 4);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) tablespace.getScanExecutor();
+        fetch("select * from test1 order desc", 8);
+        assertSame(executor, tablespace.getScanExecutor());
+        assertTrue(executor.getLargestPoolSize() <= Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The stream is closed while the pool threads are reading the next chunks; the reads in progress have to be
+     * finished before the iterators are closed and the databases released.
+     */
+    @Test
+    public void testEarlyClose() throws Exception {
+        RDBFactory rdbFactory = RdbStorageEngine.getInstance().getTablespace(ydb).getRdbFactory();
+        fetch("select * from test1", 1);
+        Map<String, Integer> refcounts = getRefcounts(rdbFactory);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(10, fetchAndClose("select * from test1", 8, 10));
+            assertEquals(10, fetchAndClose("select * from test1 order desc", 8, 10));
+        }
+        // all the databases have been released by the closed streams
+        assertEquals(refcounts, getRefcounts(rdbFactory));
+        check("select * from test1", NUM_ROWS);
+    }
+
+    private Map<String, Integer> getRefcounts(RDBFactory rdbFactory) {
+        Map<String, Integer> m = new HashMap<>();
+        for (String path : rdbFactory.getOpenDbPaths()) {
+            YRDB rdb = rdbFactory.getOpenRdb(path);
+            m.put(path, rdb.refcount);
+            rdbFactory.dispose(rdb);
+        }
+        return m;
+    }
+
+    private void check(String query, int expectedSize) throws Exception {
+        List<Tuple> serial = fetch(query, 1);
+        List<Tuple> parallel = fetch(query, 4);
+        if (expectedSize >= 0) {
+            assertEquals(expectedSize, serial.size());
+        } else {
+            assertTrue(serial.size() > 0);
+        }
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            Tuple t1 = serial.get(i);
+            Tuple t2 = parallel.get(i);
+            assertEquals(t1.getColumn("gentime"), t2.getColumn("gentime"));
+            assertEquals(t1.getColumn("eng"), t2.getColumn("eng"));
+        }
+    }
+
+    private List<Tuple> fetch(String query, int parallelism) throws Exception {
+        String sname = "s" + (streamCount++);
+        ExecutionContext context = new ExecutionContext(instance);
+        context.setParallelism(parallelism);
+        ydb.execute(context, "create stream " + sname + " as " + query + " nofollow");
+        Stream s = ydb.getStream(sname);
+
+        List<Tuple> tuples = new ArrayList<>();
+        Semaphore semaphore = new Semaphore(0);
+        s.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                tuples.add(tuple);
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+                semaphore.release();
+            }
+        });
+        s.start();
+        assertTrue(semaphore.tryAcquire(10, TimeUnit.SECONDS));
+        return tuples;
+    }
+
+    /**
+     * closes the stream from the subscriber after receiving n tuples and waits for the stream thread to finish
+     * 
+     * @return the number of tuples received
+     */
+    private int fetchAndClose(String query, int parallelism, int n) throws Exception {
+        String sname = "s" + (streamCount++);
+        ExecutionContext context = new ExecutionContext(instance);
+        context.setParallelism(parallelism);
+        ydb.execute(context, "create stream " + sname + " as " + query + " nofollow");
+        Stream s = ydb.getStream(sname);
+
+        AtomicInteger count = new AtomicInteger();
+        AtomicReference<Thread> streamThread = new AtomicReference<>();
+        s.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                streamThread.set(Thread.currentThread());
+                if (count.incrementAndGet() == n) {
+                    stream.close();
+                }
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+            }
+        });
+        s.start();
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (streamThread.get() == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+        streamThread.get().join(10_000);
+        assertFalse(streamThread.get().isAlive());
+        return count.get();
+    }
+}
@@ -177,6 +177,34 @@ public class RdbSelectTest extends YarchTestCase {
         assertEquals(1000L, tuples.get(2).getColumn("gentime"));
     }
     
+    @Test
+    public void testValueFilter() throws Exception {
+        ydb.execute("create stream s1 as select * from RdbSelectTest where col3 >= 2 and packetid != 30");
+        List<Tuple> tuples = fetchTuples(ydb.getStream("s1"));
+        assertEquals(1, tuples.size());
+        assertEquals(2000L, tuples.get(0).getColumn("gentime"));
+        assertEquals(3, tuples.get(0).size());
+
+        ydb.execute("create stream s2 as select * from RdbSelectTest where gentime != 2000");
+        tuples = fetchTuples(ydb.getStream("s2"));
+        assertEquals(2, tuples.size());
+        assertEquals(1000L, tuples.get(0).getColumn("gentime"));
+        assertEquals(3000L, tuples.get(1).getColumn("gentime"));
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        ydb.execute("create stream s1 as select gentime, col3 + 1 as x from RdbSelectTest where packetid > 10");
+        Stream s1 = ydb.getStream("s1");
+        List<Tuple> tuples = fetchTuples(s1);
+        assertEquals(2, tuples.size());
+        assertEquals(2000L, tuples.get(0).getColumn("gentime"));
+        assertEquals(3, tuples.get(0).getColumn("x"));
+        assertEquals(3000L, tuples.get(1).getColumn("gentime"));
+        assertEquals(4, tuples.get(1).getColumn("x"));
+        assertEquals(2, tuples.get(1).size());
+    }
+
     @Test(expected=ParseException.class)
     public void testInvalidOrder() throws Exception {
         ydb.execute("create stream s1 as select * from RdbSelectTest order blabla");
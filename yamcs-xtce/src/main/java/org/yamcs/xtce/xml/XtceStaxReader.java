@@ -317,6 +317,7 @@ public class XtceStaxReader {
     public SpaceSystem readXmlDocument(String fileName) throws XMLStreamException, IOException {
         this.fileName = fileName;
         log.info("Parsing XTCE file {}", fileName);
+        long t0 = System.nanoTime();
         xmlEventReader = initEventReader(fileName);
         xmlEvent = null;
         SpaceSystem spaceSystem = null;
@@ -355,9 +356,11 @@ public class XtceStaxReader {
                     throw new IllegalStateException("XML file parsing error");
                 }
             }
-            log.info("XTCE file parsing finished, loaded: {} parameters, {} tm containers, {} commands",
-                    spaceSystem.getParameterCount(true), spaceSystem.getSequenceContainerCount(true),
-                    spaceSystem.getMetaCommandCount(true));
+            Runtime rt = Runtime.getRuntime();
+            log.info("XTCE file parsing finished in {} ms (heap usage {} MB), loaded: {} parameters, "
+                    + "{} tm containers, {} commands", (System.nanoTime() - t0) / 1000_000,
+                    (rt.totalMemory() - rt.freeMemory()) >> 20, spaceSystem.getParameterCount(true),
+                    spaceSystem.getSequenceContainerCount(true), spaceSystem.getMetaCommandCount(true));
         } catch (IllegalArgumentException e) {
             e.printStackTrace(); ///
             throw new XMLStreamException(e.getMessage(), xmlEvent.getLocation());
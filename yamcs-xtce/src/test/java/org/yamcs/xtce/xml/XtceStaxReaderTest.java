@@ -0,0 +1,130 @@
+package org.yamcs.xtce.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.xtce.SpaceSystem;
+
+public class XtceStaxReaderTest {
+
+    @Test
+    public void testSynthetic() throws Exception {
+        File f = File.createTempFile("synthetic", ".xml");
+        try {
+            createXtce(f, 20, 3, 100);
+            SpaceSystem ss = new XtceStaxReader().readXmlDocument(f.getPath());
+            assertEquals(20 * 4 * 100, ss.getParameterCount(true));
+            assertEquals(20, ss.getSubSystems().size());
+            SpaceSystem ss1 = ss.getSubsystem("SS1").getSubsystem("SS1_2");
+            assertEquals(100, ss1.getParameters().size());
+            assertEquals(1, ss1.getSequenceContainers().size());
+            assertNotNull(ss1.getParameter("p99").getParameterType());
+            assertEquals("SS1_2_P99", ss1.getParameter("p99").getAlias("MDB:OPS Name"));
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * Reads a synthetic XTCE file of 200000 parameters in 200 space systems. Result on a single CPU machine:
+     *
+     * <pre>
+     * file size: 93 MB
+     * 8667 ms, peak heap 247 MB
+     * </pre>
+     */
+    @Ignore
+    @Test
+    public void benchmarkRead() throws Exception {
+        File f = File.createTempFile("synthetic", ".xml");
+        try {
+            createXtce(f, 50, 3, 1000);
+            System.out.println("file size: " + (f.length() >> 20) + " MB");
+            for (int k = 0; k < 2; k++) {
+                System.gc();
+                List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+                pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+                long t0 = System.nanoTime();
+                new XtceStaxReader().readXmlDocument(f.getPath());
+                long t1 = System.nanoTime();
+                long peak = 0;
+                for (MemoryPoolMXBean pool : pools) {
+                    if (pool.getType() == MemoryType.HEAP) {
+                        peak += pool.getPeakUsage().getUsed();
+                    }
+                }
+                System.out.println((t1 - t0) / 1000_000 + " ms, peak heap " + (peak >> 20) + " MB");
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * writes a XTCE file with numSubsystems space systems each having numChildren sub-systems; each of them has
+     * numParams parameters of its own types and containers of 100 parameters
+     */
+    static void createXtce(File f, int numSubsystems, int numChildren, int numParams) throws IOException {
+        try (PrintWriter w = new PrintWriter(f, "UTF-8")) {
+            w.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            w.println("<xtce:SpaceSystem name=\"Synthetic\" xmlns:xtce=\"http://www.omg.org/space/xtce\">");
+            for (int s = 0; s < numSubsystems; s++) {
+                w.println("<xtce:SpaceSystem name=\"SS" + s + "\">");
+                writeTelemetry(w, "SS" + s, numParams);
+                for (int c = 0; c < numChildren; c++) {
+                    w.println("<xtce:SpaceSystem name=\"SS" + s + "_" + c + "\">");
+                    writeTelemetry(w, "SS" + s + "_" + c, numParams);
+                    w.println("</xtce:SpaceSystem>");
+                }
+                w.println("</xtce:SpaceSystem>");
+            }
+            w.println("</xtce:SpaceSystem>");
+        }
+    }
+
+    private static void writeTelemetry(PrintWriter w, String ssName, int numParams) {
+        w.println("<xtce:TelemetryMetaData>");
+        w.println("<xtce:ParameterTypeSet>");
+        for (int i = 0; i < numParams; i++) {
+            w.println("<xtce:IntegerParameterType signed=\"false\" name=\"t" + i + "\">");
+            w.println("<xtce:UnitSet><xtce:Unit description=\"Voltage\">V</xtce:Unit></xtce:UnitSet>");
+            w.println("<xtce:IntegerDataEncoding sizeInBits=\"16\" encoding=\"unsigned\"/>");
+            w.println("</xtce:IntegerParameterType>");
+        }
+        w.println("</xtce:ParameterTypeSet>");
+        w.println("<xtce:ParameterSet>");
+        for (int i = 0; i < numParams; i++) {
+            w.println("<xtce:Parameter parameterTypeRef=\"t" + i + "\" name=\"p" + i + "\" shortDescription=\""
+                    + "Voltage measured by sensor " + i + " of " + ssName + "\">");
+            w.println("<xtce:AliasSet><xtce:Alias nameSpace=\"MDB:OPS Name\" alias=\"" + ssName + "_P" + i
+                    + "\"/></xtce:AliasSet>");
+            w.println("</xtce:Parameter>");
+        }
+        w.println("</xtce:ParameterSet>");
+        w.println("<xtce:ContainerSet>");
+        for (int i = 0; i < numParams; i++) {
+            if (i % 100 == 0) {
+                if (i > 0) {
+                    w.println("</xtce:EntryList></xtce:SequenceContainer>");
+                }
+                w.println("<xtce:SequenceContainer name=\"pkt" + i + "\"><xtce:EntryList>");
+            }
+            w.println("<xtce:ParameterRefEntry parameterRef=\"p" + i + "\"/>");
+        }
+        if (numParams > 0) {
+            w.println("</xtce:EntryList></xtce:SequenceContainer>");
+        }
+        w.println("</xtce:ContainerSet>");
+        w.println("</xtce:TelemetryMetaData>");
+    }
+}